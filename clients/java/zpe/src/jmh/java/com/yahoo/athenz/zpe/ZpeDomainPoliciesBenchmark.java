@@ -0,0 +1,111 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.zpe;
+
+import com.yahoo.athenz.zpe.AuthZpeClient.AccessCheckStatus;
+import com.yahoo.rdl.Struct;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the access check with the compiled ZpeDomainPolicies against
+ * the four-pass evaluation of the role assertion maps that is used when
+ * the client does not provide compiled policies.
+ * Run with: mvn -Pjmh test-compile exec:exec@jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ZpeDomainPoliciesBenchmark {
+
+    private static final String DOMAIN = "coretech";
+
+    @Param({ "10", "100" })
+    public int actionCount;
+
+    private final Map<String, List<Struct>> standardAllowMap = new TreeMap<>();
+    private final Map<String, List<Struct>> wildcardAllowMap = new TreeMap<>();
+    private final Map<String, List<Struct>> standardDenyMap = new TreeMap<>();
+    private final Map<String, List<Struct>> wildcardDenyMap = new TreeMap<>();
+    private final List<String> roles = Arrays.asList("readers", "writers", "auditors");
+    private ZpeDomainPolicies domainPolicies;
+    private String action;
+
+    @Setup
+    public void setup() {
+
+        ZpeUpdPolLoader loader = new ZpeUpdPolLoader(null);
+
+        // each role has assertions for the configured number of actions
+        // and the checked action is the last one so all the assertions
+        // for the role are processed in the assertion maps
+
+        for (String role : roles) {
+            for (int i = 0; i < actionCount; i++) {
+                addAssertion(loader, standardAllowMap, role, "action" + i, "data.*");
+            }
+            addAssertion(loader, standardDenyMap, role, "delete", "data.secret");
+        }
+        addAssertion(loader, wildcardAllowMap, "admin*", "*", "*");
+        addAssertion(loader, wildcardDenyMap, "guest.*", "read", "data.*");
+        loader.close();
+
+        domainPolicies = new ZpeDomainPolicies(standardAllowMap, wildcardAllowMap,
+                standardDenyMap, wildcardDenyMap);
+        action = "action" + (actionCount - 1);
+    }
+
+    private void addAssertion(ZpeUpdPolLoader loader, Map<String, List<Struct>> roleMap,
+            final String role, final String action, final String resource) {
+
+        Struct strAssert = new Struct();
+        strAssert.put(ZpeConsts.ZPE_FIELD_POLICY_NAME, "policy1");
+        strAssert.put(ZpeConsts.ZPE_FIELD_ROLE, role);
+        strAssert.put(ZpeConsts.ZPE_ROLE_MATCH_STRUCT, loader.getMatchObject(role));
+        strAssert.put(ZpeConsts.ZPE_FIELD_ACTION, action);
+        strAssert.put(ZpeConsts.ZPE_ACTION_MATCH_STRUCT, loader.getMatchObject(action));
+        strAssert.put(ZpeConsts.ZPE_FIELD_RESOURCE, resource);
+        strAssert.put(ZpeConsts.ZPE_RESOURCE_MATCH_STRUCT, loader.getMatchObject(resource));
+        roleMap.computeIfAbsent(role, k -> new ArrayList<>()).add(strAssert);
+    }
+
+    @Benchmark
+    public AccessCheckStatus compiledPolicies() {
+        return domainPolicies.allowAccess(action, "data.public", roles, new StringBuilder());
+    }
+
+    @Benchmark
+    public AccessCheckStatus assertionMaps() {
+
+        StringBuilder matchRoleName = new StringBuilder();
+        if (AuthZpeClient.actionByRole(action, DOMAIN, "data.public", roles, standardDenyMap, matchRoleName)
+                || AuthZpeClient.actionByWildCardRole(action, DOMAIN, "data.public", roles,
+                        wildcardDenyMap, matchRoleName)) {
+            return AccessCheckStatus.DENY;
+        }
+        if (AuthZpeClient.actionByRole(action, DOMAIN, "data.public", roles, standardAllowMap, matchRoleName)
+                || AuthZpeClient.actionByWildCardRole(action, DOMAIN, "data.public", roles,
+                        wildcardAllowMap, matchRoleName)) {
+            return AccessCheckStatus.ALLOW;
+        }
+        return AccessCheckStatus.DENY_NO_MATCH;
+    }
+}
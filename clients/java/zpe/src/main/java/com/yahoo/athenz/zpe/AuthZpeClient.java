@@ -239,10 +239,11 @@ public class AuthZpeClient {
      * tokens must be re-used by clients until they're about to be
      * expired. However, incorrectly configured client might generate
      * a new token for every request and eventually cause the server
-     * to run out of memory. Once the limit is reached, the library
-     * will no longer cache any tokens until the expiry thread cleans
-     * up the expired tokens and the size of the cache is smaller than
-     * the configured number. The value of 0 indicates no limit. The
+     * to run out of memory. Once the limit is reached, a new token is
+     * only cached if it's requested more frequently than the token
+     * selected for eviction, with expired tokens always evicted first,
+     * so a burst of one-time tokens does not replace the tokens used
+     * by active clients. The value of 0 indicates no limit. The
      * default value of cached tokens is 10K. The value can also be
      * configured by using the athenz.zpe.max_token_cache_entries
      * system property.
@@ -936,33 +937,34 @@ public class AuthZpeClient {
     public static AccessCheckStatus allowActionZPE(String action, String tokenDomain, String resource,
             List<String> roles, StringBuilder matchRoleName) {
 
-        final String msgPrefix = "allowActionZPE: domain(" + tokenDomain + ") action(" + action +
-                ") resource(" + resource + ")";
-
         if (roles == null || roles.isEmpty()) {
-            LOG.error("{} ERROR: No roles so access denied", msgPrefix);
+            LOG.error("{} ERROR: No roles so access denied", getMsgPrefix(tokenDomain, action, resource));
             return AccessCheckStatus.DENY_ROLETOKEN_INVALID;
         }
 
         if (LOG.isDebugEnabled()) {
-            LOG.debug("{} roles({}) starting...", msgPrefix, String.join(",", roles));
+            LOG.debug("{} roles({}) starting...", getMsgPrefix(tokenDomain, action, resource),
+                    String.join(",", roles));
         }
 
         if (tokenDomain == null || tokenDomain.isEmpty()) {
-            LOG.error("{} ERROR: No domain so access denied", msgPrefix);
+            LOG.error("{} ERROR: No domain so access denied", getMsgPrefix(tokenDomain, action, resource));
             return AccessCheckStatus.DENY_ROLETOKEN_INVALID;
         }
 
         if (action == null || action.isEmpty()) {
-            LOG.error("{} ERROR: No action so access denied", msgPrefix);
+            LOG.error("{} ERROR: No action so access denied", getMsgPrefix(tokenDomain, action, resource));
             return AccessCheckStatus.DENY_INVALID_PARAMETERS;
         }
-        action = action.toLowerCase();
 
         if (resource == null || resource.isEmpty()) {
-            LOG.error("{} ERROR: No resource so access denied", msgPrefix);
+            LOG.error("{} ERROR: No resource so access denied", getMsgPrefix(tokenDomain, action, resource));
             return AccessCheckStatus.DENY_INVALID_PARAMETERS;
         }
+
+        final String origAction = action;
+        final String origResource = resource;
+        action = action.toLowerCase();
         resource = resource.toLowerCase();
 
         // Note: if domain in token doesn't match domain in resource then there
@@ -977,14 +979,29 @@ public class AuthZpeClient {
         resource = stripDomainPrefix(resource, tokenDomain, zpeClt.getDomainCount() == 1 ? resource : null);
         if (resource == null) {
             LOG.error("{} ERROR: Domain mismatch in token({}) and resource so access denied",
-                    msgPrefix, tokenDomain);
+                    getMsgPrefix(tokenDomain, origAction, origResource), tokenDomain);
             return AccessCheckStatus.DENY_DOMAIN_MISMATCH;
         }
 
+        // if our client has compiled the domain policies then we'll use
+        // that object to carry out the check instead of processing the
+        // assertion maps for each effect and role type
+
+        AccessCheckStatus status;
+        ZpeDomainPolicies domainPolicies = zpeClt.getDomainPolicies(tokenDomain);
+        if (domainPolicies != null) {
+            status = domainPolicies.allowAccess(action, resource, roles, matchRoleName);
+            if (status == AccessCheckStatus.DENY_DOMAIN_EMPTY) {
+                LOG.error("{}: No policy assertions for domain={} so access denied",
+                        getMsgPrefix(tokenDomain, origAction, origResource), tokenDomain);
+            }
+            return status;
+        }
+
         // first hunt by role for deny assertions since deny takes precedence
         // over allow assertions
 
-        AccessCheckStatus status = AccessCheckStatus.DENY_DOMAIN_NOT_FOUND;
+        status = AccessCheckStatus.DENY_DOMAIN_NOT_FOUND;
         Map<String, List<Struct>> roleMap = zpeClt.getRoleDenyAssertions(tokenDomain);
         if (roleMap != null && !roleMap.isEmpty()) {
             if (actionByRole(action, tokenDomain, resource, roles, roleMap, matchRoleName)) {
@@ -1039,14 +1056,25 @@ public class AuthZpeClient {
         }
         
         if (status == AccessCheckStatus.DENY_DOMAIN_NOT_FOUND) {
-            LOG.error("{}: No role map found for domain={} so access denied", msgPrefix, tokenDomain);
+            LOG.error("{}: No role map found for domain={} so access denied",
+                    getMsgPrefix(tokenDomain, origAction, origResource), tokenDomain);
         } else if (status == AccessCheckStatus.DENY_DOMAIN_EMPTY) {
-            LOG.error("{}: No policy assertions for domain={} so access denied", msgPrefix, tokenDomain);
+            LOG.error("{}: No policy assertions for domain={} so access denied",
+                    getMsgPrefix(tokenDomain, origAction, origResource), tokenDomain);
         }
         
         return status;
     }
 
+    static String getMsgPrefix(final String tokenDomain, final String action, final String resource) {
+
+        // the prefix is only used in our log statements so we're only
+        // going to generate the value when it's about to be logged
+
+        return "allowActionZPE: domain(" + tokenDomain + ") action(" + action +
+                ") resource(" + resource + ")";
+    }
+
     static boolean matchAssertions(List<Struct> asserts, String role, String action,
             String resource, StringBuilder matchRoleName, String msgPrefix) {
         
@@ -1261,7 +1289,9 @@ public class AuthZpeClient {
     }
 
     static <T> void addTokenToCache(Map<String, T> tokenCache, final String tokenKey, T tokenValue) {
-        if (maxTokenCacheSize == 0 || tokenCache.size() < maxTokenCacheSize) {
+        if (tokenCache instanceof ZpeTokenCache) {
+            ((ZpeTokenCache<T>) tokenCache).put(tokenKey, tokenValue, maxTokenCacheSize);
+        } else if (maxTokenCacheSize == 0 || tokenCache.size() < maxTokenCacheSize) {
             tokenCache.put(tokenKey, tokenValue);
         }
     }
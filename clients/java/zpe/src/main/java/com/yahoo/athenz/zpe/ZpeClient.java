@@ -54,5 +54,12 @@ public interface ZpeClient {
 
     // return the number of domains available in assertion maps
     int getDomainCount();
+
+    // return the compiled policies for the specified domain. if the
+    // client does not provide compiled policies, the assertion maps
+    // above are used to carry out the authorization checks
+    default ZpeDomainPolicies getDomainPolicies(String domain) {
+        return null;
+    }
 }
 
@@ -0,0 +1,220 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.zpe;
+
+import com.yahoo.athenz.zpe.AuthZpeClient.AccessCheckStatus;
+import com.yahoo.athenz.zpe.match.ZpeMatch;
+import com.yahoo.athenz.zpe.match.impl.ZpeMatchEqual;
+import com.yahoo.rdl.Struct;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled view of the policy assertions for a single domain. The
+ * loader generates this object once when the policy file is loaded
+ * so the authorization checks do not need to walk through the list
+ * of assertion structs for every request. For each role we keep the
+ * resource matchers indexed by their action so actions without any
+ * wildcards are looked up directly in a map and only the actions with
+ * wildcards are matched against their match objects. The object is
+ * immutable once created and the checks do not allocate any objects.
+ */
+public class ZpeDomainPolicies {
+
+    static class ActionResource {
+        final ZpeMatch actionMatch;
+        final ZpeMatch resourceMatch;
+
+        ActionResource(ZpeMatch actionMatch, ZpeMatch resourceMatch) {
+            this.actionMatch = actionMatch;
+            this.resourceMatch = resourceMatch;
+        }
+    }
+
+    static class RolePolicies {
+        final String roleName;
+        final ZpeMatch roleMatch;
+        final Map<String, List<ZpeMatch>> actionResources = new HashMap<>();
+        final List<ActionResource> wildcardActionResources = new ArrayList<>();
+
+        RolePolicies(final String roleName, List<Struct> asserts) {
+
+            this.roleName = roleName;
+            this.roleMatch = asserts.isEmpty() ? null :
+                    (ZpeMatch) asserts.get(0).get(ZpeConsts.ZPE_ROLE_MATCH_STRUCT);
+
+            for (Struct strAssert : asserts) {
+                final ZpeMatch actionMatch = (ZpeMatch) strAssert.get(ZpeConsts.ZPE_ACTION_MATCH_STRUCT);
+                final ZpeMatch resourceMatch = (ZpeMatch) strAssert.get(ZpeConsts.ZPE_RESOURCE_MATCH_STRUCT);
+                final String action = strAssert.getString(ZpeConsts.ZPE_FIELD_ACTION);
+                if (action != null && actionMatch instanceof ZpeMatchEqual) {
+                    actionResources.computeIfAbsent(action, k -> new ArrayList<>()).add(resourceMatch);
+                } else {
+                    wildcardActionResources.add(new ActionResource(actionMatch, resourceMatch));
+                }
+            }
+        }
+
+        boolean matches(final String action, final String resource) {
+
+            final List<ZpeMatch> resourceMatches = actionResources.get(action);
+            if (resourceMatches != null) {
+                for (ZpeMatch resourceMatch : resourceMatches) {
+                    if (resourceMatch.matches(resource)) {
+                        return true;
+                    }
+                }
+            }
+
+            for (ActionResource actionResource : wildcardActionResources) {
+                if (actionResource.actionMatch.matches(action) && actionResource.resourceMatch.matches(resource)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final Map<String, RolePolicies> standardAllowRoles;
+    private final Map<String, RolePolicies> standardDenyRoles;
+    private final List<RolePolicies> wildcardAllowRoles;
+    private final List<RolePolicies> wildcardDenyRoles;
+    private final boolean empty;
+
+    /**
+     * Generate the compiled domain policies from the role assertion maps
+     * generated by the policy loader. The wildcard role maps are expected
+     * to be sorted so the roles are processed in the same order as before.
+     * @param standardAllowMap allow assertions for roles without wildcards
+     * @param wildcardAllowMap allow assertions for roles with wildcards
+     * @param standardDenyMap deny assertions for roles without wildcards
+     * @param wildcardDenyMap deny assertions for roles with wildcards
+     */
+    public ZpeDomainPolicies(Map<String, List<Struct>> standardAllowMap, Map<String, List<Struct>> wildcardAllowMap,
+            Map<String, List<Struct>> standardDenyMap, Map<String, List<Struct>> wildcardDenyMap) {
+
+        standardAllowRoles = compileStandardRoles(standardAllowMap);
+        standardDenyRoles = compileStandardRoles(standardDenyMap);
+        wildcardAllowRoles = compileWildcardRoles(wildcardAllowMap);
+        wildcardDenyRoles = compileWildcardRoles(wildcardDenyMap);
+
+        empty = standardAllowRoles.isEmpty() && standardDenyRoles.isEmpty()
+                && wildcardAllowRoles.isEmpty() && wildcardDenyRoles.isEmpty();
+    }
+
+    Map<String, RolePolicies> compileStandardRoles(Map<String, List<Struct>> roleMap) {
+        Map<String, RolePolicies> rolePolicies = new HashMap<>();
+        for (Map.Entry<String, List<Struct>> entry : roleMap.entrySet()) {
+            rolePolicies.put(entry.getKey(), new RolePolicies(entry.getKey(), entry.getValue()));
+        }
+        return rolePolicies;
+    }
+
+    List<RolePolicies> compileWildcardRoles(Map<String, List<Struct>> roleMap) {
+        List<RolePolicies> rolePolicies = new ArrayList<>();
+        for (Map.Entry<String, List<Struct>> entry : roleMap.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                continue;
+            }
+            rolePolicies.add(new RolePolicies(entry.getKey(), entry.getValue()));
+        }
+        return rolePolicies;
+    }
+
+    /**
+     * @return true if the domain does not have any policy assertions
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Determine if the given roles have access to carry out the action
+     * on the given resource. Deny assertions take precedence over the
+     * allow assertions and the standard roles are checked before the
+     * wildcard roles.
+     * @param action action value (must be in lowercase)
+     * @param resource resource value without the domain prefix (must be in lowercase)
+     * @param roles list of roles from the token
+     * @param matchRoleName - [out] will include the role name that the result was based on
+     * @return ALLOW or DENY if there is a matching assertion, DENY_DOMAIN_EMPTY if the
+     *        domain has no assertions, otherwise DENY_NO_MATCH
+     */
+    public AccessCheckStatus allowAccess(final String action, final String resource, List<String> roles,
+            StringBuilder matchRoleName) {
+
+        if (empty) {
+            return AccessCheckStatus.DENY_DOMAIN_EMPTY;
+        }
+
+        if (standardRoleMatch(standardDenyRoles, action, resource, roles, matchRoleName)
+                || wildcardRoleMatch(wildcardDenyRoles, action, resource, roles, matchRoleName)) {
+            return AccessCheckStatus.DENY;
+        }
+
+        if (standardRoleMatch(standardAllowRoles, action, resource, roles, matchRoleName)
+                || wildcardRoleMatch(wildcardAllowRoles, action, resource, roles, matchRoleName)) {
+            return AccessCheckStatus.ALLOW;
+        }
+
+        return AccessCheckStatus.DENY_NO_MATCH;
+    }
+
+    boolean standardRoleMatch(Map<String, RolePolicies> roleMap, final String action, final String resource,
+            List<String> roles, StringBuilder matchRoleName) {
+
+        if (roleMap.isEmpty()) {
+            return false;
+        }
+
+        for (String role : roles) {
+            final RolePolicies rolePolicies = roleMap.get(role);
+            if (rolePolicies != null && rolePolicies.matches(action, resource)) {
+                setMatchRoleName(matchRoleName, role);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean wildcardRoleMatch(List<RolePolicies> roleList, final String action, final String resource,
+            List<String> roles, StringBuilder matchRoleName) {
+
+        if (roleList.isEmpty()) {
+            return false;
+        }
+
+        for (String role : roles) {
+            for (RolePolicies rolePolicies : roleList) {
+                if (rolePolicies.roleMatch.matches(role) && rolePolicies.matches(action, resource)) {
+                    setMatchRoleName(matchRoleName, rolePolicies.roleName);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    void setMatchRoleName(StringBuilder matchRoleName, final String roleName) {
+        if (matchRoleName != null) {
+            matchRoleName.setLength(0);
+            matchRoleName.append(roleName);
+        }
+    }
+}
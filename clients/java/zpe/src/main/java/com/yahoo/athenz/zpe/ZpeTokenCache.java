@@ -0,0 +1,376 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.zpe;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded cache of validated tokens. The entries are keyed by the
+ * SHA-256 digest of the token instead of the token itself. Expired
+ * tokens are removed when they're looked up, when they're selected as
+ * eviction candidates and by the periodic cleanup task. When the cache
+ * is full, a new token is only admitted if it has been requested more
+ * frequently than the eviction candidate based on a count-min sketch
+ * of recent lookups, so a burst of distinct tokens can't replace the
+ * tokens that are used by active clients. The cache exposes a Map view
+ * keyed by the token to be compatible with the ZpeClient interface.
+ * @param <T> type of the token object
+ */
+public class ZpeTokenCache<T> extends AbstractMap<String, T> {
+
+    static final int EVICTION_SAMPLE_SIZE = 8;
+    static final int MAX_SKETCH_WIDTH = 1 << 20;
+
+    private static final ThreadLocal<MessageDigest> SHA256_DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    });
+
+    static final class TokenKey {
+
+        final long d0, d1, d2, d3;
+
+        TokenKey(final byte[] digest) {
+            ByteBuffer buffer = ByteBuffer.wrap(digest);
+            d0 = buffer.getLong();
+            d1 = buffer.getLong();
+            d2 = buffer.getLong();
+            d3 = buffer.getLong();
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (d0 ^ (d0 >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof TokenKey)) {
+                return false;
+            }
+            TokenKey key = (TokenKey) obj;
+            return d0 == key.d0 && d1 == key.d1 && d2 == key.d2 && d3 == key.d3;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%016x%016x%016x%016x", d0, d1, d2, d3);
+        }
+    }
+
+    /**
+     * Count-min sketch with 4 rows of saturating counters. Since the keys
+     * are already uniformly distributed digests, each row is indexed by
+     * a different part of the digest. All counters are halved once the
+     * number of recorded lookups reaches 10 times the sketch width so
+     * the frequencies reflect recent activity. Updates are not atomic
+     * since an approximate count is sufficient for admission decisions.
+     */
+    static final class FrequencySketch {
+
+        static final int MAX_COUNT = 15;
+
+        final byte[][] table = new byte[4][];
+        final int mask;
+        final int resetThreshold;
+        int additions = 0;
+
+        FrequencySketch(int expectedSize) {
+            int width = Integer.highestOneBit(Math.max(64, Math.min(expectedSize, MAX_SKETCH_WIDTH)) - 1) << 1;
+            for (int i = 0; i < table.length; i++) {
+                table[i] = new byte[width];
+            }
+            mask = width - 1;
+            resetThreshold = width * 10;
+        }
+
+        void increment(TokenKey key) {
+            incrementAt(table[0], (int) key.d0);
+            incrementAt(table[1], (int) key.d1);
+            incrementAt(table[2], (int) key.d2);
+            incrementAt(table[3], (int) key.d3);
+            if (++additions >= resetThreshold) {
+                reset();
+            }
+        }
+
+        int frequency(TokenKey key) {
+            int frequency = table[0][(int) key.d0 & mask];
+            frequency = Math.min(frequency, table[1][(int) key.d1 & mask]);
+            frequency = Math.min(frequency, table[2][(int) key.d2 & mask]);
+            return Math.min(frequency, table[3][(int) key.d3 & mask]);
+        }
+
+        void incrementAt(byte[] row, int hash) {
+            final int index = hash & mask;
+            if (row[index] < MAX_COUNT) {
+                row[index]++;
+            }
+        }
+
+        synchronized void reset() {
+            additions = 0;
+            for (byte[] row : table) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>= 1;
+                }
+            }
+        }
+    }
+
+    static final class CacheEntry<T> {
+
+        final T value;
+        final long expiryTime;
+
+        CacheEntry(T value, long expiryTime) {
+            this.value = value;
+            this.expiryTime = expiryTime;
+        }
+    }
+
+    private final ConcurrentHashMap<TokenKey, CacheEntry<T>> cache = new ConcurrentHashMap<>();
+    private final ToLongFunction<T> expiryFunction;
+    private final FrequencySketch sketch;
+    private final int defaultMaxSize;
+    private Iterator<Map.Entry<TokenKey, CacheEntry<T>>> evictionIterator;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * Create a new token cache
+     * @param expiryFunction function returning the expiry time of the token in seconds
+     * @param maxSize max number of entries in the cache, 0 indicates no limit
+     */
+    public ZpeTokenCache(ToLongFunction<T> expiryFunction, int maxSize) {
+        this.expiryFunction = expiryFunction;
+        this.defaultMaxSize = maxSize;
+        this.sketch = new FrequencySketch(maxSize == 0 ? 10240 : maxSize);
+    }
+
+    static TokenKey getTokenKey(final String token) {
+        MessageDigest digest = SHA256_DIGEST.get();
+        return new TokenKey(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public T get(Object token) {
+
+        if (!(token instanceof String)) {
+            return null;
+        }
+
+        final TokenKey key = getTokenKey((String) token);
+        sketch.increment(key);
+
+        CacheEntry<T> entry = cache.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+
+        if (entry.expiryTime < System.currentTimeMillis() / 1000) {
+            if (cache.remove(key, entry)) {
+                expirations.increment();
+            }
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return entry.value;
+    }
+
+    @Override
+    public T put(final String token, T value) {
+        return put(token, value, defaultMaxSize);
+    }
+
+    /**
+     * Add the given token to the cache. If the cache has reached its
+     * configured max size, the token is only added if it's accessed
+     * more frequently than the selected eviction candidate.
+     * @param token token string
+     * @param value validated token object
+     * @param maxSize max number of entries in the cache, 0 indicates no limit
+     * @return previous value if the token was already in the cache
+     */
+    public T put(final String token, T value, int maxSize) {
+
+        final TokenKey key = getTokenKey(token);
+        final CacheEntry<T> entry = new CacheEntry<>(value, expiryFunction.applyAsLong(value));
+
+        if (maxSize > 0 && cache.size() >= maxSize && !cache.containsKey(key) && !evict(key, maxSize)) {
+            rejections.increment();
+            return null;
+        }
+
+        CacheEntry<T> oldEntry = cache.put(key, entry);
+        return oldEntry == null ? null : oldEntry.value;
+    }
+
+    synchronized boolean evict(final TokenKey candidate, int maxSize) {
+
+        final long now = System.currentTimeMillis() / 1000;
+        final int candidateFrequency = sketch.frequency(candidate);
+
+        while (cache.size() >= maxSize) {
+
+            // sample our next set of entries and pick the one with the
+            // lowest frequency as the victim. expired entries are removed
+            // right away without checking the frequency
+
+            Map.Entry<TokenKey, CacheEntry<T>> victim = null;
+            int victimFrequency = Integer.MAX_VALUE;
+            boolean expiredRemoved = false;
+            for (int i = 0; i < EVICTION_SAMPLE_SIZE; i++) {
+                Map.Entry<TokenKey, CacheEntry<T>> mapEntry = nextEvictionEntry();
+                if (mapEntry == null) {
+                    break;
+                }
+                if (mapEntry.getValue().expiryTime < now) {
+                    if (cache.remove(mapEntry.getKey(), mapEntry.getValue())) {
+                        expirations.increment();
+                        expiredRemoved = true;
+                        break;
+                    }
+                    continue;
+                }
+                final int frequency = sketch.frequency(mapEntry.getKey());
+                if (frequency < victimFrequency) {
+                    victim = mapEntry;
+                    victimFrequency = frequency;
+                }
+            }
+
+            if (expiredRemoved) {
+                continue;
+            }
+
+            if (victim == null || candidateFrequency <= victimFrequency) {
+                return false;
+            }
+
+            if (cache.remove(victim.getKey(), victim.getValue())) {
+                evictions.increment();
+            }
+        }
+        return true;
+    }
+
+    Map.Entry<TokenKey, CacheEntry<T>> nextEvictionEntry() {
+
+        // we keep our iterator between calls so the entries
+        // are sampled in a round-robin fashion
+
+        if (evictionIterator == null || !evictionIterator.hasNext()) {
+            evictionIterator = cache.entrySet().iterator();
+            if (!evictionIterator.hasNext()) {
+                return null;
+            }
+        }
+        return evictionIterator.next();
+    }
+
+    /**
+     * Remove all tokens that expired before the given time
+     * @param nowSecs current time in seconds
+     */
+    public void removeExpired(long nowSecs) {
+        cache.entrySet().removeIf(entry -> {
+            if (entry.getValue().expiryTime < nowSecs) {
+                expirations.increment();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    @Override
+    public T remove(Object token) {
+        if (!(token instanceof String)) {
+            return null;
+        }
+        CacheEntry<T> entry = cache.remove(getTokenKey((String) token));
+        return entry == null ? null : entry.value;
+    }
+
+    @Override
+    public boolean containsKey(Object token) {
+        return token instanceof String && cache.containsKey(getTokenKey((String) token));
+    }
+
+    @Override
+    public int size() {
+        return cache.size();
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Since the tokens are not stored in the cache, the entries
+     * are returned with the hex encoded token digest as the key
+     * @return read-only set of cache entries
+     */
+    @Override
+    public Set<Map.Entry<String, T>> entrySet() {
+        Set<Map.Entry<String, T>> entries = new HashSet<>();
+        for (Map.Entry<TokenKey, CacheEntry<T>> entry : cache.entrySet()) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey().toString(), entry.getValue().value));
+        }
+        return Collections.unmodifiableSet(entries);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+}
@@ -98,11 +98,34 @@ public class ZpeUpdPolLoader implements Closeable {
     // wild card role map, keys and values same as domRoleMap above
     ConcurrentHashMap<String, Map<String, List<Struct>>> domWildcardRoleDenyMap = new ConcurrentHashMap<>();
 
-    // cache of active Role Tokens
-    static ConcurrentHashMap<String, RoleToken> roleTokenCacheMap = new ConcurrentHashMap<>();
+    // compiled domain policies generated from the role maps above
+    // key is the domain name, value is the compiled policies for that domain
+    ConcurrentHashMap<String, ZpeDomainPolicies> domPoliciesMap = new ConcurrentHashMap<>();
 
-    // cache of active Access Tokens
-    static ConcurrentHashMap<String, AccessToken> accessTokenCacheMap = new ConcurrentHashMap<>();
+    // cache of active Role Tokens keyed by the token digest. the caches
+    // are created with the configured max number of entries, but the
+    // client passes its current limit when adding tokens to the cache
+    // since it can be changed with AuthZpeClient.setTokenCacheMaxValue
+    static ZpeTokenCache<RoleToken> roleTokenCacheMap = new ZpeTokenCache<>(RoleToken::getExpiryTime,
+            getTokenCacheMaxSize());
+
+    // cache of active Access Tokens keyed by the token digest
+    static ZpeTokenCache<AccessToken> accessTokenCacheMap = new ZpeTokenCache<>(AccessToken::getExpiryTime,
+            getTokenCacheMaxSize());
+
+    static int getTokenCacheMaxSize() {
+
+        // same as AuthZpeClient, invalid values are skipped and we use
+        // the default limit. value 0 indicates no limit
+
+        try {
+            int maxSize = Integer.parseInt(System.getProperty(ZpeConsts.ZPE_PROP_MAX_TOKEN_CACHE, "10240"));
+            return maxSize > -1 ? maxSize : 10240;
+        } catch (NumberFormatException ex) {
+            LOG.error("Invalid max token cache entries value: {}", ex.getMessage());
+            return 10240;
+        }
+    }
 
     // array of file status objects
     static class ZpeFileStatus {
@@ -164,6 +187,14 @@ public class ZpeUpdPolLoader implements Closeable {
         return domStandardRoleDenyMap.get(domainName);
     }
     
+    /**
+     * @param domainName name of the domain
+     * @return the compiled policies for the given domain
+     */
+    public ZpeDomainPolicies getDomainPolicies(String domainName) {
+        return domPoliciesMap.get(domainName);
+    }
+
     static public Map<String, RoleToken> getRoleTokenCacheMap() {
         return roleTokenCacheMap;
     }
@@ -209,7 +240,7 @@ public class ZpeUpdPolLoader implements Closeable {
         }
 
         long nowSecs = now / 1000;
-        roleTokenCacheMap.entrySet().removeIf(entry -> entry.getValue().getExpiryTime() < nowSecs);
+        roleTokenCacheMap.removeExpired(nowSecs);
         lastRoleTokenCleanup = now; // reset time of last cleanup
     }
 
@@ -221,7 +252,7 @@ public class ZpeUpdPolLoader implements Closeable {
         }
 
         long nowSecs = now / 1000;
-        accessTokenCacheMap.entrySet().removeIf(entry -> entry.getValue().getExpiryTime() < nowSecs);
+        accessTokenCacheMap.removeExpired(nowSecs);
         lastAccessTokenCleanup = now; // reset time of last cleanup
     }
 
@@ -280,6 +311,8 @@ public class ZpeUpdPolLoader implements Closeable {
                     domWildcardRoleAllowMap.put(fstat.domain, new TreeMap<>());
                     domStandardRoleDenyMap.put(fstat.domain, new TreeMap<>());
                     domWildcardRoleDenyMap.put(fstat.domain, new TreeMap<>());
+                    domPoliciesMap.put(fstat.domain, new ZpeDomainPolicies(Collections.emptyMap(),
+                            Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap()));
                     continue;
                 }
                 
@@ -531,6 +564,7 @@ public class ZpeUpdPolLoader implements Closeable {
                 // It is possible for action and resource to retain case. Need to lower them both.
                 final String passertAction = assertion.getAction().toLowerCase();
 
+                strAssert.put(ZpeConsts.ZPE_FIELD_ACTION, passertAction);
                 ZpeMatch matchStruct = getMatchObject(passertAction);
                 strAssert.put(ZpeConsts.ZPE_ACTION_MATCH_STRUCT, matchStruct);
                 
@@ -584,6 +618,12 @@ public class ZpeUpdPolLoader implements Closeable {
         domWildcardRoleAllowMap.put(domainName, roleWildcardAllowMap);
         domStandardRoleDenyMap.put(domainName, roleStandardDenyMap);
         domWildcardRoleDenyMap.put(domainName, roleWildcardDenyMap);
+
+        // generate our compiled domain policies that are used by the
+        // authorization checks
+
+        domPoliciesMap.put(domainName, new ZpeDomainPolicies(roleStandardAllowMap, roleWildcardAllowMap,
+                roleStandardDenyMap, roleWildcardDenyMap));
     }
 }
 
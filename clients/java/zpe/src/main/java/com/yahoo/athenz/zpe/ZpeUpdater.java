@@ -109,6 +109,11 @@ public class ZpeUpdater implements ZpeClient {
         return POLICYLOADER.getStandardRoleDenyMap(domain);
     }
 
+    @Override
+    public ZpeDomainPolicies getDomainPolicies(String domain) {
+        return POLICYLOADER.getDomainPolicies(domain);
+    }
+
     @Override
     public int getDomainCount() {
         return POLICYLOADER.getDomainCount();
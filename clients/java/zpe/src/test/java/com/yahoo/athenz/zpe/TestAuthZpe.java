@@ -1491,32 +1491,41 @@ public class TestAuthZpe {
         Assert.assertEquals(roleMap.size(), 1);
 
         // with our new token cache size limit of 1 the size should not change
+        // and since the new token has not been requested more frequently
+        // than our cached token, it will not be admitted into the cache
 
         AuthZpeClient.setTokenCacheMaxValue(1);
 
+        final String firstToken = signedToken;
         roles.add("testrole1");
         signedToken = createAccessToken("angler", roles, "0");
         status = AuthZpeClient.allowAccess(signedToken, cert, null, resource, action);
         Assert.assertEquals(status, AccessCheckStatus.ALLOW);
 
         Assert.assertEquals(roleMap.size(), 1);
+        Assert.assertNotNull(roleMap.get(firstToken));
 
         // set a negative value will be ignored, so we'll still
-        // have a single entry in the cache
+        // have a single entry in the cache. our second token has
+        // now been requested more frequently, so it will replace
+        // the first token in the cache
 
         AuthZpeClient.setTokenCacheMaxValue(-2);
 
+        status = AuthZpeClient.allowAccess(signedToken, cert, null, resource, action);
+        Assert.assertEquals(status, AccessCheckStatus.ALLOW);
         status = AuthZpeClient.allowAccess(signedToken, cert, null, resource, action);
         Assert.assertEquals(status, AccessCheckStatus.ALLOW);
 
         Assert.assertEquals(roleMap.size(), 1);
-
+        Assert.assertNotNull(roleMap.get(signedToken));
+        Assert.assertNull(roleMap.get(firstToken));
 
         // now let's increase the size and try again
 
         AuthZpeClient.setTokenCacheMaxValue(10);
 
-        status = AuthZpeClient.allowAccess(signedToken, cert, null, resource, action);
+        status = AuthZpeClient.allowAccess(firstToken, cert, null, resource, action);
         Assert.assertEquals(status, AccessCheckStatus.ALLOW);
 
         Assert.assertEquals(roleMap.size(), 2);
@@ -1531,6 +1540,8 @@ public class TestAuthZpe {
         Assert.assertEquals(status, AccessCheckStatus.ALLOW);
 
         Assert.assertEquals(roleMap.size(), 3);
+
+        AuthZpeClient.setTokenCacheMaxValue(10240);
     }
 
     @Test
@@ -0,0 +1,123 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.zpe;
+
+import com.yahoo.athenz.zpe.AuthZpeClient.AccessCheckStatus;
+import com.yahoo.rdl.Struct;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+import static org.testng.Assert.*;
+
+public class TestZpeDomainPolicies {
+
+    private ZpeUpdPolLoader loader;
+
+    @BeforeClass
+    public void setup() {
+        loader = new ZpeUpdPolLoader(null);
+    }
+
+    @AfterClass
+    public void shutdown() {
+        loader.close();
+    }
+
+    private Struct createAssertion(final String role, final String action, final String resource) {
+        Struct strAssert = new Struct();
+        strAssert.put(ZpeConsts.ZPE_FIELD_POLICY_NAME, "policy1");
+        strAssert.put(ZpeConsts.ZPE_FIELD_ROLE, role);
+        strAssert.put(ZpeConsts.ZPE_ROLE_MATCH_STRUCT, loader.getMatchObject(role));
+        strAssert.put(ZpeConsts.ZPE_FIELD_ACTION, action);
+        strAssert.put(ZpeConsts.ZPE_ACTION_MATCH_STRUCT, loader.getMatchObject(action));
+        strAssert.put(ZpeConsts.ZPE_FIELD_RESOURCE, resource);
+        strAssert.put(ZpeConsts.ZPE_RESOURCE_MATCH_STRUCT, loader.getMatchObject(resource));
+        return strAssert;
+    }
+
+    private void addAssertion(Map<String, List<Struct>> roleMap, final String role, final String action,
+            final String resource) {
+        roleMap.computeIfAbsent(role, k -> new ArrayList<>()).add(createAssertion(role, action, resource));
+    }
+
+    @Test
+    public void testAllowAccess() {
+
+        Map<String, List<Struct>> standardAllowMap = new TreeMap<>();
+        Map<String, List<Struct>> wildcardAllowMap = new TreeMap<>();
+        Map<String, List<Struct>> standardDenyMap = new TreeMap<>();
+        Map<String, List<Struct>> wildcardDenyMap = new TreeMap<>();
+
+        addAssertion(standardAllowMap, "readers", "read", "data.*");
+        addAssertion(standardAllowMap, "readers", "list", "data");
+        addAssertion(standardAllowMap, "writers", "write*", "data.*");
+        addAssertion(wildcardAllowMap, "admin*", "*", "*");
+        addAssertion(standardDenyMap, "readers", "read", "data.secret");
+        addAssertion(wildcardDenyMap, "guest.*", "read", "data.*");
+
+        ZpeDomainPolicies policies = new ZpeDomainPolicies(standardAllowMap, wildcardAllowMap,
+                standardDenyMap, wildcardDenyMap);
+        assertFalse(policies.isEmpty());
+
+        StringBuilder matchRoleName = new StringBuilder();
+        assertEquals(policies.allowAccess("read", "data.public", Collections.singletonList("readers"),
+                matchRoleName), AccessCheckStatus.ALLOW);
+        assertEquals(matchRoleName.toString(), "readers");
+
+        assertEquals(policies.allowAccess("list", "data", Collections.singletonList("readers"),
+                matchRoleName), AccessCheckStatus.ALLOW);
+        assertEquals(policies.allowAccess("list", "data.public", Collections.singletonList("readers"),
+                matchRoleName), AccessCheckStatus.DENY_NO_MATCH);
+
+        // wildcard action
+
+        assertEquals(policies.allowAccess("writeall", "data.public", Arrays.asList("readers", "writers"),
+                matchRoleName), AccessCheckStatus.ALLOW);
+        assertEquals(matchRoleName.toString(), "writers");
+
+        // deny assertions take precedence
+
+        assertEquals(policies.allowAccess("read", "data.secret", Arrays.asList("readers", "admins"),
+                matchRoleName), AccessCheckStatus.DENY);
+        assertEquals(matchRoleName.toString(), "readers");
+
+        // wildcard roles report the assertion role name
+
+        assertEquals(policies.allowAccess("delete", "data.secret", Collections.singletonList("admins"),
+                matchRoleName), AccessCheckStatus.ALLOW);
+        assertEquals(matchRoleName.toString(), "admin*");
+
+        assertEquals(policies.allowAccess("read", "data.public", Arrays.asList("guest.user", "readers"),
+                matchRoleName), AccessCheckStatus.DENY);
+        assertEquals(matchRoleName.toString(), "guest.*");
+
+        assertEquals(policies.allowAccess("read", "data.public", Collections.singletonList("unknown"),
+                matchRoleName), AccessCheckStatus.DENY_NO_MATCH);
+    }
+
+    @Test
+    public void testAllowAccessEmptyDomain() {
+
+        ZpeDomainPolicies policies = new ZpeDomainPolicies(Collections.emptyMap(), Collections.emptyMap(),
+                Collections.emptyMap(), Collections.emptyMap());
+        assertTrue(policies.isEmpty());
+        assertEquals(policies.allowAccess("read", "data", Collections.singletonList("readers"),
+                new StringBuilder()), AccessCheckStatus.DENY_DOMAIN_EMPTY);
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.zpe;
+
+import org.testng.annotations.Test;
+
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+public class TestZpeTokenCache {
+
+    static final class TestToken {
+        final String name;
+        final long expiryTime;
+
+        TestToken(final String name, long expiryTime) {
+            this.name = name;
+            this.expiryTime = expiryTime;
+        }
+    }
+
+    private static long futureExpiry() {
+        return System.currentTimeMillis() / 1000 + 3600;
+    }
+
+    @Test
+    public void testGetPutRemove() {
+
+        ZpeTokenCache<TestToken> cache = new ZpeTokenCache<>(token -> token.expiryTime, 0);
+        TestToken token = new TestToken("token1", futureExpiry());
+
+        assertNull(cache.get("token1"));
+        assertNull(cache.put("token1", token));
+        assertEquals(cache.get("token1"), token);
+        assertTrue(cache.containsKey("token1"));
+        assertFalse(cache.containsKey("token2"));
+        assertNull(cache.get(10));
+        assertEquals(cache.size(), 1);
+
+        // the entries are keyed by the token digest
+
+        Map.Entry<String, TestToken> entry = cache.entrySet().iterator().next();
+        assertEquals(entry.getKey().length(), 64);
+        assertNotEquals(entry.getKey(), "token1");
+        assertEquals(entry.getValue(), token);
+
+        assertEquals(cache.getHitCount(), 1);
+        assertEquals(cache.getMissCount(), 1);
+
+        assertEquals(cache.remove("token1"), token);
+        assertNull(cache.remove("token1"));
+        assertNull(cache.remove(10));
+        assertTrue(cache.isEmpty());
+
+        cache.put("token1", token);
+        cache.clear();
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void testExpiredTokens() {
+
+        ZpeTokenCache<TestToken> cache = new ZpeTokenCache<>(token -> token.expiryTime, 0);
+        final long now = System.currentTimeMillis() / 1000;
+        cache.put("expired", new TestToken("expired", now - 10));
+        cache.put("active1", new TestToken("active1", now + 3600));
+        cache.put("active2", new TestToken("active2", now + 5));
+        assertEquals(cache.size(), 3);
+
+        // expired token is removed on lookup
+
+        assertNull(cache.get("expired"));
+        assertEquals(cache.size(), 2);
+        assertEquals(cache.getExpirationCount(), 1);
+        assertEquals(cache.getMissCount(), 1);
+
+        // cleanup removes any token that expires before the given time
+
+        cache.removeExpired(now + 10);
+        assertEquals(cache.size(), 1);
+        assertNotNull(cache.get("active1"));
+        assertEquals(cache.getExpirationCount(), 2);
+    }
+
+    @Test
+    public void testAdmissionRejectsInfrequentTokens() {
+
+        ZpeTokenCache<TestToken> cache = new ZpeTokenCache<>(token -> token.expiryTime, 4);
+        for (int i = 0; i < 4; i++) {
+            final String name = "active" + i;
+            cache.put(name, new TestToken(name, futureExpiry()));
+            for (int j = 0; j < 10; j++) {
+                assertNotNull(cache.get(name));
+            }
+        }
+
+        // a burst of one-time tokens must not replace our active tokens
+
+        for (int i = 0; i < 20; i++) {
+            final String name = "burst" + i;
+            assertNull(cache.get(name));
+            cache.put(name, new TestToken(name, futureExpiry()));
+        }
+
+        assertEquals(cache.size(), 4);
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(cache.get("active" + i));
+        }
+        assertEquals(cache.getRejectionCount(), 20);
+        assertEquals(cache.getEvictionCount(), 0);
+    }
+
+    @Test
+    public void testAdmissionEvictsLessFrequentTokens() {
+
+        ZpeTokenCache<TestToken> cache = new ZpeTokenCache<>(token -> token.expiryTime, 0);
+        cache.put("token1", new TestToken("token1", futureExpiry()), 2);
+        cache.put("token2", new TestToken("token2", futureExpiry()), 2);
+        assertNotNull(cache.get("token1"));
+
+        // our new token has been requested more frequently than
+        // token2 so it will be admitted by evicting token2
+
+        for (int i = 0; i < 3; i++) {
+            assertNull(cache.get("token3"));
+        }
+        cache.put("token3", new TestToken("token3", futureExpiry()), 2);
+
+        assertEquals(cache.size(), 2);
+        assertEquals(cache.getEvictionCount(), 1);
+        assertNotNull(cache.get("token1"));
+        assertNotNull(cache.get("token3"));
+        assertNull(cache.get("token2"));
+
+        // updating an existing token is always allowed
+
+        TestToken token = new TestToken("token1", futureExpiry());
+        assertNotNull(cache.put("token1", token, 2));
+        assertEquals(cache.get("token1"), token);
+        assertEquals(cache.getRejectionCount(), 0);
+    }
+
+    @Test
+    public void testAdmissionEvictsExpiredTokens() {
+
+        ZpeTokenCache<TestToken> cache = new ZpeTokenCache<>(token -> token.expiryTime, 2);
+        final long now = System.currentTimeMillis() / 1000;
+        cache.put("token1", new TestToken("token1", now + 3600));
+        cache.put("token2", new TestToken("token2", now - 10));
+        assertNotNull(cache.get("token1"));
+
+        // expired tokens are evicted regardless of their frequency
+
+        cache.put("token3", new TestToken("token3", now + 3600));
+
+        assertEquals(cache.size(), 2);
+        assertEquals(cache.getExpirationCount(), 1);
+        assertEquals(cache.getEvictionCount(), 0);
+        assertNotNull(cache.get("token1"));
+        assertNotNull(cache.get("token3"));
+    }
+
+    @Test
+    public void testFrequencySketch() {
+
+        ZpeTokenCache.FrequencySketch sketch = new ZpeTokenCache.FrequencySketch(10);
+        assertEquals(sketch.mask, 63);
+
+        ZpeTokenCache.TokenKey key1 = ZpeTokenCache.getTokenKey("token1");
+        ZpeTokenCache.TokenKey key2 = ZpeTokenCache.getTokenKey("token2");
+        assertEquals(key1, ZpeTokenCache.getTokenKey("token1"));
+        assertEquals(key1.hashCode(), ZpeTokenCache.getTokenKey("token1").hashCode());
+        assertNotEquals(key1, key2);
+        assertNotEquals(key1, "token1");
+
+        for (int i = 0; i < 20; i++) {
+            sketch.increment(key1);
+        }
+        assertEquals(sketch.frequency(key1), ZpeTokenCache.FrequencySketch.MAX_COUNT);
+
+        // counters are halved once we reach our reset threshold
+
+        sketch.reset();
+        assertEquals(sketch.frequency(key1), 7);
+        for (int i = 0; i < sketch.resetThreshold; i++) {
+            sketch.increment(key2);
+        }
+        assertEquals(sketch.frequency(key1), 3);
+        assertEquals(sketch.additions, 0);
+
+        assertEquals(new ZpeTokenCache.FrequencySketch(Integer.MAX_VALUE).mask,
+                ZpeTokenCache.MAX_SKETCH_WIDTH - 1);
+    }
+}
@@ -547,4 +547,27 @@ public class TestZpeUpdPolLoader {
         assertNull(loader.getDERSignature("invalid-header", "signature"));
         loader.close();
     }
+
+    @Test
+    public void testGetTokenCacheMaxSize() {
+
+        System.clearProperty(ZpeConsts.ZPE_PROP_MAX_TOKEN_CACHE);
+        assertEquals(ZpeUpdPolLoader.getTokenCacheMaxSize(), 10240);
+
+        System.setProperty(ZpeConsts.ZPE_PROP_MAX_TOKEN_CACHE, "100");
+        assertEquals(ZpeUpdPolLoader.getTokenCacheMaxSize(), 100);
+
+        System.setProperty(ZpeConsts.ZPE_PROP_MAX_TOKEN_CACHE, "0");
+        assertEquals(ZpeUpdPolLoader.getTokenCacheMaxSize(), 0);
+
+        // invalid values are ignored
+
+        System.setProperty(ZpeConsts.ZPE_PROP_MAX_TOKEN_CACHE, "-1");
+        assertEquals(ZpeUpdPolLoader.getTokenCacheMaxSize(), 10240);
+
+        System.setProperty(ZpeConsts.ZPE_PROP_MAX_TOKEN_CACHE, "abc");
+        assertEquals(ZpeUpdPolLoader.getTokenCacheMaxSize(), 10240);
+
+        System.clearProperty(ZpeConsts.ZPE_PROP_MAX_TOKEN_CACHE);
+    }
 }
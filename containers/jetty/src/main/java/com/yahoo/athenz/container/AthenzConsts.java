@@ -28,6 +28,9 @@ public final class AthenzConsts {
     public static final String ATHENZ_PROP_ACCESS_LOG_NAME        = "athenz.access_log_name";
     public static final String ATHENZ_PROP_ACCESS_SLF4J_LOGGER    = "athenz.access_slf4j_logger";
     public static final String ATHENZ_PROP_ACCESS_LOG_DIR         = "athenz.access_log_dir";
+    public static final String ATHENZ_PROP_ACCESS_LOG_ASYNC       = "athenz.access_log_async";
+    public static final String ATHENZ_PROP_ACCESS_LOG_ASYNC_QUEUE_SIZE = "athenz.access_log_async_queue_size";
+    public static final String ATHENZ_PROP_ACCESS_LOG_ASYNC_BLOCK_WHEN_FULL = "athenz.access_log_async_block_when_full";
     public static final String ATHENZ_PROP_CONFIG_SOURCE_PATHS    = "athenz.config.source_paths";
     public static final String ATHENZ_PROP_DUMP_AFTER_START       = "athenz.dump_after_start";
 
@@ -49,6 +52,8 @@ public final class AthenzConsts {
     public static final String ATHENZ_PROP_SNI_HOSTCHECK          = "athenz.ssl_sni_hostcheck";
     public static final String ATHENZ_PROP_IDLE_TIMEOUT           = "athenz.http_idle_timeout";
     public static final String ATHENZ_PROP_PROXY_PROTOCOL         = "athenz.proxy_protocol";
+    public static final String ATHENZ_PROP_HTTP2_ENABLED          = "athenz.http2_enabled";
+    public static final String ATHENZ_PROP_HTTP2_MAX_CONCURRENT_STREAMS = "athenz.http2_max_concurrent_streams";
     public static final String ATHENZ_PROP_SEND_SERVER_VERSION    = "athenz.http_send_server_version";
     public static final String ATHENZ_PROP_SEND_DATE_HEADER       = "athenz.http_send_date_header";
     public static final String ATHENZ_PROP_OUTPUT_BUFFER_SIZE     = "athenz.http_output_buffer_size";
@@ -60,11 +65,14 @@ public final class AthenzConsts {
     public static final String ATHENZ_PROP_GZIP_SUPPORT           = "athenz.gzip_support";
     public static final String ATHENZ_PROP_GZIP_MIN_SIZE          = "athenz.gzip_min_size";
     public static final String ATHENZ_PROP_MAX_THREADS            = "athenz.http_max_threads";
+    public static final String ATHENZ_PROP_VIRTUAL_THREADS        = "athenz.http_virtual_threads";
+    public static final String ATHENZ_PROP_MAX_VIRTUAL_THREADS    = "athenz.http_max_virtual_threads";
     public static final String ATHENZ_PROP_HOSTNAME               = "athenz.hostname";
     public static final String ATHENZ_PROP_JETTY_HOME             = "athenz.jetty_home";
     public static final String ATHENZ_PROP_DEBUG                  = "athenz.debug";
     public static final String ATHENZ_PROP_HEALTH_CHECK_URI_LIST  = "athenz.health_check_uri_list";
     public static final String ATHENZ_PROP_HEALTH_CHECK_PATH      = "athenz.health_check_path";
+    public static final String ATHENZ_PROP_METRICS_URI            = "athenz.metrics_uri";
     public static final String ATHENZ_PROP_LOG_FORWARDED_FOR_ADDR = "athenz.log_forwarded_for_addr";
     public static final String ATHENZ_PROP_DECODE_AMBIGUOUS_URIS  = "athenz.decode_ambiguous_uris";
     public static final String ATHENZ_PROP_SEND_HOST_HEADER       = "athenz.send_host_header";
@@ -84,6 +92,8 @@ public final class AthenzConsts {
     public static final int ATHENZ_HTTPS_PORT_DEFAULT = 4443;
     public static final int ATHENZ_HTTP_PORT_DEFAULT  = 4080;
     public static final int ATHENZ_HTTP_MAX_THREADS   = 1024;
+    public static final int ATHENZ_HTTP_MAX_VIRTUAL_THREADS = 10000;
+    public static final int ATHENZ_HTTP2_MAX_CONCURRENT_STREAMS = 128;
     
     public static final String ATHENZ_RATE_LIMIT_FACTORY_CLASS = "com.yahoo.athenz.common.filter.impl.NoOpRateLimitFactory";
     public static final String ATHENZ_PKEY_STORE_FACTORY_CLASS = "com.yahoo.athenz.auth.impl.FilePrivateKeyStoreFactory";
@@ -20,13 +20,17 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yahoo.athenz.auth.PrivateKeyStore;
 import com.yahoo.athenz.auth.PrivateKeyStoreFactory;
+import com.yahoo.athenz.common.metrics.Utils;
+import com.yahoo.athenz.common.server.log.AsyncLogWriter;
 import com.yahoo.athenz.common.server.log.jetty.AthenzConnectionListener;
+import com.yahoo.athenz.common.server.log.jetty.AsyncRequestLogWriter;
 import com.yahoo.athenz.common.server.log.jetty.AthenzRequestLog;
 import com.yahoo.athenz.common.server.log.jetty.JettyConnectionLogger;
 import com.yahoo.athenz.common.server.log.jetty.JettyConnectionLoggerFactory;
 import com.yahoo.athenz.common.server.util.ConfigProperties;
 import com.yahoo.athenz.common.server.util.config.providers.ConfigProviderFile;
 import com.yahoo.athenz.container.filter.HealthCheckFilter;
+import com.yahoo.athenz.container.filter.MetricsFilter;
 import jakarta.servlet.DispatcherType;
 import org.eclipse.jetty.deploy.DeploymentManager;
 import org.eclipse.jetty.deploy.providers.ContextProvider;
@@ -35,7 +39,10 @@ import org.eclipse.jetty.ee10.servlet.ServletHandler;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpHeaderValue;
 import org.eclipse.jetty.ee10.webapp.WebAppContext;
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
 import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
 import org.eclipse.jetty.http.UriCompliance;
 import org.eclipse.jetty.rewrite.handler.HeaderPatternRule;
 import org.eclipse.jetty.rewrite.handler.RewriteHandler;
@@ -45,17 +52,21 @@ import org.eclipse.jetty.server.handler.StatisticsHandler;
 import org.eclipse.jetty.server.handler.gzip.GzipHandler;
 import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
 import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.VirtualThreads;
 import org.eclipse.jetty.util.component.Environment;
 import org.eclipse.jetty.util.ssl.KeyStoreScanner;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.VirtualThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.net.InetAddress;
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static com.yahoo.athenz.common.server.util.config.ConfigManagerSingleton.CONFIG_MANAGER;
@@ -134,7 +145,8 @@ public class AthenzJettyContainer {
             Slf4jRequestLogWriter slf4jRequestLogWriter = new Slf4jRequestLogWriter();
             slf4jRequestLogWriter.setLoggerName(accessSlf4jLogger);
 
-            CustomRequestLog customRequestLog = new CustomRequestLog(slf4jRequestLogWriter, CustomRequestLog.EXTENDED_NCSA_FORMAT);
+            CustomRequestLog customRequestLog = new CustomRequestLog(getRequestLogWriter(slf4jRequestLogWriter, false),
+                    CustomRequestLog.EXTENDED_NCSA_FORMAT);
             server.setRequestLog(customRequestLog);
 
         } else {
@@ -154,12 +166,31 @@ public class AthenzJettyContainer {
                 logWriter.setRetainDays(days);
             }
 
-            AthenzRequestLog requestLog = new AthenzRequestLog(logWriter);
+            AthenzRequestLog requestLog = new AthenzRequestLog(getRequestLogWriter(logWriter, true));
             requestLog.setLogForwardedForAddr(logForwardedForAddr);
             server.setRequestLog(requestLog);
         }
     }
 
+    RequestLog.Writer getRequestLogWriter(RequestLog.Writer logWriter, boolean batchWrites) {
+
+        // if configured, the access log entries are written by a background
+        // thread so the request threads are not blocked on log writes
+
+        if (!Boolean.parseBoolean(System.getProperty(AthenzConsts.ATHENZ_PROP_ACCESS_LOG_ASYNC, "false"))) {
+            return logWriter;
+        }
+
+        int queueSize = Integer.parseInt(System.getProperty(AthenzConsts.ATHENZ_PROP_ACCESS_LOG_ASYNC_QUEUE_SIZE,
+                Integer.toString(AsyncLogWriter.DEFAULT_QUEUE_SIZE)));
+        boolean blockWhenFull = Boolean.parseBoolean(
+                System.getProperty(AthenzConsts.ATHENZ_PROP_ACCESS_LOG_ASYNC_BLOCK_WHEN_FULL, "false"));
+        AsyncRequestLogWriter asyncLogWriter = new AsyncRequestLogWriter(logWriter, queueSize,
+                AsyncLogWriter.DEFAULT_BATCH_SIZE, blockWhenFull, batchWrites);
+        asyncLogWriter.setMetric(Utils.getMetric());
+        return asyncLogWriter;
+    }
+
     RewriteHandler createRewriteHandler(final String serverHostName) {
 
         RewriteHandler rewriteHandler = new RewriteHandler();
@@ -290,6 +321,23 @@ public class AthenzJettyContainer {
                 servletCtxHandler.addFilter(filterHolder, checkUri.trim(), EnumSet.of(DispatcherType.REQUEST));
             }
         }
+
+        // if configured, expose our in-process metrics in prometheus format.
+        // the metrics are not authenticated so the filter is only installed
+        // if we have a dedicated status port and it only responds to
+        // requests received on that port
+
+        final String metricsUri = System.getProperty(AthenzConsts.ATHENZ_PROP_METRICS_URI);
+        if (!StringUtil.isEmpty(metricsUri)) {
+            final int statusPort = getDedicatedStatusPort();
+            if (statusPort > 0) {
+                FilterHolder metricsFilterHolder = new FilterHolder(MetricsFilter.class);
+                metricsFilterHolder.setInitParameter(AthenzConsts.ATHENZ_PROP_STATUS_PORT, Integer.toString(statusPort));
+                servletCtxHandler.addFilter(metricsFilterHolder, metricsUri, EnumSet.of(DispatcherType.REQUEST));
+            } else {
+                LOG.error("Metrics uri {} requires a dedicated status port, metrics are not exposed", metricsUri);
+            }
+        }
         contexts.addHandler(servletCtxHandler);
 
         final String jettyHome = System.getProperty(AthenzConsts.ATHENZ_PROP_JETTY_HOME, getRootDir());
@@ -458,23 +506,50 @@ public class AthenzJettyContainer {
     
     void addHTTPSConnector(HttpConfiguration httpsConfig, int httpsPort, boolean proxyProtocol,
             String listenHost, int idleTimeout, boolean needClientAuth, JettyConnectionLogger connectionLogger) {
+        addHTTPSConnector(httpsConfig, httpsPort, proxyProtocol, listenHost, idleTimeout,
+                needClientAuth, false, connectionLogger);
+    }
+
+    void addHTTPSConnector(HttpConfiguration httpsConfig, int httpsPort, boolean proxyProtocol,
+            String listenHost, int idleTimeout, boolean needClientAuth, boolean http2Enabled,
+            JettyConnectionLogger connectionLogger) {
         
         // SSL Context Factory
     
         SslContextFactory.Server sslContextFactory = createSSLContextObject(needClientAuth);
 
-        // SSL Connector
-        
-        ServerConnector sslConnector;
+        // SSL Connector - the proxy protocol factory, if enabled, must
+        // be the first one followed by our ssl connection factory
+
+        List<ConnectionFactory> connectionFactories = new ArrayList<>();
         if (proxyProtocol) {
-            sslConnector = new ServerConnector(server, new ProxyConnectionFactory(),
-                    new SslConnectionFactory(sslContextFactory, HttpVersion.HTTP_1_1.asString()),
-                    new HttpConnectionFactory(httpsConfig));
+            connectionFactories.add(new ProxyConnectionFactory());
+        }
+        HttpConnectionFactory http11ConnectionFactory = new HttpConnectionFactory(httpsConfig);
+        if (http2Enabled) {
+
+            // with http/2 enabled the ssl connection factory hands off the
+            // connection to alpn which selects h2 if the client supports it
+            // otherwise falls back to http/1.1
+
+            HTTP2ServerConnectionFactory http2ConnectionFactory = new HTTP2ServerConnectionFactory(httpsConfig);
+            http2ConnectionFactory.setMaxConcurrentStreams(Integer.parseInt(
+                    System.getProperty(AthenzConsts.ATHENZ_PROP_HTTP2_MAX_CONCURRENT_STREAMS,
+                            Integer.toString(AthenzConsts.ATHENZ_HTTP2_MAX_CONCURRENT_STREAMS))));
+            ALPNServerConnectionFactory alpnConnectionFactory = new ALPNServerConnectionFactory();
+            alpnConnectionFactory.setDefaultProtocol(http11ConnectionFactory.getProtocol());
+            sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
+
+            connectionFactories.add(new SslConnectionFactory(sslContextFactory, alpnConnectionFactory.getProtocol()));
+            connectionFactories.add(alpnConnectionFactory);
+            connectionFactories.add(http2ConnectionFactory);
         } else {
-            sslConnector = new ServerConnector(server,
-                    new SslConnectionFactory(sslContextFactory, HttpVersion.HTTP_1_1.asString()),
-                    new HttpConnectionFactory(httpsConfig));
+            connectionFactories.add(new SslConnectionFactory(sslContextFactory, HttpVersion.HTTP_1_1.asString()));
         }
+        connectionFactories.add(http11ConnectionFactory);
+
+        ServerConnector sslConnector = new ServerConnector(server,
+                connectionFactories.toArray(new ConnectionFactory[0]));
         sslConnector.setPort(httpsPort);
         sslConnector.setIdleTimeout(idleTimeout);
         if (listenHost != null) {
@@ -524,6 +599,8 @@ public class AthenzJettyContainer {
         String listenHost = System.getProperty(AthenzConsts.ATHENZ_PROP_LISTEN_HOST);
         boolean proxyProtocol = Boolean.parseBoolean(
                 System.getProperty(AthenzConsts.ATHENZ_PROP_PROXY_PROTOCOL, "false"));
+        boolean http2Enabled = Boolean.parseBoolean(
+                System.getProperty(AthenzConsts.ATHENZ_PROP_HTTP2_ENABLED, "false"));
 
         // HTTP Connector
         
@@ -553,7 +630,7 @@ public class AthenzJettyContainer {
         if (httpsPort > 0) {
             HttpConfiguration httpsConfig = getHttpsConfig(httpConfig, httpsPort, sniRequired, sniHostCheck);
             addHTTPSConnector(httpsConfig, httpsPort, proxyProtocol, listenHost,
-                    idleTimeout, needClientAuth, connectionLogger);
+                    idleTimeout, needClientAuth, http2Enabled, connectionLogger);
         }
 
         // OIDC Connector - only if it's different from HTTPS
@@ -561,7 +638,7 @@ public class AthenzJettyContainer {
         if (oidcPort > 0 && oidcPort != httpsPort) {
             HttpConfiguration httpsConfig = getHttpsConfig(httpConfig, oidcPort, sniRequired, sniHostCheck);
             addHTTPSConnector(httpsConfig, oidcPort, proxyProtocol, listenHost,
-                    idleTimeout, needClientAuth, connectionLogger);
+                    idleTimeout, needClientAuth, http2Enabled, connectionLogger);
         }
 
         // Status Connector - only if it's different from HTTP/HTTPS
@@ -576,6 +653,25 @@ public class AthenzJettyContainer {
         }
     }
 
+    /**
+     * Return the status port number if the server is configured with
+     * a dedicated connector for the status port
+     * @return status port number or 0 if there is no dedicated connector
+     */
+    static int getDedicatedStatusPort() {
+
+        final int httpPort = ConfigProperties.getPortNumber(AthenzConsts.ATHENZ_PROP_HTTP_PORT,
+                AthenzConsts.ATHENZ_HTTP_PORT_DEFAULT);
+        final int httpsPort = ConfigProperties.getPortNumber(AthenzConsts.ATHENZ_PROP_HTTPS_PORT,
+                AthenzConsts.ATHENZ_HTTPS_PORT_DEFAULT);
+        final int statusPort = ConfigProperties.getPortNumber(AthenzConsts.ATHENZ_PROP_STATUS_PORT, 0);
+
+        if (statusPort > 0 && statusPort != httpPort && statusPort != httpsPort && (httpsPort > 0 || httpPort > 0)) {
+            return statusPort;
+        }
+        return 0;
+    }
+
     /**
      * Set the banner that get displayed when server is started up.
      * @param banner Banner text to be displayed
@@ -591,11 +687,50 @@ public class AthenzJettyContainer {
         QueuedThreadPool threadPool = new QueuedThreadPool();
         threadPool.setMaxThreads(maxThreads);
 
+        // if configured, requests are executed in virtual threads while the
+        // platform threads are only used for selectors and acceptors. The
+        // number of concurrent virtual threads is still bounded so that
+        // blocking calls to downstream services are not unlimited. The
+        // queued thread pool does not manage the lifecycle of its virtual
+        // threads executor so we register it as a bean of the pool which
+        // starts, stops and dumps it together with the platform threads
+
+        VirtualThreadPool virtualThreadPool = createVirtualThreadPool();
+        if (virtualThreadPool != null) {
+            threadPool.setVirtualThreadsExecutor(virtualThreadPool);
+            threadPool.addBean(virtualThreadPool);
+        }
+
         server = new Server(threadPool);
         handlers = new Handler.Sequence();
         server.setHandler(handlers);
     }
     
+    VirtualThreadPool createVirtualThreadPool() {
+
+        if (!Boolean.parseBoolean(System.getProperty(AthenzConsts.ATHENZ_PROP_VIRTUAL_THREADS, "false"))) {
+            return null;
+        }
+
+        if (!VirtualThreads.areSupported()) {
+            LOG.warn("Virtual threads are not supported by the runtime, using platform threads");
+            return null;
+        }
+
+        int maxVirtualThreads = Integer.parseInt(System.getProperty(AthenzConsts.ATHENZ_PROP_MAX_VIRTUAL_THREADS,
+                Integer.toString(AthenzConsts.ATHENZ_HTTP_MAX_VIRTUAL_THREADS)));
+        VirtualThreadPool virtualThreadPool = new VirtualThreadPool(maxVirtualThreads);
+        virtualThreadPool.setName("athenz-vt");
+
+        // the busy thread count of the platform thread pool no longer
+        // includes the requests so we track the virtual threads to report
+        // the number of requests being executed in the pool's thread count
+
+        virtualThreadPool.setTracking(true);
+        LOG.info("Request execution configured with virtual threads, max threads: {}", maxVirtualThreads);
+        return virtualThreadPool;
+    }
+
     public static AthenzJettyContainer createJettyContainer() {
 
         // retrieve our http and https port numbers
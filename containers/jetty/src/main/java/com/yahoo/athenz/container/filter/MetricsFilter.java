@@ -0,0 +1,75 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.container.filter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import com.yahoo.athenz.common.metrics.impl.HistogramMetric;
+import com.yahoo.athenz.common.metrics.impl.HistogramMetricFactory;
+import com.yahoo.athenz.container.AthenzConsts;
+
+/**
+ * Filter that returns the in-process histogram metrics in Prometheus
+ * text format. The metrics are not authenticated so they are only
+ * returned for requests received on the configured status port.
+ */
+public class MetricsFilter implements jakarta.servlet.Filter {
+
+    private static final String HTTP_GET = "GET";
+
+    private int statusPort = 0;
+
+    public void init(FilterConfig config) {
+        final String port = config.getInitParameter(AthenzConsts.ATHENZ_PROP_STATUS_PORT);
+        if (port != null) {
+            statusPort = Integer.parseInt(port);
+        }
+    }
+
+    public void doFilter(ServletRequest servletRequest,
+            ServletResponse servletResponse, FilterChain chain)
+            throws IOException, ServletException {
+
+        HttpServletRequest request = (HttpServletRequest) servletRequest;
+        final HistogramMetric metric = HistogramMetricFactory.getCreatedMetric();
+
+        if (metric == null || !HTTP_GET.equals(request.getMethod())
+                || statusPort <= 0 || request.getLocalPort() != statusPort) {
+            chain.doFilter(servletRequest, servletResponse);
+            return;
+        }
+
+        HttpServletResponse response = (HttpServletResponse) servletResponse;
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(metric.getContentType());
+        PrintWriter printWriter = response.getWriter();
+        if (printWriter != null) {
+            metric.writeMetrics(printWriter);
+        }
+    }
+
+    public void destroy() {
+    }
+}
@@ -20,16 +20,22 @@ import org.eclipse.jetty.rewrite.handler.Rule;
 import org.eclipse.jetty.server.*;
 import org.eclipse.jetty.server.handler.ContextHandlerCollection;
 import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.util.VirtualThreads;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.ThreadPool;
+import org.eclipse.jetty.util.thread.VirtualThreadPool;
 import org.mockito.MockitoAnnotations;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.Test;
 
+import com.yahoo.athenz.common.server.log.jetty.AsyncRequestLogWriter;
 import com.yahoo.athenz.common.server.log.jetty.AthenzRequestLog;
 
+import java.util.List;
+
 import static org.testng.Assert.*;
 
 public class AthenzJettyContainerTest {
@@ -67,6 +73,7 @@ public class AthenzJettyContainerTest {
         System.clearProperty(AthenzConsts.ATHENZ_PROP_DEBUG);
         System.clearProperty(AthenzConsts.ATHENZ_PROP_HEALTH_CHECK_URI_LIST);
         System.clearProperty(AthenzConsts.ATHENZ_PROP_PROXY_PROTOCOL);
+        System.clearProperty(AthenzConsts.ATHENZ_PROP_HTTP2_ENABLED);
         System.clearProperty(AthenzConsts.ATHENZ_PROP_LISTEN_HOST);
         System.clearProperty((AthenzConsts.ATHENZ_PROP_STATUS_PORT));
         System.clearProperty(AthenzConsts.ATHENZ_PROP_PRIVATE_KEY_STORE_FACTORY_CLASS);
@@ -102,6 +109,52 @@ public class AthenzJettyContainerTest {
         assertEquals(threadPool.getIdleThreads(), 0);
     }
 
+    @Test
+    public void testContainerVirtualThreadPool() {
+
+        System.setProperty(AthenzConsts.ATHENZ_PROP_VIRTUAL_THREADS, "true");
+        System.setProperty(AthenzConsts.ATHENZ_PROP_MAX_VIRTUAL_THREADS, "500");
+
+        AthenzJettyContainer container = new AthenzJettyContainer();
+        container.createServer(100);
+
+        Server server = container.getServer();
+        assertNotNull(server);
+
+        QueuedThreadPool threadPool = (QueuedThreadPool) server.getThreadPool();
+        assertEquals(threadPool.getMaxThreads(), 100);
+
+        // virtual threads are only configured if supported by the runtime
+
+        VirtualThreadPool virtualThreadPool = threadPool.getBean(VirtualThreadPool.class);
+        if (VirtualThreads.areSupported()) {
+            assertNotNull(virtualThreadPool);
+            assertEquals(virtualThreadPool.getMaxThreads(), 500);
+            assertTrue(virtualThreadPool.isTracking());
+            assertEquals(threadPool.getVirtualThreadsExecutor(), virtualThreadPool);
+
+            // the virtual thread pool is only registered with the platform thread pool
+
+            assertNull(server.getBean(VirtualThreadPool.class));
+            assertEquals(server.getContainedBeans(VirtualThreadPool.class).size(), 1);
+        } else {
+            assertNull(virtualThreadPool);
+            assertNull(threadPool.getVirtualThreadsExecutor());
+        }
+
+        // with the flag disabled we only have platform threads
+
+        System.setProperty(AthenzConsts.ATHENZ_PROP_VIRTUAL_THREADS, "false");
+        container = new AthenzJettyContainer();
+        container.createServer(100);
+        threadPool = (QueuedThreadPool) container.getServer().getThreadPool();
+        assertNull(threadPool.getBean(VirtualThreadPool.class));
+        assertNull(threadPool.getVirtualThreadsExecutor());
+
+        System.clearProperty(AthenzConsts.ATHENZ_PROP_VIRTUAL_THREADS);
+        System.clearProperty(AthenzConsts.ATHENZ_PROP_MAX_VIRTUAL_THREADS);
+    }
+
     @Test
     public void testRequestLogHandler() {
 
@@ -120,6 +173,26 @@ public class AthenzJettyContainerTest {
         assertEquals(reqLog.getClass(), AthenzRequestLog.class);
     }
     
+    @Test
+    public void testAsyncRequestLogHandler() {
+
+        System.setProperty(AthenzConsts.ATHENZ_PROP_ACCESS_LOG_ASYNC, "true");
+        System.setProperty(AthenzConsts.ATHENZ_PROP_ACCESS_LOG_ASYNC_QUEUE_SIZE, "1000");
+
+        AthenzJettyContainer container = new AthenzJettyContainer();
+        container.createServer(100);
+
+        container.addRequestLogHandler();
+
+        RequestLog reqLog = container.getServer().getRequestLog();
+        assertNotNull(reqLog);
+        assertEquals(reqLog.getClass(), AthenzRequestLog.class);
+        assertEquals(((AthenzRequestLog) reqLog).getWriter().getClass(), AsyncRequestLogWriter.class);
+
+        System.clearProperty(AthenzConsts.ATHENZ_PROP_ACCESS_LOG_ASYNC);
+        System.clearProperty(AthenzConsts.ATHENZ_PROP_ACCESS_LOG_ASYNC_QUEUE_SIZE);
+    }
+
     @Test
     public void testSlf4jRequestLogHandler() {
         
@@ -543,6 +616,45 @@ public class AthenzJettyContainerTest {
         assertTrue(connectors[1].getProtocols().contains("ssl"));
     }
 
+    @Test
+    public void testInitContainerHttp2() {
+
+        System.setProperty(AthenzConsts.ATHENZ_PROP_HTTP_PORT, "4080");
+        System.setProperty(AthenzConsts.ATHENZ_PROP_HTTPS_PORT, "4443");
+        System.setProperty(AthenzConsts.ATHENZ_PROP_OIDC_PORT, "8443");
+        System.setProperty(AthenzConsts.ATHENZ_PROP_STATUS_PORT, "4444");
+        System.setProperty(AthenzConsts.ATHENZ_PROP_PROXY_PROTOCOL, "true");
+        System.setProperty(AthenzConsts.ATHENZ_PROP_HTTP2_ENABLED, "true");
+
+        AthenzJettyContainer container = AthenzJettyContainer.createJettyContainer();
+        assertNotNull(container);
+
+        Server server = container.getServer();
+        Connector[] connectors = server.getConnectors();
+        assertEquals(connectors.length, 4);
+
+        // http connector has no http/2 support
+
+        assertEquals(connectors[0].getProtocols().size(), 2);
+        assertFalse(connectors[0].getProtocols().contains("h2"));
+
+        // https and oidc connectors negotiate h2 with fallback to http/1.1
+
+        for (int i = 1; i < 3; i++) {
+            List<String> protocols = connectors[i].getProtocols();
+            assertEquals(protocols.get(0), "proxy");
+            assertEquals(protocols.get(1), "ssl");
+            assertTrue(protocols.contains("alpn"));
+            assertTrue(protocols.contains("h2"));
+            assertTrue(protocols.contains("http/1.1"));
+        }
+
+        // status connector remains http/1.1 only
+
+        assertFalse(connectors[3].getProtocols().contains("h2"));
+        assertTrue(connectors[3].getProtocols().contains("http/1.1"));
+    }
+
     @Test
     public void testInitContainerStatusPortHTTPS() {
 
@@ -577,6 +689,34 @@ public class AthenzJettyContainerTest {
         assertNotNull(container);
     }
 
+    @Test
+    public void testGetDedicatedStatusPort() {
+
+        // no status port configured
+
+        assertEquals(AthenzJettyContainer.getDedicatedStatusPort(), 0);
+
+        // status port shared with the https port
+
+        System.setProperty(AthenzConsts.ATHENZ_PROP_HTTPS_PORT, "4443");
+        System.setProperty(AthenzConsts.ATHENZ_PROP_STATUS_PORT, "4443");
+        assertEquals(AthenzJettyContainer.getDedicatedStatusPort(), 0);
+
+        // dedicated status port
+
+        System.setProperty(AthenzConsts.ATHENZ_PROP_STATUS_PORT, "4444");
+        assertEquals(AthenzJettyContainer.getDedicatedStatusPort(), 4444);
+
+        // no http or https connectors to base the status port on
+
+        System.setProperty(AthenzConsts.ATHENZ_PROP_HTTPS_PORT, "0");
+        System.setProperty(AthenzConsts.ATHENZ_PROP_HTTP_PORT, "0");
+        assertEquals(AthenzJettyContainer.getDedicatedStatusPort(), 0);
+
+        System.clearProperty(AthenzConsts.ATHENZ_PROP_HTTPS_PORT);
+        System.clearProperty(AthenzConsts.ATHENZ_PROP_HTTP_PORT);
+    }
+
     @Test
     public void testLoadServicePrivateKeyInvalid() {
 
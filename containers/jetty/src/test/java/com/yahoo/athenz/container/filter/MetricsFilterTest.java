@@ -0,0 +1,97 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.container.filter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.mockito.Mockito;
+import org.testng.annotations.Test;
+
+import com.yahoo.athenz.common.metrics.impl.HistogramMetricFactory;
+import com.yahoo.athenz.container.AthenzConsts;
+
+import static org.testng.Assert.assertTrue;
+
+public class MetricsFilterTest {
+
+    @Test
+    public void testMetricsFilter() throws IOException, ServletException {
+
+        FilterConfig filterConfig = Mockito.mock(FilterConfig.class);
+        Mockito.when(filterConfig.getInitParameter(AthenzConsts.ATHENZ_PROP_STATUS_PORT)).thenReturn("4444");
+
+        MetricsFilter filter = new MetricsFilter();
+        filter.init(filterConfig);
+
+        HistogramMetricFactory.getMetric().increment("metrics_filter_test", "sports");
+
+        HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getMethod()).thenReturn("GET");
+        Mockito.when(request.getLocalPort()).thenReturn(4444);
+
+        StringWriter output = new StringWriter();
+        HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+        Mockito.when(response.getWriter()).thenReturn(new PrintWriter(output));
+        FilterChain chain = Mockito.mock(FilterChain.class);
+
+        filter.doFilter(request, response, chain);
+        Mockito.verify(response, Mockito.times(1)).setStatus(HttpServletResponse.SC_OK);
+        Mockito.verify(chain, Mockito.never()).doFilter(request, response);
+        assertTrue(output.toString().contains("athenz_metrics_filter_test_total{domain=\"sports\"} 1"));
+
+        // requests on other ports and methods fall through
+
+        Mockito.when(request.getLocalPort()).thenReturn(4443);
+        filter.doFilter(request, response, chain);
+        Mockito.verify(chain, Mockito.times(1)).doFilter(request, response);
+
+        Mockito.when(request.getLocalPort()).thenReturn(4444);
+        Mockito.when(request.getMethod()).thenReturn("POST");
+        filter.doFilter(request, response, chain);
+        Mockito.verify(chain, Mockito.times(2)).doFilter(request, response);
+
+        filter.destroy();
+    }
+
+    @Test
+    public void testMetricsFilterNoStatusPort() throws IOException, ServletException {
+
+        // without a status port the metrics are never returned
+
+        MetricsFilter filter = new MetricsFilter();
+        filter.init(Mockito.mock(FilterConfig.class));
+
+        HistogramMetricFactory.getMetric().increment("metrics_filter_test", "sports");
+
+        HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getMethod()).thenReturn("GET");
+        Mockito.when(request.getLocalPort()).thenReturn(4443);
+        HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+        FilterChain chain = Mockito.mock(FilterChain.class);
+
+        filter.doFilter(request, response, chain);
+        Mockito.verify(chain, Mockito.times(1)).doFilter(request, response);
+        Mockito.verify(response, Mockito.never()).setStatus(HttpServletResponse.SC_OK);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.auth.token.jwts;
+
+import com.nimbusds.jose.*;
+import com.nimbusds.jwt.JWTClaimNames;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.yahoo.athenz.auth.token.AccessToken;
+import com.yahoo.athenz.auth.util.Crypto;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.security.PrivateKey;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares access token signing with the cached JwtsSigner against
+ * the nimbus claims set builder with a new signer for every token.
+ * Run with: mvn -Pjmh test-compile exec:exec@jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtsSignerBenchmark {
+
+    @Param({ "ES256", "RS256" })
+    public String algorithm;
+
+    private PrivateKey privateKey;
+    private long now;
+    private final List<String> scope = Collections.singletonList("writers");
+
+    @Setup
+    public void setup() {
+        final String keyFile = "ES256".equals(algorithm) ? "./src/test/resources/unit_test_ec_private.key"
+                : "./src/test/resources/unit_test_jwt_private.key";
+        privateKey = Crypto.loadPrivateKey(new File(keyFile));
+        now = System.currentTimeMillis() / 1000;
+    }
+
+    @Benchmark
+    public String jwtsSigner() throws JOSEException {
+        return JwtsSigner.getSigner(privateKey, "0", algorithm, JwtsHelper.TYPE_AT_JWT).sign(writer -> writer
+                .claim(JWTClaimNames.SUBJECT, "sports.api")
+                .claim(JWTClaimNames.JWT_ID, "jwt-id001")
+                .claim(JWTClaimNames.ISSUED_AT, now)
+                .claim(JWTClaimNames.EXPIRATION_TIME, now + 3600)
+                .claim(JWTClaimNames.ISSUER, "https://athenz.io")
+                .claim(JWTClaimNames.AUDIENCE, "coretech")
+                .claim(AccessToken.CLAIM_AUTH_TIME, now)
+                .claim(AccessToken.CLAIM_VERSION, 1)
+                .claim(AccessToken.CLAIM_SCOPE, scope)
+                .claim(AccessToken.CLAIM_SCOPE_STD, "writers")
+                .claim(AccessToken.CLAIM_UID, "sports.api")
+                .claim(AccessToken.CLAIM_CLIENT_ID, "sports.api"));
+    }
+
+    @Benchmark
+    public String nimbusSigner() throws JOSEException {
+        JWSSigner signer = JwtsHelper.getJWSSigner(privateKey);
+        JWTClaimsSet claimsSet = new JWTClaimsSet.Builder()
+                .subject("sports.api")
+                .jwtID("jwt-id001")
+                .issueTime(Date.from(Instant.ofEpochSecond(now)))
+                .expirationTime(Date.from(Instant.ofEpochSecond(now + 3600)))
+                .issuer("https://athenz.io")
+                .audience("coretech")
+                .claim(AccessToken.CLAIM_AUTH_TIME, now)
+                .claim(AccessToken.CLAIM_VERSION, 1)
+                .claim(AccessToken.CLAIM_SCOPE, scope)
+                .claim(AccessToken.CLAIM_SCOPE_STD, "writers")
+                .claim(AccessToken.CLAIM_UID, "sports.api")
+                .claim(AccessToken.CLAIM_CLIENT_ID, "sports.api")
+                .build();
+        SignedJWT signedJWT = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.parse(algorithm))
+                .type(new JOSEObjectType(JwtsHelper.TYPE_AT_JWT)).keyID("0").build(), claimsSet);
+        signedJWT.sign(signer);
+        return signedJWT.serialize();
+    }
+}
@@ -15,7 +15,13 @@
  */
 package com.yahoo.athenz.auth.impl;
 
+import java.security.PublicKey;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,6 +32,8 @@ import com.yahoo.athenz.auth.KeyStore;
 import com.yahoo.athenz.auth.Principal;
 import com.yahoo.athenz.auth.token.PrincipalToken;
 import com.yahoo.athenz.auth.token.Token;
+import com.yahoo.athenz.auth.util.Crypto;
+import com.yahoo.athenz.auth.util.PublicKeyCache;
 
 public class PrincipalAuthority implements Authority, AuthorityKeyStore {
     
@@ -41,6 +49,8 @@ public class PrincipalAuthority implements Authority, AuthorityKeyStore {
     public static final String HTTP_HEADER = "Athenz-Principal-Auth";
     public static final String ATHENZ_AUTH_CHALLENGE = "AthenzPrincipalToken realm=\"athenz\"";
     public static final String ATHENZ_PROP_PRINCIPAL_HEADER = "athenz.auth.principal.header";
+    public static final String ATHENZ_PROP_TOKEN_CACHE_MAX_SIZE = "athenz.auth.principal.token_cache_max_size";
+    public static final String ATHENZ_PROP_TOKEN_CACHE_MAX_TIME = "athenz.auth.principal.token_cache_max_time";
     
     private static final Logger LOG = LoggerFactory.getLogger(PrincipalAuthority.class);
 
@@ -51,10 +61,40 @@ public class PrincipalAuthority implements Authority, AuthorityKeyStore {
     }
     
     private KeyStore keyStore = null;
+    private final PublicKeyCache publicKeyCache = new PublicKeyCache();
     private int allowedOffset;
     IpCheckMode ipCheckMode;
     final String userDomain;
     private final String headerName;
+
+    /* cache of validated tokens keyed by the digest of the signed token.
+     * only tokens with an expiry time are cached and each entry is kept
+     * at most for the configured max time even if the token is valid
+     * for longer. each entry includes the public keys that were used to
+     * validate the token so if the service's key is changed or removed
+     * the entry is no longer used */
+
+    static class CachedToken {
+        final PrincipalToken token;
+        final String authorizedServiceName;
+        final PublicKey publicKey;
+        final String authorizedServicePublicKey;
+        final long expiryTime;
+
+        CachedToken(PrincipalToken token, String authorizedServiceName, PublicKey publicKey,
+                String authorizedServicePublicKey, long expiryTime) {
+            this.token = token;
+            this.authorizedServiceName = authorizedServiceName;
+            this.publicKey = publicKey;
+            this.authorizedServicePublicKey = authorizedServicePublicKey;
+            this.expiryTime = expiryTime;
+        }
+    }
+
+    Map<String, CachedToken> tokenCache = null;
+    int tokenCacheMaxSize;
+    long tokenCacheMaxTime;
+    volatile long tokenCachePurgeTime = 0;
     
     public PrincipalAuthority() {
         allowedOffset = Integer.parseInt(System.getProperty(ATHENZ_PROP_TOKEN_OFFSET, "300"));
@@ -68,6 +108,17 @@ public class PrincipalAuthority implements Authority, AuthorityKeyStore {
         if (allowedOffset < 0) {
             allowedOffset = 300;
         }
+
+        // the validated token cache is disabled by default. when enabled
+        // the signature is verified once per token until the cache
+        // entry expires (default 5 minutes)
+
+        tokenCacheMaxSize = Integer.parseInt(System.getProperty(ATHENZ_PROP_TOKEN_CACHE_MAX_SIZE, "0"));
+        tokenCacheMaxTime = TimeUnit.SECONDS.toMillis(Long.parseLong(
+                System.getProperty(ATHENZ_PROP_TOKEN_CACHE_MAX_TIME, "300")));
+        if (tokenCacheMaxSize > 0 && tokenCacheMaxTime > 0) {
+            tokenCache = new ConcurrentHashMap<>();
+        }
     }
 
     @Override
@@ -103,6 +154,16 @@ public class PrincipalAuthority implements Authority, AuthorityKeyStore {
             LOG.debug("Authenticating PrincipalToken: {}", signedToken);
         }
 
+        /* if we have already validated this token then we only need
+         * to carry out the request specific checks */
+
+        final String tokenCacheKey = getTokenCacheKey(signedToken);
+        CachedToken cachedToken = getCachedToken(tokenCacheKey);
+        if (cachedToken != null) {
+            return createPrincipal(cachedToken.token, signedToken, remoteAddr, isWriteOperation(httpMethod),
+                    cachedToken.authorizedServiceName, errMsg);
+        }
+
         PrincipalToken serviceToken;
         try {
             serviceToken = new PrincipalToken(signedToken);
@@ -134,7 +195,7 @@ public class PrincipalAuthority implements Authority, AuthorityKeyStore {
         
         /* get the public key for this token to validate signature */
         
-        String publicKey = getPublicKey(tokenDomain, tokenName, keyService,
+        PublicKey publicKey = getServicePublicKey(tokenDomain, tokenName, keyService,
                 serviceToken.getKeyId(), userToken);
 
         /* the validate method logs all error messages */
@@ -162,6 +223,21 @@ public class PrincipalAuthority implements Authority, AuthorityKeyStore {
             }
         }
         
+        /* the token is valid so we can add it to our cache */
+
+        addTokenToCache(tokenCacheKey, serviceToken, authorizedServiceName, publicKey);
+
+        return createPrincipal(serviceToken, signedToken, remoteAddr, writeOp,
+                authorizedServiceName, errMsg);
+    }
+
+    Principal createPrincipal(PrincipalToken serviceToken, String signedToken, String remoteAddr,
+            boolean writeOp, String authorizedServiceName, StringBuilder errMsg) {
+
+        String tokenDomain = serviceToken.getDomain().toLowerCase();
+        String tokenName = serviceToken.getName().toLowerCase();
+        boolean userToken = tokenDomain.equals(userDomain);
+
         /* if we have a usertoken and our remote ip check enabled, verify that the IP address
          * matches before allowing the operation go through */
         
@@ -181,12 +257,90 @@ public class PrincipalAuthority implements Authority, AuthorityKeyStore {
         princ.setUnsignedCreds(serviceToken.getUnsignedToken());
         princ.setAuthorizedService(authorizedServiceName);
         princ.setOriginalRequestor(serviceToken.getOriginalRequestor());
-        princ.setKeyService(keyService);
+        princ.setKeyService(serviceToken.getKeyService());
         princ.setIP(serviceToken.getIP());
         princ.setKeyId(serviceToken.getKeyId());
         return princ;
     }
 
+    String getTokenCacheKey(final String signedToken) {
+        if (tokenCache == null) {
+            return null;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Crypto.sha256(signedToken));
+    }
+
+    CachedToken getCachedToken(final String tokenCacheKey) {
+
+        if (tokenCacheKey == null) {
+            return null;
+        }
+
+        CachedToken cachedToken = tokenCache.get(tokenCacheKey);
+        if (cachedToken == null) {
+            return null;
+        }
+
+        /* the entry expires after the configured max time or when the
+         * token expires. we also need to make sure that the public keys
+         * used to validate the token have not been changed since then */
+
+        if (cachedToken.expiryTime < System.currentTimeMillis() || !isCachedTokenKeyValid(cachedToken)) {
+            tokenCache.remove(tokenCacheKey);
+            return null;
+        }
+        return cachedToken;
+    }
+
+    boolean isCachedTokenKeyValid(CachedToken cachedToken) {
+
+        final PrincipalToken token = cachedToken.token;
+        final String tokenDomain = token.getDomain().toLowerCase();
+        PublicKey publicKey = getServicePublicKey(tokenDomain, token.getName().toLowerCase(),
+                token.getKeyService(), token.getKeyId(), tokenDomain.equals(userDomain));
+        if (publicKey == null || !publicKey.equals(cachedToken.publicKey)) {
+            return false;
+        }
+
+        return cachedToken.authorizedServiceName == null || Objects.equals(cachedToken.authorizedServicePublicKey,
+                getAuthorizedServicePublicKey(cachedToken.authorizedServiceName, token.getAuthorizedServiceKeyId()));
+    }
+
+    void addTokenToCache(final String tokenCacheKey, PrincipalToken serviceToken, String authorizedServiceName,
+            PublicKey publicKey) {
+
+        /* tokens without expiry are only accepted for read operations
+         * so we don't cache them and always validate them */
+
+        if (tokenCacheKey == null || serviceToken.getExpiryTime() == 0) {
+            return;
+        }
+
+        /* when the cache is full we first remove any expired entries
+         * (at most once a second) and if there is still no room, we skip
+         * caching the token instead of evicting tokens that are used by
+         * active clients. the entries are kept at most for the configured
+         * max time so the space is reclaimed once they expire */
+
+        final long now = System.currentTimeMillis();
+        if (tokenCache.size() >= tokenCacheMaxSize) {
+            if (now - tokenCachePurgeTime >= 1000) {
+                tokenCachePurgeTime = now;
+                tokenCache.values().removeIf(cachedToken -> cachedToken.expiryTime < now);
+            }
+            if (tokenCache.size() >= tokenCacheMaxSize) {
+                return;
+            }
+        }
+
+        final String authorizedServicePublicKey = authorizedServiceName == null ? null :
+                getAuthorizedServicePublicKey(authorizedServiceName, serviceToken.getAuthorizedServiceKeyId());
+        final long expiryTime = Math.min(now + tokenCacheMaxTime,
+                TimeUnit.SECONDS.toMillis(serviceToken.getExpiryTime()));
+        tokenCache.put(tokenCacheKey, new CachedToken(serviceToken, authorizedServiceName, publicKey,
+                authorizedServicePublicKey, expiryTime));
+    }
+
     boolean remoteIpCheck(String remoteAddr, boolean writeOp, PrincipalToken serviceToken,
             String authorizedServiceName) {
         
@@ -218,6 +372,31 @@ public class PrincipalAuthority implements Authority, AuthorityKeyStore {
     
     String getPublicKey(String tokenDomain, String tokenName, String keyService,
             String keyId, boolean userToken) {
+
+        final String[] publicKeyService = getPublicKeyService(tokenDomain, tokenName, keyService, userToken);
+        return keyStore.getPublicKey(publicKeyService[0], publicKeyService[1], keyId);
+    }
+
+    PublicKey getServicePublicKey(String tokenDomain, String tokenName, String keyService,
+            String keyId, boolean userToken) {
+
+        final String[] publicKeyService = getPublicKeyService(tokenDomain, tokenName, keyService, userToken);
+        final String publicKey = keyStore.getPublicKey(publicKeyService[0], publicKeyService[1], keyId);
+
+        /* we keep the parsed public keys in our cache so we don't need
+         * to parse the same key for every request */
+
+        try {
+            return publicKeyCache.getPublicKey(publicKeyService[0], publicKeyService[1], keyId, publicKey);
+        } catch (Exception ex) {
+            LOG.error("PrincipalAuthority: unable to load public key for {}.{}/{}: {}",
+                    publicKeyService[0], publicKeyService[1], keyId, ex.getMessage());
+            return null;
+        }
+    }
+
+    String[] getPublicKeyService(String tokenDomain, String tokenName, String keyService,
+            boolean userToken) {
         
         /* by default we're going to look for the public key for the domain
          * and service defined in the token */
@@ -245,7 +424,7 @@ public class PrincipalAuthority implements Authority, AuthorityKeyStore {
             publicKeyService = ZMS_SERVICE;
         }
 
-        return keyStore.getPublicKey(publicKeyDomain, publicKeyService, keyId);
+        return new String[] { publicKeyDomain, publicKeyService };
     }
     
     boolean isWriteOperation(String httpMethod) {
@@ -312,8 +491,7 @@ public class PrincipalAuthority implements Authority, AuthorityKeyStore {
             return null;
         }
         
-        String publicKey = keyStore.getPublicKey(authorizedServiceName.substring(0, idx),
-                authorizedServiceName.substring(idx + 1), userToken.getAuthorizedServiceKeyId());
+        String publicKey = getAuthorizedServicePublicKey(authorizedServiceName, userToken.getAuthorizedServiceKeyId());
         
         /* the token method reports all error messages */
         StringBuilder errDetail = new StringBuilder(512);
@@ -326,6 +504,12 @@ public class PrincipalAuthority implements Authority, AuthorityKeyStore {
         return authorizedServiceName;
     }
     
+    String getAuthorizedServicePublicKey(final String authorizedServiceName, final String keyId) {
+        int idx = authorizedServiceName.lastIndexOf('.');
+        return keyStore.getPublicKey(authorizedServiceName.substring(0, idx),
+                authorizedServiceName.substring(idx + 1), keyId);
+    }
+
     @Override
     public void setKeyStore(KeyStore keyStore) {
         this.keyStore = keyStore;
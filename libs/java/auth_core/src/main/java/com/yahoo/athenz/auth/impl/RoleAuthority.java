@@ -15,6 +15,8 @@
  */
 package com.yahoo.athenz.auth.impl;
 
+import java.security.PublicKey;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,6 +26,7 @@ import com.yahoo.athenz.auth.KeyStore;
 import com.yahoo.athenz.auth.Principal;
 import com.yahoo.athenz.auth.token.RoleToken;
 import com.yahoo.athenz.auth.token.Token;
+import com.yahoo.athenz.auth.util.PublicKeyCache;
 
 public class RoleAuthority implements Authority, AuthorityKeyStore {
     
@@ -43,6 +46,7 @@ public class RoleAuthority implements Authority, AuthorityKeyStore {
     private int allowedOffset;
 
     private KeyStore keyStore = null;
+    private final PublicKeyCache publicKeyCache = new PublicKeyCache();
     String userDomain;
     String headerName;
     
@@ -131,9 +135,9 @@ public class RoleAuthority implements Authority, AuthorityKeyStore {
             }
         }
         
-        String publicKey = keyStore.getPublicKey(SYS_AUTH_DOMAIN, ZTS_SERVICE_NAME, roleToken.getKeyId());
+        PublicKey publicKey = getServicePublicKey(roleToken.getKeyId());
 
-        if (!roleToken.validate(publicKey, allowedOffset, false)) {
+        if (!roleToken.validate(publicKey, allowedOffset, false, null)) {
             errMsg.append("RoleAuthority:authenticate failed: validation was not successful: credential=").
                     append(Token.getUnsignedToken(signedToken));
             if (LOG.isWarnEnabled()) {
@@ -167,6 +171,21 @@ public class RoleAuthority implements Authority, AuthorityKeyStore {
                 || httpMethod.equalsIgnoreCase("DELETE");
     }
     
+    PublicKey getServicePublicKey(final String keyId) {
+
+        final String publicKey = keyStore.getPublicKey(SYS_AUTH_DOMAIN, ZTS_SERVICE_NAME, keyId);
+
+        // we keep the parsed public keys in our cache so we don't need
+        // to parse the same key for every request
+
+        try {
+            return publicKeyCache.getPublicKey(SYS_AUTH_DOMAIN, ZTS_SERVICE_NAME, keyId, publicKey);
+        } catch (Exception ex) {
+            LOG.error("RoleAuthority: unable to load public key {}: {}", keyId, ex.getMessage());
+            return null;
+        }
+    }
+
     @Override
     public void setKeyStore(KeyStore keyStore) {
         this.keyStore = keyStore;
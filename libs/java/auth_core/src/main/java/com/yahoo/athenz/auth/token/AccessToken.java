@@ -16,10 +16,10 @@
 package com.yahoo.athenz.auth.token;
 
 import com.nimbusds.jose.*;
-import com.nimbusds.jwt.JWTClaimsSet;
-import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.jwt.JWTClaimNames;
 import com.yahoo.athenz.auth.KeyStore;
 import com.yahoo.athenz.auth.token.jwts.JwtsHelper;
+import com.yahoo.athenz.auth.token.jwts.JwtsSigner;
 import com.yahoo.athenz.auth.token.jwts.JwtsSigningKeyResolver;
 import com.yahoo.athenz.auth.util.Crypto;
 import com.yahoo.athenz.auth.util.CryptoException;
@@ -30,7 +30,6 @@ import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
-import java.time.Instant;
 import java.util.*;
 
 public class AccessToken extends OAuth2Token {
@@ -479,14 +478,13 @@ public class AccessToken extends OAuth2Token {
     public String getSignedToken(final PrivateKey key, final String keyId, final String sigAlg) {
 
         try {
-            JWSSigner signer = JwtsHelper.getJWSSigner(key);
-            JWTClaimsSet claimsSet = new JWTClaimsSet.Builder()
-                    .subject(subject)
-                    .jwtID(jwtId)
-                    .issueTime(Date.from(Instant.ofEpochSecond(issueTime)))
-                    .expirationTime(Date.from(Instant.ofEpochSecond(expiryTime)))
-                    .issuer(issuer)
-                    .audience(audience)
+            return JwtsSigner.getSigner(key, keyId, sigAlg, HDR_TOKEN_JWT).sign(writer -> writer
+                    .claim(JWTClaimNames.SUBJECT, subject)
+                    .claim(JWTClaimNames.JWT_ID, jwtId)
+                    .claim(JWTClaimNames.ISSUED_AT, issueTime)
+                    .claim(JWTClaimNames.EXPIRATION_TIME, expiryTime)
+                    .claim(JWTClaimNames.ISSUER, issuer)
+                    .claim(JWTClaimNames.AUDIENCE, audience)
                     .claim(CLAIM_AUTH_TIME, authTime)
                     .claim(CLAIM_VERSION, version)
                     .claim(CLAIM_SCOPE, scope)
@@ -495,17 +493,7 @@ public class AccessToken extends OAuth2Token {
                     .claim(CLAIM_CLIENT_ID, clientId)
                     .claim(CLAIM_CONFIRM, confirm)
                     .claim(CLAIM_PROXY, proxyPrincipal)
-                    .claim(CLAIM_AUTHZ_DETAILS, authorizationDetails)
-                    .build();
-
-            SignedJWT signedJWT = new SignedJWT(
-                    new JWSHeader.Builder(JWSAlgorithm.parse(sigAlg))
-                            .type(new JOSEObjectType(HDR_TOKEN_JWT))
-                            .keyID(keyId)
-                            .build(),
-                    claimsSet);
-            signedJWT.sign(signer);
-            return signedJWT.serialize();
+                    .claim(CLAIM_AUTHZ_DETAILS, authorizationDetails));
         } catch (JOSEException ex) {
             LOG.error("Unable to sign JWT token", ex);
             return null;
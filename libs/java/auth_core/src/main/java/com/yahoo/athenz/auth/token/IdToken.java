@@ -15,18 +15,16 @@
  */
 package com.yahoo.athenz.auth.token;
 
-import com.nimbusds.jose.*;
-import com.nimbusds.jwt.JWTClaimsSet;
-import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jwt.JWTClaimNames;
 import com.yahoo.athenz.auth.token.jwts.JwtsHelper;
+import com.yahoo.athenz.auth.token.jwts.JwtsSigner;
 import com.yahoo.athenz.auth.token.jwts.JwtsSigningKeyResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.time.Instant;
-import java.util.Date;
 import java.util.List;
 
 public class IdToken extends OAuth2Token {
@@ -77,26 +75,16 @@ public class IdToken extends OAuth2Token {
     public String getSignedToken(final PrivateKey key, final String keyId, final String sigAlg) {
 
         try {
-            JWSSigner signer = JwtsHelper.getJWSSigner(key);
-            JWTClaimsSet claimsSet = new JWTClaimsSet.Builder()
-                    .subject(subject)
-                    .issueTime(Date.from(Instant.ofEpochSecond(issueTime)))
-                    .expirationTime(Date.from(Instant.ofEpochSecond(expiryTime)))
-                    .issuer(issuer)
-                    .audience(audience)
+            return JwtsSigner.getSigner(key, keyId, sigAlg, null).sign(writer -> writer
+                    .claim(JWTClaimNames.SUBJECT, subject)
+                    .claim(JWTClaimNames.ISSUED_AT, issueTime)
+                    .claim(JWTClaimNames.EXPIRATION_TIME, expiryTime)
+                    .claim(JWTClaimNames.ISSUER, issuer)
+                    .claim(JWTClaimNames.AUDIENCE, audience)
                     .claim(CLAIM_AUTH_TIME, authTime)
                     .claim(CLAIM_VERSION, version)
                     .claim(CLAIM_GROUPS, groups)
-                    .claim(CLAIM_NONCE, nonce)
-                    .build();
-
-            SignedJWT signedJWT = new SignedJWT(
-                    new JWSHeader.Builder(JWSAlgorithm.parse(sigAlg))
-                            .keyID(keyId)
-                            .build(),
-                    claimsSet);
-            signedJWT.sign(signer);
-            return signedJWT.serialize();
+                    .claim(CLAIM_NONCE, nonce));
         } catch (JOSEException ex) {
             LOG.error("Unable to sign JWT token", ex);
             return null;
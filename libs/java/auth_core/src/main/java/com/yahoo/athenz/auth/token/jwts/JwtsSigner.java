@@ -0,0 +1,303 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.auth.token.jwts;
+
+import com.nimbusds.jose.*;
+import com.yahoo.athenz.auth.ServerPrivateKey;
+
+import java.nio.charset.StandardCharsets;
+import java.security.PrivateKey;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JWS signer for tokens issued by the server. The nimbus signer and the
+ * base64url encoded header are created once for each private key, key id,
+ * algorithm and token type combination and reused for all tokens. The
+ * claims are serialized directly into a per-thread buffer instead of
+ * going through the generic nimbus claims set builder.
+ */
+public class JwtsSigner {
+
+    static final int MAX_CACHED_SIGNERS = 64;
+    static final int MAX_BUFFER_SIZE = 65536;
+
+    private static final Base64.Encoder BASE64URL_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final ConcurrentHashMap<SignerKey, JwtsSigner> SIGNERS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(1024));
+
+    static final class SignerKey {
+
+        final PrivateKey privateKey;
+        final String keyId;
+        final String algorithm;
+        final String type;
+
+        SignerKey(PrivateKey privateKey, final String keyId, final String algorithm, final String type) {
+            this.privateKey = privateKey;
+            this.keyId = keyId;
+            this.algorithm = algorithm;
+            this.type = type;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(privateKey), keyId, algorithm, type);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof SignerKey)) {
+                return false;
+            }
+            SignerKey key = (SignerKey) obj;
+            return privateKey == key.privateKey && Objects.equals(keyId, key.keyId)
+                    && Objects.equals(algorithm, key.algorithm) && Objects.equals(type, key.type);
+        }
+    }
+
+    /**
+     * Writer for the token claims. Null top level claims are skipped so
+     * the output matches the claims generated by the nimbus claims set
+     * builder.
+     */
+    public static final class ClaimsWriter {
+
+        private final StringBuilder buffer;
+        private boolean empty = true;
+
+        ClaimsWriter(StringBuilder buffer) {
+            this.buffer = buffer;
+        }
+
+        public ClaimsWriter claim(final String name, final String value) {
+            if (value != null) {
+                appendName(name);
+                appendString(buffer, value);
+            }
+            return this;
+        }
+
+        public ClaimsWriter claim(final String name, long value) {
+            appendName(name);
+            buffer.append(value);
+            return this;
+        }
+
+        public ClaimsWriter claim(final String name, final Object value) {
+            if (value != null) {
+                appendName(name);
+                appendValue(buffer, value);
+            }
+            return this;
+        }
+
+        void appendName(final String name) {
+            buffer.append(empty ? '{' : ',');
+            appendString(buffer, name);
+            buffer.append(':');
+            empty = false;
+        }
+
+        void close() {
+            buffer.append(empty ? "{}" : "}");
+        }
+    }
+
+    /**
+     * Callback to write the token claims
+     */
+    public interface ClaimsProvider {
+        void writeClaims(ClaimsWriter writer);
+    }
+
+    private final JWSSigner signer;
+    private final JWSHeader header;
+    private final String encodedHeader;
+
+    JwtsSigner(PrivateKey privateKey, final String keyId, final String algorithm, final String type)
+            throws JOSEException {
+
+        signer = JwtsHelper.getJWSSigner(privateKey);
+        JWSHeader.Builder builder = new JWSHeader.Builder(JWSAlgorithm.parse(algorithm)).keyID(keyId);
+        if (type != null) {
+            builder.type(new JOSEObjectType(type));
+        }
+        header = builder.build();
+        encodedHeader = header.toBase64URL().toString();
+    }
+
+    /**
+     * Return the signer for the given key details. Signers are cached
+     * and shared between threads.
+     * @param privateKey private key to sign the tokens with
+     * @param keyId key id included in the header
+     * @param algorithm jws algorithm name e.g. RS256 or ES256
+     * @param type optional token type included in the header
+     * @return jwts signer
+     * @throws JOSEException if the private key is not supported
+     */
+    public static JwtsSigner getSigner(PrivateKey privateKey, final String keyId, final String algorithm,
+            final String type) throws JOSEException {
+
+        final SignerKey key = new SignerKey(privateKey, keyId, algorithm, type);
+        JwtsSigner jwtsSigner = SIGNERS.get(key);
+        if (jwtsSigner != null) {
+            return jwtsSigner;
+        }
+
+        // the server only has a handful of keys, so if we have
+        // reached our limit then the keys are being created per
+        // request and there is no point in caching them
+
+        jwtsSigner = new JwtsSigner(privateKey, keyId, algorithm, type);
+        if (SIGNERS.size() >= MAX_CACHED_SIGNERS) {
+            SIGNERS.clear();
+        }
+        SIGNERS.put(key, jwtsSigner);
+        return jwtsSigner;
+    }
+
+    /**
+     * Return the signer for the given server private key
+     * @param privateKey server private key
+     * @param type optional token type included in the header
+     * @return jwts signer
+     * @throws JOSEException if the private key is not supported
+     */
+    public static JwtsSigner getSigner(ServerPrivateKey privateKey, final String type) throws JOSEException {
+        return getSigner(privateKey.getKey(), privateKey.getId(), privateKey.getAlgorithm(), type);
+    }
+
+    static int getCachedSignerCount() {
+        return SIGNERS.size();
+    }
+
+    public String getEncodedHeader() {
+        return encodedHeader;
+    }
+
+    /**
+     * Generate a signed token in compact serialization format
+     * @param claimsProvider provider to write the token claims
+     * @return signed token
+     * @throws JOSEException if unable to sign the token
+     */
+    public String sign(ClaimsProvider claimsProvider) throws JOSEException {
+
+        StringBuilder buffer = BUFFER.get();
+        try {
+            ClaimsWriter writer = new ClaimsWriter(buffer);
+            claimsProvider.writeClaims(writer);
+            writer.close();
+
+            final String encodedClaims = BASE64URL_ENCODER.encodeToString(
+                    buffer.toString().getBytes(StandardCharsets.UTF_8));
+
+            buffer.setLength(0);
+            buffer.append(encodedHeader).append('.').append(encodedClaims);
+            final byte[] signingInput = buffer.toString().getBytes(StandardCharsets.US_ASCII);
+            buffer.append('.').append(signer.sign(header, signingInput).toString());
+            return buffer.toString();
+        } finally {
+            buffer.setLength(0);
+            if (buffer.capacity() > MAX_BUFFER_SIZE) {
+                BUFFER.remove();
+            }
+        }
+    }
+
+    static void appendValue(StringBuilder buffer, final Object value) {
+
+        if (value == null) {
+            buffer.append("null");
+        } else if (value instanceof String) {
+            appendString(buffer, (String) value);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            buffer.append(value);
+        } else if (value instanceof Collection) {
+            buffer.append('[');
+            boolean first = true;
+            for (Object item : (Collection<?>) value) {
+                if (!first) {
+                    buffer.append(',');
+                }
+                appendValue(buffer, item);
+                first = false;
+            }
+            buffer.append(']');
+        } else if (value instanceof Map) {
+            buffer.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    buffer.append(',');
+                }
+                appendString(buffer, String.valueOf(entry.getKey()));
+                buffer.append(':');
+                appendValue(buffer, entry.getValue());
+                first = false;
+            }
+            buffer.append('}');
+        } else {
+            appendString(buffer, value.toString());
+        }
+    }
+
+    static void appendString(StringBuilder buffer, final String value) {
+
+        buffer.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    buffer.append("\\\"");
+                    break;
+                case '\\':
+                    buffer.append("\\\\");
+                    break;
+                case '\n':
+                    buffer.append("\\n");
+                    break;
+                case '\r':
+                    buffer.append("\\r");
+                    break;
+                case '\t':
+                    buffer.append("\\t");
+                    break;
+                case '\b':
+                    buffer.append("\\b");
+                    break;
+                case '\f':
+                    buffer.append("\\f");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        buffer.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        buffer.append(c);
+                    }
+            }
+        }
+        buffer.append('"');
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ *  Copyright The Athenz Authors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.yahoo.athenz.auth.util;
+
+import java.security.PublicKey;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of parsed public keys keyed by domain, service and key id.
+ * Each entry keeps the PEM encoded key it was generated from so when
+ * a service rotates its key (same key id but with a different value)
+ * the entry is detected as stale and replaced with the new key.
+ */
+public class PublicKeyCache {
+
+    public static final String ATHENZ_PROP_PUBLIC_KEY_CACHE_SIZE = "athenz.auth.public_key_cache_max_size";
+
+    static class PublicKeyEntry {
+        final String publicKeyPem;
+        final PublicKey publicKey;
+
+        PublicKeyEntry(final String publicKeyPem, PublicKey publicKey) {
+            this.publicKeyPem = publicKeyPem;
+            this.publicKey = publicKey;
+        }
+    }
+
+    private final Map<String, PublicKeyEntry> publicKeyCache = new ConcurrentHashMap<>();
+    private final int maxCacheSize;
+
+    public PublicKeyCache() {
+        this(Integer.parseInt(System.getProperty(ATHENZ_PROP_PUBLIC_KEY_CACHE_SIZE, "10000")));
+    }
+
+    public PublicKeyCache(int maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    /**
+     * Return the public key object for the given PEM encoded key. If we
+     * have already parsed the same key for the given domain, service
+     * and key id then the cached object is returned.
+     * @param domain name of the domain
+     * @param service name of the service
+     * @param keyId the public key identifier
+     * @param publicKeyPem PEM encoded public key
+     * @return public key object or null if the PEM encoded key is null
+     * @throws CryptoException if the key cannot be parsed
+     */
+    public PublicKey getPublicKey(final String domain, final String service, final String keyId,
+            final String publicKeyPem) {
+
+        if (publicKeyPem == null) {
+            return null;
+        }
+
+        final String keyName = domain + "." + service + "_" + keyId;
+        PublicKeyEntry entry = publicKeyCache.get(keyName);
+        if (entry != null && publicKeyPem.equals(entry.publicKeyPem)) {
+            return entry.publicKey;
+        }
+
+        final PublicKey publicKey = Crypto.loadPublicKey(publicKeyPem);
+
+        // to keep our cache bounded we'll start over if we have
+        // reached our limit. the keys will be added back as they're
+        // used by the incoming requests
+
+        if (maxCacheSize <= 0) {
+            return publicKey;
+        }
+        if (entry == null && publicKeyCache.size() >= maxCacheSize) {
+            publicKeyCache.clear();
+        }
+        publicKeyCache.put(keyName, new PublicKeyEntry(publicKeyPem, publicKey));
+        return publicKey;
+    }
+
+    public int size() {
+        return publicKeyCache.size();
+    }
+}
@@ -728,4 +728,230 @@ public class PrincipalAuthorityTest {
         // Create a token for validation using the signed data
         serviceAuthority.validateAuthorizeService(userTokenToSign, null);
     }
+
+    @Test
+    public void testPrincipalAuthorityTokenCache() throws IOException, CryptoException {
+
+        PrincipalAuthority serviceAuthority = new PrincipalAuthority();
+        assertNull(serviceAuthority.getTokenCacheKey("token"));
+
+        System.setProperty(PrincipalAuthority.ATHENZ_PROP_TOKEN_CACHE_MAX_SIZE, "10");
+        serviceAuthority = new PrincipalAuthority();
+        System.clearProperty(PrincipalAuthority.ATHENZ_PROP_TOKEN_CACHE_MAX_SIZE);
+
+        KeyStore keyStore = Mockito.spy(new KeyStoreMock());
+        serviceAuthority.setKeyStore(keyStore);
+
+        PrincipalToken serviceToken = new PrincipalToken.Builder(svcVersion, svcDomain, svcName)
+                .host(host).salt(salt).expirationWindow(expirationTime).keyId("0").build();
+        serviceToken.sign(servicePrivateKeyStringK0);
+        final String signedToken = serviceToken.getSignedToken();
+
+        Principal principal1 = serviceAuthority.authenticate(signedToken, null, "GET", null);
+        assertNotNull(principal1);
+        assertEquals(serviceAuthority.tokenCache.size(), 1);
+
+        // second request must be served from the cache. the public key
+        // is looked up to verify it has not changed but the signature
+        // is not validated again
+
+        Mockito.reset(keyStore);
+        Principal principal2 = serviceAuthority.authenticate(signedToken, null, "POST", null);
+        assertNotNull(principal2);
+        assertNotSame(principal2, principal1);
+        assertEquals(principal2.getFullName(), "sports.fantasy");
+        assertEquals(principal2.getCredentials(), signedToken);
+        assertEquals(principal2.getKeyId(), "0");
+        assertEquals(principal2.getUnsignedCredentials(), serviceToken.getUnsignedToken());
+        Mockito.verify(keyStore, Mockito.times(1)).getPublicKey("sports", "fantasy", "0");
+        assertNotNull(serviceAuthority.getCachedToken(serviceAuthority.getTokenCacheKey(signedToken)));
+
+        // tampered token is not matched in the cache
+
+        StringBuilder errMsg = new StringBuilder();
+        assertNull(serviceAuthority.authenticate(tamperWithServiceToken(signedToken), null, "GET", errMsg));
+        assertEquals(serviceAuthority.tokenCache.size(), 1);
+
+        // cache entry with an expired token is removed and the token validated again
+
+        final long now = System.currentTimeMillis() / 1000;
+        PrincipalToken expiredToken = new PrincipalToken("v=S1;d=sports;n=fantasy;t=" + now + ";e=" + (now - 10) + ";s=sig");
+        final String tokenCacheKey = serviceAuthority.getTokenCacheKey(signedToken);
+        final PrincipalAuthority.CachedToken cachedToken = serviceAuthority.tokenCache.get(tokenCacheKey);
+        serviceAuthority.tokenCache.put(tokenCacheKey, new PrincipalAuthority.CachedToken(expiredToken, null,
+                cachedToken.publicKey, null, (now - 10) * 1000));
+        Mockito.reset(keyStore);
+        assertNotNull(serviceAuthority.authenticate(signedToken, null, "GET", null));
+        Mockito.verify(keyStore, Mockito.times(1)).getPublicKey("sports", "fantasy", "0");
+        assertEquals(serviceAuthority.tokenCache.size(), 1);
+        assertTrue(serviceAuthority.tokenCache.get(tokenCacheKey).expiryTime > now * 1000);
+    }
+
+    @Test
+    public void testPrincipalAuthorityTokenCacheKeyChange() throws IOException, CryptoException {
+
+        System.setProperty(PrincipalAuthority.ATHENZ_PROP_TOKEN_CACHE_MAX_SIZE, "10");
+        PrincipalAuthority serviceAuthority = new PrincipalAuthority();
+        System.clearProperty(PrincipalAuthority.ATHENZ_PROP_TOKEN_CACHE_MAX_SIZE);
+
+        KeyStore keyStore = Mockito.spy(new KeyStoreMock());
+        serviceAuthority.setKeyStore(keyStore);
+
+        PrincipalToken serviceToken = new PrincipalToken.Builder(svcVersion, svcDomain, svcName)
+                .host(host).salt(salt).expirationWindow(expirationTime).keyId("0").build();
+        serviceToken.sign(servicePrivateKeyStringK0);
+        final String signedToken = serviceToken.getSignedToken();
+
+        assertNotNull(serviceAuthority.authenticate(signedToken, null, "GET", null));
+        assertEquals(serviceAuthority.tokenCache.size(), 1);
+
+        // the service key 0 is replaced with a different key so the
+        // cached entry must not be used and the token is rejected
+
+        final String publicKeyK1 = keyStore.getPublicKey("sports", "fantasy", "1");
+        Mockito.doReturn(publicKeyK1).when(keyStore).getPublicKey("sports", "fantasy", "0");
+        StringBuilder errMsg = new StringBuilder();
+        assertNull(serviceAuthority.authenticate(signedToken, null, "GET", errMsg));
+        assertEquals(serviceAuthority.tokenCache.size(), 0);
+
+        // original key is restored so the token is validated and cached again
+
+        Mockito.doCallRealMethod().when(keyStore).getPublicKey("sports", "fantasy", "0");
+        assertNotNull(serviceAuthority.authenticate(signedToken, null, "GET", null));
+        assertEquals(serviceAuthority.tokenCache.size(), 1);
+
+        // the service key is removed
+
+        Mockito.doReturn(null).when(keyStore).getPublicKey("sports", "fantasy", "0");
+        assertNull(serviceAuthority.authenticate(signedToken, null, "GET", null));
+        assertEquals(serviceAuthority.tokenCache.size(), 0);
+    }
+
+    @Test
+    public void testPrincipalAuthorityTokenCacheAuthorizedServiceKeyChange() throws IOException, CryptoException {
+
+        System.setProperty(PrincipalAuthority.ATHENZ_PROP_TOKEN_CACHE_MAX_SIZE, "10");
+        PrincipalAuthority serviceAuthority = new PrincipalAuthority();
+        System.clearProperty(PrincipalAuthority.ATHENZ_PROP_TOKEN_CACHE_MAX_SIZE);
+
+        KeyStore keyStore = Mockito.spy(new KeyStoreMock());
+        serviceAuthority.setKeyStore(keyStore);
+
+        List<String> authorizedServices = new ArrayList<>();
+        authorizedServices.add("sports.fantasy");
+
+        long issueTime = System.currentTimeMillis() / 1000;
+        PrincipalToken userTokenToSign = new PrincipalToken.Builder(usrVersion, usrDomain, usrName)
+                .salt(salt).ip("127.0.0.2").issueTime(issueTime).expirationWindow(expirationTime)
+                .authorizedServices(authorizedServices).build();
+        userTokenToSign.sign(servicePrivateKeyStringK0);
+        userTokenToSign.signForAuthorizedService("sports.fantasy", "1", servicePrivateKeyStringK1);
+        final String signedToken = userTokenToSign.getSignedToken();
+
+        Principal principal = serviceAuthority.authenticate(signedToken, "127.0.0.3", "POST", null);
+        assertNotNull(principal);
+        assertEquals(principal.getAuthorizedService(), "sports.fantasy");
+        assertEquals(serviceAuthority.tokenCache.size(), 1);
+
+        principal = serviceAuthority.authenticate(signedToken, "127.0.0.3", "POST", null);
+        assertNotNull(principal);
+        assertEquals(principal.getAuthorizedService(), "sports.fantasy");
+
+        // the authorized service key is replaced so the cached entry
+        // is not used and the authorized service signature is rejected
+
+        final String publicKeyK0 = keyStore.getPublicKey("sports", "fantasy", "0");
+        Mockito.doReturn(publicKeyK0).when(keyStore).getPublicKey("sports", "fantasy", "1");
+        assertNull(serviceAuthority.authenticate(signedToken, "127.0.0.3", "POST", null));
+        assertEquals(serviceAuthority.tokenCache.size(), 0);
+    }
+
+    @Test
+    public void testPrincipalAuthorityTokenCacheIpCheck() throws IOException, CryptoException {
+
+        System.setProperty("athenz.user_domain", svcDomain);
+        System.setProperty(PrincipalAuthority.ATHENZ_PROP_TOKEN_CACHE_MAX_SIZE, "10");
+        PrincipalAuthority serviceAuthority = new PrincipalAuthority();
+        System.clearProperty("athenz.user_domain");
+        System.clearProperty(PrincipalAuthority.ATHENZ_PROP_TOKEN_CACHE_MAX_SIZE);
+
+        serviceAuthority.ipCheckMode = IpCheckMode.OPS_ALL;
+        serviceAuthority.setKeyStore(new KeyStoreMock());
+
+        PrincipalToken serviceToken = new PrincipalToken.Builder(svcVersion, svcDomain, svcName)
+                .host(host).salt(salt).ip("10.11.12.13").expirationWindow(expirationTime).keyId("0").build();
+        serviceToken.sign(servicePrivateKeyStringK0);
+        final String signedToken = serviceToken.getSignedToken();
+
+        assertNotNull(serviceAuthority.authenticate(signedToken, "10.11.12.13", "GET", null));
+        assertEquals(serviceAuthority.tokenCache.size(), 1);
+
+        // the ip check must still be carried out for cached tokens
+
+        StringBuilder errMsg = new StringBuilder();
+        assertNull(serviceAuthority.authenticate(signedToken, "10.11.12.14", "GET", errMsg));
+        assertTrue(errMsg.toString().contains("IP Mismatch"));
+        assertNotNull(serviceAuthority.authenticate(signedToken, "10.11.12.13", "GET", null));
+    }
+
+    @Test
+    public void testPrincipalAuthorityTokenCacheFull() {
+
+        System.setProperty(PrincipalAuthority.ATHENZ_PROP_TOKEN_CACHE_MAX_SIZE, "2");
+        PrincipalAuthority serviceAuthority = new PrincipalAuthority();
+        System.clearProperty(PrincipalAuthority.ATHENZ_PROP_TOKEN_CACHE_MAX_SIZE);
+
+        final long now = System.currentTimeMillis() / 1000;
+        PrincipalToken validToken = new PrincipalToken("v=S1;d=domain;n=service;t=" + now + ";e=" + (now + 100) + ";s=sig");
+        PrincipalToken expiredToken = new PrincipalToken("v=S1;d=domain;n=service;t=" + now + ";e=" + (now - 10) + ";s=sig");
+        PrincipalToken noExpiryToken = new PrincipalToken("v=S1;d=domain;n=service;s=sig");
+
+        // tokens without expiry or cache key are not cached
+
+        serviceAuthority.addTokenToCache(null, validToken, null, null);
+        serviceAuthority.addTokenToCache("key0", noExpiryToken, null, null);
+        assertEquals(serviceAuthority.tokenCache.size(), 0);
+
+        serviceAuthority.addTokenToCache("key1", validToken, null, null);
+        serviceAuthority.addTokenToCache("key2", expiredToken, null, null);
+        assertEquals(serviceAuthority.tokenCache.size(), 2);
+        assertNull(serviceAuthority.getCachedToken("key2"));
+        assertEquals(serviceAuthority.tokenCache.size(), 1);
+
+        // when full, the new token is not added and the existing
+        // entries for active clients are kept
+
+        serviceAuthority.addTokenToCache("key3", validToken, null, null);
+        serviceAuthority.addTokenToCache("key4", validToken, null, null);
+        assertEquals(serviceAuthority.tokenCache.size(), 2);
+        assertTrue(serviceAuthority.tokenCache.containsKey("key1"));
+        assertTrue(serviceAuthority.tokenCache.containsKey("key3"));
+        assertFalse(serviceAuthority.tokenCache.containsKey("key4"));
+
+        // expired entries are purged to make room for new tokens
+
+        serviceAuthority.tokenCache.put("key3", new PrincipalAuthority.CachedToken(expiredToken, null,
+                null, null, (now - 10) * 1000));
+        serviceAuthority.tokenCachePurgeTime = 0;
+        serviceAuthority.addTokenToCache("key4", validToken, null, null);
+        assertEquals(serviceAuthority.tokenCache.size(), 2);
+        assertTrue(serviceAuthority.tokenCache.containsKey("key1"));
+        assertTrue(serviceAuthority.tokenCache.containsKey("key4"));
+    }
+
+    @Test
+    public void testPrincipalAuthorityTokenCacheDisabled() {
+
+        // a max time of 0 disables the cache
+
+        System.setProperty(PrincipalAuthority.ATHENZ_PROP_TOKEN_CACHE_MAX_SIZE, "10");
+        System.setProperty(PrincipalAuthority.ATHENZ_PROP_TOKEN_CACHE_MAX_TIME, "0");
+        PrincipalAuthority serviceAuthority = new PrincipalAuthority();
+        System.clearProperty(PrincipalAuthority.ATHENZ_PROP_TOKEN_CACHE_MAX_SIZE);
+        System.clearProperty(PrincipalAuthority.ATHENZ_PROP_TOKEN_CACHE_MAX_TIME);
+
+        assertNull(serviceAuthority.tokenCache);
+        assertNull(serviceAuthority.getTokenCacheKey("token"));
+        assertNull(serviceAuthority.getCachedToken(null));
+    }
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.auth.token.jwts;
+
+import com.nimbusds.jose.*;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.yahoo.athenz.auth.ServerPrivateKey;
+import com.yahoo.athenz.auth.util.Crypto;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.time.Instant;
+import java.util.*;
+
+import static org.testng.Assert.*;
+
+public class JwtsSignerTest {
+
+    private final File ecPrivateKey = new File("./src/test/resources/unit_test_ec_private.key");
+    private final File ecPublicKey = new File("./src/test/resources/ec_public.key");
+    private final File rsaPrivateKey = new File("./src/test/resources/unit_test_jwt_private.key");
+    private final File rsaPublicKey = new File("./src/test/resources/jwt_public.key");
+
+    private void writeClaims(JwtsSigner.ClaimsWriter writer, long now, LinkedHashMap<String, Object> confirm) {
+        writer.claim("sub", "user.joe")
+                .claim("jti", (String) null)
+                .claim("iat", now)
+                .claim("exp", now + 3600)
+                .claim("aud", "coretech")
+                .claim("scp", Arrays.asList("readers", "writers"))
+                .claim("cnf", confirm)
+                .claim("authz", "[{\"type\":\"message\",\"uuid\":\"4\\n5\"}]")
+                .claim("empty", (Object) null);
+    }
+
+    private JWTClaimsSet buildClaims(long now, LinkedHashMap<String, Object> confirm) {
+        return new JWTClaimsSet.Builder()
+                .subject("user.joe")
+                .issueTime(Date.from(Instant.ofEpochSecond(now)))
+                .expirationTime(Date.from(Instant.ofEpochSecond(now + 3600)))
+                .audience("coretech")
+                .claim("scp", Arrays.asList("readers", "writers"))
+                .claim("cnf", confirm)
+                .claim("authz", "[{\"type\":\"message\",\"uuid\":\"4\\n5\"}]")
+                .build();
+    }
+
+    @Test
+    public void testSignMatchesNimbus() throws Exception {
+
+        final long now = System.currentTimeMillis() / 1000;
+        LinkedHashMap<String, Object> confirm = new LinkedHashMap<>();
+        confirm.put("x5t#S256", "A4DtL2JmUMhAsvJj5tKyn64SqzmuXbMrJa0n761y5v0");
+        confirm.put("proxy-principals#spiffe", Collections.singletonList("spiffe://athenz/sa/api"));
+        confirm.put("skip", null);
+
+        PrivateKey privateKey = Crypto.loadPrivateKey(ecPrivateKey);
+        JwtsSigner signer = JwtsSigner.getSigner(privateKey, "eckey1", "ES256", JwtsHelper.TYPE_AT_JWT);
+        final String token = signer.sign(writer -> writeClaims(writer, now, confirm));
+
+        // the token must be verifiable with the public key
+
+        PublicKey publicKey = Crypto.loadPublicKey(ecPublicKey);
+        SignedJWT signedJWT = SignedJWT.parse(token);
+        assertTrue(signedJWT.verify(JwtsHelper.getJWSVerifier(publicKey)));
+
+        // our header and claims must match the nimbus generated token
+
+        SignedJWT nimbusJWT = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.ES256)
+                .type(new JOSEObjectType(JwtsHelper.TYPE_AT_JWT)).keyID("eckey1").build(),
+                buildClaims(now, confirm));
+        nimbusJWT.sign(JwtsHelper.getJWSSigner(privateKey));
+
+        assertEquals(signedJWT.getHeader().toBase64URL(), nimbusJWT.getHeader().toBase64URL());
+        assertEquals(signer.getEncodedHeader(), nimbusJWT.getHeader().toBase64URL().toString());
+        assertEquals(signedJWT.getJWTClaimsSet().toJSONObject(), nimbusJWT.getJWTClaimsSet().toJSONObject());
+        assertEquals(signedJWT.getJWTClaimsSet().getStringClaim("authz"),
+                "[{\"type\":\"message\",\"uuid\":\"4\\n5\"}]");
+        assertNull(signedJWT.getJWTClaimsSet().getClaim("empty"));
+    }
+
+    @Test
+    public void testSignRsaServerKey() throws Exception {
+
+        ServerPrivateKey serverKey = new ServerPrivateKey(Crypto.loadPrivateKey(rsaPrivateKey), "0");
+        JwtsSigner signer = JwtsSigner.getSigner(serverKey, null);
+
+        final String token = signer.sign(writer -> writer.claim("sub", "user.joe").claim("ver", 1));
+        SignedJWT signedJWT = SignedJWT.parse(token);
+        assertTrue(signedJWT.verify(JwtsHelper.getJWSVerifier(Crypto.loadPublicKey(rsaPublicKey))));
+        assertEquals(signedJWT.getHeader().getAlgorithm(), JWSAlgorithm.RS256);
+        assertEquals(signedJWT.getHeader().getKeyID(), "0");
+        assertNull(signedJWT.getHeader().getType());
+        assertEquals(signedJWT.getJWTClaimsSet().getSubject(), "user.joe");
+        assertEquals(signedJWT.getJWTClaimsSet().getIntegerClaim("ver"), Integer.valueOf(1));
+
+        // a token without any claims has an empty claims object
+
+        signedJWT = SignedJWT.parse(signer.sign(writer -> { }));
+        assertTrue(signedJWT.getJWTClaimsSet().getClaims().isEmpty());
+    }
+
+    @Test
+    public void testGetSignerCache() throws Exception {
+
+        PrivateKey privateKey = Crypto.loadPrivateKey(ecPrivateKey);
+        JwtsSigner signer = JwtsSigner.getSigner(privateKey, "eckey1", "ES256", "jwt");
+        assertSame(JwtsSigner.getSigner(privateKey, "eckey1", "ES256", "jwt"), signer);
+        assertNotSame(JwtsSigner.getSigner(privateKey, "eckey2", "ES256", "jwt"), signer);
+        assertNotSame(JwtsSigner.getSigner(privateKey, "eckey1", "ES256", null), signer);
+
+        // the same key loaded again is a different key object
+
+        assertNotSame(JwtsSigner.getSigner(Crypto.loadPrivateKey(ecPrivateKey), "eckey1", "ES256", "jwt"), signer);
+
+        // the cache is cleared once we reach our limit
+
+        for (int i = 0; i < JwtsSigner.MAX_CACHED_SIGNERS + 1; i++) {
+            JwtsSigner.getSigner(privateKey, "key" + i, "ES256", null);
+        }
+        assertTrue(JwtsSigner.getCachedSignerCount() <= JwtsSigner.MAX_CACHED_SIGNERS);
+
+        JwtsSigner.SignerKey key = new JwtsSigner.SignerKey(privateKey, "eckey1", "ES256", null);
+        assertEquals(key, key);
+        assertNotEquals(key, "eckey1");
+    }
+
+    @Test
+    public void testSignInvalidAlgorithm() throws Exception {
+
+        // signing with an ec key and rsa algorithm must fail
+
+        PrivateKey privateKey = Crypto.loadPrivateKey(ecPrivateKey);
+        JwtsSigner signer = JwtsSigner.getSigner(privateKey, "eckey1", "RS256", null);
+        assertThrows(JOSEException.class, () -> signer.sign(writer -> writer.claim("sub", "user.joe")));
+    }
+
+    @Test
+    public void testAppendValue() {
+
+        StringBuilder buffer = new StringBuilder();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("bool", true);
+        map.put("num", 10.5);
+        map.put("list", Arrays.asList("a", null, 2));
+        map.put("obj", new StringBuilder("value"));
+        map.put("null", null);
+        JwtsSigner.appendValue(buffer, map);
+        assertEquals(buffer.toString(),
+                "{\"bool\":true,\"num\":10.5,\"list\":[\"a\",null,2],\"obj\":\"value\",\"null\":null}");
+
+        buffer.setLength(0);
+        JwtsSigner.appendString(buffer, "\"\\\r\t\b\f\u0001/");
+        assertEquals(buffer.toString(), "\"\\\"\\\\\\r\\t\\b\\f\\u0001/\"");
+    }
+}
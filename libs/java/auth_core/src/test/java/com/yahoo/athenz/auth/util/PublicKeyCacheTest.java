@@ -0,0 +1,105 @@
+/*
+ *  Copyright The Athenz Authors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.yahoo.athenz.auth.util;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.PublicKey;
+
+import static org.testng.Assert.*;
+
+public class PublicKeyCacheTest {
+
+    private String readKey(final String fileName) throws IOException {
+        return new String(Files.readAllBytes(Paths.get("./src/test/resources/" + fileName)));
+    }
+
+    @Test
+    public void testGetPublicKey() throws IOException {
+
+        final String rsaKey = readKey("rsa_public.key");
+        final String ecKey = readKey("ec_public.key");
+
+        PublicKeyCache cache = new PublicKeyCache();
+        assertNull(cache.getPublicKey("sys.auth", "zms", "0", null));
+        assertEquals(cache.size(), 0);
+
+        PublicKey key1 = cache.getPublicKey("sys.auth", "zms", "0", rsaKey);
+        assertNotNull(key1);
+        assertEquals(cache.size(), 1);
+
+        // same key is returned from the cache
+
+        assertSame(cache.getPublicKey("sys.auth", "zms", "0", rsaKey), key1);
+
+        // rotated key with the same id replaces our entry
+
+        PublicKey key2 = cache.getPublicKey("sys.auth", "zms", "0", ecKey);
+        assertNotNull(key2);
+        assertNotSame(key2, key1);
+        assertNotEquals(key2.getAlgorithm(), key1.getAlgorithm());
+        assertEquals(cache.size(), 1);
+        assertSame(cache.getPublicKey("sys.auth", "zms", "0", ecKey), key2);
+
+        // different key id
+
+        assertNotNull(cache.getPublicKey("sys.auth", "zms", "1", rsaKey));
+        assertEquals(cache.size(), 2);
+    }
+
+    @Test
+    public void testGetPublicKeyMaxSize() throws IOException {
+
+        final String rsaKey = readKey("rsa_public.key");
+
+        PublicKeyCache cache = new PublicKeyCache(2);
+        cache.getPublicKey("sys.auth", "zms", "0", rsaKey);
+        cache.getPublicKey("sys.auth", "zms", "1", rsaKey);
+        assertEquals(cache.size(), 2);
+
+        // updating an existing entry does not reset our cache
+
+        cache.getPublicKey("sys.auth", "zms", "1", rsaKey);
+        assertEquals(cache.size(), 2);
+
+        cache.getPublicKey("sys.auth", "zms", "2", rsaKey);
+        assertEquals(cache.size(), 1);
+
+        // disabled cache
+
+        cache = new PublicKeyCache(0);
+        assertNotNull(cache.getPublicKey("sys.auth", "zms", "0", rsaKey));
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void testGetPublicKeyInvalid() {
+
+        final String invalidKey = "-----BEGIN PUBLIC KEY-----\ninvalid-key\n-----END PUBLIC KEY-----\n";
+
+        PublicKeyCache cache = new PublicKeyCache();
+        try {
+            cache.getPublicKey("sys.auth", "zms", "0", invalidKey);
+            fail();
+        } catch (Exception ignored) {
+        }
+        assertEquals(cache.size(), 0);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.common.server.util;
+
+import com.yahoo.athenz.zms.GroupMember;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares generating the added, deleted and updated group members with
+ * the single pass diffGroupMembers method against the three remove calls
+ * with the hashed removeGroupMembers method and the previous removeIf
+ * pass for every removed member.
+ * Run with: mvn -Pjmh test-compile exec:exec@jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthzHelperBenchmark {
+
+    @Param({ "100", "10000" })
+    public int memberCount;
+
+    private final List<GroupMember> curMembers = new ArrayList<>();
+    private final List<GroupMember> newMembers = new ArrayList<>();
+
+    @Setup
+    public void setup() {
+
+        // the new list drops the first 10% of the current members
+        // and adds the same number of new members
+
+        final int changeCount = Math.max(1, memberCount / 10);
+        for (int i = 0; i < memberCount; i++) {
+            curMembers.add(new GroupMember().setMemberName("user.member" + i));
+        }
+        for (int i = changeCount; i < memberCount + changeCount; i++) {
+            newMembers.add(new GroupMember().setMemberName("user.member" + i));
+        }
+    }
+
+    @Benchmark
+    public MemberDiff<GroupMember> diffGroupMembers() {
+        return AuthzHelper.diffGroupMembers(curMembers, newMembers, true);
+    }
+
+    @Benchmark
+    public List<GroupMember> removeGroupMembers() {
+
+        List<GroupMember> delMembers = new ArrayList<>(curMembers);
+        List<GroupMember> addMembers = new ArrayList<>(newMembers);
+        List<GroupMember> updMembers = new ArrayList<>(newMembers);
+
+        AuthzHelper.removeGroupMembers(addMembers, curMembers, true);
+        AuthzHelper.removeGroupMembers(delMembers, newMembers, true);
+        AuthzHelper.removeGroupMembers(updMembers, addMembers, true);
+        return updMembers;
+    }
+
+    @Benchmark
+    public List<GroupMember> removeIfPerMember() {
+
+        List<GroupMember> delMembers = new ArrayList<>(curMembers);
+        List<GroupMember> addMembers = new ArrayList<>(newMembers);
+        List<GroupMember> updMembers = new ArrayList<>(newMembers);
+
+        removeIfPerMember(addMembers, curMembers);
+        removeIfPerMember(delMembers, newMembers);
+        removeIfPerMember(updMembers, addMembers);
+        return updMembers;
+    }
+
+    private static void removeIfPerMember(List<GroupMember> originalMembers, List<GroupMember> removeMembers) {
+        for (GroupMember removeMember : removeMembers) {
+            originalMembers.removeIf(item -> item.getMemberName().equalsIgnoreCase(removeMember.getMemberName()));
+        }
+    }
+}
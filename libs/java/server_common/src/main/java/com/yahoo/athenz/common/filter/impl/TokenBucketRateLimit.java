@@ -0,0 +1,249 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.common.filter.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.yahoo.athenz.auth.util.AthenzUtils;
+import com.yahoo.athenz.auth.util.Crypto;
+import com.yahoo.athenz.common.filter.RateLimit;
+import com.yahoo.athenz.common.metrics.Metric;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.util.StringUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.yahoo.athenz.common.server.rest.Http.JAVAX_CERT_ATTR;
+
+/**
+ * Rate limit implementation based on token buckets. Each configured rule
+ * applies to the requests with the given uri prefix and allows the given
+ * number of requests per second with the given burst size. Buckets are
+ * kept per rule and per client where the client is identified by the
+ * principal from the client certificate, its domain or the remote ip
+ * address based on the configured key type. Requests without a client
+ * certificate are always identified by their remote ip address.
+ * The bucket state is a single atomic value (the theoretical arrival
+ * time of the next request) so requests are processed without locks.
+ * Idle buckets are evicted and the number of buckets is bounded.
+ */
+public class TokenBucketRateLimit implements RateLimit {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TokenBucketRateLimit.class);
+
+    public static final String ATHENZ_PROP_RATE_LIMIT_RULES = "athenz.ratelimit.token_bucket.rules";
+    public static final String ATHENZ_PROP_RATE_LIMIT_DEFAULT_RULE = "athenz.ratelimit.token_bucket.default_rule";
+    public static final String ATHENZ_PROP_RATE_LIMIT_KEY_TYPE = "athenz.ratelimit.token_bucket.key_type";
+    public static final String ATHENZ_PROP_RATE_LIMIT_MAX_BUCKETS = "athenz.ratelimit.token_bucket.max_buckets";
+    public static final String ATHENZ_PROP_RATE_LIMIT_IDLE_TIMEOUT = "athenz.ratelimit.token_bucket.idle_timeout";
+
+    static final String KEY_TYPE_PRINCIPAL = "principal";
+    static final String KEY_TYPE_DOMAIN = "domain";
+    static final String KEY_TYPE_IP = "ip";
+
+    static final String METRIC_RATE_LIMIT_REJECTED = "ratelimit_rejected";
+    static final String HEADER_RETRY_AFTER = "Retry-After";
+    static final int SC_TOO_MANY_REQUESTS = 429;
+
+    static class Rule {
+
+        final String apiName;
+        final String uriPrefix;
+        final long emissionInterval;
+        final long burstTolerance;
+
+        Rule(final String uriPrefix, final String limit) {
+
+            // the limit is specified as <requests-per-second>:<burst>
+
+            int idx = limit.indexOf(':');
+            double rate = Double.parseDouble(idx == -1 ? limit.trim() : limit.substring(0, idx).trim());
+            int burst = idx == -1 ? (int) Math.max(1, rate) : Integer.parseInt(limit.substring(idx + 1).trim());
+            if (rate <= 0 || burst < 1) {
+                throw new IllegalArgumentException("Invalid rate limit: " + limit);
+            }
+
+            this.uriPrefix = uriPrefix;
+            this.apiName = uriPrefix.isEmpty() ? "default" : uriPrefix;
+            this.emissionInterval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+            this.burstTolerance = emissionInterval * burst;
+        }
+    }
+
+    static class Bucket {
+
+        // theoretical arrival time of the next request in nanoseconds
+
+        final AtomicLong arrivalTime;
+
+        Bucket(long now) {
+            arrivalTime = new AtomicLong(now);
+        }
+
+        /**
+         * @return 0 if the request is allowed otherwise the number
+         *      of nanoseconds before the next request is allowed
+         */
+        long acquire(final Rule rule, long now) {
+            while (true) {
+                final long current = arrivalTime.get();
+                final long next = Math.max(current, now) + rule.emissionInterval;
+                final long wait = next - now - rule.burstTolerance;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (arrivalTime.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+
+    private final List<Rule> rules = new ArrayList<>();
+    private final Rule defaultRule;
+    private final String keyType;
+    private final Cache<String, Bucket> buckets;
+
+    public TokenBucketRateLimit() {
+
+        final String ruleList = System.getProperty(ATHENZ_PROP_RATE_LIMIT_RULES);
+        if (!StringUtil.isEmpty(ruleList)) {
+            for (String rule : ruleList.split(",")) {
+                int idx = rule.indexOf('=');
+                if (idx == -1) {
+                    throw new IllegalArgumentException("Invalid rate limit rule: " + rule);
+                }
+                rules.add(new Rule(rule.substring(0, idx).trim(), rule.substring(idx + 1)));
+            }
+        }
+
+        // we want to match the longest prefix first
+
+        rules.sort(Comparator.comparingInt((Rule rule) -> rule.uriPrefix.length()).reversed());
+
+        final String defaultLimit = System.getProperty(ATHENZ_PROP_RATE_LIMIT_DEFAULT_RULE);
+        defaultRule = StringUtil.isEmpty(defaultLimit) ? null : new Rule("", defaultLimit);
+
+        keyType = System.getProperty(ATHENZ_PROP_RATE_LIMIT_KEY_TYPE, KEY_TYPE_PRINCIPAL);
+
+        long maxBuckets = Long.parseLong(System.getProperty(ATHENZ_PROP_RATE_LIMIT_MAX_BUCKETS, "100000"));
+        long idleTimeout = Long.parseLong(System.getProperty(ATHENZ_PROP_RATE_LIMIT_IDLE_TIMEOUT, "300"));
+        buckets = CacheBuilder.newBuilder()
+                .concurrencyLevel(25)
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(idleTimeout, TimeUnit.SECONDS)
+                .build();
+
+        LOG.info("Token bucket rate limit configured with {} rules, key type: {}", rules.size(), keyType);
+    }
+
+    @Override
+    public boolean filter(ServletRequest servletRequest, ServletResponse servletResponse) {
+        return filter(servletRequest, servletResponse, null);
+    }
+
+    @Override
+    public boolean filter(ServletRequest servletRequest, ServletResponse servletResponse, Metric metric) {
+
+        final HttpServletRequest request = (HttpServletRequest) servletRequest;
+        final Rule rule = getRule(request.getRequestURI());
+        if (rule == null) {
+            return false;
+        }
+
+        final String principal = getPrincipal(request);
+        final String principalDomain = principal == null ? null : AthenzUtils.extractPrincipalDomainName(principal);
+        final String bucketKey = rule.apiName + "|" + getClientKey(request, principal, principalDomain);
+
+        final long now = System.nanoTime();
+        final long wait;
+        try {
+            wait = buckets.get(bucketKey, () -> new Bucket(now)).acquire(rule, now);
+        } catch (ExecutionException ex) {
+            LOG.error("Unable to retrieve rate limit bucket for {}", bucketKey, ex);
+            return false;
+        }
+
+        if (wait == 0) {
+            return false;
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Rate limit exceeded for {}", bucketKey);
+        }
+
+        if (metric != null) {
+            metric.increment(METRIC_RATE_LIMIT_REJECTED, null, principalDomain, request.getMethod(),
+                    SC_TOO_MANY_REQUESTS, rule.apiName);
+        }
+
+        HttpServletResponse response = (HttpServletResponse) servletResponse;
+        response.setHeader(HEADER_RETRY_AFTER, Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(
+                wait + TimeUnit.SECONDS.toNanos(1) - 1))));
+        try {
+            response.sendError(SC_TOO_MANY_REQUESTS, "Too Many Requests");
+        } catch (IOException ex) {
+            LOG.error("Unable to send rate limit response: {}", ex.getMessage());
+        }
+        return true;
+    }
+
+    Rule getRule(final String uri) {
+        if (uri != null) {
+            for (Rule rule : rules) {
+                if (uri.startsWith(rule.uriPrefix)) {
+                    return rule;
+                }
+            }
+        }
+        return defaultRule;
+    }
+
+    String getPrincipal(HttpServletRequest request) {
+        X509Certificate[] certs = (X509Certificate[]) request.getAttribute(JAVAX_CERT_ATTR);
+        if (certs == null || certs.length == 0 || certs[0] == null) {
+            return null;
+        }
+        return Crypto.extractX509CertCommonName(certs[0]);
+    }
+
+    String getClientKey(HttpServletRequest request, final String principal, final String principalDomain) {
+        if (principal != null) {
+            if (KEY_TYPE_PRINCIPAL.equals(keyType)) {
+                return principal;
+            } else if (KEY_TYPE_DOMAIN.equals(keyType) && principalDomain != null) {
+                return principalDomain;
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    long getBucketCount() {
+        return buckets.size();
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.common.messaging;
+
+import com.yahoo.athenz.common.metrics.Metric;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Change publisher that queues the messages and publishes them from a
+ * background dispatcher thread so the caller is never blocked by the
+ * messaging system. Queued messages are published in batches through
+ * the wrapped publisher and failed batches are retried with an
+ * exponential backoff. The number of published, retried, failed and
+ * dropped messages along with the total publish lag are reported as
+ * metrics. The current lag and queue depth are reported as gauges by
+ * a separate thread so they're still updated if the dispatcher is
+ * blocked by the messaging system. Messages are only kept in memory, so delivery is at most
+ * once: a message is dropped if the queue is full, if its batch still
+ * fails after the configured retries, or if it's still queued when the
+ * close timeout expires or the process exits without closing the
+ * publisher.
+ * @param <T> type of the change message
+ */
+public class AsyncChangePublisher<T> implements ChangePublisher<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncChangePublisher.class);
+
+    static final String METRIC_PUBLISHED = "change_publisher_published";
+    static final String METRIC_RETRIED = "change_publisher_retried";
+    static final String METRIC_FAILED = "change_publisher_failed";
+    static final String METRIC_DROPPED = "change_publisher_dropped";
+    static final String METRIC_LAG = "change_publisher_lag_ms";
+    static final String METRIC_CURRENT_LAG = "change_publisher_current_lag_ms";
+    static final String METRIC_QUEUE_DEPTH = "change_publisher_queue_depth";
+    static final String METRIC_ATTR_PUBLISHER = "publisher";
+
+    static final long POLL_TIMEOUT_MS = 500;
+    static final long MAX_RETRY_DELAY_MS = 30000;
+    static final long METRIC_REPORT_INTERVAL_MS = 10000;
+
+    static final class QueuedMessage<T> {
+
+        final T message;
+        final long queuedTime;
+
+        QueuedMessage(T message, long queuedTime) {
+            this.message = message;
+            this.queuedTime = queuedTime;
+        }
+    }
+
+    private final ChangePublisher<T> publisher;
+    private final String name;
+    private final BlockingQueue<QueuedMessage<T>> queue;
+    private final int batchSize;
+    private final int maxRetries;
+    private final long retryDelayMs;
+    private final Metric metric;
+    private final Thread dispatcher;
+    private final ScheduledExecutorService metricReporter;
+    private volatile boolean running = true;
+    private volatile long inflightQueuedTime = 0;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Create a new async publisher and start its dispatcher thread
+     * @param publisher publisher to send the messages to the messaging system
+     * @param name name of the publisher (e.g. topic name) used in logs and metrics
+     * @param queueSize max number of messages waiting to be published
+     * @param batchSize max number of messages published in a single batch
+     * @param maxRetries number of times a failed batch is retried before it's dropped
+     * @param retryDelayMs initial delay in milliseconds before retrying a failed batch
+     * @param metric optional metric object to report the publisher metrics
+     */
+    public AsyncChangePublisher(ChangePublisher<T> publisher, final String name, int queueSize,
+            int batchSize, int maxRetries, long retryDelayMs, Metric metric) {
+
+        this.publisher = publisher;
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        this.batchSize = Math.max(1, batchSize);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryDelayMs = Math.max(0, retryDelayMs);
+        this.metric = metric;
+
+        dispatcher = new Thread(this::dispatch, "change-publisher-" + name);
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+
+        if (metric != null) {
+            metricReporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "change-publisher-metrics-" + name);
+                thread.setDaemon(true);
+                return thread;
+            });
+            metricReporter.scheduleAtFixedRate(this::reportGauges, METRIC_REPORT_INTERVAL_MS,
+                    METRIC_REPORT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        } else {
+            metricReporter = null;
+        }
+    }
+
+    @Override
+    public void publish(T message) {
+
+        if (!running || !queue.offer(new QueuedMessage<>(message, System.currentTimeMillis()))) {
+            dropped.increment();
+            recordMetric(METRIC_DROPPED, 1);
+            LOG.error("{}: unable to queue change message, dropping: {}", name, message);
+        }
+    }
+
+    @Override
+    public void publishBatch(List<T> messages) {
+        for (T message : messages) {
+            publish(message);
+        }
+    }
+
+    /**
+     * Stop accepting new messages and wait up to the given timeout for
+     * the dispatcher to publish the queued messages before closing the
+     * wrapped publisher.
+     * @param timeoutMs max time in milliseconds to wait for the queue to drain
+     */
+    public void close(long timeoutMs) {
+
+        running = false;
+        try {
+            dispatcher.join(timeoutMs);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (dispatcher.isAlive()) {
+            dispatcher.interrupt();
+        }
+        if (!queue.isEmpty()) {
+            LOG.error("{}: closing publisher with {} unpublished messages", name, queue.size());
+        }
+        if (metricReporter != null) {
+            metricReporter.shutdownNow();
+            reportGauges();
+        }
+        publisher.close();
+    }
+
+    @Override
+    public void close() {
+        close(POLL_TIMEOUT_MS * 10);
+    }
+
+    void dispatch() {
+
+        List<QueuedMessage<T>> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                QueuedMessage<T> queuedMessage = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (queuedMessage == null) {
+                    continue;
+                }
+                batch.add(queuedMessage);
+                queue.drainTo(batch, batchSize - 1);
+                publishQueuedMessages(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception ex) {
+                LOG.error("{}: unexpected failure in change publisher dispatcher", name, ex);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    boolean publishQueuedMessages(List<QueuedMessage<T>> batch) throws InterruptedException {
+
+        List<T> messages = new ArrayList<>(batch.size());
+        for (QueuedMessage<T> queuedMessage : batch) {
+            messages.add(queuedMessage.message);
+        }
+
+        inflightQueuedTime = batch.get(0).queuedTime;
+        try {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    publisher.publishBatch(messages);
+                    break;
+                } catch (Exception ex) {
+                    if (attempt >= maxRetries) {
+                        failed.add(messages.size());
+                        recordMetric(METRIC_FAILED, messages.size());
+                        LOG.error("{}: unable to publish {} change messages after {} attempts",
+                                name, messages.size(), attempt + 1, ex);
+                        return false;
+                    }
+                    retried.add(messages.size());
+                    recordMetric(METRIC_RETRIED, messages.size());
+                    LOG.warn("{}: unable to publish {} change messages, retrying: {}",
+                            name, messages.size(), ex.getMessage());
+                    Thread.sleep(getRetryDelay(attempt));
+                }
+            }
+        } finally {
+            inflightQueuedTime = 0;
+        }
+
+        // record the number of published messages along with the total
+        // time the messages were waiting to be published so the average
+        // publish lag can be calculated from the two counters
+
+        final long now = System.currentTimeMillis();
+        long lag = 0;
+        for (QueuedMessage<T> queuedMessage : batch) {
+            lag += now - queuedMessage.queuedTime;
+        }
+        published.add(messages.size());
+        recordMetric(METRIC_PUBLISHED, messages.size());
+        recordMetric(METRIC_LAG, lag);
+        return true;
+    }
+
+    long getRetryDelay(int attempt) {
+        return Math.min(MAX_RETRY_DELAY_MS, retryDelayMs << Math.min(attempt, 16));
+    }
+
+    void recordMetric(final String metricName, long change) {
+        if (metric != null) {
+            metric.increment(metricName, change, METRIC_ATTR_PUBLISHER, name);
+        }
+    }
+
+    void reportGauges() {
+
+        // any exception would cancel our scheduled task so we
+        // don't want to propagate any metric failures
+
+        try {
+            metric.setGauge(METRIC_CURRENT_LAG, getLagMillis(), METRIC_ATTR_PUBLISHER, name);
+            metric.setGauge(METRIC_QUEUE_DEPTH, queue.size(), METRIC_ATTR_PUBLISHER, name);
+        } catch (Exception ex) {
+            LOG.error("{}: unable to report change publisher gauges", name, ex);
+        }
+    }
+
+    /**
+     * Return the number of milliseconds the oldest message that has not
+     * been published yet has been waiting in the queue
+     * @return publish lag in milliseconds, 0 if there are no pending messages
+     */
+    public long getLagMillis() {
+
+        long queuedTime = inflightQueuedTime;
+        if (queuedTime == 0) {
+            QueuedMessage<T> queuedMessage = queue.peek();
+            if (queuedMessage == null) {
+                return 0;
+            }
+            queuedTime = queuedMessage.queuedTime;
+        }
+        return Math.max(0, System.currentTimeMillis() - queuedTime);
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    public long getRetriedCount() {
+        return retried.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+}
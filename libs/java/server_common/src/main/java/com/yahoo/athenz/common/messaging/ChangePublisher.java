@@ -16,6 +16,8 @@
 
 package com.yahoo.athenz.common.messaging;
 
+import java.util.List;
+
 /**
  * change publisher interface
  */
@@ -27,6 +29,19 @@ public interface ChangePublisher<T> {
      */
     void publish(T message);
 
+    /**
+     * Publishes a batch of messages to the configured messaging system.
+     * The default implementation publishes the messages one at a time.
+     * Implementations should throw a runtime exception if the batch
+     * could not be published so the caller may retry the request.
+     * @param messages list of messages to be published
+     */
+    default void publishBatch(List<T> messages) {
+        for (T message : messages) {
+            publish(message);
+        }
+    }
+
     /**
      * Close the producer and releases resources allocated.
      */
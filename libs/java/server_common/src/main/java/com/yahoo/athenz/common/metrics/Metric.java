@@ -105,6 +105,16 @@ public interface Metric {
         // No op
     }
 
+    /**
+     * Set the gauge for the specified metric with the specified attributes
+     * @param metric Name of the gauge
+     * @param value current value of the gauge
+     * @param attributes a sorted array of tag key-value pairs in a flattened array
+     */
+    default void setGauge(String metric, long value, final String... attributes) {
+        // No op
+    }
+
     /**
      * Start the latency timer for the specified metric for the given domainName.
      * The implementation must be able to support simultaneous handling of
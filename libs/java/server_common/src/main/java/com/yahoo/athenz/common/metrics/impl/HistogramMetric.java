@@ -0,0 +1,400 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.common.metrics.impl;
+
+import com.yahoo.athenz.common.metrics.Metric;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * In-process metric implementation that keeps striped counters, gauges
+ * and latency histograms keyed by metric name, request domain, http method,
+ * http status, api name and any additional attributes. The metrics are exported in the Prometheus
+ * text format with the latencies reported as summaries with p50, p90,
+ * p99 and p999 quantiles. The quantiles are calculated from the values
+ * recorded in the current and previous quantile windows so they reflect
+ * the recent latencies, while the sum and count are cumulative. To bound the label cardinality, once the
+ * configured max number of series is reached, new series are recorded
+ * with the domain label set to _other_. Since each latency histogram
+ * keeps its own bucket counts, histograms have a separate and much
+ * lower series limit than the counters and gauges.
+ */
+public class HistogramMetric implements Metric {
+
+    public static final String ATHENZ_PROP_METRIC_MAX_SERIES = "athenz.metric.histogram.max_series";
+    public static final String ATHENZ_PROP_METRIC_MAX_HISTOGRAM_SERIES = "athenz.metric.histogram.max_histogram_series";
+    public static final String ATHENZ_PROP_METRIC_PREFIX = "athenz.metric.histogram.prefix";
+    public static final String ATHENZ_PROP_METRIC_QUANTILE_WINDOW = "athenz.metric.histogram.quantile_window";
+
+    static final String OTHER_DOMAIN = "_other_";
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    static final class SeriesKey {
+
+        final String metric;
+        final String domain;
+        final String httpMethod;
+        final int httpStatus;
+        final String apiName;
+        final String[] attributes;
+        final int hash;
+
+        SeriesKey(final String metric, final String domain, final String httpMethod,
+                int httpStatus, final String apiName) {
+            this(metric, domain, httpMethod, httpStatus, apiName, null);
+        }
+
+        SeriesKey(final String metric, final String domain, final String httpMethod,
+                int httpStatus, final String apiName, final String[] attributes) {
+            this.metric = metric;
+            this.domain = domain;
+            this.httpMethod = httpMethod;
+            this.httpStatus = httpStatus;
+            this.apiName = apiName;
+            this.attributes = (attributes == null || attributes.length == 0) ? null : attributes;
+
+            int result = metric.hashCode();
+            result = 31 * result + Objects.hashCode(domain);
+            result = 31 * result + Objects.hashCode(httpMethod);
+            result = 31 * result + httpStatus;
+            result = 31 * result + Objects.hashCode(apiName);
+            result = 31 * result + Arrays.hashCode(this.attributes);
+            this.hash = result;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof SeriesKey)) {
+                return false;
+            }
+            SeriesKey key = (SeriesKey) obj;
+            return hash == key.hash && httpStatus == key.httpStatus && metric.equals(key.metric)
+                    && Objects.equals(domain, key.domain) && Objects.equals(httpMethod, key.httpMethod)
+                    && Objects.equals(apiName, key.apiName) && Arrays.equals(attributes, key.attributes);
+        }
+
+        SeriesKey withOtherDomain() {
+            return new SeriesKey(metric, OTHER_DOMAIN, httpMethod, httpStatus, apiName, attributes);
+        }
+    }
+
+    static final class Timer {
+        String metric;
+        final String domain;
+        final String httpMethod;
+        final String apiName;
+        final long startTime;
+
+        Timer(final String metric, final String domain, final String httpMethod, final String apiName) {
+            this.metric = metric;
+            this.domain = domain;
+            this.httpMethod = httpMethod;
+            this.apiName = apiName;
+            this.startTime = System.nanoTime();
+        }
+    }
+
+    private final ConcurrentHashMap<SeriesKey, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<SeriesKey, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<SeriesKey, AtomicLong> gauges = new ConcurrentHashMap<>();
+    private final int maxSeries;
+    private final int maxHistogramSeries;
+    private final String prefix;
+    private final long quantileWindowMillis;
+
+    public HistogramMetric() {
+        maxSeries = Integer.parseInt(System.getProperty(ATHENZ_PROP_METRIC_MAX_SERIES, "10000"));
+        maxHistogramSeries = Integer.parseInt(System.getProperty(ATHENZ_PROP_METRIC_MAX_HISTOGRAM_SERIES, "500"));
+        prefix = System.getProperty(ATHENZ_PROP_METRIC_PREFIX, "athenz_");
+        quantileWindowMillis = 1000 * Long.parseLong(System.getProperty(ATHENZ_PROP_METRIC_QUANTILE_WINDOW, "60"));
+    }
+
+    @Override
+    public void increment(String metric) {
+        increment(metric, null, null, null, 0, null, 1);
+    }
+
+    @Override
+    public void increment(String metric, String requestDomainName) {
+        increment(metric, requestDomainName, null, null, 0, null, 1);
+    }
+
+    @Override
+    public void increment(String metric, String requestDomainName, int count) {
+        increment(metric, requestDomainName, null, null, 0, null, count);
+    }
+
+    @Override
+    public void increment(String metric, String requestDomainName, String principalDomainName,
+            String httpMethod, int httpStatus, String apiName) {
+        increment(metric, requestDomainName, principalDomainName, httpMethod, httpStatus, apiName, 1);
+    }
+
+    void increment(String metric, String requestDomainName, String principalDomainName,
+            String httpMethod, int httpStatus, String apiName, long count) {
+        if (metric == null) {
+            return;
+        }
+        getSeries(counters, new SeriesKey(metric, requestDomainName, httpMethod, httpStatus, apiName),
+                LongAdder::new).add(count);
+    }
+
+    @Override
+    public void increment(String metric, final String... attributes) {
+        increment(metric, 1, attributes);
+    }
+
+    @Override
+    public void increment(String metric, long change, final String... attributes) {
+        if (metric == null) {
+            return;
+        }
+        getSeries(counters, new SeriesKey(metric, null, null, 0, null, attributes),
+                LongAdder::new).add(change);
+    }
+
+    @Override
+    public void setGauge(String metric, long value, final String... attributes) {
+        if (metric == null) {
+            return;
+        }
+        getSeries(gauges, new SeriesKey(metric, null, null, 0, null, attributes),
+                AtomicLong::new).set(value);
+    }
+
+    @Override
+    public Object startTiming(String metric, String requestDomainName) {
+        return startTiming(metric, requestDomainName, null, null, null);
+    }
+
+    @Override
+    public Object startTiming(String metric, String requestDomainName, String principalDomainName,
+            String httpMethod, String apiName) {
+        return new Timer(metric, requestDomainName, httpMethod, apiName);
+    }
+
+    @Override
+    public void stopTiming(Object timerMetric) {
+        if (timerMetric instanceof Timer) {
+            Timer timer = (Timer) timerMetric;
+            stopTiming(timer, timer.domain, timer.httpMethod, 0, timer.apiName);
+        }
+    }
+
+    @Override
+    public void stopTiming(Object timerMetric, String requestDomainName, String principalDomainName,
+            String httpMethod, int httpStatus, String apiName) {
+        if (timerMetric instanceof Timer) {
+            stopTiming((Timer) timerMetric, requestDomainName, httpMethod, httpStatus, apiName);
+        }
+    }
+
+    void stopTiming(Timer timer, String requestDomainName, String httpMethod, int httpStatus, String apiName) {
+
+        // a timer without a metric name has already been stopped
+
+        if (timer.metric == null) {
+            return;
+        }
+
+        final long duration = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - timer.startTime);
+        getSeries(histograms, new SeriesKey(timer.metric, requestDomainName, httpMethod, httpStatus, apiName),
+                () -> new LatencyHistogram(quantileWindowMillis)).record(duration);
+        timer.metric = null;
+    }
+
+    <T> T getSeries(ConcurrentHashMap<SeriesKey, T> seriesMap, SeriesKey key,
+            Supplier<T> supplier) {
+
+        T series = seriesMap.get(key);
+        if (series != null) {
+            return series;
+        }
+
+        // if we have reached our max number of series then we're
+        // going to record the value without the domain label
+
+        if (key.domain != null && (getSeriesCount() >= maxSeries
+                || (seriesMap == histograms && histograms.size() >= maxHistogramSeries))) {
+            key = key.withOtherDomain();
+        }
+        return seriesMap.computeIfAbsent(key, k -> supplier.get());
+    }
+
+    int getSeriesCount() {
+        return counters.size() + histograms.size() + gauges.size();
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void quit() {
+    }
+
+    /**
+     * Write all metrics in Prometheus text exposition format
+     * @param writer output writer
+     * @throws IOException if unable to write the metrics
+     */
+    public void writeMetrics(Writer writer) throws IOException {
+
+        StringBuilder buf = new StringBuilder(1024);
+
+        // group our series by metric name so that we generate
+        // a single type line per metric
+
+        Map<String, List<Map.Entry<SeriesKey, LongAdder>>> counterMap = new TreeMap<>();
+        for (Map.Entry<SeriesKey, LongAdder> entry : counters.entrySet()) {
+            counterMap.computeIfAbsent(entry.getKey().metric, k -> new ArrayList<>()).add(entry);
+        }
+        for (Map.Entry<String, List<Map.Entry<SeriesKey, LongAdder>>> metricEntry : counterMap.entrySet()) {
+            final String name = metricName(metricEntry.getKey()) + "_total";
+            buf.append("# TYPE ").append(name).append(" counter\n");
+            for (Map.Entry<SeriesKey, LongAdder> entry : metricEntry.getValue()) {
+                buf.append(name);
+                appendLabels(buf, entry.getKey(), null);
+                buf.append(' ').append(entry.getValue().sum()).append('\n');
+            }
+            writer.write(buf.toString());
+            buf.setLength(0);
+        }
+
+        Map<String, List<Map.Entry<SeriesKey, AtomicLong>>> gaugeMap = new TreeMap<>();
+        for (Map.Entry<SeriesKey, AtomicLong> entry : gauges.entrySet()) {
+            gaugeMap.computeIfAbsent(entry.getKey().metric, k -> new ArrayList<>()).add(entry);
+        }
+        for (Map.Entry<String, List<Map.Entry<SeriesKey, AtomicLong>>> metricEntry : gaugeMap.entrySet()) {
+            final String name = metricName(metricEntry.getKey());
+            buf.append("# TYPE ").append(name).append(" gauge\n");
+            for (Map.Entry<SeriesKey, AtomicLong> entry : metricEntry.getValue()) {
+                buf.append(name);
+                appendLabels(buf, entry.getKey(), null);
+                buf.append(' ').append(entry.getValue().get()).append('\n');
+            }
+            writer.write(buf.toString());
+            buf.setLength(0);
+        }
+
+        Map<String, List<Map.Entry<SeriesKey, LatencyHistogram>>> histogramMap = new TreeMap<>();
+        for (Map.Entry<SeriesKey, LatencyHistogram> entry : histograms.entrySet()) {
+            histogramMap.computeIfAbsent(entry.getKey().metric, k -> new ArrayList<>()).add(entry);
+        }
+        for (Map.Entry<String, List<Map.Entry<SeriesKey, LatencyHistogram>>> metricEntry : histogramMap.entrySet()) {
+            final String name = metricName(metricEntry.getKey()) + "_seconds";
+            buf.append("# TYPE ").append(name).append(" summary\n");
+            for (Map.Entry<SeriesKey, LatencyHistogram> entry : metricEntry.getValue()) {
+                final LatencyHistogram histogram = entry.getValue();
+                final long[] values = histogram.getValuesAtQuantiles(QUANTILES);
+                for (int i = 0; i < QUANTILES.length; i++) {
+                    buf.append(name);
+                    appendLabels(buf, entry.getKey(), Double.toString(QUANTILES[i]));
+                    buf.append(' ').append(toSeconds(values[i])).append('\n');
+                }
+                buf.append(name).append("_sum");
+                appendLabels(buf, entry.getKey(), null);
+                buf.append(' ').append(toSeconds(histogram.getSum())).append('\n');
+                buf.append(name).append("_count");
+                appendLabels(buf, entry.getKey(), null);
+                buf.append(' ').append(histogram.getCount()).append('\n');
+            }
+            writer.write(buf.toString());
+            buf.setLength(0);
+        }
+        writer.flush();
+    }
+
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    String metricName(final String metric) {
+        StringBuilder name = new StringBuilder(prefix.length() + metric.length());
+        name.append(prefix);
+        for (int i = 0; i < metric.length(); i++) {
+            final char c = metric.charAt(i);
+            name.append(Character.isLetterOrDigit(c) && c < 128 ? c : '_');
+        }
+        return name.toString();
+    }
+
+    static double toSeconds(long micros) {
+        return micros / 1_000_000.0;
+    }
+
+    static void appendLabels(StringBuilder buf, SeriesKey key, final String quantile) {
+
+        int count = 0;
+        count = appendLabel(buf, count, "domain", key.domain);
+        count = appendLabel(buf, count, "method", key.httpMethod);
+        count = appendLabel(buf, count, "status", key.httpStatus == 0 ? null : Integer.toString(key.httpStatus));
+        count = appendLabel(buf, count, "api", key.apiName);
+        if (key.attributes != null) {
+            for (int i = 0; i + 1 < key.attributes.length; i += 2) {
+                count = appendLabel(buf, count, key.attributes[i], key.attributes[i + 1]);
+            }
+        }
+        count = appendLabel(buf, count, "quantile", quantile);
+        if (count != 0) {
+            buf.append('}');
+        }
+    }
+
+    static int appendLabel(StringBuilder buf, int count, final String name, final String value) {
+
+        if (value == null || value.isEmpty()) {
+            return count;
+        }
+
+        buf.append(count == 0 ? '{' : ',').append(name).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    buf.append("\\\\");
+                    break;
+                case '"':
+                    buf.append("\\\"");
+                    break;
+                case '\n':
+                    buf.append("\\n");
+                    break;
+                default:
+                    buf.append(c);
+            }
+        }
+        buf.append('"');
+        return count + 1;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.common.metrics.impl;
+
+import com.yahoo.athenz.common.metrics.Metric;
+import com.yahoo.athenz.common.metrics.MetricFactory;
+
+/**
+ * Factory for the in-process histogram metric. All metric objects
+ * created by the factory share the same instance so the container
+ * can expose the metrics from its status port.
+ */
+public class HistogramMetricFactory implements MetricFactory {
+
+    private static volatile HistogramMetric metric;
+
+    @Override
+    public Metric create() {
+        return getMetric();
+    }
+
+    public static HistogramMetric getMetric() {
+        if (metric == null) {
+            synchronized (HistogramMetricFactory.class) {
+                if (metric == null) {
+                    metric = new HistogramMetric();
+                }
+            }
+        }
+        return metric;
+    }
+
+    /**
+     * @return the histogram metric if one was created by the server
+     *      otherwise null
+     */
+    public static HistogramMetric getCreatedMetric() {
+        return metric;
+    }
+}
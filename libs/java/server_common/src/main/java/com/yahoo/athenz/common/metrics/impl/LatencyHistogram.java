@@ -0,0 +1,216 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.common.metrics.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with HDR style log-linear buckets. Values
+ * below 64 have their own bucket while larger values are grouped in
+ * buckets based on their highest bit with 32 sub-buckets per power of
+ * two, so the reported quantiles are within 3.2% of the recorded value.
+ * Values are recorded in microseconds up to ~67 seconds with any larger
+ * values counted in the last bucket, which keeps each window at 704
+ * buckets (5.5KB). The bucket counts
+ * are kept in two rotating time windows so the quantiles and max value
+ * only include the values recorded in the current and previous windows,
+ * while the count and sum are cumulative.
+ */
+final class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 6;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+    static final int MAX_EXPONENT = 20;
+    static final int BUCKET_COUNT = SUB_BUCKET_COUNT + MAX_EXPONENT * SUB_BUCKET_HALF_COUNT;
+    static final int WINDOW_COUNT = 2;
+
+    static final class Window {
+        final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+        final AtomicLong max = new AtomicLong();
+        volatile long epoch = -1;
+    }
+
+    private final long windowMillis;
+    private final Window[] windows = new Window[WINDOW_COUNT];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Create a histogram that keeps all values
+     */
+    LatencyHistogram() {
+        this(0);
+    }
+
+    /**
+     * Create a histogram with the given window length
+     * @param windowMillis length of the time window in milliseconds,
+     *      0 to keep all values in a single window
+     */
+    LatencyHistogram(long windowMillis) {
+        this.windowMillis = Math.max(0, windowMillis);
+        for (int i = 0; i < WINDOW_COUNT; i++) {
+            windows[i] = new Window();
+        }
+    }
+
+    static int bucketIndex(long value) {
+
+        if (value < SUB_BUCKET_COUNT) {
+            return value < 0 ? 0 : (int) value;
+        }
+
+        // the exponent is selected so that value >> exponent is
+        // in the upper half of our sub-bucket range
+
+        final int exponent = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        return SUB_BUCKET_COUNT + (exponent - 1) * SUB_BUCKET_HALF_COUNT
+                + (int) (value >> exponent) - SUB_BUCKET_HALF_COUNT;
+    }
+
+    static long bucketUpperBound(int index) {
+
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        final int exponent = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1;
+        final long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << exponent) - 1;
+    }
+
+    long getEpoch(long now) {
+        return windowMillis == 0 ? 0 : now / windowMillis;
+    }
+
+    Window getWindow(long now) {
+
+        final long epoch = getEpoch(now);
+        final Window window = windows[(int) (epoch % WINDOW_COUNT)];
+
+        // if the window is from an older epoch then we need to
+        // reset its counts before it can be used again
+
+        if (window.epoch != epoch) {
+            synchronized (window) {
+                if (window.epoch != epoch) {
+                    for (int i = 0; i < BUCKET_COUNT; i++) {
+                        window.counts.set(i, 0);
+                    }
+                    window.max.set(0);
+                    window.epoch = epoch;
+                }
+            }
+        }
+        return window;
+    }
+
+    void record(long value) {
+        record(value, System.currentTimeMillis());
+    }
+
+    void record(long value, long now) {
+
+        final Window window = getWindow(now);
+        window.counts.incrementAndGet(bucketIndex(value));
+        count.increment();
+        sum.add(value);
+
+        long current = window.max.get();
+        while (value > current && !window.max.compareAndSet(current, value)) {
+            current = window.max.get();
+        }
+    }
+
+    boolean isActiveWindow(final Window window, long epoch) {
+        final long windowEpoch = window.epoch;
+        return windowEpoch >= 0 && windowEpoch <= epoch && epoch - windowEpoch < WINDOW_COUNT;
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    long getSum() {
+        return sum.sum();
+    }
+
+    long getMax() {
+        return getMax(System.currentTimeMillis());
+    }
+
+    long getMax(long now) {
+        final long epoch = getEpoch(now);
+        long maxValue = 0;
+        for (Window window : windows) {
+            if (isActiveWindow(window, epoch)) {
+                maxValue = Math.max(maxValue, window.max.get());
+            }
+        }
+        return maxValue;
+    }
+
+    long[] getValuesAtQuantiles(final double[] quantiles) {
+        return getValuesAtQuantiles(quantiles, System.currentTimeMillis());
+    }
+
+    /**
+     * Return the values at the given quantiles from a single snapshot
+     * of the bucket counts in the current and previous windows.
+     * @param quantiles sorted list of quantiles in the 0..1 range
+     * @param now current time in milliseconds
+     * @return array of values at the given quantiles
+     */
+    long[] getValuesAtQuantiles(final double[] quantiles, long now) {
+
+        final long epoch = getEpoch(now);
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (Window window : windows) {
+            if (!isActiveWindow(window, epoch)) {
+                continue;
+            }
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                final long bucketCount = window.counts.get(i);
+                snapshot[i] += bucketCount;
+                total += bucketCount;
+            }
+        }
+
+        long[] values = new long[quantiles.length];
+        if (total == 0) {
+            return values;
+        }
+
+        final long maxValue = getMax(now);
+        long cumulative = 0;
+        int bucket = 0;
+        for (int i = 0; i < quantiles.length; i++) {
+            final long target = Math.max(1, (long) Math.ceil(quantiles[i] * total));
+            while (bucket < BUCKET_COUNT - 1 && cumulative + snapshot[bucket] < target) {
+                cumulative += snapshot[bucket++];
+            }
+            values[i] = Math.min(bucketUpperBound(bucket), maxValue);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.common.server.log;
+
+import com.yahoo.athenz.common.metrics.Metric;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous log writer used by both audit and access loggers. Log
+ * entries are added to a bounded queue by the request threads and a
+ * single writer thread drains the queue and passes the entries in batches
+ * to the configured batch writer so disk latency is not visible to the
+ * requests. When the queue is full the entry is either dropped or the
+ * caller is blocked until there is space in the queue based on the
+ * configured policy. If a metric object is configured, every dropped
+ * entry is reported as a counter and the writer thread periodically
+ * reports the queue depth as a gauge. The writer thread also logs a
+ * warning if any entries were dropped. Closing the writer writes all
+ * entries still waiting in the queue.
+ */
+public class AsyncLogWriter implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncLogWriter.class);
+
+    public static final int DEFAULT_QUEUE_SIZE = 65536;
+    public static final int DEFAULT_BATCH_SIZE = 512;
+
+    static final long POLL_TIMEOUT_MILLIS = 100;
+    static final long DROP_REPORT_INTERVAL_MILLIS = 60000;
+    static final long GAUGE_REPORT_INTERVAL_MILLIS = 1000;
+
+    static final String METRIC_DROPPED = "async_log_dropped";
+    static final String METRIC_QUEUE_DEPTH = "async_log_queue_depth";
+    static final String METRIC_ATTR_WRITER = "writer";
+
+    /**
+     * Writer responsible for writing a batch of log entries. The calls
+     * are serialized so implementations can reuse their buffers between
+     * calls.
+     */
+    public interface BatchWriter {
+        void write(List<String> entries) throws IOException;
+    }
+
+    private final BlockingQueue<String> queue;
+    private final BatchWriter batchWriter;
+    private final int batchSize;
+    private final boolean blockWhenFull;
+    private final Thread writerThread;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private volatile boolean shutdown = false;
+    private volatile Metric metric = null;
+    private long reportedDroppedCount = 0;
+    private long lastDropReportTime = 0;
+    private long lastGaugeReportTime = 0;
+
+    /**
+     * Create and start an async log writer
+     * @param name name of the writer thread
+     * @param batchWriter writer for the log entries
+     * @param queueSize max number of entries in the queue
+     * @param batchSize max number of entries passed to the batch writer
+     * @param blockWhenFull block the caller if the queue is full
+     *      instead of dropping the entry
+     */
+    public AsyncLogWriter(final String name, BatchWriter batchWriter, int queueSize,
+            int batchSize, boolean blockWhenFull) {
+
+        if (queueSize <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Invalid async log writer queue/batch size: "
+                    + queueSize + "/" + batchSize);
+        }
+
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.batchWriter = batchWriter;
+        this.batchSize = batchSize;
+        this.blockWhenFull = blockWhenFull;
+
+        writerThread = new Thread(this::processQueue, name);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Add the entry to the queue to be written by the writer thread.
+     * Once the writer is closed, entries are written synchronously.
+     * @param entry log entry
+     */
+    public void write(final String entry) {
+
+        if (shutdown) {
+            writeBatch(Collections.singletonList(entry));
+            return;
+        }
+
+        if (blockWhenFull) {
+            try {
+                queue.put(entry);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                entryDropped();
+                return;
+            }
+        } else if (!queue.offer(entry)) {
+            entryDropped();
+            return;
+        }
+
+        // if the writer was closed while we were adding our entry
+        // and the writer thread has already completed, then we need
+        // to write the entry ourselves
+
+        if (shutdown && !writerThread.isAlive()) {
+            drainQueue();
+        }
+    }
+
+    void entryDropped() {
+        droppedCount.incrementAndGet();
+        final Metric writerMetric = metric;
+        if (writerMetric != null) {
+            writerMetric.increment(METRIC_DROPPED, 1, METRIC_ATTR_WRITER, writerThread.getName());
+        }
+    }
+
+    /**
+     * Set the metric object used to report the number of dropped
+     * entries and the queue depth
+     * @param metric metric object
+     */
+    public void setMetric(Metric metric) {
+        this.metric = metric;
+    }
+
+    /**
+     * @return number of entries currently waiting in the queue
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return number of entries dropped since the writer was created
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return number of entries written since the writer was created
+     */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * Stop the writer thread after all queued entries are written.
+     * If the writer thread does not complete in time, the remaining
+     * entries are written by the caller.
+     */
+    @Override
+    public void close() {
+        shutdown = true;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        drainQueue();
+    }
+
+    void drainQueue() {
+        List<String> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    void processQueue() {
+
+        List<String> batch = new ArrayList<>(batchSize);
+        while (!shutdown || !queue.isEmpty()) {
+            try {
+                final String entry = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (entry != null) {
+                    batch.add(entry);
+                    queue.drainTo(batch, batchSize - 1);
+                    writeBatch(batch);
+                    batch.clear();
+                }
+                reportDroppedEntries();
+                reportQueueDepth();
+            } catch (InterruptedException ex) {
+                LOG.error("Async log writer {} interrupted", writerThread.getName());
+                break;
+            }
+        }
+
+        // write any remaining entries in the queue
+
+        drainQueue();
+    }
+
+    synchronized void writeBatch(List<String> batch) {
+        try {
+            batchWriter.write(batch);
+            writtenCount.addAndGet(batch.size());
+        } catch (Exception ex) {
+            LOG.error("Unable to write {} log entries: {}", batch.size(), ex.getMessage());
+        }
+    }
+
+    void reportQueueDepth() {
+
+        final Metric writerMetric = metric;
+        if (writerMetric == null) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        if (now - lastGaugeReportTime < GAUGE_REPORT_INTERVAL_MILLIS) {
+            return;
+        }
+
+        writerMetric.setGauge(METRIC_QUEUE_DEPTH, queue.size(), METRIC_ATTR_WRITER, writerThread.getName());
+        lastGaugeReportTime = now;
+    }
+
+    void reportDroppedEntries() {
+
+        final long dropped = droppedCount.get();
+        if (dropped == reportedDroppedCount) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        if (now - lastDropReportTime < DROP_REPORT_INTERVAL_MILLIS) {
+            return;
+        }
+
+        LOG.warn("Async log writer {} dropped {} entries, queue depth: {}", writerThread.getName(),
+                dropped - reportedDroppedCount, queue.size());
+        reportedDroppedCount = dropped;
+        lastDropReportTime = now;
+    }
+}
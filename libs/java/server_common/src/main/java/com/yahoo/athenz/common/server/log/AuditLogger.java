@@ -15,6 +15,8 @@
  */
 package com.yahoo.athenz.common.server.log;
 
+import com.yahoo.athenz.common.metrics.Metric;
+
 /**
  * Interface to perform audit logging. 
  * See {@link com.yahoo.athenz.common.server.log.AuditLoggerFactory#create()}
@@ -40,4 +42,19 @@ public interface AuditLogger {
      * @return default AuditLogMsgBuilder instance
      */
     AuditLogMsgBuilder getMsgBuilder();
+
+    /**
+     * Set the metric object the logger can use to report its
+     * own metrics (e.g. number of dropped messages)
+     * @param metric metric object
+     */
+    default void setMetric(Metric metric) {
+    }
+
+    /**
+     * Close the logger and write any pending messages. Called
+     * when the server is shutting down.
+     */
+    default void close() {
+    }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.common.server.log.impl;
+
+import com.yahoo.athenz.common.metrics.Metric;
+import com.yahoo.athenz.common.server.log.AsyncLogWriter;
+import com.yahoo.athenz.common.server.log.AuditLogMsgBuilder;
+import com.yahoo.athenz.common.server.log.AuditLogger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Audit logger implementation that writes the audit messages to the
+ * configured slf4j logger (AuditSoxLogger by default) from a background
+ * thread so the request threads are not blocked by the log appenders.
+ * By default, the caller is blocked if the queue is full instead of
+ * dropping the message. The queued messages are written when the logger
+ * is closed or, through a shutdown hook, when the JVM is shutting down.
+ * Messages still in the queue are lost if the process is killed.
+ */
+public class AsyncAuditLogger implements AuditLogger {
+
+    public static final String ATHENZ_PROP_AUDIT_ASYNC_LOGGER_NAME = "athenz.audit.async.logger_name";
+    public static final String ATHENZ_PROP_AUDIT_ASYNC_QUEUE_SIZE = "athenz.audit.async.queue_size";
+    public static final String ATHENZ_PROP_AUDIT_ASYNC_BATCH_SIZE = "athenz.audit.async.batch_size";
+    public static final String ATHENZ_PROP_AUDIT_ASYNC_BLOCK_WHEN_FULL = "athenz.audit.async.block_when_full";
+
+    private final AsyncLogWriter logWriter;
+    private final Thread shutdownHook;
+
+    public AsyncAuditLogger() {
+        this(LoggerFactory.getLogger(System.getProperty(ATHENZ_PROP_AUDIT_ASYNC_LOGGER_NAME, "AuditSoxLogger")));
+    }
+
+    AsyncAuditLogger(final Logger auditLogger) {
+
+        int queueSize = Integer.parseInt(System.getProperty(ATHENZ_PROP_AUDIT_ASYNC_QUEUE_SIZE,
+                Integer.toString(AsyncLogWriter.DEFAULT_QUEUE_SIZE)));
+        int batchSize = Integer.parseInt(System.getProperty(ATHENZ_PROP_AUDIT_ASYNC_BATCH_SIZE,
+                Integer.toString(AsyncLogWriter.DEFAULT_BATCH_SIZE)));
+        boolean blockWhenFull = Boolean.parseBoolean(System.getProperty(ATHENZ_PROP_AUDIT_ASYNC_BLOCK_WHEN_FULL,
+                "true"));
+
+        logWriter = new AsyncLogWriter("athenz-audit-log", entries -> {
+            for (String entry : entries) {
+                auditLogger.info(entry);
+            }
+        }, queueSize, batchSize, blockWhenFull);
+
+        shutdownHook = new Thread(logWriter::close, "athenz-audit-log-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    @Override
+    public void log(String logMsg, String msgVersionTag) {
+        logWriter.write(logMsg);
+    }
+
+    @Override
+    public void log(AuditLogMsgBuilder msgBldr) {
+        if (msgBldr != null) {
+            log(msgBldr.build(), msgBldr.versionTag());
+        }
+    }
+
+    @Override
+    public AuditLogMsgBuilder getMsgBuilder() {
+        return new DefaultAuditLogMsgBuilder();
+    }
+
+    @Override
+    public void setMetric(Metric metric) {
+        logWriter.setMetric(metric);
+    }
+
+    @Override
+    public void close() {
+
+        // if we're called while the jvm is already shutting down
+        // then our hook is running or about to run anyway
+
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException ignored) {
+        }
+        logWriter.close();
+    }
+
+    public AsyncLogWriter getLogWriter() {
+        return logWriter;
+    }
+}
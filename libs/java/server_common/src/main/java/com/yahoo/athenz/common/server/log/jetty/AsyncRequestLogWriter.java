@@ -0,0 +1,133 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.common.server.log.jetty;
+
+import com.yahoo.athenz.common.metrics.Metric;
+import com.yahoo.athenz.common.server.log.AsyncLogWriter;
+import org.eclipse.jetty.server.RequestLog;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Request log writer that hands off the access log entries to an
+ * async log writer so the request threads are not blocked on disk
+ * writes. If batch writes are enabled, the entries in a batch are
+ * written with a single call to the underlying writer which is
+ * appropriate for file based writers that terminate each write
+ * with a line separator.
+ */
+public class AsyncRequestLogWriter extends ContainerLifeCycle implements RequestLog.Writer {
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final RequestLog.Writer writer;
+    private final int queueSize;
+    private final int batchSize;
+    private final boolean blockWhenFull;
+    private final boolean batchWrites;
+    private final StringBuilder batchBuilder = new StringBuilder(16384);
+    private volatile AsyncLogWriter logWriter;
+    private volatile Metric metric;
+
+    public AsyncRequestLogWriter(RequestLog.Writer writer, int queueSize, int batchSize,
+            boolean blockWhenFull, boolean batchWrites) {
+        this.writer = writer;
+        this.queueSize = queueSize;
+        this.batchSize = batchSize;
+        this.blockWhenFull = blockWhenFull;
+        this.batchWrites = batchWrites;
+        installBean(writer);
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        super.doStart();
+        AsyncLogWriter asyncLogWriter = new AsyncLogWriter("athenz-access-log", this::writeEntries,
+                queueSize, batchSize, blockWhenFull);
+        asyncLogWriter.setMetric(metric);
+        logWriter = asyncLogWriter;
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+
+        // flush all pending entries before stopping our writer
+
+        if (logWriter != null) {
+            logWriter.close();
+            logWriter = null;
+        }
+        super.doStop();
+    }
+
+    @Override
+    public void write(String requestEntry) throws IOException {
+
+        // if we're not started yet then we'll write the entry directly
+
+        final AsyncLogWriter asyncLogWriter = logWriter;
+        if (asyncLogWriter == null) {
+            writer.write(requestEntry);
+        } else {
+            asyncLogWriter.write(requestEntry);
+        }
+    }
+
+    void writeEntries(List<String> entries) throws IOException {
+
+        if (!batchWrites || entries.size() == 1) {
+            for (String entry : entries) {
+                writer.write(entry);
+            }
+            return;
+        }
+
+        batchBuilder.setLength(0);
+        for (String entry : entries) {
+            if (batchBuilder.length() > 0) {
+                batchBuilder.append(LINE_SEPARATOR);
+            }
+            batchBuilder.append(entry);
+        }
+        writer.write(batchBuilder.toString());
+
+        // don't keep large buffers around after a burst
+
+        if (batchBuilder.capacity() > 1048576) {
+            batchBuilder.setLength(0);
+            batchBuilder.trimToSize();
+        }
+    }
+
+    /**
+     * Set the metric object used by the async writer to report the
+     * number of dropped entries and its queue depth
+     * @param metric metric object
+     */
+    public void setMetric(Metric metric) {
+        this.metric = metric;
+        final AsyncLogWriter asyncLogWriter = logWriter;
+        if (asyncLogWriter != null) {
+            asyncLogWriter.setMetric(metric);
+        }
+    }
+
+    public AsyncLogWriter getLogWriter() {
+        return logWriter;
+    }
+}
@@ -96,6 +96,14 @@ public interface ObjectStoreConnection extends Closeable {
     int countRoleMembers(String domainName, String roleName) throws ServerResourceException;
     Membership getRoleMember(String domainName, String roleName, String member, long expiration, boolean pending) throws ServerResourceException;
     boolean insertRoleMember(String domainName, String roleName, RoleMember roleMember, String principal, String auditRef) throws ServerResourceException;
+    default boolean insertRoleMembers(String domainName, String roleName, List<RoleMember> roleMembers, String principal, String auditRef) throws ServerResourceException {
+        for (RoleMember roleMember : roleMembers) {
+            if (!insertRoleMember(domainName, roleName, roleMember, principal, auditRef)) {
+                return false;
+            }
+        }
+        return true;
+    }
     boolean deleteRoleMember(String domainName, String roleName, String member, String principal, String auditRef) throws ServerResourceException;
     boolean deleteExpiredRoleMember(String domainName, String roleName, String member, String principal, Timestamp expiration, String auditRef) throws ServerResourceException;
     boolean updateRoleMemberDisabledState(String domainName, String roleName, String member, String principal, int disabledState, String auditRef) throws ServerResourceException;
@@ -123,6 +131,14 @@ public interface ObjectStoreConnection extends Closeable {
     int countGroupMembers(String domainName, String groupName) throws ServerResourceException;
     GroupMembership getGroupMember(String domainName, String groupName, String member, long expiration, boolean pending) throws ServerResourceException;
     boolean insertGroupMember(String domainName, String groupName, GroupMember groupMember, String principal, String auditRef) throws ServerResourceException;
+    default boolean insertGroupMembers(String domainName, String groupName, List<GroupMember> groupMembers, String principal, String auditRef) throws ServerResourceException {
+        for (GroupMember groupMember : groupMembers) {
+            if (!insertGroupMember(domainName, groupName, groupMember, principal, auditRef)) {
+                return false;
+            }
+        }
+        return true;
+    }
     boolean deleteGroupMember(String domainName, String groupName, String member, String principal, String auditRef) throws ServerResourceException;
     boolean deleteExpiredGroupMember(String domainName, String groupName, String member, String principal, Timestamp expiration, String auditRef) throws ServerResourceException;
 
@@ -174,8 +174,12 @@ public class JDBCConnection implements ObjectStoreConnection {
             + "JOIN pending_role_member ON pending_role_member.principal_id=principal.principal_id "
             + "JOIN role ON role.role_id=pending_role_member.role_id WHERE role.role_id=?;";
     private static final String SQL_COUNT_ROLE_MEMBERS = "SELECT COUNT(*) FROM role_member WHERE role_id=?;";
+    private static final String SQL_LIST_ROLE_MEMBER_PRINCIPAL_IDS = "SELECT principal_id FROM role_member WHERE role_id=?;";
     private static final String SQL_GET_PRINCIPAL_ID = "SELECT principal_id FROM principal WHERE name=?;";
     private static final String SQL_INSERT_PRINCIPAL = "INSERT INTO principal (name) VALUES (?);";
+    private static final String SQL_INSERT_PRINCIPAL_IF_NOT_EXISTS = "INSERT INTO principal (name) VALUES (?) "
+            + "ON DUPLICATE KEY UPDATE name=name;";
+    private static final String SQL_GET_PRINCIPAL_IDS = "SELECT principal_id, name FROM principal WHERE name IN (";
     private static final String SQL_DELETE_PRINCIPAL = "DELETE FROM principal WHERE name=?;";
     private static final String SQL_DELETE_SUB_PRINCIPALS = "DELETE FROM principal WHERE name LIKE ?;";
     private static final String SQL_LIST_PRINCIPAL = "SELECT * FROM principal;";
@@ -489,6 +493,7 @@ public class JDBCConnection implements ObjectStoreConnection {
             + "SET system_disabled=?, audit_ref=?, req_principal=? WHERE group_id=? AND principal_id=?;";
     private static final String SQL_UPDATE_PENDING_GROUP_MEMBER = "UPDATE pending_principal_group_member "
             + "SET expiration=?, audit_ref=?, req_time=CURRENT_TIMESTAMP(3), req_principal=? WHERE group_id=? AND principal_id=?;";
+    private static final String SQL_LIST_GROUP_MEMBER_PRINCIPAL_IDS = "SELECT principal_id FROM principal_group_member WHERE group_id=?;";
     private static final String SQL_INSERT_GROUP_MEMBER = "INSERT INTO principal_group_member "
             + "(group_id, principal_id, expiration, active, audit_ref, req_principal) VALUES (?,?,?,?,?,?);";
     private static final String SQL_INSERT_PENDING_GROUP_MEMBER = "INSERT INTO pending_principal_group_member "
@@ -734,6 +739,8 @@ public class JDBCConnection implements ObjectStoreConnection {
     private int policyTagsLimit = JDBCConsts.ZMS_DEFAULT_TAG_LIMIT;
     private int serviceTagsLimit = JDBCConsts.ZMS_DEFAULT_TAG_LIMIT;
 
+    private static final int PRINCIPAL_LOOKUP_BATCH_SIZE = 500;
+
     Connection con;
     int queryTimeout = 60;
     Map<String, Integer> objectMap;
@@ -2643,6 +2650,144 @@ public class JDBCConnection implements ObjectStoreConnection {
         return principalId;
     }
 
+    /**
+     * Return the principal ids for the given list of principals keyed by
+     * the lowercase principal name. The ids are looked up with a single
+     * query per batch of principals and any principals that do not exist
+     * are inserted in a single batch.
+     */
+    Map<String, Integer> getPrincipalIds(List<String> principals, final String caller) throws ServerResourceException {
+
+        Map<String, Integer> principalIds = new HashMap<>();
+        Set<String> lookupPrincipals = new LinkedHashSet<>();
+        for (String principal : principals) {
+            final String principalKey = principal.toLowerCase();
+            if (principalIds.containsKey(principalKey) || lookupPrincipals.contains(principal)) {
+                continue;
+            }
+            if (!validatePrincipalDomain(principal)) {
+                throw notFoundError(caller, JDBCConsts.OBJECT_DOMAIN, principal);
+            }
+            Integer value = objectMap.get(CACHE_PRINCIPAL + principal);
+            if (value != null) {
+                principalIds.put(principalKey, value);
+            } else {
+                lookupPrincipals.add(principal);
+            }
+        }
+
+        lookupPrincipalIds(lookupPrincipals, principalIds, caller);
+        lookupPrincipals.removeIf(principal -> principalIds.containsKey(principal.toLowerCase()));
+        if (lookupPrincipals.isEmpty()) {
+            return principalIds;
+        }
+
+        // insert all the new principals. if another thread has already
+        // inserted the same principal, the duplicate key only results in
+        // a no-op update, so we'll pick up its id in our lookup while any
+        // other errors (e.g. invalid principal names) are still reported
+
+        try (PreparedStatement ps = con.prepareStatement(SQL_INSERT_PRINCIPAL_IF_NOT_EXISTS)) {
+            for (String principal : lookupPrincipals) {
+                ps.setString(1, principal);
+                ps.addBatch();
+            }
+            executeBatch(ps, caller);
+        } catch (SQLException ex) {
+            throw sqlError(ex, caller);
+        }
+
+        // if we still can't find the principal then the other thread
+        // hasn't completed its transaction yet, so we'll return a conflict
+        // exception so the server can retry its operation
+
+        lookupPrincipalIds(lookupPrincipals, principalIds, caller);
+        for (String principal : lookupPrincipals) {
+            if (!principalIds.containsKey(principal.toLowerCase())) {
+                throw sqlError(new SQLException("insert principal lock conflict", MYSQL_EXC_STATE_DEADLOCK), caller);
+            }
+        }
+        return principalIds;
+    }
+
+    void lookupPrincipalIds(Collection<String> principals, Map<String, Integer> principalIds,
+            final String caller) throws ServerResourceException {
+
+        List<String> principalList = new ArrayList<>(principals);
+        for (int idx = 0; idx < principalList.size(); idx += PRINCIPAL_LOOKUP_BATCH_SIZE) {
+            List<String> batch = principalList.subList(idx, Math.min(idx + PRINCIPAL_LOOKUP_BATCH_SIZE, principalList.size()));
+            final String query = SQL_GET_PRINCIPAL_IDS + String.join(",", Collections.nCopies(batch.size(), "?")) + ");";
+            try (PreparedStatement ps = con.prepareStatement(query)) {
+                for (int i = 0; i < batch.size(); i++) {
+                    ps.setString(i + 1, batch.get(i));
+                }
+                try (ResultSet rs = executeQuery(ps, caller)) {
+                    while (rs.next()) {
+                        final int principalId = rs.getInt(1);
+                        final String principal = rs.getString(2);
+                        principalIds.put(principal.toLowerCase(), principalId);
+                        objectMap.put(CACHE_PRINCIPAL + principal, principalId);
+                    }
+                }
+            } catch (SQLException ex) {
+                throw sqlError(ex, caller);
+            }
+        }
+    }
+
+    Set<Integer> getMemberPrincipalIds(final String query, int objectId, final String caller) throws ServerResourceException {
+
+        Set<Integer> principalIds = new HashSet<>();
+        try (PreparedStatement ps = con.prepareStatement(query)) {
+            ps.setInt(1, objectId);
+            try (ResultSet rs = executeQuery(ps, caller)) {
+                while (rs.next()) {
+                    principalIds.add(rs.getInt(1));
+                }
+            }
+        } catch (SQLException ex) {
+            throw sqlError(ex, caller);
+        }
+        return principalIds;
+    }
+
+    boolean insertAuditLogs(final String query, int objectId, final String admin, List<String> addedMembers,
+            List<String> updatedMembers, final String auditRef, final String caller) throws ServerResourceException {
+
+        if (addedMembers.isEmpty() && updatedMembers.isEmpty()) {
+            return true;
+        }
+
+        try (PreparedStatement ps = con.prepareStatement(query)) {
+            addAuditLogBatch(ps, objectId, admin, addedMembers, AUDIT_OPERATION_ADD, auditRef);
+            addAuditLogBatch(ps, objectId, admin, updatedMembers, AUDIT_OPERATION_UPDATE, auditRef);
+            return batchUpdateSucceeded(executeBatch(ps, caller));
+        } catch (SQLException ex) {
+            throw sqlError(ex, caller);
+        }
+    }
+
+    void addAuditLogBatch(PreparedStatement ps, int objectId, final String admin, List<String> members,
+            final String action, final String auditRef) throws SQLException {
+        for (String member : members) {
+            ps.setInt(1, objectId);
+            ps.setString(2, processInsertValue(admin));
+            ps.setString(3, member);
+            ps.setString(4, action);
+            ps.setString(5, processInsertValue(auditRef));
+            ps.addBatch();
+        }
+    }
+
+    boolean batchUpdateSucceeded(int[] results) {
+        for (int result : results) {
+            if (result == 0 || result == Statement.EXECUTE_FAILED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     int insertHost(String hostName) throws ServerResourceException {
 
         int affectedRows;
@@ -2731,6 +2876,101 @@ public class JDBCConnection implements ObjectStoreConnection {
         return result;
     }
 
+    @Override
+    public boolean insertRoleMembers(String domainName, String roleName, List<RoleMember> roleMembers,
+            String admin, String auditRef) throws ServerResourceException {
+
+        final String caller = "insertRoleMembers";
+
+        if (roleMembers == null || roleMembers.isEmpty()) {
+            return true;
+        }
+
+        int domainId = getDomainId(domainName);
+        if (domainId == 0) {
+            throw notFoundError(caller, JDBCConsts.OBJECT_DOMAIN, domainName);
+        }
+        int roleId = getRoleId(domainId, roleName);
+        if (roleId == 0) {
+            throw notFoundError(caller, JDBCConsts.OBJECT_ROLE, ResourceUtils.roleResourceName(domainName, roleName));
+        }
+
+        Map<String, Integer> principalIds = getPrincipalIds(roleMembers.stream()
+                .map(RoleMember::getMemberName).collect(Collectors.toList()), caller);
+        Set<Integer> memberIds = getMemberPrincipalIds(SQL_LIST_ROLE_MEMBER_PRINCIPAL_IDS, roleId, caller);
+
+        // pending requests are processed individually since we need to
+        // verify they don't conflict with any existing requests. the
+        // standard members are split into new and existing members
+        // and processed in batches
+
+        List<RoleMember> insertMembers = new ArrayList<>();
+        List<RoleMember> updateMembers = new ArrayList<>();
+        for (RoleMember roleMember : roleMembers) {
+            final String principal = roleMember.getMemberName();
+            final int principalId = principalIds.get(principal.toLowerCase());
+            if (roleMember.getApproved() == Boolean.FALSE) {
+                boolean roleMemberExists = roleMemberExists(roleId, principalId, principal,
+                        roleMember.getPendingState(), caller);
+                if (!insertPendingRoleMember(roleId, principalId, roleMember, admin, principal,
+                        auditRef, roleMemberExists, caller)) {
+                    return false;
+                }
+            } else if (memberIds.add(principalId)) {
+                insertMembers.add(roleMember);
+            } else {
+                updateMembers.add(roleMember);
+            }
+        }
+
+        if (!insertMembers.isEmpty()) {
+            try (PreparedStatement ps = con.prepareStatement(SQL_INSERT_ROLE_MEMBER)) {
+                for (RoleMember roleMember : insertMembers) {
+                    ps.setInt(1, roleId);
+                    ps.setInt(2, principalIds.get(roleMember.getMemberName().toLowerCase()));
+                    ps.setTimestamp(3, roleMember.getExpiration() == null ? null :
+                            new java.sql.Timestamp(roleMember.getExpiration().millis()));
+                    ps.setTimestamp(4, roleMember.getReviewReminder() == null ? null :
+                            new java.sql.Timestamp(roleMember.getReviewReminder().millis()));
+                    ps.setBoolean(5, processInsertValue(roleMember.getActive(), true));
+                    ps.setString(6, processInsertValue(auditRef));
+                    ps.setString(7, processInsertValue(admin));
+                    ps.addBatch();
+                }
+                if (!batchUpdateSucceeded(executeBatch(ps, caller))) {
+                    return false;
+                }
+            } catch (SQLException ex) {
+                throw sqlError(ex, caller);
+            }
+        }
+
+        if (!updateMembers.isEmpty()) {
+            try (PreparedStatement ps = con.prepareStatement(SQL_UPDATE_ROLE_MEMBER)) {
+                for (RoleMember roleMember : updateMembers) {
+                    ps.setTimestamp(1, roleMember.getExpiration() == null ? null :
+                            new java.sql.Timestamp(roleMember.getExpiration().millis()));
+                    ps.setTimestamp(2, roleMember.getReviewReminder() == null ? null :
+                            new java.sql.Timestamp(roleMember.getReviewReminder().millis()));
+                    ps.setBoolean(3, processInsertValue(roleMember.getActive(), true));
+                    ps.setString(4, processInsertValue(auditRef));
+                    ps.setString(5, processInsertValue(admin));
+                    ps.setInt(6, roleId);
+                    ps.setInt(7, principalIds.get(roleMember.getMemberName().toLowerCase()));
+                    ps.addBatch();
+                }
+                executeBatch(ps, caller);
+            } catch (SQLException ex) {
+                throw sqlError(ex, caller);
+            }
+        }
+
+        return insertAuditLogs(SQL_INSERT_ROLE_AUDIT_LOG, roleId, admin,
+                insertMembers.stream().map(RoleMember::getMemberName).collect(Collectors.toList()),
+                updateMembers.stream().map(RoleMember::getMemberName).collect(Collectors.toList()),
+                auditRef, caller);
+    }
+
     boolean insertPendingRoleMember(int roleId, int principalId, RoleMember roleMember,
             final String admin, final String principal, final String auditRef, boolean roleMemberExists,
             final String caller) throws ServerResourceException {
@@ -6779,6 +7019,97 @@ public class JDBCConnection implements ObjectStoreConnection {
         return result;
     }
 
+    @Override
+    public boolean insertGroupMembers(String domainName, String groupName, List<GroupMember> groupMembers,
+            String admin, String auditRef) throws ServerResourceException {
+
+        final String caller = "insertGroupMembers";
+
+        if (groupMembers == null || groupMembers.isEmpty()) {
+            return true;
+        }
+
+        int domainId = getDomainId(domainName);
+        if (domainId == 0) {
+            throw notFoundError(caller, JDBCConsts.OBJECT_DOMAIN, domainName);
+        }
+        int groupId = getGroupId(domainId, groupName);
+        if (groupId == 0) {
+            throw notFoundError(caller, JDBCConsts.OBJECT_GROUP, ResourceUtils.groupResourceName(domainName, groupName));
+        }
+
+        Map<String, Integer> principalIds = getPrincipalIds(groupMembers.stream()
+                .map(GroupMember::getMemberName).collect(Collectors.toList()), caller);
+        Set<Integer> memberIds = getMemberPrincipalIds(SQL_LIST_GROUP_MEMBER_PRINCIPAL_IDS, groupId, caller);
+
+        // pending requests are processed individually since we need to
+        // verify they don't conflict with any existing requests. the
+        // standard members are split into new and existing members
+        // and processed in batches
+
+        List<GroupMember> insertMembers = new ArrayList<>();
+        List<GroupMember> updateMembers = new ArrayList<>();
+        for (GroupMember groupMember : groupMembers) {
+            final String principal = groupMember.getMemberName();
+            final int principalId = principalIds.get(principal.toLowerCase());
+            if (groupMember.getApproved() == Boolean.FALSE) {
+                boolean groupMemberExists = groupMemberExists(groupId, principalId, principal,
+                        groupMember.getPendingState(), caller);
+                if (!insertPendingGroupMember(groupId, principalId, groupMember, admin, principal,
+                        auditRef, groupMemberExists, caller)) {
+                    return false;
+                }
+            } else if (memberIds.add(principalId)) {
+                insertMembers.add(groupMember);
+            } else {
+                updateMembers.add(groupMember);
+            }
+        }
+
+        if (!insertMembers.isEmpty()) {
+            try (PreparedStatement ps = con.prepareStatement(SQL_INSERT_GROUP_MEMBER)) {
+                for (GroupMember groupMember : insertMembers) {
+                    ps.setInt(1, groupId);
+                    ps.setInt(2, principalIds.get(groupMember.getMemberName().toLowerCase()));
+                    ps.setTimestamp(3, groupMember.getExpiration() == null ? null :
+                            new java.sql.Timestamp(groupMember.getExpiration().millis()));
+                    ps.setBoolean(4, processInsertValue(groupMember.getActive(), true));
+                    ps.setString(5, processInsertValue(auditRef));
+                    ps.setString(6, processInsertValue(admin));
+                    ps.addBatch();
+                }
+                if (!batchUpdateSucceeded(executeBatch(ps, caller))) {
+                    return false;
+                }
+            } catch (SQLException ex) {
+                throw sqlError(ex, caller);
+            }
+        }
+
+        if (!updateMembers.isEmpty()) {
+            try (PreparedStatement ps = con.prepareStatement(SQL_UPDATE_GROUP_MEMBER)) {
+                for (GroupMember groupMember : updateMembers) {
+                    ps.setTimestamp(1, groupMember.getExpiration() == null ? null :
+                            new java.sql.Timestamp(groupMember.getExpiration().millis()));
+                    ps.setBoolean(2, processInsertValue(groupMember.getActive(), true));
+                    ps.setString(3, processInsertValue(auditRef));
+                    ps.setString(4, processInsertValue(admin));
+                    ps.setInt(5, groupId);
+                    ps.setInt(6, principalIds.get(groupMember.getMemberName().toLowerCase()));
+                    ps.addBatch();
+                }
+                executeBatch(ps, caller);
+            } catch (SQLException ex) {
+                throw sqlError(ex, caller);
+            }
+        }
+
+        return insertAuditLogs(SQL_INSERT_GROUP_AUDIT_LOG, groupId, admin,
+                insertMembers.stream().map(GroupMember::getMemberName).collect(Collectors.toList()),
+                updateMembers.stream().map(GroupMember::getMemberName).collect(Collectors.toList()),
+                auditRef, caller);
+    }
+
     @Override
     public boolean deleteGroupMember(String domainName, String groupName, String principal, String admin, String auditRef) throws ServerResourceException {
 
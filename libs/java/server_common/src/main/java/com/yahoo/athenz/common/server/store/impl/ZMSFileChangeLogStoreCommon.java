@@ -29,6 +29,7 @@ import java.io.IOException;
 import java.nio.file.attribute.PosixFilePermission;
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class ZMSFileChangeLogStoreCommon {
 
@@ -38,11 +39,18 @@ public class ZMSFileChangeLogStoreCommon {
     ObjectMapper jsonMapper;
     FilesHelper filesHelper;
 
+    // file updates are serialized with an explicit lock rather than
+    // synchronized methods so the file i/o does not pin the carrier
+    // thread when the store is accessed from a virtual thread
+
+    private final ReentrantLock fileLock = new ReentrantLock();
+
     public String lastModTime;
 
     private static final String ATTR_TAG           = "tag";
     private static final String VALUE_TRUE         = "true";
     private static final String LAST_MOD_FNAME     = ".lastModTime";
+    private static final String TEMP_FILE_PREFIX   = ".tmp.";
     private static final String ATTR_LAST_MOD_TIME = "lastModTime";
 
     boolean requestConditions;
@@ -164,7 +172,11 @@ public class ZMSFileChangeLogStoreCommon {
         }
     }
 
-    public synchronized <T> T get(String name, Class<T> classType) {
+    public <T> T get(String name, Class<T> classType) {
+
+        // we don't acquire the lock when reading the files so the domains
+        // can be loaded in parallel. the put method atomically replaces
+        // the files so we always read a complete file
 
         File file = new File(rootDir, name);
         if (!file.exists()) {
@@ -179,30 +191,39 @@ public class ZMSFileChangeLogStoreCommon {
         return null;
     }
 
-    public synchronized void put(String name, byte[] data) {
+    public void put(String name, byte[] data) {
+
+        // we write the data to a hidden temporary file first and then
+        // rename it so the readers never see a partially written file
 
         File file = new File(rootDir, name);
-        if (!file.exists()) {
-            setupDomainFile(file);
-        }
+        File tempFile = new File(rootDir, TEMP_FILE_PREFIX + name);
 
+        fileLock.lock();
         try {
-            filesHelper.write(file, data);
+            setupDomainFile(tempFile);
+            filesHelper.write(tempFile, data);
+            filesHelper.move(tempFile, file);
         } catch (IOException ex) {
             error("unable to save file: " + file.getPath() + " error: " + ex.getMessage());
+        } finally {
+            fileLock.unlock();
         }
     }
 
-    public synchronized void delete(String name) {
+    public void delete(String name) {
         File file = new File(rootDir, name);
-        if (!file.exists()) {
-            return;
-        }
 
+        fileLock.lock();
         try {
+            if (!file.exists()) {
+                return;
+            }
             filesHelper.delete(file);
         } catch (Exception exc) {
             error("Cannot delete file or directory: " + name + " : exc: " + exc);
+        } finally {
+            fileLock.unlock();
         }
     }
 
@@ -32,8 +32,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
 
 public class AuthzHelper {
 
@@ -54,14 +62,8 @@ public class AuthzHelper {
     }
 
     public static void removeRoleMembers(List<RoleMember> originalRoleMembers, List<RoleMember> removeRoleMembers, boolean filterByNameOnly) {
-        if (removeRoleMembers == null || originalRoleMembers == null) {
-            return;
-        }
-        for (RoleMember removeMember : removeRoleMembers) {
-            originalRoleMembers.removeIf(item ->
-                    item.getMemberName().equalsIgnoreCase(removeMember.getMemberName()) &&
-                    (filterByNameOnly || !isUpdateRequired(item, removeMember)));
-        }
+        removeMembers(originalRoleMembers, removeRoleMembers, RoleMember::getMemberName,
+                filterByNameOnly ? null : AuthzHelper::isUpdateRequired);
     }
 
     private static boolean isGroupMemberExpirationChanged(GroupMember member1, GroupMember member2) {
@@ -69,14 +71,119 @@ public class AuthzHelper {
     }
 
     public static void removeGroupMembers(List<GroupMember> originalGroupMembers, List<GroupMember> removeGroupMembers, boolean filterByNameOnly) {
-        if (removeGroupMembers == null || originalGroupMembers == null) {
+        removeMembers(originalGroupMembers, removeGroupMembers, GroupMember::getMemberName,
+                filterByNameOnly ? null : AuthzHelper::isGroupMemberExpirationChanged);
+    }
+
+    /**
+     * Remove the members from the original list that are included in the
+     * remove list. Member names are compared case-insensitively through a
+     * map of the remove members so the cost is linear in the size of both
+     * lists. If updateRequired is specified, then the member is only removed
+     * if there is a remove member with the same name that does not require
+     * an update.
+     */
+    static <T> void removeMembers(List<T> originalMembers, List<T> removeMembers, Function<T, String> memberName,
+            BiPredicate<T, T> updateRequired) {
+
+        if (removeMembers == null || originalMembers == null || removeMembers.isEmpty()) {
             return;
         }
-        for (GroupMember removeMember : removeGroupMembers) {
-            originalGroupMembers.removeIf(item ->
-                    item.getMemberName().equalsIgnoreCase(removeMember.getMemberName()) &&
-                            (filterByNameOnly || !isGroupMemberExpirationChanged(item, removeMember)));
+
+        Map<String, List<T>> removeMap = new HashMap<>(removeMembers.size() * 2);
+        for (T removeMember : removeMembers) {
+            removeMap.computeIfAbsent(memberKey(memberName.apply(removeMember)), k -> new ArrayList<>(1)).add(removeMember);
+        }
+
+        originalMembers.removeIf(item -> {
+            final List<T> matchMembers = removeMap.get(memberKey(memberName.apply(item)));
+            if (matchMembers == null) {
+                return false;
+            }
+            if (updateRequired == null) {
+                return true;
+            }
+            for (T removeMember : matchMembers) {
+                if (!updateRequired.test(item, removeMember)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Compare the current and new list of role members and return the
+     * list of added, deleted and updated members. Member names are
+     * compared case-insensitively.
+     * @param curMembers current list of role members
+     * @param newMembers new list of role members
+     * @param filterByNameOnly if true, all new members that are also included
+     *        in the current list are returned as updated members, otherwise
+     *        only the members with a changed expiration or review reminder
+     * @return member diff object
+     */
+    public static MemberDiff<RoleMember> diffRoleMembers(List<RoleMember> curMembers, List<RoleMember> newMembers,
+            boolean filterByNameOnly) {
+        return diffMembers(curMembers, newMembers, RoleMember::getMemberName,
+                filterByNameOnly ? null : AuthzHelper::isUpdateRequired);
+    }
+
+    /**
+     * Compare the current and new list of group members and return the
+     * list of added, deleted and updated members. Member names are
+     * compared case-insensitively.
+     * @param curMembers current list of group members
+     * @param newMembers new list of group members
+     * @param filterByNameOnly if true, all new members that are also included
+     *        in the current list are returned as updated members, otherwise
+     *        only the members with a changed expiration
+     * @return member diff object
+     */
+    public static MemberDiff<GroupMember> diffGroupMembers(List<GroupMember> curMembers, List<GroupMember> newMembers,
+            boolean filterByNameOnly) {
+        return diffMembers(curMembers, newMembers, GroupMember::getMemberName,
+                filterByNameOnly ? null : AuthzHelper::isGroupMemberExpirationChanged);
+    }
+
+    static <T> MemberDiff<T> diffMembers(List<T> curMembers, List<T> newMembers, Function<T, String> memberName,
+            BiPredicate<T, T> updateRequired) {
+
+        MemberDiff<T> memberDiff = new MemberDiff<>();
+        if (curMembers == null) {
+            curMembers = Collections.emptyList();
+        }
+        if (newMembers == null) {
+            newMembers = Collections.emptyList();
         }
+
+        Map<String, T> curMap = new HashMap<>(curMembers.size() * 2);
+        for (T member : curMembers) {
+            curMap.putIfAbsent(memberKey(memberName.apply(member)), member);
+        }
+
+        Set<String> newNames = new HashSet<>(newMembers.size() * 2);
+        for (T member : newMembers) {
+            final String key = memberKey(memberName.apply(member));
+            newNames.add(key);
+            final T curMember = curMap.get(key);
+            if (curMember == null) {
+                memberDiff.getAddedMembers().add(member);
+            } else if (updateRequired == null || updateRequired.test(curMember, member)) {
+                memberDiff.getUpdatedMembers().add(member);
+            }
+        }
+
+        for (T member : curMembers) {
+            if (!newNames.contains(memberKey(memberName.apply(member)))) {
+                memberDiff.getDeletedMembers().add(member);
+            }
+        }
+        return memberDiff;
+    }
+
+    private static String memberKey(final String memberName) {
+        return memberName.toLowerCase(Locale.ROOT);
     }
 
     public static boolean isMemberDisabled(Integer systemDisabled) {
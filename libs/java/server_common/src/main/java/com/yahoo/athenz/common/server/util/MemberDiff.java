@@ -0,0 +1,44 @@
+/*
+ *  Copyright The Athenz Authors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.yahoo.athenz.common.server.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of comparing the current and new list of role or group members.
+ * The added and updated members are the objects from the new list while
+ * the deleted members are the objects from the current list.
+ */
+public class MemberDiff<T> {
+
+    private final List<T> addedMembers = new ArrayList<>();
+    private final List<T> deletedMembers = new ArrayList<>();
+    private final List<T> updatedMembers = new ArrayList<>();
+
+    public List<T> getAddedMembers() {
+        return addedMembers;
+    }
+
+    public List<T> getDeletedMembers() {
+        return deletedMembers;
+    }
+
+    public List<T> getUpdatedMembers() {
+        return updatedMembers;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.common.filter.impl;
+
+import com.yahoo.athenz.common.metrics.Metric;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.mockito.Mockito;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import javax.security.auth.x500.X500Principal;
+import java.io.IOException;
+import java.security.cert.X509Certificate;
+
+import static com.yahoo.athenz.common.server.rest.Http.JAVAX_CERT_ATTR;
+import static org.testng.Assert.*;
+
+public class TokenBucketRateLimitTest {
+
+    @AfterMethod
+    public void cleanup() {
+        System.clearProperty(TokenBucketRateLimit.ATHENZ_PROP_RATE_LIMIT_RULES);
+        System.clearProperty(TokenBucketRateLimit.ATHENZ_PROP_RATE_LIMIT_DEFAULT_RULE);
+        System.clearProperty(TokenBucketRateLimit.ATHENZ_PROP_RATE_LIMIT_KEY_TYPE);
+        System.clearProperty(TokenBucketRateLimit.ATHENZ_PROP_RATE_LIMIT_MAX_BUCKETS);
+    }
+
+    private HttpServletRequest createRequest(final String uri, final String principal, final String remoteAddr) {
+        HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getRequestURI()).thenReturn(uri);
+        Mockito.when(request.getMethod()).thenReturn("POST");
+        Mockito.when(request.getRemoteAddr()).thenReturn(remoteAddr);
+        if (principal != null) {
+            X509Certificate cert = Mockito.mock(X509Certificate.class);
+            Mockito.when(cert.getSubjectX500Principal()).thenReturn(new X500Principal("CN=" + principal));
+            Mockito.when(request.getAttribute(JAVAX_CERT_ATTR)).thenReturn(new X509Certificate[] { cert });
+        }
+        return request;
+    }
+
+    @Test
+    public void testFactory() {
+        assertTrue(new TokenBucketRateLimitFactory().create() instanceof TokenBucketRateLimit);
+    }
+
+    @Test
+    public void testFilterPerPrincipal() throws IOException {
+
+        System.setProperty(TokenBucketRateLimit.ATHENZ_PROP_RATE_LIMIT_RULES,
+                "/zts/v1/oauth2/token=0.01:2, /zts/v1/instance=0.01:1");
+        TokenBucketRateLimit rateLimit = new TokenBucketRateLimit();
+        Metric metric = Mockito.mock(Metric.class);
+
+        HttpServletRequest request = createRequest("/zts/v1/oauth2/token", "sports.api", "10.1.1.1");
+        HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+
+        // we have a burst of 2 requests
+
+        assertFalse(rateLimit.filter(request, response, metric));
+        assertFalse(rateLimit.filter(request, response, metric));
+        assertTrue(rateLimit.filter(request, response, metric));
+
+        Mockito.verify(response, Mockito.times(1)).sendError(429, "Too Many Requests");
+        Mockito.verify(response, Mockito.times(1)).setHeader(Mockito.eq("Retry-After"), Mockito.anyString());
+        Mockito.verify(metric, Mockito.times(1)).increment("ratelimit_rejected", null, "sports",
+                "POST", 429, "/zts/v1/oauth2/token");
+
+        // other principals and apis have their own buckets
+
+        assertFalse(rateLimit.filter(createRequest("/zts/v1/oauth2/token", "sports.backend", "10.1.1.1"),
+                response, metric));
+        assertFalse(rateLimit.filter(createRequest("/zts/v1/instance/sys.auth.zts", "sports.api", "10.1.1.1"),
+                response, metric));
+        assertTrue(rateLimit.filter(createRequest("/zts/v1/instance/sys.auth.zts", "sports.api", "10.1.1.1"),
+                response, metric));
+
+        // requests without any rules are not limited
+
+        for (int i = 0; i < 10; i++) {
+            assertFalse(rateLimit.filter(createRequest("/zts/v1/domain", "sports.api", "10.1.1.1"), response));
+        }
+        assertEquals(rateLimit.getBucketCount(), 3);
+    }
+
+    @Test
+    public void testFilterPerDomainAndIP() {
+
+        System.setProperty(TokenBucketRateLimit.ATHENZ_PROP_RATE_LIMIT_DEFAULT_RULE, "0.01:1");
+        System.setProperty(TokenBucketRateLimit.ATHENZ_PROP_RATE_LIMIT_KEY_TYPE, "domain");
+        TokenBucketRateLimit rateLimit = new TokenBucketRateLimit();
+        HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+
+        assertFalse(rateLimit.filter(createRequest("/zts/v1/domain", "sports.api", "10.1.1.1"), response, null));
+        assertTrue(rateLimit.filter(createRequest("/zts/v1/domain", "sports.backend", "10.1.1.2"), response, null));
+        assertFalse(rateLimit.filter(createRequest("/zts/v1/domain", "weather.api", "10.1.1.1"), response, null));
+
+        // requests without certificates are keyed by their ip address
+
+        assertFalse(rateLimit.filter(createRequest("/zts/v1/domain", null, "10.1.1.1"), response, null));
+        assertTrue(rateLimit.filter(createRequest("/zts/v1/domain", null, "10.1.1.1"), response, null));
+        assertFalse(rateLimit.filter(createRequest("/zts/v1/domain", null, "10.1.1.2"), response, null));
+    }
+
+    @Test
+    public void testBucketRefill() {
+
+        TokenBucketRateLimit.Rule rule = new TokenBucketRateLimit.Rule("/zts/v1", "10:2");
+        assertEquals(rule.emissionInterval, 100_000_000L);
+        assertEquals(rule.burstTolerance, 200_000_000L);
+
+        long now = 1_000_000_000L;
+        TokenBucketRateLimit.Bucket bucket = new TokenBucketRateLimit.Bucket(now);
+        assertEquals(bucket.acquire(rule, now), 0);
+        assertEquals(bucket.acquire(rule, now), 0);
+        assertEquals(bucket.acquire(rule, now), 100_000_000L);
+
+        // after 100ms we have a single token available
+
+        now += 100_000_000L;
+        assertEquals(bucket.acquire(rule, now), 0);
+        assertTrue(bucket.acquire(rule, now) > 0);
+
+        // after an idle period we don't accumulate more than our burst
+
+        now += 10_000_000_000L;
+        assertEquals(bucket.acquire(rule, now), 0);
+        assertEquals(bucket.acquire(rule, now), 0);
+        assertTrue(bucket.acquire(rule, now) > 0);
+    }
+
+    @Test
+    public void testMaxBuckets() {
+
+        System.setProperty(TokenBucketRateLimit.ATHENZ_PROP_RATE_LIMIT_DEFAULT_RULE, "100");
+        System.setProperty(TokenBucketRateLimit.ATHENZ_PROP_RATE_LIMIT_KEY_TYPE, "ip");
+        System.setProperty(TokenBucketRateLimit.ATHENZ_PROP_RATE_LIMIT_MAX_BUCKETS, "10");
+        TokenBucketRateLimit rateLimit = new TokenBucketRateLimit();
+        HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+
+        for (int i = 0; i < 100; i++) {
+            assertFalse(rateLimit.filter(createRequest("/zms/v1/domain", "sports.api", "10.1.1." + i), response, null));
+        }
+        assertTrue(rateLimit.getBucketCount() <= 10);
+    }
+
+    @Test
+    public void testInvalidRules() {
+
+        System.setProperty(TokenBucketRateLimit.ATHENZ_PROP_RATE_LIMIT_RULES, "/zts/v1/instance");
+        assertThrows(IllegalArgumentException.class, TokenBucketRateLimit::new);
+
+        System.setProperty(TokenBucketRateLimit.ATHENZ_PROP_RATE_LIMIT_RULES, "/zts/v1/instance=0:10");
+        assertThrows(IllegalArgumentException.class, TokenBucketRateLimit::new);
+
+        System.setProperty(TokenBucketRateLimit.ATHENZ_PROP_RATE_LIMIT_RULES, "/zts/v1/instance=10:0");
+        assertThrows(IllegalArgumentException.class, TokenBucketRateLimit::new);
+
+        System.setProperty(TokenBucketRateLimit.ATHENZ_PROP_RATE_LIMIT_RULES, "/zts/v1/instance=abc");
+        assertThrows(NumberFormatException.class, TokenBucketRateLimit::new);
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.common.messaging;
+
+import com.yahoo.athenz.common.metrics.Metric;
+import org.mockito.Mockito;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class AsyncChangePublisherTest {
+
+    static final class TestPublisher implements ChangePublisher<String> {
+
+        final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger failures = new AtomicInteger(0);
+        final CountDownLatch blockLatch;
+        boolean closed = false;
+
+        TestPublisher(int failures, CountDownLatch blockLatch) {
+            this.failures.set(failures);
+            this.blockLatch = blockLatch;
+        }
+
+        @Override
+        public void publish(String message) {
+            publishBatch(Collections.singletonList(message));
+        }
+
+        @Override
+        public void publishBatch(List<String> messages) {
+            if (blockLatch != null) {
+                try {
+                    blockLatch.await();
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failures.getAndDecrement() > 0) {
+                throw new IllegalStateException("publish failure");
+            }
+            batches.add(new ArrayList<>(messages));
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        int messageCount() {
+            synchronized (batches) {
+                return batches.stream().mapToInt(List::size).sum();
+            }
+        }
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    public void testPublishBatches() throws InterruptedException {
+
+        CountDownLatch latch = new CountDownLatch(1);
+        TestPublisher testPublisher = new TestPublisher(0, latch);
+        Metric metric = Mockito.mock(Metric.class);
+        AsyncChangePublisher<String> publisher = new AsyncChangePublisher<>(testPublisher, "topic1",
+                100, 10, 3, 10, metric);
+
+        // the first message is picked up by the dispatcher which
+        // is blocked so the remaining messages are queued
+
+        publisher.publish("message0");
+        waitFor(() -> publisher.getQueueSize() == 0);
+        for (int i = 1; i < 25; i++) {
+            publisher.publish("message" + i);
+        }
+        assertEquals(publisher.getQueueSize(), 24);
+        assertTrue(publisher.getLagMillis() >= 0);
+
+        // while the dispatcher is blocked the gauges report the
+        // queued messages and the lag of the in-flight batch
+
+        TimeUnit.MILLISECONDS.sleep(5);
+        publisher.reportGauges();
+        Mockito.verify(metric, Mockito.times(1)).setGauge(AsyncChangePublisher.METRIC_QUEUE_DEPTH, 24L,
+                AsyncChangePublisher.METRIC_ATTR_PUBLISHER, "topic1");
+        Mockito.verify(metric, Mockito.times(1)).setGauge(Mockito.eq(AsyncChangePublisher.METRIC_CURRENT_LAG),
+                Mockito.longThat(lag -> lag > 0), Mockito.eq(AsyncChangePublisher.METRIC_ATTR_PUBLISHER),
+                Mockito.eq("topic1"));
+
+        latch.countDown();
+        waitFor(() -> testPublisher.messageCount() == 25);
+
+        // the queued messages are published in batches of 10
+
+        assertEquals(testPublisher.batches.size(), 4);
+        assertEquals(testPublisher.batches.get(0), Collections.singletonList("message0"));
+        assertEquals(testPublisher.batches.get(1).size(), 10);
+        assertEquals(testPublisher.batches.get(1).get(0), "message1");
+        assertEquals(testPublisher.batches.get(3).size(), 4);
+
+        waitFor(() -> publisher.getPublishedCount() == 25);
+        assertEquals(publisher.getLagMillis(), 0);
+        assertEquals(publisher.getDroppedCount(), 0);
+        assertEquals(publisher.getFailedCount(), 0);
+        Mockito.verify(metric, Mockito.times(4)).increment(Mockito.eq(AsyncChangePublisher.METRIC_PUBLISHED),
+                Mockito.anyLong(), Mockito.eq(AsyncChangePublisher.METRIC_ATTR_PUBLISHER), Mockito.eq("topic1"));
+
+        publisher.close();
+        assertTrue(testPublisher.closed);
+
+        // the final gauges are reported when the publisher is closed
+
+        Mockito.verify(metric, Mockito.times(1)).setGauge(AsyncChangePublisher.METRIC_QUEUE_DEPTH, 0L,
+                AsyncChangePublisher.METRIC_ATTR_PUBLISHER, "topic1");
+
+        // once closed no messages are accepted
+
+        publisher.publish("message-closed");
+        assertEquals(publisher.getDroppedCount(), 1);
+    }
+
+    @Test
+    public void testPublishRetries() throws InterruptedException {
+
+        TestPublisher testPublisher = new TestPublisher(2, null);
+        AsyncChangePublisher<String> publisher = new AsyncChangePublisher<>(testPublisher, "topic1",
+                100, 10, 3, 1, null);
+
+        publisher.publishBatch(List.of("message1", "message2"));
+        waitFor(() -> publisher.getPublishedCount() == 2);
+        assertEquals(testPublisher.messageCount(), 2);
+        assertEquals(publisher.getFailedCount(), 0);
+        assertTrue(publisher.getRetriedCount() >= 2);
+        publisher.close();
+    }
+
+    @Test
+    public void testPublishFailures() throws InterruptedException {
+
+        TestPublisher testPublisher = new TestPublisher(Integer.MAX_VALUE, null);
+        Metric metric = Mockito.mock(Metric.class);
+        AsyncChangePublisher<String> publisher = new AsyncChangePublisher<>(testPublisher, "topic1",
+                100, 10, 1, 1, metric);
+
+        publisher.publish("message1");
+        waitFor(() -> publisher.getFailedCount() == 1);
+        assertEquals(publisher.getRetriedCount(), 1);
+        assertEquals(publisher.getPublishedCount(), 0);
+        Mockito.verify(metric, Mockito.times(1)).increment(AsyncChangePublisher.METRIC_FAILED, 1L,
+                AsyncChangePublisher.METRIC_ATTR_PUBLISHER, "topic1");
+        publisher.close();
+    }
+
+    @Test
+    public void testQueueFull() throws InterruptedException {
+
+        CountDownLatch latch = new CountDownLatch(1);
+        TestPublisher testPublisher = new TestPublisher(0, latch);
+        AsyncChangePublisher<String> publisher = new AsyncChangePublisher<>(testPublisher, "topic1",
+                2, 10, 0, 0, null);
+
+        publisher.publish("message1");
+        waitFor(() -> publisher.getQueueSize() == 0);
+        publisher.publish("message2");
+        publisher.publish("message3");
+        publisher.publish("message4");
+        assertEquals(publisher.getDroppedCount(), 1);
+        assertTrue(publisher.getLagMillis() >= 0);
+
+        // closing the publisher publishes the queued messages
+
+        latch.countDown();
+        publisher.close();
+        assertEquals(testPublisher.messageCount(), 3);
+        assertTrue(testPublisher.closed);
+    }
+
+    @Test
+    public void testCloseTimeout() throws InterruptedException {
+
+        CountDownLatch latch = new CountDownLatch(1);
+        TestPublisher testPublisher = new TestPublisher(0, latch);
+        AsyncChangePublisher<String> publisher = new AsyncChangePublisher<>(testPublisher, "topic1",
+                10, 10, 0, 0, null);
+
+        publisher.publish("message1");
+        waitFor(() -> publisher.getQueueSize() == 0);
+        publisher.publish("message2");
+
+        // the dispatcher is blocked so we'll time out and
+        // close the publisher with the message still queued
+
+        publisher.close(10);
+        assertTrue(testPublisher.closed);
+        assertEquals(publisher.getQueueSize(), 1);
+    }
+
+    @Test
+    public void testReportGaugesFailure() {
+
+        Metric metric = Mockito.mock(Metric.class);
+        Mockito.doThrow(new IllegalStateException("metric failure")).when(metric)
+                .setGauge(Mockito.anyString(), Mockito.anyLong(), Mockito.any(String[].class));
+        AsyncChangePublisher<String> publisher = new AsyncChangePublisher<>(new TestPublisher(0, null),
+                "topic1", 10, 10, 3, 100, metric);
+
+        // metric failures are not propagated
+
+        publisher.reportGauges();
+        publisher.close();
+    }
+
+    @Test
+    public void testRetryDelay() {
+
+        AsyncChangePublisher<String> publisher = new AsyncChangePublisher<>(new TestPublisher(0, null),
+                "topic1", 10, 10, 3, 100, null);
+        assertEquals(publisher.getRetryDelay(0), 100);
+        assertEquals(publisher.getRetryDelay(1), 200);
+        assertEquals(publisher.getRetryDelay(3), 800);
+        assertEquals(publisher.getRetryDelay(20), AsyncChangePublisher.MAX_RETRY_DELAY_MS);
+        publisher.close();
+    }
+
+    @Test
+    public void testDefaultPublishBatch() {
+
+        List<String> messages = new ArrayList<>();
+        ChangePublisher<String> publisher = new ChangePublisher<>() {
+            @Override
+            public void publish(String message) {
+                messages.add(message);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        publisher.publishBatch(List.of("message1", "message2"));
+        assertEquals(messages, List.of("message1", "message2"));
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.common.metrics.impl;
+
+import com.yahoo.athenz.common.metrics.Metric;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.testng.Assert.*;
+
+public class HistogramMetricTest {
+
+    @AfterMethod
+    public void cleanup() {
+        System.clearProperty(HistogramMetric.ATHENZ_PROP_METRIC_MAX_SERIES);
+        System.clearProperty(HistogramMetric.ATHENZ_PROP_METRIC_MAX_HISTOGRAM_SERIES);
+        System.clearProperty(HistogramMetric.ATHENZ_PROP_METRIC_PREFIX);
+    }
+
+    private String writeMetrics(HistogramMetric metric) throws IOException {
+        StringWriter writer = new StringWriter();
+        metric.writeMetrics(writer);
+        return writer.toString();
+    }
+
+    @Test
+    public void testFactory() {
+        Metric metric = new HistogramMetricFactory().create();
+        assertTrue(metric instanceof HistogramMetric);
+        assertSame(new HistogramMetricFactory().create(), metric);
+        assertSame(HistogramMetricFactory.getCreatedMetric(), metric);
+        metric.flush();
+        metric.quit();
+    }
+
+    @Test
+    public void testCounters() throws IOException {
+
+        HistogramMetric metric = new HistogramMetric();
+        metric.increment("request");
+        metric.increment("request");
+        metric.increment("request", "sports");
+        metric.increment("request", "sports", 5);
+        metric.increment("request", "sports", "weather", "POST", 200, "postRole");
+        metric.increment("cert.issued", "sports\"\\\n");
+        metric.increment(null);
+
+        final String output = writeMetrics(metric);
+        assertTrue(output.contains("# TYPE athenz_request_total counter\n"));
+        assertTrue(output.contains("athenz_request_total 2\n"));
+        assertTrue(output.contains("athenz_request_total{domain=\"sports\"} 6\n"));
+        assertTrue(output.contains("athenz_request_total{domain=\"sports\",method=\"POST\",status=\"200\",api=\"postRole\"} 1\n"));
+        assertTrue(output.contains("athenz_cert_issued_total{domain=\"sports\\\"\\\\\\n\"} 1\n"));
+        assertEquals(metric.getSeriesCount(), 4);
+    }
+
+    @Test
+    public void testAttributeCountersAndGauges() throws IOException {
+
+        HistogramMetric metric = new HistogramMetric();
+        metric.increment("async_log_dropped", 1, "writer", "audit");
+        metric.increment("async_log_dropped", 2, "writer", "audit");
+        metric.increment("async_log_dropped", 1, "writer", "access");
+        metric.increment(null, 1, "writer", "audit");
+        metric.setGauge("async_log_queue_depth", 10, "writer", "audit");
+        metric.setGauge("async_log_queue_depth", 5, "writer", "audit");
+        metric.setGauge(null, 5, "writer", "audit");
+
+        final String output = writeMetrics(metric);
+        assertTrue(output.contains("athenz_async_log_dropped_total{writer=\"audit\"} 3\n"));
+        assertTrue(output.contains("athenz_async_log_dropped_total{writer=\"access\"} 1\n"));
+        assertTrue(output.contains("# TYPE athenz_async_log_queue_depth gauge\n"));
+        assertTrue(output.contains("athenz_async_log_queue_depth{writer=\"audit\"} 5\n"));
+        assertEquals(metric.getSeriesCount(), 3);
+    }
+
+    @Test
+    public void testTimers() throws IOException {
+
+        System.setProperty(HistogramMetric.ATHENZ_PROP_METRIC_PREFIX, "zts_");
+        HistogramMetric metric = new HistogramMetric();
+
+        Object timer = metric.startTiming("request_timing", "sports", "weather", "GET", "getRole");
+        metric.stopTiming(timer, "sports", "weather", "GET", 200, "getRole");
+
+        // stopping the same timer again is ignored
+
+        metric.stopTiming(timer, "sports", "weather", "GET", 200, "getRole");
+
+        // each request gets its own timer object
+
+        Object timer2 = metric.startTiming("request_timing", "sports");
+        assertNotSame(timer2, timer);
+        metric.stopTiming(timer2);
+
+        metric.stopTiming(null);
+        metric.stopTiming(new Object(), "sports", null, "GET", 200, "getRole");
+
+        final String output = writeMetrics(metric);
+        assertTrue(output.contains("# TYPE zts_request_timing_seconds summary\n"));
+        assertTrue(output.contains("zts_request_timing_seconds{domain=\"sports\",method=\"GET\",status=\"200\",api=\"getRole\",quantile=\"0.99\"} "));
+        assertTrue(output.contains("zts_request_timing_seconds_count{domain=\"sports\",method=\"GET\",status=\"200\",api=\"getRole\"} 1\n"));
+        assertTrue(output.contains("zts_request_timing_seconds_count{domain=\"sports\"} 1\n"));
+        assertTrue(output.contains("zts_request_timing_seconds_sum{domain=\"sports\"} "));
+        assertEquals(metric.getContentType(), HistogramMetric.CONTENT_TYPE);
+    }
+
+    @Test
+    public void testMaxSeries() throws IOException {
+
+        System.setProperty(HistogramMetric.ATHENZ_PROP_METRIC_MAX_SERIES, "5");
+        HistogramMetric metric = new HistogramMetric();
+
+        for (int i = 0; i < 20; i++) {
+            metric.increment("request", "domain" + i);
+            metric.stopTiming(metric.startTiming("request_timing", "domain" + i));
+        }
+        metric.increment("request", "domain0");
+
+        // once we reach our limit the remaining domains are recorded as other
+
+        assertEquals(metric.getSeriesCount(), 7);
+        final String output = writeMetrics(metric);
+        assertTrue(output.contains("athenz_request_total{domain=\"domain0\"} 2\n"));
+        assertTrue(output.contains("athenz_request_total{domain=\"_other_\"} 17\n"));
+        assertTrue(output.contains("athenz_request_timing_seconds_count{domain=\"_other_\"} 18\n"));
+    }
+
+    @Test
+    public void testMaxHistogramSeries() throws IOException {
+
+        System.setProperty(HistogramMetric.ATHENZ_PROP_METRIC_MAX_HISTOGRAM_SERIES, "3");
+        HistogramMetric metric = new HistogramMetric();
+
+        for (int i = 0; i < 10; i++) {
+            metric.increment("request", "domain" + i);
+            metric.stopTiming(metric.startTiming("request_timing", "domain" + i));
+        }
+
+        // counters are still recorded per domain while the histograms
+        // beyond our limit are recorded as other
+
+        assertEquals(metric.getSeriesCount(), 14);
+        final String output = writeMetrics(metric);
+        assertTrue(output.contains("athenz_request_total{domain=\"domain9\"} 1\n"));
+        assertTrue(output.contains("athenz_request_timing_seconds_count{domain=\"domain2\"} 1\n"));
+        assertFalse(output.contains("athenz_request_timing_seconds_count{domain=\"domain3\"}"));
+        assertTrue(output.contains("athenz_request_timing_seconds_count{domain=\"_other_\"} 7\n"));
+    }
+}
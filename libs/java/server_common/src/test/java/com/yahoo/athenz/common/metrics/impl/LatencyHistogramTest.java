@@ -0,0 +1,107 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.common.metrics.impl;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketIndex() {
+
+        assertEquals(LatencyHistogram.bucketIndex(-1), 0);
+        assertEquals(LatencyHistogram.bucketIndex(0), 0);
+        assertEquals(LatencyHistogram.bucketIndex(63), 63);
+        assertEquals(LatencyHistogram.bucketIndex(64), 64);
+        assertEquals(LatencyHistogram.bucketIndex(65), 64);
+        assertEquals(LatencyHistogram.bucketIndex(66), 65);
+        assertEquals(LatencyHistogram.bucketIndex(128), 96);
+        assertEquals(LatencyHistogram.bucketIndex((1L << 26) - 1), LatencyHistogram.BUCKET_COUNT - 1);
+        assertEquals(LatencyHistogram.bucketIndex(1L << 26), LatencyHistogram.BUCKET_COUNT - 1);
+        assertEquals(LatencyHistogram.bucketIndex(Long.MAX_VALUE), LatencyHistogram.BUCKET_COUNT - 1);
+        assertEquals(LatencyHistogram.BUCKET_COUNT, 704);
+
+        // each value must be within its bucket range with a max
+        // relative error of 1/32
+
+        for (long value = 1; value < (1L << 26); value = value * 3 + 7) {
+            int index = LatencyHistogram.bucketIndex(value);
+            long upperBound = LatencyHistogram.bucketUpperBound(index);
+            assertTrue(upperBound >= value, "value: " + value);
+            assertTrue(upperBound - value <= value / 32, "value: " + value);
+            if (index > 0) {
+                assertTrue(LatencyHistogram.bucketUpperBound(index - 1) < value, "value: " + value);
+            }
+        }
+    }
+
+    @Test
+    public void testQuantiles() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(histogram.getValuesAtQuantiles(new double[] { 0.5, 0.99 }), new long[] { 0, 0 });
+
+        for (long value = 1; value <= 10000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(histogram.getCount(), 10000);
+        assertEquals(histogram.getSum(), 50005000);
+        assertEquals(histogram.getMax(), 10000);
+
+        long[] values = histogram.getValuesAtQuantiles(new double[] { 0.5, 0.9, 0.99, 0.999, 1.0 });
+        assertTrue(Math.abs(values[0] - 5000) <= 5000 / 32);
+        assertTrue(Math.abs(values[1] - 9000) <= 9000 / 32);
+        assertTrue(Math.abs(values[2] - 9900) <= 9900 / 32);
+        assertTrue(Math.abs(values[3] - 9990) <= 9990 / 32);
+        assertEquals(values[4], 10000);
+    }
+
+    @Test
+    public void testQuantileWindows() {
+
+        LatencyHistogram histogram = new LatencyHistogram(1000);
+        final double[] quantiles = { 0.5, 1.0 };
+
+        // values from the current and previous windows are included
+
+        histogram.record(40, 10000);
+        histogram.record(60, 11500);
+        assertEquals(histogram.getValuesAtQuantiles(quantiles, 11500), new long[] { 40, 60 });
+        assertEquals(histogram.getMax(11500), 60);
+
+        // once the window is older than the previous window it's
+        // no longer included in the quantiles
+
+        assertEquals(histogram.getValuesAtQuantiles(quantiles, 12100), new long[] { 60, 60 });
+
+        // recording in a new window resets the oldest window
+
+        histogram.record(50, 12100);
+        histogram.record(50, 12200);
+        assertEquals(histogram.getValuesAtQuantiles(quantiles, 12200), new long[] { 50, 60 });
+        assertEquals(histogram.getMax(13100), 50);
+
+        // without recent values there are no quantiles but the
+        // count and sum are cumulative
+
+        assertEquals(histogram.getValuesAtQuantiles(quantiles, 20000), new long[] { 0, 0 });
+        assertEquals(histogram.getMax(20000), 0);
+        assertEquals(histogram.getCount(), 4);
+        assertEquals(histogram.getSum(), 200);
+    }
+}
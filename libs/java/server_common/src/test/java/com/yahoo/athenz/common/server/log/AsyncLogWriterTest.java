@@ -0,0 +1,164 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.common.server.log;
+
+import com.yahoo.athenz.common.metrics.Metric;
+import org.mockito.Mockito;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class AsyncLogWriterTest {
+
+    @Test
+    public void testWriteEntries() {
+
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        AsyncLogWriter logWriter = new AsyncLogWriter("test-log", entries -> {
+            batchSizes.add(entries.size());
+            written.addAll(entries);
+        }, 1000, 10, true);
+
+        for (int i = 0; i < 100; i++) {
+            logWriter.write("entry-" + i);
+        }
+        logWriter.close();
+
+        // all entries are written in order and within batch limits
+
+        assertEquals(written.size(), 100);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(written.get(i), "entry-" + i);
+        }
+        for (int batchSize : batchSizes) {
+            assertTrue(batchSize <= 10);
+        }
+        assertEquals(logWriter.getWrittenCount(), 100);
+        assertEquals(logWriter.getDroppedCount(), 0);
+        assertEquals(logWriter.getQueueDepth(), 0);
+
+        // once closed the entries are written directly
+
+        logWriter.write("entry-closed");
+        assertEquals(written.get(100), "entry-closed");
+        assertEquals(logWriter.getWrittenCount(), 101);
+    }
+
+    @Test
+    public void testDropWhenFull() throws InterruptedException {
+
+        CountDownLatch writerBlocked = new CountDownLatch(1);
+        CountDownLatch releaseWriter = new CountDownLatch(1);
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        AsyncLogWriter logWriter = new AsyncLogWriter("test-log", entries -> {
+            writerBlocked.countDown();
+            try {
+                releaseWriter.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            written.addAll(entries);
+        }, 5, 1, false);
+        Metric metric = Mockito.mock(Metric.class);
+        logWriter.setMetric(metric);
+
+        // first entry blocks our writer thread so the remaining
+        // entries are kept in the queue until it's full
+
+        logWriter.write("entry-0");
+        assertTrue(writerBlocked.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i <= 10; i++) {
+            logWriter.write("entry-" + i);
+        }
+        assertEquals(logWriter.getQueueDepth(), 5);
+        assertEquals(logWriter.getDroppedCount(), 5);
+
+        logWriter.reportDroppedEntries();
+        logWriter.reportQueueDepth();
+        Mockito.verify(metric, Mockito.times(5)).increment(AsyncLogWriter.METRIC_DROPPED, 1,
+                AsyncLogWriter.METRIC_ATTR_WRITER, "test-log");
+        Mockito.verify(metric, Mockito.times(1)).setGauge(AsyncLogWriter.METRIC_QUEUE_DEPTH, 5,
+                AsyncLogWriter.METRIC_ATTR_WRITER, "test-log");
+
+        releaseWriter.countDown();
+        logWriter.close();
+        assertEquals(written.size(), 6);
+        assertEquals(written.get(5), "entry-5");
+    }
+
+    @Test
+    public void testReportQueueDepth() {
+
+        AsyncLogWriter logWriter = new AsyncLogWriter("test-log", entries -> { }, 10, 10, true);
+
+        // without a metric object there is nothing to report
+
+        logWriter.reportQueueDepth();
+
+        Metric metric = Mockito.mock(Metric.class);
+        logWriter.setMetric(metric);
+        logWriter.close();
+
+        // the gauge is reported at most once per interval
+
+        logWriter.reportQueueDepth();
+        logWriter.reportQueueDepth();
+        Mockito.verify(metric, Mockito.atMost(1)).setGauge(AsyncLogWriter.METRIC_QUEUE_DEPTH, 0,
+                AsyncLogWriter.METRIC_ATTR_WRITER, "test-log");
+    }
+
+    @Test
+    public void testCloseDrainsQueue() {
+
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        AsyncLogWriter logWriter = new AsyncLogWriter("test-log", written::addAll, 10, 10, true);
+        logWriter.close();
+
+        // entries added to the queue after the writer thread has
+        // completed are written by the caller
+
+        logWriter.write("entry-1");
+        assertEquals(written, Collections.singletonList("entry-1"));
+        assertEquals(logWriter.getQueueDepth(), 0);
+    }
+
+    @Test
+    public void testWriteFailure() {
+
+        AsyncLogWriter logWriter = new AsyncLogWriter("test-log", entries -> {
+            throw new IOException("disk failure");
+        }, 10, 10, true);
+
+        logWriter.write("entry-1");
+        logWriter.close();
+        assertEquals(logWriter.getWrittenCount(), 0);
+    }
+
+    @Test
+    public void testInvalidSizes() {
+        assertThrows(IllegalArgumentException.class, () -> new AsyncLogWriter("test-log", entries -> { },
+                0, 10, true));
+        assertThrows(IllegalArgumentException.class, () -> new AsyncLogWriter("test-log", entries -> { },
+                10, 0, true));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.common.server.log.impl;
+
+import com.yahoo.athenz.common.metrics.Metric;
+import com.yahoo.athenz.common.server.log.AuditLogMsgBuilder;
+import com.yahoo.athenz.common.server.log.AuditLogger;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class AsyncAuditLoggerTest {
+
+    @Test
+    public void testLogFactory() {
+        AuditLogger auditLogger = new AsyncAuditLoggerFactory().create();
+        assertTrue(auditLogger instanceof AsyncAuditLogger);
+        assertTrue(auditLogger.getMsgBuilder() instanceof DefaultAuditLogMsgBuilder);
+        auditLogger.close();
+    }
+
+    @Test
+    public void testLogMessages() {
+
+        System.setProperty(AsyncAuditLogger.ATHENZ_PROP_AUDIT_ASYNC_QUEUE_SIZE, "10");
+        System.setProperty(AsyncAuditLogger.ATHENZ_PROP_AUDIT_ASYNC_BATCH_SIZE, "2");
+
+        Logger logger = Mockito.mock(Logger.class);
+        AsyncAuditLogger auditLogger = new AsyncAuditLogger(logger);
+
+        auditLogger.log("audit-msg-1", "VERS=(test);");
+        AuditLogMsgBuilder msgBldr = auditLogger.getMsgBuilder();
+        msgBldr.whatApi("putRole").whatDomain("athenz");
+        auditLogger.log(msgBldr);
+        auditLogger.log(null);
+
+        auditLogger.close();
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(logger, Mockito.times(2)).info(captor.capture());
+        assertEquals(captor.getAllValues().get(0), "audit-msg-1");
+        assertTrue(captor.getAllValues().get(1).contains("putRole"));
+        assertEquals(auditLogger.getLogWriter().getWrittenCount(), 2);
+
+        System.clearProperty(AsyncAuditLogger.ATHENZ_PROP_AUDIT_ASYNC_QUEUE_SIZE);
+        System.clearProperty(AsyncAuditLogger.ATHENZ_PROP_AUDIT_ASYNC_BATCH_SIZE);
+    }
+
+    @Test
+    public void testCloseWritesQueuedMessages() {
+
+        Logger logger = Mockito.mock(Logger.class);
+        AsyncAuditLogger auditLogger = new AsyncAuditLogger(logger);
+
+        Metric metric = Mockito.mock(Metric.class);
+        auditLogger.setMetric(metric);
+
+        for (int i = 0; i < 100; i++) {
+            auditLogger.log("audit-msg-" + i, null);
+        }
+        auditLogger.close();
+        Mockito.verify(logger, Mockito.times(100)).info(Mockito.anyString());
+        assertEquals(auditLogger.getLogWriter().getQueueDepth(), 0);
+
+        // closing the logger again is a no-op
+
+        auditLogger.close();
+    }
+
+    @Test
+    public void testDefaultLifecycleMethods() {
+        AuditLogger auditLogger = new DefaultAuditLogger();
+        auditLogger.setMetric(Mockito.mock(Metric.class));
+        auditLogger.close();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.common.server.log.jetty;
+
+import com.yahoo.athenz.common.metrics.Metric;
+import com.yahoo.athenz.common.server.log.AsyncLogWriter;
+import org.eclipse.jetty.server.RequestLog;
+import org.mockito.Mockito;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+
+import static org.testng.Assert.*;
+
+public class AsyncRequestLogWriterTest {
+
+    @Test
+    public void testWriteBeforeStart() throws Exception {
+
+        RequestLog.Writer writer = Mockito.mock(RequestLog.Writer.class);
+        AsyncRequestLogWriter logWriter = new AsyncRequestLogWriter(writer, 10, 10, false, true);
+        logWriter.write("entry-1");
+        Mockito.verify(writer, Mockito.times(1)).write("entry-1");
+        assertNull(logWriter.getLogWriter());
+    }
+
+    @Test
+    public void testWriteAsync() throws Exception {
+
+        RequestLog.Writer writer = Mockito.mock(RequestLog.Writer.class);
+        AsyncRequestLogWriter logWriter = new AsyncRequestLogWriter(writer, 100, 10, true, false);
+        logWriter.start();
+        assertNotNull(logWriter.getLogWriter());
+
+        logWriter.write("entry-1");
+        logWriter.write("entry-2");
+        logWriter.stop();
+
+        // all entries are flushed on stop
+
+        Mockito.verify(writer, Mockito.times(1)).write("entry-1");
+        Mockito.verify(writer, Mockito.times(1)).write("entry-2");
+        assertNull(logWriter.getLogWriter());
+    }
+
+    @Test
+    public void testSetMetric() throws Exception {
+
+        RequestLog.Writer writer = Mockito.mock(RequestLog.Writer.class);
+        Metric metric = Mockito.mock(Metric.class);
+
+        // metric set before the writer is started
+
+        AsyncRequestLogWriter logWriter = new AsyncRequestLogWriter(writer, 100, 10, true, false);
+        logWriter.setMetric(metric);
+        logWriter.start();
+        assertEquals(getWriterMetric(logWriter.getLogWriter()), metric);
+        logWriter.stop();
+
+        // metric set after the writer is started
+
+        Metric metric2 = Mockito.mock(Metric.class);
+        logWriter = new AsyncRequestLogWriter(writer, 100, 10, true, false);
+        logWriter.start();
+        assertNull(getWriterMetric(logWriter.getLogWriter()));
+        logWriter.setMetric(metric2);
+        assertEquals(getWriterMetric(logWriter.getLogWriter()), metric2);
+        logWriter.stop();
+    }
+
+    private Metric getWriterMetric(AsyncLogWriter asyncLogWriter) throws Exception {
+        Field field = AsyncLogWriter.class.getDeclaredField("metric");
+        field.setAccessible(true);
+        return (Metric) field.get(asyncLogWriter);
+    }
+
+    @Test
+    public void testBatchWrites() throws Exception {
+
+        final String lineSeparator = System.lineSeparator();
+        RequestLog.Writer writer = Mockito.mock(RequestLog.Writer.class);
+        AsyncRequestLogWriter logWriter = new AsyncRequestLogWriter(writer, 100, 10, true, true);
+
+        logWriter.writeEntries(Arrays.asList("entry-1", "entry-2", "entry-3"));
+        Mockito.verify(writer, Mockito.times(1)).write("entry-1" + lineSeparator + "entry-2"
+                + lineSeparator + "entry-3");
+
+        logWriter.writeEntries(Arrays.asList("entry-4"));
+        Mockito.verify(writer, Mockito.times(1)).write("entry-4");
+
+        // our buffer is reused between batches
+
+        logWriter.writeEntries(Arrays.asList("entry-5", "entry-6"));
+        Mockito.verify(writer, Mockito.times(1)).write("entry-5" + lineSeparator + "entry-6");
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.common.server.store;
+
+import com.yahoo.athenz.common.server.ServerResourceException;
+import com.yahoo.athenz.zms.GroupMember;
+import com.yahoo.athenz.zms.RoleMember;
+import org.mockito.Mockito;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class ObjectStoreConnectionTest {
+
+    @Test
+    public void testInsertRoleMembers() throws ServerResourceException {
+
+        ObjectStoreConnection con = Mockito.mock(ObjectStoreConnection.class);
+        Mockito.when(con.insertRoleMembers(any(), any(), any(), any(), any())).thenCallRealMethod();
+
+        RoleMember member1 = new RoleMember().setMemberName("user.joe");
+        RoleMember member2 = new RoleMember().setMemberName("user.jane");
+        RoleMember member3 = new RoleMember().setMemberName("user.john");
+        List<RoleMember> roleMembers = Arrays.asList(member1, member2, member3);
+
+        assertTrue(con.insertRoleMembers("sports", "readers", Collections.emptyList(), "user.admin", "audit"));
+        Mockito.verify(con, Mockito.never()).insertRoleMember(any(), any(), any(), any(), any());
+
+        Mockito.when(con.insertRoleMember(eq("sports"), eq("readers"), any(), eq("user.admin"), eq("audit")))
+                .thenReturn(true);
+        assertTrue(con.insertRoleMembers("sports", "readers", roleMembers, "user.admin", "audit"));
+        Mockito.verify(con, Mockito.times(3)).insertRoleMember(any(), any(), any(), any(), any());
+
+        // processing stops at the first failure
+
+        Mockito.when(con.insertRoleMember("sports", "readers", member2, "user.admin", "audit")).thenReturn(false);
+        assertFalse(con.insertRoleMembers("sports", "readers", roleMembers, "user.admin", "audit"));
+        Mockito.verify(con, Mockito.times(1)).insertRoleMember("sports", "readers", member3, "user.admin", "audit");
+    }
+
+    @Test
+    public void testInsertGroupMembers() throws ServerResourceException {
+
+        ObjectStoreConnection con = Mockito.mock(ObjectStoreConnection.class);
+        Mockito.when(con.insertGroupMembers(any(), any(), any(), any(), any())).thenCallRealMethod();
+
+        GroupMember member1 = new GroupMember().setMemberName("user.joe");
+        GroupMember member2 = new GroupMember().setMemberName("user.jane");
+        GroupMember member3 = new GroupMember().setMemberName("user.john");
+        List<GroupMember> groupMembers = Arrays.asList(member1, member2, member3);
+
+        assertTrue(con.insertGroupMembers("sports", "devs", Collections.emptyList(), "user.admin", "audit"));
+        Mockito.verify(con, Mockito.never()).insertGroupMember(any(), any(), any(), any(), any());
+
+        Mockito.when(con.insertGroupMember(eq("sports"), eq("devs"), any(), eq("user.admin"), eq("audit")))
+                .thenReturn(true);
+        assertTrue(con.insertGroupMembers("sports", "devs", groupMembers, "user.admin", "audit"));
+        Mockito.verify(con, Mockito.times(3)).insertGroupMember(any(), any(), any(), any(), any());
+
+        // processing stops at the first failure
+
+        Mockito.when(con.insertGroupMember("sports", "devs", member2, "user.admin", "audit")).thenReturn(false);
+        assertFalse(con.insertGroupMembers("sports", "devs", groupMembers, "user.admin", "audit"));
+        Mockito.verify(con, Mockito.times(1)).insertGroupMember("sports", "devs", member3, "user.admin", "audit");
+    }
+}
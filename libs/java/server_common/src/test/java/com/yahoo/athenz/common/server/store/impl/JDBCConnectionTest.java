@@ -17515,4 +17515,200 @@ public class JDBCConnectionTest {
         }
         jdbcConn.close();
     }
+
+    @Test
+    public void testInsertRoleMembers() throws Exception {
+
+        JDBCConnection jdbcConn = new JDBCConnection(mockConn, true);
+
+        Mockito.when(mockResultSet.getInt(1))
+                .thenReturn(5) // domain id
+                .thenReturn(7) // role id
+                .thenReturn(3) // principal domain id
+                .thenReturn(10) // user.user2 principal id
+                .thenReturn(9) // user.user1 principal id after insert
+                .thenReturn(10); // existing role member principal id
+        Mockito.when(mockResultSet.getString(2))
+                .thenReturn("user.user2")
+                .thenReturn("user.user1");
+        Mockito.when(mockResultSet.next())
+                .thenReturn(true) // domain id
+                .thenReturn(true) // role id
+                .thenReturn(true) // validate principal domain
+                .thenReturn(true).thenReturn(false) // principal id lookup
+                .thenReturn(true).thenReturn(false) // principal id lookup after insert
+                .thenReturn(true).thenReturn(false); // existing role members
+        Mockito.when(mockPrepStmt.executeBatch()).thenReturn(new int[]{1});
+
+        List<RoleMember> roleMembers = Arrays.asList(new RoleMember().setMemberName("user.user1"),
+                new RoleMember().setMemberName("user.user2"));
+        assertTrue(jdbcConn.insertRoleMembers("my-domain", "role1", roleMembers, "user.admin", "audit-ref"));
+
+        // one new principal, one new member, one updated member and two audit log entries
+
+        Mockito.verify(mockPrepStmt, times(5)).addBatch();
+        Mockito.verify(mockPrepStmt, times(4)).executeBatch();
+        Mockito.verify(mockPrepStmt, times(0)).executeUpdate();
+        Mockito.verify(mockPrepStmt, times(1)).setString(4, "ADD");
+        Mockito.verify(mockPrepStmt, times(1)).setString(4, "UPDATE");
+        Mockito.verify(mockPrepStmt, times(1)).setInt(2, 9);
+        Mockito.verify(mockPrepStmt, times(1)).setInt(7, 10);
+
+        // the new principal is inserted without ignoring errors
+
+        Mockito.verify(mockConn, times(1)).prepareStatement(
+                "INSERT INTO principal (name) VALUES (?) ON DUPLICATE KEY UPDATE name=name;");
+        Mockito.verify(mockConn, times(0)).prepareStatement(ArgumentMatchers.startsWith("INSERT IGNORE"));
+        jdbcConn.close();
+    }
+
+    @Test
+    public void testInsertRoleMembersEmptyList() throws Exception {
+        JDBCConnection jdbcConn = new JDBCConnection(mockConn, true);
+        assertTrue(jdbcConn.insertRoleMembers("my-domain", "role1", Collections.emptyList(), "user.admin", "audit-ref"));
+        assertTrue(jdbcConn.insertRoleMembers("my-domain", "role1", null, "user.admin", "audit-ref"));
+        Mockito.verify(mockConn, times(0)).prepareStatement(ArgumentMatchers.isA(String.class));
+        jdbcConn.close();
+    }
+
+    @Test
+    public void testInsertRoleMembersInsertFailure() throws Exception {
+
+        JDBCConnection jdbcConn = new JDBCConnection(mockConn, true);
+
+        Mockito.when(mockResultSet.getInt(1))
+                .thenReturn(5) // domain id
+                .thenReturn(7) // role id
+                .thenReturn(3) // principal domain id
+                .thenReturn(9); // principal id
+        Mockito.when(mockResultSet.getString(2)).thenReturn("user.user1");
+        Mockito.when(mockResultSet.next())
+                .thenReturn(true) // domain id
+                .thenReturn(true) // role id
+                .thenReturn(true) // validate principal domain
+                .thenReturn(true).thenReturn(false) // principal id lookup
+                .thenReturn(false); // existing role members
+        Mockito.when(mockPrepStmt.executeBatch()).thenReturn(new int[]{0});
+
+        assertFalse(jdbcConn.insertRoleMembers("my-domain", "role1",
+                Collections.singletonList(new RoleMember().setMemberName("user.user1")), "user.admin", "audit-ref"));
+        jdbcConn.close();
+    }
+
+    @Test
+    public void testInsertRoleMembersInvalidPrincipalDomain() throws Exception {
+
+        JDBCConnection jdbcConn = new JDBCConnection(mockConn, true);
+
+        Mockito.when(mockResultSet.getInt(1))
+                .thenReturn(5) // domain id
+                .thenReturn(7); // role id
+        Mockito.when(mockResultSet.next())
+                .thenReturn(true) // domain id
+                .thenReturn(true) // role id
+                .thenReturn(false); // validate principal domain
+
+        try {
+            jdbcConn.insertRoleMembers("my-domain", "role1",
+                    Collections.singletonList(new RoleMember().setMemberName("unknown.user1")), "user.admin", "audit-ref");
+            fail();
+        } catch (ServerResourceException ex) {
+            assertEquals(ex.getCode(), ServerResourceException.NOT_FOUND);
+            assertTrue(ex.getMessage().contains("unknown.user1"));
+        }
+        jdbcConn.close();
+    }
+
+    @Test
+    public void testInsertRoleMembersPrincipalLockConflict() throws Exception {
+
+        JDBCConnection jdbcConn = new JDBCConnection(mockConn, true);
+
+        Mockito.when(mockResultSet.getInt(1))
+                .thenReturn(5) // domain id
+                .thenReturn(7) // role id
+                .thenReturn(3); // principal domain id
+        Mockito.when(mockResultSet.next())
+                .thenReturn(true) // domain id
+                .thenReturn(true) // role id
+                .thenReturn(true) // validate principal domain
+                .thenReturn(false) // principal id lookup
+                .thenReturn(false); // principal id lookup after insert
+        Mockito.when(mockPrepStmt.executeBatch()).thenReturn(new int[]{0});
+
+        try {
+            jdbcConn.insertRoleMembers("my-domain", "role1",
+                    Collections.singletonList(new RoleMember().setMemberName("user.user1")), "user.admin", "audit-ref");
+            fail();
+        } catch (ServerResourceException ex) {
+            assertEquals(ex.getCode(), ServerResourceException.CONFLICT);
+        }
+        jdbcConn.close();
+    }
+
+    @Test
+    public void testInsertRoleMembersPrincipalInsertFailure() throws Exception {
+
+        JDBCConnection jdbcConn = new JDBCConnection(mockConn, true);
+
+        Mockito.when(mockResultSet.getInt(1))
+                .thenReturn(5) // domain id
+                .thenReturn(7) // role id
+                .thenReturn(3); // principal domain id
+        Mockito.when(mockResultSet.next())
+                .thenReturn(true) // domain id
+                .thenReturn(true) // role id
+                .thenReturn(true) // validate principal domain
+                .thenReturn(false); // principal id lookup
+        Mockito.when(mockPrepStmt.executeBatch())
+                .thenThrow(new SQLException("Data too long for column 'name'", "22001", 1406));
+
+        try {
+            jdbcConn.insertRoleMembers("my-domain", "role1",
+                    Collections.singletonList(new RoleMember().setMemberName("user.user1")), "user.admin", "audit-ref");
+            fail();
+        } catch (ServerResourceException ex) {
+            assertEquals(ex.getCode(), ServerResourceException.INTERNAL_SERVER_ERROR);
+            assertTrue(ex.getMessage().contains("Data too long"));
+        }
+        jdbcConn.close();
+    }
+
+    @Test
+    public void testInsertGroupMembers() throws Exception {
+
+        JDBCConnection jdbcConn = new JDBCConnection(mockConn, true);
+
+        Mockito.when(mockResultSet.getInt(1))
+                .thenReturn(5) // domain id
+                .thenReturn(7) // group id
+                .thenReturn(3) // principal domain id
+                .thenReturn(9) // user.user1 principal id
+                .thenReturn(10) // user.user2 principal id
+                .thenReturn(10); // existing group member principal id
+        Mockito.when(mockResultSet.getString(2))
+                .thenReturn("user.user1")
+                .thenReturn("User.User2");
+        Mockito.when(mockResultSet.next())
+                .thenReturn(true) // domain id
+                .thenReturn(true) // group id
+                .thenReturn(true) // validate principal domain
+                .thenReturn(true).thenReturn(true).thenReturn(false) // principal id lookup
+                .thenReturn(true).thenReturn(false); // existing group members
+        Mockito.when(mockPrepStmt.executeBatch()).thenReturn(new int[]{1});
+
+        List<GroupMember> groupMembers = Arrays.asList(new GroupMember().setMemberName("user.user1"),
+                new GroupMember().setMemberName("user.user2"));
+        assertTrue(jdbcConn.insertGroupMembers("my-domain", "group1", groupMembers, "user.admin", "audit-ref"));
+
+        // one new member, one updated member and two audit log entries
+
+        Mockito.verify(mockPrepStmt, times(4)).addBatch();
+        Mockito.verify(mockPrepStmt, times(3)).executeBatch();
+        Mockito.verify(mockPrepStmt, times(1)).setString(4, "ADD");
+        Mockito.verify(mockPrepStmt, times(1)).setString(4, "UPDATE");
+        Mockito.verify(mockPrepStmt, times(1)).setInt(2, 9);
+        Mockito.verify(mockPrepStmt, times(1)).setInt(6, 10);
+        jdbcConn.close();
+    }
 }
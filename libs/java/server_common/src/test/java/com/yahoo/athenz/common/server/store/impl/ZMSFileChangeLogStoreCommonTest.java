@@ -76,6 +76,53 @@ public class ZMSFileChangeLogStoreCommonTest {
         assertEquals(st.get("key"), "val1");
     }
 
+    @Test
+    public void testPutReplaceExistent() {
+
+        ZMSFileChangeLogStoreCommon fstore = new ZMSFileChangeLogStoreCommon(FSTORE_PATH);
+        Struct data = new Struct();
+        data.put("key", "val1");
+        fstore.put("test1", JSON.bytes(data));
+        data.put("key", "val2");
+        fstore.put("test1", JSON.bytes(data));
+
+        Struct st = fstore.get("test1", Struct.class);
+        assertEquals(st.get("key"), "val2");
+
+        // the temporary file is renamed so it's no longer present
+
+        assertFalse(new File(FSTORE_PATH, ".tmp.test1").exists());
+        assertEquals(fstore.getLocalDomainList(), Collections.singletonList("test1"));
+    }
+
+    @Test
+    public void testGetConcurrentPut() throws InterruptedException {
+
+        ZMSFileChangeLogStoreCommon fstore = new ZMSFileChangeLogStoreCommon(FSTORE_PATH);
+        Struct data = new Struct();
+        data.put("key", "val0");
+        fstore.put("test1", JSON.bytes(data));
+
+        // readers do not acquire the store lock so they must always
+        // see a complete file while it's being replaced
+
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i < 200; i++) {
+                Struct update = new Struct();
+                update.put("key", "val" + i);
+                fstore.put("test1", JSON.bytes(update));
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            Struct st = fstore.get("test1", Struct.class);
+            assertNotNull(st);
+            assertTrue(((String) st.get("key")).startsWith("val"));
+        }
+        writer.join();
+        assertEquals(fstore.get("test1", Struct.class).get("key"), "val199");
+    }
+
     @Test
     public void testDeleteExistent() {
 
@@ -247,6 +294,25 @@ public class ZMSFileChangeLogStoreCommonTest {
         }
     }
 
+    @Test
+    public void testPutMoveException() throws IOException {
+
+        ZMSFileChangeLogStoreCommon fstore = new ZMSFileChangeLogStoreCommon(FSTORE_PATH);
+        FilesHelper helper = Mockito.mock(FilesHelper.class);
+        Mockito.when(helper.move(any(), any()))
+                .thenThrow(new IOException("io exception"));
+        fstore.filesHelper = helper;
+
+        Struct data = new Struct();
+        data.put("key", "val1");
+        try {
+            fstore.put("test1", JSON.bytes(data));
+            fail();
+        } catch (Exception ex) {
+            assertTrue(ex.getMessage().contains("io exception"));
+        }
+    }
+
     @Test
     public void testDeleteException() throws IOException {
 
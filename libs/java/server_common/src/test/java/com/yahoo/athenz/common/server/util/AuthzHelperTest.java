@@ -983,4 +983,85 @@ public class AuthzHelperTest {
         assertTrue(AuthzHelper.assumeRoleNameMatch("domain1:role.role1", assertion));
         assertFalse(AuthzHelper.assumeRoleNameMatch("domain2:role.role1", assertion));
     }
+
+    @Test
+    public void testDiffGroupMembers() {
+
+        Timestamp t1 = Timestamp.fromMillis(1000);
+        Timestamp t2 = Timestamp.fromMillis(2000);
+
+        List<GroupMember> curMembers = Arrays.asList(
+                new GroupMember().setMemberName("user.joe"),
+                new GroupMember().setMemberName("user.jane").setExpiration(t1),
+                new GroupMember().setMemberName("user.john"));
+        List<GroupMember> newMembers = Arrays.asList(
+                new GroupMember().setMemberName("User.Joe"),
+                new GroupMember().setMemberName("user.jane").setExpiration(t2),
+                new GroupMember().setMemberName("user.bob"));
+
+        MemberDiff<GroupMember> memberDiff = AuthzHelper.diffGroupMembers(curMembers, newMembers, true);
+        assertEquals(memberDiff.getAddedMembers(), Collections.singletonList(newMembers.get(2)));
+        assertEquals(memberDiff.getDeletedMembers(), Collections.singletonList(curMembers.get(2)));
+        assertEquals(memberDiff.getUpdatedMembers(), Arrays.asList(newMembers.get(0), newMembers.get(1)));
+
+        // only members with changed expiration are reported as updated
+
+        memberDiff = AuthzHelper.diffGroupMembers(curMembers, newMembers, false);
+        assertEquals(memberDiff.getAddedMembers(), Collections.singletonList(newMembers.get(2)));
+        assertEquals(memberDiff.getDeletedMembers(), Collections.singletonList(curMembers.get(2)));
+        assertEquals(memberDiff.getUpdatedMembers(), Collections.singletonList(newMembers.get(1)));
+
+        // null lists
+
+        memberDiff = AuthzHelper.diffGroupMembers(null, newMembers, true);
+        assertEquals(memberDiff.getAddedMembers().size(), 3);
+        assertTrue(memberDiff.getDeletedMembers().isEmpty());
+        assertTrue(memberDiff.getUpdatedMembers().isEmpty());
+
+        memberDiff = AuthzHelper.diffGroupMembers(curMembers, null, true);
+        assertTrue(memberDiff.getAddedMembers().isEmpty());
+        assertEquals(memberDiff.getDeletedMembers().size(), 3);
+        assertTrue(memberDiff.getUpdatedMembers().isEmpty());
+    }
+
+    @Test
+    public void testDiffRoleMembers() {
+
+        Timestamp t1 = Timestamp.fromMillis(1000);
+        Timestamp t2 = Timestamp.fromMillis(2000);
+
+        List<RoleMember> curMembers = Arrays.asList(
+                new RoleMember().setMemberName("user.joe").setReviewReminder(t1),
+                new RoleMember().setMemberName("user.jane").setExpiration(t1),
+                new RoleMember().setMemberName("user.john"));
+        List<RoleMember> newMembers = Arrays.asList(
+                new RoleMember().setMemberName("user.joe").setReviewReminder(t2),
+                new RoleMember().setMemberName("user.jane").setExpiration(t1),
+                new RoleMember().setMemberName("user.bob"));
+
+        MemberDiff<RoleMember> memberDiff = AuthzHelper.diffRoleMembers(curMembers, newMembers, false);
+        assertEquals(memberDiff.getAddedMembers(), Collections.singletonList(newMembers.get(2)));
+        assertEquals(memberDiff.getDeletedMembers(), Collections.singletonList(curMembers.get(2)));
+        assertEquals(memberDiff.getUpdatedMembers(), Collections.singletonList(newMembers.get(0)));
+
+        memberDiff = AuthzHelper.diffRoleMembers(curMembers, newMembers, true);
+        assertEquals(memberDiff.getUpdatedMembers().size(), 2);
+    }
+
+    @Test
+    public void testRemoveGroupMembersLargeList() {
+
+        List<GroupMember> originalMembers = new ArrayList<>();
+        List<GroupMember> removeMembers = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            originalMembers.add(new GroupMember().setMemberName("user.member" + i));
+            if (i % 2 == 0) {
+                removeMembers.add(new GroupMember().setMemberName("USER.member" + i));
+            }
+        }
+
+        AuthzHelper.removeGroupMembers(originalMembers, removeMembers, true);
+        assertEquals(originalMembers.size(), 50000);
+        assertEquals(originalMembers.get(0).getMemberName(), "user.member1");
+    }
 }
@@ -22,6 +22,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yahoo.athenz.common.messaging.ChangePublisher;
 import com.yahoo.athenz.common.messaging.pulsar.client.AthenzPulsarClient;
+import org.apache.pulsar.client.api.MessageId;
 import org.apache.pulsar.client.api.Producer;
 import org.apache.pulsar.client.api.PulsarClientException;
 import org.apache.pulsar.client.impl.PulsarClientImpl;
@@ -30,19 +31,29 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class PulsarChangePublisher<T> implements ChangePublisher<T> {
 
     private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+    public static final String PROP_PULSAR_PUBLISH_BATCH_TIMEOUT = "athenz.pulsar.publish_batch_timeout_ms";
+
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
     private final Producer<byte[]> producer;
     private final PulsarClientImpl pulsarClient;
+    private final long publishBatchTimeoutMs;
 
     public PulsarChangePublisher(String serviceUrl, String topicName, AthenzPulsarClient.TlsConfig tlsConfig) {
         ProducerConfigurationData producerConfig = AthenzPulsarClient.defaultProducerConfig(topicName);
         pulsarClient = AthenzPulsarClient.createPulsarClient(serviceUrl, tlsConfig);
         producer = AthenzPulsarClient.createProducer(pulsarClient, producerConfig);
+        publishBatchTimeoutMs = Long.parseLong(System.getProperty(PROP_PULSAR_PUBLISH_BATCH_TIMEOUT, "30000"));
         LOG.debug("created publisher: {}, producer: {}", this.getClass(), producer);
     }
 
@@ -58,6 +69,43 @@ public class PulsarChangePublisher<T> implements ChangePublisher<T> {
         }
     }
 
+    @Override
+    public void publishBatch(List<T> messages) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("producer: {}, publishing {} messages", producer, messages.size());
+        }
+
+        // serialize all messages first so a message that cannot be
+        // serialized fails the batch before anything is sent
+
+        List<byte[]> payloads = new ArrayList<>(messages.size());
+        for (T message : messages) {
+            try {
+                payloads.add(OBJECT_MAPPER.writeValueAsBytes(message));
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("unable to serialize message: " + e.getMessage(), e);
+            }
+        }
+
+        // send all messages asynchronously so the producer can batch
+        // them and then wait for all of them to be acknowledged. any
+        // failure is reported back to the caller to retry the batch
+
+        List<CompletableFuture<MessageId>> futures = new ArrayList<>(payloads.size());
+        for (byte[] payload : payloads) {
+            futures.add(producer.sendAsync(payload));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .get(publishBatchTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while publishing messages", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("unable to publish messages: " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public void close() {
         try {
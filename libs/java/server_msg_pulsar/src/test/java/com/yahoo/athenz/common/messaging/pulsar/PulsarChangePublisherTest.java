@@ -20,12 +20,17 @@ package com.yahoo.athenz.common.messaging.pulsar;
 
 import com.yahoo.athenz.common.messaging.DomainChangeMessage;
 import com.yahoo.athenz.common.messaging.pulsar.client.AthenzPulsarClient.TlsConfig;
+import org.apache.pulsar.client.api.MessageId;
 import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.PulsarClientException;
+import org.mockito.Mockito;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 
 import static com.yahoo.athenz.common.messaging.pulsar.PulsarFactory.PROP_MESSAGING_CLI_SERVICE_URL;
 import static com.yahoo.athenz.common.messaging.pulsar.PulsarFactory.serviceUrl;
@@ -42,6 +47,7 @@ public class PulsarChangePublisherTest {
     @AfterMethod
     public void tearDown() {
         System.clearProperty(PROP_ATHENZ_PULSAR_CLIENT_CLASS);
+        System.clearProperty(PulsarChangePublisher.PROP_PULSAR_PUBLISH_BATCH_TIMEOUT);
     }
 
     @Test
@@ -92,18 +98,65 @@ public class PulsarChangePublisherTest {
         System.clearProperty(PROP_MESSAGING_CLI_SERVICE_URL);
     }
 
+    @Test
+    public void testPublishBatch() {
+
+        System.setProperty(PulsarChangePublisher.PROP_PULSAR_PUBLISH_BATCH_TIMEOUT, "100");
+        PulsarChangePublisher<Object> publisher = new PulsarChangePublisher<>("some-service",
+                "some-topic", new TlsConfig("cert", "key", "trust"));
+        Producer<byte[]> producer = getPulsarProducer(publisher);
+
+        Mockito.when(producer.sendAsync(Mockito.any(byte[].class)))
+                .thenReturn(CompletableFuture.completedFuture(Mockito.mock(MessageId.class)));
+        publisher.publishBatch(Arrays.asList(new DomainChangeMessage().setDomainName("coretech"),
+                new DomainChangeMessage().setDomainName("sports")));
+        Mockito.verify(producer, Mockito.times(2)).sendAsync(Mockito.any(byte[].class));
+
+        // messages that cannot be serialized fail the batch before
+        // any of the messages are sent
+
+        try {
+            publisher.publishBatch(Arrays.asList(new DomainChangeMessage().setDomainName("coretech"), new Object()));
+            fail();
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage().contains("unable to serialize message"));
+        }
+        Mockito.verify(producer, Mockito.times(2)).sendAsync(Mockito.any(byte[].class));
+
+        // failed and timed out sends are reported to the caller
+
+        CompletableFuture<MessageId> failedFuture = new CompletableFuture<>();
+        failedFuture.completeExceptionally(new PulsarClientException("send failure"));
+        Mockito.when(producer.sendAsync(Mockito.any(byte[].class))).thenReturn(failedFuture);
+        try {
+            publisher.publishBatch(Arrays.asList(new DomainChangeMessage().setDomainName("coretech")));
+            fail();
+        } catch (IllegalStateException ex) {
+            assertTrue(ex.getMessage().contains("send failure"));
+        }
+
+        Mockito.when(producer.sendAsync(Mockito.any(byte[].class))).thenReturn(new CompletableFuture<>());
+        try {
+            publisher.publishBatch(Arrays.asList(new DomainChangeMessage().setDomainName("coretech")));
+            fail();
+        } catch (IllegalStateException ex) {
+            assertTrue(ex.getMessage().contains("unable to publish messages"));
+        }
+        publisher.close();
+    }
+
     /**
      * Since pulsarProducer is private member, and not exposes outside,
      * load it in reflection for better assertion.
      */
-    static <T> Producer<T> getPulsarProducer(PulsarChangePublisher<DomainChangeMessage> publisher) {
+    static <T> Producer<T> getPulsarProducer(PulsarChangePublisher<?> publisher) {
         final Field privateProducer;
         try {
             privateProducer = publisher.getClass().getDeclaredField("producer");
             privateProducer.setAccessible(true);
             return (Producer<T>) privateProducer.get(publisher);
         } catch (final NoSuchFieldException | IllegalAccessException ignored) { }
-        throw new AssertionError("Failed to retrieve pulsarProducer from PulsarChangePublisher<DomainChangeMessage>");
+        throw new AssertionError("Failed to retrieve pulsarProducer from PulsarChangePublisher");
     }
 
 }
\ No newline at end of file
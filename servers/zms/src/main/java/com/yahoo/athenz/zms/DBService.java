@@ -33,6 +33,7 @@ import com.yahoo.athenz.common.server.util.AuthzHelper;
 import com.yahoo.athenz.common.server.util.PrincipalUtils;
 import com.yahoo.athenz.common.server.util.ResourceUtils;
 import com.yahoo.athenz.common.server.util.config.dynamic.DynamicConfigInteger;
+import com.yahoo.athenz.zms.QuotaChecker.DomainCounts;
 import com.yahoo.athenz.zms.config.MemberDueDays;
 import com.yahoo.athenz.zms.utils.ZMSUtils;
 import com.yahoo.rdl.JSON;
@@ -48,6 +49,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -60,6 +62,7 @@ public class DBService implements RolesProvider, DomainProvider {
     AuditLogger auditLogger;
     private final AuthHistoryStore authHistoryStore;
     Cache<String, DataCache> cacheStore;
+    ResourceAccessIndex resourceAccessIndex;
     QuotaChecker quotaCheck;
     int retrySleepTime;
     int defaultRetryCount;
@@ -98,6 +101,7 @@ public class DBService implements RolesProvider, DomainProvider {
 
     AuditReferenceValidator auditReferenceValidator;
     private final ScheduledExecutorService userAuthorityFilterExecutor;
+    private ScheduledExecutorService resourceAccessIndexExecutor;
     protected DynamicConfigInteger purgeMembersMaxDbCallsPerRun;
     protected DynamicConfigInteger purgeMembersLimitPerCall;
     protected DynamicConfigInteger purgeMemberExpiryDays;
@@ -113,6 +117,15 @@ public class DBService implements RolesProvider, DomainProvider {
         this.authHistoryStore = authHistoryStore;
         cacheStore = CacheBuilder.newBuilder().concurrencyLevel(25).build();
 
+        // if configured, we'll keep an index of all role memberships and
+        // assertions to process resource access list requests
+
+        if (Boolean.parseBoolean(System.getProperty(ZMSConsts.ZMS_PROP_RESOURCE_ACCESS_INDEX, "false"))) {
+            long reconcileInterval = Long.parseLong(System.getProperty(
+                    ZMSConsts.ZMS_PROP_RESOURCE_ACCESS_INDEX_RECONCILE, "3600"));
+            resourceAccessIndex = new ResourceAccessIndex(TimeUnit.SECONDS.toMillis(reconcileInterval));
+        }
+
         awsAssumeRoleAction = System.getProperty(ZMSConsts.ZMS_PROP_AWS_ASSUME_ROLE_ACTION,
                 ZMSConsts.ACTION_ASSUME_AWS_ROLE);
         gcpAssumeRoleAction = System.getProperty(ZMSConsts.ZMS_PROP_GCP_ASSUME_ROLE_ACTION,
@@ -179,6 +192,17 @@ public class DBService implements RolesProvider, DomainProvider {
         userAuthorityFilterExecutor = Executors.newScheduledThreadPool(1);
         userAuthorityFilterExecutor.scheduleAtFixedRate(new UserAuthorityFilterEnforcer(), 0, 1, TimeUnit.DAYS);
 
+        // if the resource access index is enabled, start our thread to
+        // build the index and refresh it with the changes from the store
+
+        if (resourceAccessIndex != null && this.store != null) {
+            long refreshInterval = Long.parseLong(System.getProperty(
+                    ZMSConsts.ZMS_PROP_RESOURCE_ACCESS_INDEX_REFRESH, "30"));
+            resourceAccessIndexExecutor = Executors.newScheduledThreadPool(1);
+            resourceAccessIndexExecutor.scheduleWithFixedDelay(new ResourceAccessIndexUpdater(), 0,
+                    refreshInterval, TimeUnit.SECONDS);
+        }
+
         maxPolicyVersions = Integer.parseInt(System.getProperty(ZMSConsts.ZMS_PROP_MAX_POLICY_VERSIONS,
                 ZMSConsts.ZMS_PROP_MAX_POLICY_VERSIONS_DEFAULT));
         purgeMembersMaxDbCallsPerRun = new DynamicConfigInteger(CONFIG_MANAGER,
@@ -271,6 +295,7 @@ public class DBService implements RolesProvider, DomainProvider {
     static class DataCache {
         AthenzDomain athenzDomain;
         long modTime;
+        volatile DomainPolicyIndex policyIndex;
 
         DataCache(AthenzDomain athenzDomain, long modTime) {
             this.athenzDomain = athenzDomain;
@@ -284,6 +309,20 @@ public class DBService implements RolesProvider, DomainProvider {
         long getModTime() {
             return modTime;
         }
+
+        DomainPolicyIndex getPolicyIndex() {
+
+            // the index is built on first use. if multiple threads
+            // build it at the same time, we'll just keep the last one
+            // since they're all generated from the same domain object
+
+            DomainPolicyIndex index = policyIndex;
+            if (index == null) {
+                index = new DomainPolicyIndex(athenzDomain);
+                policyIndex = index;
+            }
+            return index;
+        }
     }
 
     void rollbackChanges(ObjectStoreConnection con) {
@@ -333,6 +372,21 @@ public class DBService implements RolesProvider, DomainProvider {
         return null;
     }
 
+    DomainPolicyIndex getDomainPolicyIndex(AthenzDomain athenzDomain) {
+
+        // we only have a policy index if the given domain object is
+        // the one in our cache since that's the object the index
+        // is based on. virtual domains or domains that have been
+        // invalidated from the cache don't have an index
+
+        DataCache data = cacheStore.getIfPresent(athenzDomain.getName());
+        if (data == null || data.getAthenzDomain() != athenzDomain) {
+            return null;
+        }
+
+        return data.getPolicyIndex();
+    }
+
     String getPrincipalName(ResourceContext ctx) {
         if (ctx == null) {
             return null;
@@ -345,6 +399,11 @@ public class DBService implements RolesProvider, DomainProvider {
     }
 
     void saveChanges(ObjectStoreConnection con, String domainName) throws ServerResourceException {
+        saveChanges(con, domainName, null);
+    }
+
+    void saveChanges(ObjectStoreConnection con, String domainName, Consumer<DomainCounts> countsUpdate)
+            throws ServerResourceException {
 
         // we're first going to commit our changes which will
         // also set the connection in auto-commit mode. we are
@@ -352,8 +411,16 @@ public class DBService implements RolesProvider, DomainProvider {
         // mode so that we don't have a contention
 
         con.commitChanges();
+        final long prevModTime = quotaCheck.getDomainModTimestamp(con, domainName);
         con.updateDomainModTimestamp(domainName);
         cacheStore.invalidate(domainName);
+
+        // update our quota object counts for the domain. if the
+        // caller didn't specify the changes or the domain was also
+        // modified by another server then the counts will be
+        // reloaded during the next quota check
+
+        quotaCheck.updateDomainCounts(con, domainName, prevModTime, countsUpdate);
     }
 
     void purgeTaskSaveDomainChanges(ResourceContext ctx, ObjectStoreConnection con, String domainName,
@@ -822,9 +889,9 @@ public class DBService implements RolesProvider, DomainProvider {
                     } else {
                         member.setPendingState(null);
                     }
-                    if (!con.insertRoleMember(domainName, roleName, member, admin, auditRef)) {
-                        return false;
-                    }
+                }
+                if (!roleMembers.isEmpty() && !con.insertRoleMembers(domainName, roleName, roleMembers, admin, auditRef)) {
+                    return false;
                 }
                 auditLogRoleMembers(auditDetails, "added-members", roleMembers);
             }
@@ -925,9 +992,9 @@ public class DBService implements RolesProvider, DomainProvider {
                     } else {
                         member.setPendingState(null);
                     }
-                    if (!con.insertGroupMember(domainName, groupName, member, admin, auditRef)) {
-                        return false;
-                    }
+                }
+                if (!groupMembers.isEmpty() && !con.insertGroupMembers(domainName, groupName, groupMembers, admin, auditRef)) {
+                    return false;
                 }
                 auditLogGroupMembers(auditDetails, "added-members", groupMembers);
             }
@@ -1178,9 +1245,9 @@ public class DBService implements RolesProvider, DomainProvider {
             } else {
                 member.setPendingState(null);
             }
-            if (!con.insertRoleMember(domainName, roleName, member, admin, auditRef)) {
-                return false;
-            }
+        }
+        if (!newMembers.isEmpty() && !con.insertRoleMembers(domainName, roleName, newMembers, admin, auditRef)) {
+            return false;
         }
         auditLogRoleMembers(auditDetails, "added-members", newMembers);
         return true;
@@ -1230,9 +1297,9 @@ public class DBService implements RolesProvider, DomainProvider {
             } else {
                 member.setPendingState(null);
             }
-            if (!con.insertGroupMember(domainName, groupName, member, admin, auditRef)) {
-                return false;
-            }
+        }
+        if (!newMembers.isEmpty() && !con.insertGroupMembers(domainName, groupName, newMembers, admin, auditRef)) {
+            return false;
         }
         auditLogGroupMembers(auditDetails, "added-members", newMembers);
         return true;
@@ -1542,7 +1609,7 @@ public class DBService implements RolesProvider, DomainProvider {
 
                 // update our domain time-stamp and save changes
 
-                saveChanges(con, domainName);
+                saveChanges(con, domainName, DomainCounts::policyAdded);
 
                 // audit log the request
 
@@ -1649,7 +1716,7 @@ public class DBService implements RolesProvider, DomainProvider {
 
                 // update our domain time-stamp and save changes
 
-                saveChanges(con, domainName);
+                saveChanges(con, domainName, originalPolicy == null ? DomainCounts::policyAdded : DomainCounts::unchanged);
 
                 // audit log the request
 
@@ -1776,7 +1843,8 @@ public class DBService implements RolesProvider, DomainProvider {
 
                 // update our domain time-stamp and save changes
 
-                saveChanges(con, domainName);
+                saveChanges(con, domainName, isNewRole ? counts -> counts.roleAdded(roleName)
+                        : counts -> counts.roleUpdated(roleName));
 
                 // audit log the request
 
@@ -1876,7 +1944,8 @@ public class DBService implements RolesProvider, DomainProvider {
 
                 // update our domain time-stamp and save changes
 
-                saveChanges(con, domainName);
+                saveChanges(con, domainName, isNewGroup ? counts -> counts.groupAdded(groupName)
+                        : counts -> counts.groupUpdated(groupName));
 
                 // audit log the request
 
@@ -1980,7 +2049,7 @@ public class DBService implements RolesProvider, DomainProvider {
                 // update our domain time-stamp and save changes
 
                 con.updateServiceIdentityModTimestamp(domainName, serviceName);
-                saveChanges(con, domainName);
+                saveChanges(con, domainName, originalService == null ? DomainCounts::serviceAdded : DomainCounts::unchanged);
 
                 // audit log the request
 
@@ -2166,8 +2235,8 @@ public class DBService implements RolesProvider, DomainProvider {
 
                 // now we need verify our quota check
 
-                quotaCheck.checkRoleMembershipQuota(con, domainName, roleName, roleMember.getMemberName(),
-                        originalRole.getMaxMembers(), caller);
+                final boolean newMember = quotaCheck.checkRoleMembershipQuota(con, domainName, roleName,
+                        roleMember.getMemberName(), originalRole.getMaxMembers(), caller);
 
                 // process our insert role member support. since this is a "single"
                 // operation, we are not using any transactions.
@@ -2182,8 +2251,11 @@ public class DBService implements RolesProvider, DomainProvider {
                 // update our role and domain time-stamps, and invalidate local cache entry
 
                 con.updateRoleModTimestamp(domainName, roleName);
+                final long prevModTime = quotaCheck.getDomainModTimestamp(con, domainName);
                 con.updateDomainModTimestamp(domainName);
                 cacheStore.invalidate(domainName);
+                quotaCheck.updateDomainCounts(con, domainName, prevModTime,
+                        newMember ? counts -> counts.roleMemberAdded(roleName) : DomainCounts::unchanged);
 
                 // audit log the request
 
@@ -2231,8 +2303,8 @@ public class DBService implements RolesProvider, DomainProvider {
                 // now we need verify our quota check
 
                 final String groupName = ZMSUtils.extractGroupName(domainName, group.getName());
-                quotaCheck.checkGroupMembershipQuota(con, domainName, groupName, groupMember.getMemberName(),
-                        group.getMaxMembers(), ctx.getApiName());
+                final boolean newMember = quotaCheck.checkGroupMembershipQuota(con, domainName, groupName,
+                        groupMember.getMemberName(), group.getMaxMembers(), ctx.getApiName());
 
                 // process our insert group member support. since this is a "single"
                 // operation, we are not using any transactions.
@@ -2247,8 +2319,11 @@ public class DBService implements RolesProvider, DomainProvider {
                 // update our group and domain time-stamps, and invalidate local cache entry
 
                 con.updateGroupModTimestamp(domainName, groupName);
+                final long prevModTime = quotaCheck.getDomainModTimestamp(con, domainName);
                 con.updateDomainModTimestamp(domainName);
                 cacheStore.invalidate(domainName);
+                quotaCheck.updateDomainCounts(con, domainName, prevModTime,
+                        newMember ? counts -> counts.groupMemberAdded(groupName) : DomainCounts::unchanged);
 
                 // audit log the request
 
@@ -2924,6 +2999,10 @@ public class DBService implements RolesProvider, DomainProvider {
                 con.deleteDomain(domainName);
                 con.commitChanges();
                 cacheStore.invalidate(domainName);
+                quotaCheck.domainDeleted(domainName);
+                if (resourceAccessIndex != null) {
+                    resourceAccessIndex.deleteDomain(domainName);
+                }
 
                 // audit log the request
 
@@ -3432,12 +3511,18 @@ public class DBService implements RolesProvider, DomainProvider {
 
         // this commands takes a quite a bit of time due to joining tables
         // and needs to be optimized. For now, we'll configure it with
-        // default timeout of 30 minutes to avoid any issues
+        // default timeout of 30 minutes to avoid any issues. If the resource
+        // access index is enabled, we'll use it once the background task
+        // has completed the initial load of all domains
 
         ResourceAccessList accessList;
         try (ObjectStoreConnection con = store.getConnection(true, false)) {
             con.setOperationTimeout(1800);
-            accessList = con.listResourceAccess(principal, action, zmsConfig.getUserDomain());
+            if (resourceAccessIndex != null && resourceAccessIndex.isInitialized()) {
+                accessList = getIndexedResourceAccessList(con, principal, action);
+            } else {
+                accessList = con.listResourceAccess(principal, action, zmsConfig.getUserDomain());
+            }
         } catch (ServerResourceException ex) {
             throw ZMSUtils.error(ex);
         }
@@ -3458,6 +3543,28 @@ public class DBService implements RolesProvider, DomainProvider {
         return accessList;
     }
 
+    ResourceAccessList getIndexedResourceAccessList(ObjectStoreConnection con, final String principal,
+            final String action) throws ServerResourceException {
+
+        final String caller = "getResourceAccessList";
+
+        // we need to make sure the principal is registered in Athenz
+        // and suspended principals do not have access to any resources
+
+        PrincipalMember principalMember = con.getPrincipal(principal);
+        if (principalMember == null) {
+            throw ZMSUtils.notFoundError("unknown principal - " + principal, caller);
+        }
+
+        List<Assertion> assertions = principalMember.getSuspendedState() != 0 ?
+                new ArrayList<>() : resourceAccessIndex.getPrincipalAssertions(principal, action);
+
+        ResourceAccess resourceAccess = new ResourceAccess().setPrincipal(principal).setAssertions(assertions);
+        List<ResourceAccess> resources = new ArrayList<>();
+        resources.add(resourceAccess);
+        return new ResourceAccessList().setResources(resources);
+    }
+
     void generateGCPResources(ResourceAccessList accessList) {
 
         // first we need to get a mapping of our gcp domains
@@ -10290,4 +10397,22 @@ public class DBService implements RolesProvider, DomainProvider {
             LOG.info("UserAuthorityFilterEnforcer: Completed user authority filter enforcer thread");
         }
     }
+
+    class ResourceAccessIndexUpdater implements Runnable {
+
+        @Override
+        public void run() {
+
+            // the initial load of all domains can take a while so we're
+            // using the same timeout as the resource access list query
+
+            try (ObjectStoreConnection con = store.getConnection(true, false)) {
+                con.setOperationTimeout(1800);
+                resourceAccessIndex.refresh(con);
+            } catch (Throwable t) {
+                LOG.error("ResourceAccessIndexUpdater: unable to refresh resource access index: {}",
+                        t.getMessage());
+            }
+        }
+    }
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.zms;
+
+import com.yahoo.athenz.auth.util.StringUtils;
+import com.yahoo.athenz.common.server.store.AthenzDomain;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled view of the active policies in a domain used by ZMS when
+ * carrying out authorization checks. Assertions are split based on
+ * their effect and grouped by their action. Actions without any glob
+ * characters are looked up directly in a map while the others are
+ * matched against their precompiled patterns. For each assertion we
+ * also keep the list of domain roles that match its role value so
+ * role names are not matched against patterns during the check.
+ * The index is built from the AthenzDomain object kept in the
+ * DBService cache and must not be used once the domain is modified.
+ */
+class DomainPolicyIndex {
+
+    static class IndexedAssertion {
+
+        final String resource;
+        final Pattern resourcePattern;
+        final List<Role> roles;
+
+        IndexedAssertion(final String resource, List<Role> roles) {
+            this.resource = resource;
+            this.resourcePattern = StringUtils.containsMatchCharacter(resource) ?
+                    Pattern.compile(StringUtils.patternFromGlob(resource)) : null;
+            this.roles = roles;
+        }
+
+        boolean resourceMatch(final String checkResource) {
+            if (resourcePattern != null) {
+                return resourcePattern.matcher(checkResource).matches();
+            }
+            return resource.equals(checkResource);
+        }
+    }
+
+    static class ActionAssertions {
+
+        final Pattern actionPattern;
+        final List<IndexedAssertion> assertions = new ArrayList<>();
+
+        ActionAssertions(final String action) {
+            actionPattern = Pattern.compile(StringUtils.patternFromGlob(action));
+        }
+    }
+
+    private final Map<String, List<IndexedAssertion>> allowActionAssertions = new HashMap<>();
+    private final Map<String, List<IndexedAssertion>> denyActionAssertions = new HashMap<>();
+    private final Map<String, ActionAssertions> allowWildcardAssertions = new HashMap<>();
+    private final Map<String, ActionAssertions> denyWildcardAssertions = new HashMap<>();
+
+    DomainPolicyIndex(AthenzDomain domain) {
+
+        // generate a map of our roles so we can look up assertions
+        // with role names without any wildcards directly
+
+        final List<Role> domainRoles = domain.getRoles();
+        Map<String, Role> roleMap = new HashMap<>();
+        for (Role role : domainRoles) {
+            roleMap.put(role.getName(), role);
+        }
+
+        for (Policy policy : domain.getPolicies()) {
+
+            // ignore any inactive/multi-version policies
+
+            if (policy.getActive() == Boolean.FALSE || policy.getAssertions() == null) {
+                continue;
+            }
+
+            for (Assertion assertion : policy.getAssertions()) {
+
+                final List<Role> roles = getAssertionRoles(assertion.getRole(), domainRoles, roleMap);
+
+                // if there are no roles matching our assertion then
+                // it can never match and there is no need to index it
+
+                if (roles.isEmpty()) {
+                    continue;
+                }
+
+                final boolean deny = assertion.getEffect() == AssertionEffect.DENY;
+                final String action = assertion.getAction().toLowerCase();
+                IndexedAssertion indexedAssertion = new IndexedAssertion(
+                        assertion.getResource().toLowerCase(), roles);
+
+                if (StringUtils.containsMatchCharacter(action)) {
+                    Map<String, ActionAssertions> wildcardMap = deny ? denyWildcardAssertions : allowWildcardAssertions;
+                    wildcardMap.computeIfAbsent(action, ActionAssertions::new).assertions.add(indexedAssertion);
+                } else {
+                    Map<String, List<IndexedAssertion>> actionMap = deny ? denyActionAssertions : allowActionAssertions;
+                    actionMap.computeIfAbsent(action, k -> new ArrayList<>()).add(indexedAssertion);
+                }
+            }
+        }
+    }
+
+    List<Role> getAssertionRoles(final String assertionRole, List<Role> domainRoles, Map<String, Role> roleMap) {
+
+        if (!StringUtils.containsMatchCharacter(assertionRole)) {
+            Role role = roleMap.get(assertionRole);
+            return role == null ? Collections.emptyList() : Collections.singletonList(role);
+        }
+
+        Pattern rolePattern = Pattern.compile(StringUtils.patternFromGlob(assertionRole));
+        List<Role> roles = new ArrayList<>();
+        for (Role role : domainRoles) {
+            if (rolePattern.matcher(role.getName()).matches()) {
+                roles.add(role);
+            }
+        }
+        return roles;
+    }
+
+    /**
+     * Check if any of the assertions with the given effect match the
+     * requested action and resource and the role check returns true
+     * for the list of roles associated with that assertion.
+     * @param effect assertion effect to check
+     * @param action requested action (lowercase)
+     * @param resource requested resource (lowercase)
+     * @param roleMatcher role check for the matched assertion roles
+     * @return true if there is a matching assertion, false otherwise
+     */
+    boolean assertionMatch(AssertionEffect effect, final String action, final String resource,
+            Predicate<List<Role>> roleMatcher) {
+
+        final boolean deny = effect == AssertionEffect.DENY;
+        Map<String, List<IndexedAssertion>> actionMap = deny ? denyActionAssertions : allowActionAssertions;
+        if (assertionMatch(actionMap.get(action), resource, roleMatcher)) {
+            return true;
+        }
+
+        Map<String, ActionAssertions> wildcardMap = deny ? denyWildcardAssertions : allowWildcardAssertions;
+        for (ActionAssertions actionAssertions : wildcardMap.values()) {
+            if (actionAssertions.actionPattern.matcher(action).matches() &&
+                    assertionMatch(actionAssertions.assertions, resource, roleMatcher)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean assertionMatch(List<IndexedAssertion> assertions, final String resource,
+            Predicate<List<Role>> roleMatcher) {
+
+        if (assertions == null) {
+            return false;
+        }
+        for (IndexedAssertion assertion : assertions) {
+            if (assertion.resourceMatch(resource) && roleMatcher.test(assertion.roles)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
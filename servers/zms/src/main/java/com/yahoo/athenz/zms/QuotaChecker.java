@@ -16,7 +16,14 @@
 package com.yahoo.athenz.zms;
 
 import java.util.List;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.yahoo.athenz.common.server.ServerResourceException;
 import com.yahoo.athenz.common.server.store.ObjectStoreConnection;
 import com.yahoo.athenz.zms.utils.ZMSUtils;
@@ -24,8 +31,11 @@ import com.yahoo.rdl.Timestamp;
 
 class QuotaChecker {
 
+    static final int COUNT_UNKNOWN = -1;
+
     private final Quota defaultQuota;
     private boolean quotaCheckEnabled;
+    private Cache<String, DomainCounts> domainCountsCache;
     int assertionConditionsQuota = Integer.parseInt(System.getProperty(ZMSConsts.ZMS_PROP_QUOTA_ASSERTION_CONDITIONS, "10"));
 
     public QuotaChecker() {
@@ -55,6 +65,109 @@ class QuotaChecker {
                 .setService(serviceQuota).setServiceHost(serviceHostQuota)
                 .setSubdomain(subDomainQuota).setGroup(groupQuota)
                 .setGroupMember(groupMemberQuota).setModified(Timestamp.fromCurrentTime());
+
+        // setup our object count cache if one is configured
+
+        int countCacheTimeout = Integer.parseInt(System.getProperty(ZMSConsts.ZMS_PROP_QUOTA_COUNT_CACHE_TIMEOUT, "0"));
+        int countCacheSize = Integer.parseInt(System.getProperty(ZMSConsts.ZMS_PROP_QUOTA_COUNT_CACHE_SIZE, "10000"));
+        if (countCacheTimeout > 0) {
+            domainCountsCache = CacheBuilder.newBuilder().maximumSize(countCacheSize)
+                    .expireAfterWrite(countCacheTimeout, TimeUnit.SECONDS).build();
+        }
+    }
+
+    /**
+     * Callback to load the object count from the object store
+     */
+    interface CountLoader {
+        int load() throws ServerResourceException;
+    }
+
+    /**
+     * Object count that is loaded from the object store on first use
+     * and then adjusted as objects are added to the domain.
+     */
+    static final class ObjectCounter {
+
+        private final AtomicInteger count = new AtomicInteger(COUNT_UNKNOWN);
+
+        int get(CountLoader loader) throws ServerResourceException {
+            int value = count.get();
+            if (value == COUNT_UNKNOWN) {
+                value = loader.load();
+                count.compareAndSet(COUNT_UNKNOWN, value);
+            }
+            return value;
+        }
+
+        void adjust(int delta) {
+            count.updateAndGet(value -> value == COUNT_UNKNOWN ? value : Math.max(0, value + delta));
+        }
+    }
+
+    /**
+     * Object counts for a single domain. The counts are valid as long
+     * as the domain modification timestamp in the object store has not
+     * changed since the counts were loaded or last updated by this server.
+     */
+    static final class DomainCounts {
+
+        final AtomicLong modTime;
+        final ObjectCounter roles = new ObjectCounter();
+        final ObjectCounter groups = new ObjectCounter();
+        final ObjectCounter policies = new ObjectCounter();
+        final ObjectCounter services = new ObjectCounter();
+        final ConcurrentHashMap<String, ObjectCounter> roleMembers = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<String, ObjectCounter> groupMembers = new ConcurrentHashMap<>();
+
+        DomainCounts(long modTime) {
+            this.modTime = new AtomicLong(modTime);
+        }
+
+        ObjectCounter roleMembers(final String roleName) {
+            return roleMembers.computeIfAbsent(roleName, k -> new ObjectCounter());
+        }
+
+        ObjectCounter groupMembers(final String groupName) {
+            return groupMembers.computeIfAbsent(groupName, k -> new ObjectCounter());
+        }
+
+        void unchanged() {
+        }
+
+        void roleAdded(final String roleName) {
+            roles.adjust(1);
+            roleMembers.remove(roleName);
+        }
+
+        void roleUpdated(final String roleName) {
+            roleMembers.remove(roleName);
+        }
+
+        void roleMemberAdded(final String roleName) {
+            roleMembers(roleName).adjust(1);
+        }
+
+        void groupAdded(final String groupName) {
+            groups.adjust(1);
+            groupMembers.remove(groupName);
+        }
+
+        void groupUpdated(final String groupName) {
+            groupMembers.remove(groupName);
+        }
+
+        void groupMemberAdded(final String groupName) {
+            groupMembers(groupName).adjust(1);
+        }
+
+        void policyAdded() {
+            policies.adjust(1);
+        }
+
+        void serviceAdded() {
+            services.adjust(1);
+        }
     }
     
     public Quota getDomainQuota(ObjectStoreConnection con, String domainName) throws ServerResourceException {
@@ -66,6 +179,105 @@ class QuotaChecker {
         this.quotaCheckEnabled = quotaCheckEnabled;
     }
 
+    DomainCounts getDomainCounts(ObjectStoreConnection con, final String domainName) throws ServerResourceException {
+
+        if (domainCountsCache == null || !quotaCheckEnabled) {
+            return null;
+        }
+
+        // the domain modification timestamp is a primary key lookup
+        // so it's much cheaper than counting the objects. if the domain
+        // has been modified since our counts were updated (e.g. by another
+        // server) then we'll reload the counts from the object store
+
+        final long modTime = con.getDomainModTimestamp(domainName);
+        if (modTime == 0) {
+            return null;
+        }
+
+        DomainCounts counts = domainCountsCache.getIfPresent(domainName);
+        if (counts == null || counts.modTime.get() < modTime) {
+            counts = new DomainCounts(modTime);
+            domainCountsCache.put(domainName, counts);
+        }
+        return counts;
+    }
+
+    /**
+     * Return the domain modification timestamp from the object store before
+     * the domain timestamp is updated for our changes. The value is used by
+     * updateDomainCounts to verify that the cached counts still match the
+     * domain before our changes are applied to them. If there are no cached
+     * counts for the domain, the object store is not queried.
+     * @param con object store connection
+     * @param domainName name of the domain
+     * @return domain modification timestamp or 0 if not available
+     */
+    long getDomainModTimestamp(ObjectStoreConnection con, final String domainName) {
+
+        if (domainCountsCache == null || domainCountsCache.getIfPresent(domainName) == null) {
+            return 0;
+        }
+
+        try {
+            return con.getDomainModTimestamp(domainName);
+        } catch (ServerResourceException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * Update the object counts for the given domain after the changes
+     * have been committed and the domain modification timestamp updated.
+     * The changes are only applied if the cached counts were loaded or last
+     * updated for the domain timestamp observed before our write. Otherwise,
+     * the domain was also modified by another server and the counts for the
+     * domain are removed from the cache and reloaded on the next quota check.
+     * The same applies if no update is given.
+     * @param con object store connection
+     * @param domainName name of the domain
+     * @param prevModTime domain modification timestamp before our changes
+     * @param update changes to apply to the domain counts
+     */
+    void updateDomainCounts(ObjectStoreConnection con, final String domainName, long prevModTime,
+            Consumer<DomainCounts> update) {
+
+        if (domainCountsCache == null) {
+            return;
+        }
+
+        DomainCounts counts = domainCountsCache.getIfPresent(domainName);
+        if (counts == null) {
+            return;
+        }
+
+        if (update == null || prevModTime == 0 || counts.modTime.get() != prevModTime) {
+            domainCountsCache.invalidate(domainName);
+            return;
+        }
+
+        // our changes have already been committed so we're not going
+        // to report any failures back to the caller and just remove
+        // the counts from our cache. the same applies if another thread
+        // has updated the counts since we validated the timestamp
+
+        update.accept(counts);
+        try {
+            final long modTime = con.getDomainModTimestamp(domainName);
+            if (!counts.modTime.compareAndSet(prevModTime, Math.max(prevModTime, modTime))) {
+                domainCountsCache.invalidate(domainName);
+            }
+        } catch (ServerResourceException ex) {
+            domainCountsCache.invalidate(domainName);
+        }
+    }
+
+    void domainDeleted(final String domainName) {
+        if (domainCountsCache != null) {
+            domainCountsCache.invalidate(domainName);
+        }
+    }
+
     int getListSize(List<?> list) {
         return (list == null) ? 0 : list.size();
     }
@@ -94,7 +306,10 @@ class QuotaChecker {
         
         final Quota quota = getDomainQuota(con, topLevelDomain);
         
-        // get the list of sub-domains for our given top level domain
+        // get the list of sub-domains for our given top level domain.
+        // these counts are not cached since creating or deleting a
+        // sub-domain does not update the top level domain timestamp
+        // so we have no way to detect changes made by other servers
         
         final String domainPrefix = topLevelDomain + ".";
         int objectCount = con.listDomains(domainPrefix, 0).size() + 1;
@@ -143,7 +358,9 @@ class QuotaChecker {
         // now we're going to check if we'll be allowed
         // to create this role in the domain
         
-        objectCount = con.countRoles(domainName) + 1;
+        DomainCounts counts = getDomainCounts(con, domainName);
+        objectCount = ((counts == null) ? con.countRoles(domainName)
+                : counts.roles.get(() -> con.countRoles(domainName))) + 1;
         if (quota.getRole() < objectCount) {
             throw ZMSUtils.quotaLimitError("role quota exceeded - limit: "
                     + quota.getRole() + " actual: " + objectCount, caller);
@@ -188,21 +405,28 @@ class QuotaChecker {
         // now we're going to check if we'll be allowed
         // to create this group in the domain
 
-        objectCount = con.countGroups(domainName) + 1;
+        DomainCounts counts = getDomainCounts(con, domainName);
+        objectCount = ((counts == null) ? con.countGroups(domainName)
+                : counts.groups.get(() -> con.countGroups(domainName))) + 1;
         if (quota.getGroup() < objectCount) {
             throw ZMSUtils.quotaLimitError("group quota exceeded - limit: "
                     + quota.getGroup() + " actual: " + objectCount, caller);
         }
     }
 
-    void checkRoleMembershipQuota(ObjectStoreConnection con, final String domainName,
+    /**
+     * Verify that a new member can be added to the role without exceeding
+     * the role max members limit or the domain quota. Returns true if
+     * the given member is going to be added as a new member to the role.
+     */
+    boolean checkRoleMembershipQuota(ObjectStoreConnection con, final String domainName,
             final String roleName, final String memberName, Integer maxMembers, final String caller) throws ServerResourceException {
 
         // if quota check is disabled or the max member limit is not set
         // on the role then we have nothing to do
 
         if (!quotaCheckEnabled && (maxMembers == null || maxMembers == 0)) {
-            return;
+            return false;
         }
 
         // we're going to check if the current member is already either
@@ -212,13 +436,15 @@ class QuotaChecker {
 
         Membership membership = con.getRoleMember(domainName, roleName, memberName, 0, false);
         if (membership.getIsMember()) {
-            return;
+            return false;
         }
 
         // so at this point we know that we'll be adding a new member to the
         // role. so first let's count the number of role members
 
-        int roleMemberCount = con.countRoleMembers(domainName, roleName);
+        DomainCounts counts = getDomainCounts(con, domainName);
+        int roleMemberCount = (counts == null) ? con.countRoleMembers(domainName, roleName)
+                : counts.roleMembers(roleName).get(() -> con.countRoleMembers(domainName, roleName));
 
         // first, let's verify the max member limit if it is set
 
@@ -238,16 +464,22 @@ class QuotaChecker {
             throw ZMSUtils.quotaLimitError("role member quota exceeded - limit: "
                     + quota.getRoleMember() + " actual: " + roleMemberCount, caller);
         }
+        return true;
     }
 
-    void checkGroupMembershipQuota(ObjectStoreConnection con, final String domainName,
+    /**
+     * Verify that a new member can be added to the group without exceeding
+     * the group max members limit or the domain quota. Returns true if
+     * the given member is going to be added as a new member to the group.
+     */
+    boolean checkGroupMembershipQuota(ObjectStoreConnection con, final String domainName,
              final String groupName, final String memberName, Integer maxMembers, final String caller) throws ServerResourceException {
 
         // if quota check is disabled or the max member limit is not set
         // on the group then we have nothing to do
 
         if (!quotaCheckEnabled && (maxMembers == null || maxMembers == 0)) {
-            return;
+            return false;
         }
 
         // we're going to check if the current member is already either
@@ -257,13 +489,15 @@ class QuotaChecker {
 
         GroupMembership membership = con.getGroupMember(domainName, groupName, memberName, 0, false);
         if (membership.getIsMember()) {
-            return;
+            return false;
         }
 
         // so at this point we know that we'll be adding a new member to the
         // group. so first let's count the number of group members
 
-        int groupMemberCount = con.countGroupMembers(domainName, groupName);
+        DomainCounts counts = getDomainCounts(con, domainName);
+        int groupMemberCount = (counts == null) ? con.countGroupMembers(domainName, groupName)
+                : counts.groupMembers(groupName).get(() -> con.countGroupMembers(domainName, groupName));
 
         // first, let's verify the max member limit if it is set
 
@@ -283,6 +517,7 @@ class QuotaChecker {
             throw ZMSUtils.quotaLimitError("group member quota exceeded - limit: "
                     + quota.getGroupMember() + " actual: " + groupMemberCount, caller);
         }
+        return true;
     }
 
     void checkPolicyQuota(ObjectStoreConnection con, String domainName, Policy policy, String caller) throws ServerResourceException {
@@ -315,7 +550,9 @@ class QuotaChecker {
         // now we're going to check if we'll be allowed
         // to create this policy in the domain
         
-        objectCount = con.countPolicies(domainName) + 1;
+        DomainCounts counts = getDomainCounts(con, domainName);
+        objectCount = ((counts == null) ? con.countPolicies(domainName)
+                : counts.policies.get(() -> con.countPolicies(domainName))) + 1;
         if (quota.getPolicy() < objectCount) {
             throw ZMSUtils.quotaLimitError("policy quota exceeded - limit: "
                     + quota.getPolicy() + " actual: " + objectCount, caller);
@@ -382,7 +619,9 @@ class QuotaChecker {
         // now we're going to check if we'll be allowed
         // to create this service in the domain
         
-        objectCount = con.countServiceIdentities(domainName) + 1;
+        DomainCounts counts = getDomainCounts(con, domainName);
+        objectCount = ((counts == null) ? con.countServiceIdentities(domainName)
+                : counts.services.get(() -> con.countServiceIdentities(domainName))) + 1;
         if (quota.getService() < objectCount) {
             throw ZMSUtils.quotaLimitError("service quota exceeded - limit: "
                     + quota.getService() + " actual: " + objectCount, caller);
@@ -0,0 +1,445 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.zms;
+
+import com.yahoo.athenz.common.server.ServerResourceException;
+import com.yahoo.athenz.common.server.store.AthenzDomain;
+import com.yahoo.athenz.common.server.store.ObjectStoreConnection;
+import com.yahoo.rdl.Timestamp;
+import org.eclipse.jetty.util.StringUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of the role memberships and assertions of all domains
+ * used by ZMS to answer getResourceAccessList requests without running
+ * the large join queries against the object store. For each domain we
+ * keep the roles and groups indexed by their member names together with
+ * the role assertions, and a global map of member names to the domains
+ * where they're referenced so only the relevant domains are checked for
+ * a given principal. The index is built and kept up to date by a background
+ * task in DBService using the domain modified timestamps from the store,
+ * the same change feed used by ZTS servers, so requests are never blocked
+ * by the index updates.
+ */
+class ResourceAccessIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResourceAccessIndex.class);
+
+    private static final String ACTION_ASSUME_ROLE = "assume_role";
+    private static final String ROLE_SEPARATOR = ":role.";
+
+    // since the domain modified timestamp is set before the transaction
+    // is committed, we always ask the store for the domains modified
+    // within this window before our last seen timestamp. domains that
+    // have not changed since we indexed them are skipped
+
+    private static final long MODIFIED_LOOKBACK_WINDOW = 60000;
+
+    static class Membership {
+
+        final String name;
+        final long expiration;
+        final boolean disabled;
+
+        Membership(final String name, Timestamp expiration, Integer systemDisabled) {
+            this.name = name;
+            this.expiration = expiration == null ? 0 : expiration.millis();
+            this.disabled = systemDisabled != null && systemDisabled != 0;
+        }
+
+        boolean isActive(long now) {
+            return !disabled && (expiration == 0 || expiration > now);
+        }
+    }
+
+    static class DomainEntry {
+
+        final long modified;
+        final Map<String, List<Membership>> memberRoles = new HashMap<>();
+        final Map<String, List<Membership>> memberGroups = new HashMap<>();
+        final Map<String, List<Assertion>> roleAssertions = new HashMap<>();
+        final Set<String> roleNames = new HashSet<>();
+
+        DomainEntry(AthenzDomain domain, long modified) {
+
+            this.modified = modified;
+
+            for (Role role : domain.getRoles()) {
+                roleNames.add(role.getName());
+                addMemberships(memberRoles, role.getName(), role.getRoleMembers());
+            }
+
+            for (Group group : domain.getGroups()) {
+                addGroupMemberships(group);
+            }
+
+            for (Policy policy : domain.getPolicies()) {
+                if (policy.getAssertions() == null) {
+                    continue;
+                }
+                for (Assertion assertion : policy.getAssertions()) {
+                    roleAssertions.computeIfAbsent(assertion.getRole(), k -> new ArrayList<>()).add(assertion);
+                }
+            }
+        }
+
+        void addMemberships(Map<String, List<Membership>> members, final String roleName, List<RoleMember> roleMembers) {
+            if (roleMembers == null) {
+                return;
+            }
+            for (RoleMember roleMember : roleMembers) {
+                members.computeIfAbsent(roleMember.getMemberName(), k -> new ArrayList<>())
+                        .add(new Membership(roleName, roleMember.getExpiration(), roleMember.getSystemDisabled()));
+            }
+        }
+
+        void addGroupMemberships(Group group) {
+            if (group.getGroupMembers() == null) {
+                return;
+            }
+            for (GroupMember groupMember : group.getGroupMembers()) {
+                memberGroups.computeIfAbsent(groupMember.getMemberName(), k -> new ArrayList<>())
+                        .add(new Membership(group.getName(), groupMember.getExpiration(), groupMember.getSystemDisabled()));
+            }
+        }
+
+        Set<String> getMemberNames() {
+            Set<String> memberNames = new HashSet<>(memberRoles.keySet());
+            memberNames.addAll(memberGroups.keySet());
+            return memberNames;
+        }
+    }
+
+    private final Map<String, DomainEntry> domains = new HashMap<>();
+    private final Map<String, Set<String>> memberDomains = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final long reconcileInterval;
+
+    private long lastModified = 0;
+    private long lastReconcileTime = 0;
+    private volatile boolean initialized = false;
+
+    /**
+     * @param reconcileInterval interval in milliseconds to check the full
+     *        list of domains in the store to remove any deleted domains
+     */
+    ResourceAccessIndex(long reconcileInterval) {
+        this.reconcileInterval = reconcileInterval;
+    }
+
+    /**
+     * Return true if all domains have been indexed and the index can be
+     * used to process requests.
+     * @return true if the index is initialized
+     */
+    boolean isInitialized() {
+        return initialized;
+    }
+
+    /**
+     * Refresh the index with the changes from the store. The first call
+     * indexes all domains while the following calls only process the
+     * domains that have been modified since the last refresh. The method
+     * is only called by the single index updater thread.
+     * @param con object store connection
+     * @throws ServerResourceException in case of store failures
+     */
+    void refresh(ObjectStoreConnection con) throws ServerResourceException {
+
+        final long now = System.currentTimeMillis();
+
+        // if it's time to reconcile our domain list then we'll remove
+        // any domains deleted from the store by other servers
+
+        if (initialized && now - lastReconcileTime > reconcileInterval) {
+            Set<String> storeDomains = new HashSet<>(con.listDomains(null, 0));
+            for (String domainName : getDomainNames()) {
+                if (!storeDomains.contains(domainName)) {
+                    deleteDomain(domainName);
+                }
+            }
+            lastReconcileTime = now;
+        }
+
+        final long modifiedSince = initialized ? Math.max(0, lastModified - MODIFIED_LOOKBACK_WINDOW) : 0;
+        DomainMetaList domainMetaList = con.listModifiedDomains(modifiedSince);
+        long maxModified = lastModified;
+        if (domainMetaList != null && domainMetaList.getDomains() != null) {
+            for (Domain domainMeta : domainMetaList.getDomains()) {
+                maxModified = Math.max(maxModified, refreshDomain(con, domainMeta));
+            }
+        }
+
+        // we only advance our last modified timestamp once all modified
+        // domains are processed successfully, otherwise any domain that
+        // we failed to load would not be picked up by the next refresh
+
+        lastModified = maxModified;
+
+        if (!initialized) {
+            LOG.info("Resource access index initialized with {} domains", domains.size());
+            lastReconcileTime = now;
+            initialized = true;
+        }
+    }
+
+    long refreshDomain(ObjectStoreConnection con, Domain domainMeta) throws ServerResourceException {
+
+        final String domainName = domainMeta.getName();
+        final long modified = domainMeta.getModified() == null ? 0 : domainMeta.getModified().millis();
+
+        DomainEntry entry = getDomainEntry(domainName);
+        if (entry != null && entry.modified >= modified) {
+            return modified;
+        }
+
+        // the domain might have been deleted since we retrieved
+        // the list of modified domains
+
+        AthenzDomain athenzDomain;
+        try {
+            athenzDomain = con.getAthenzDomain(domainName);
+        } catch (ServerResourceException ex) {
+            if (ex.getCode() != ServerResourceException.NOT_FOUND) {
+                throw ex;
+            }
+            athenzDomain = null;
+        }
+
+        if (athenzDomain == null) {
+            deleteDomain(domainName);
+        } else {
+            putDomain(athenzDomain, modified);
+        }
+        return modified;
+    }
+
+    private DomainEntry getDomainEntry(final String domainName) {
+        lock.readLock().lock();
+        try {
+            return domains.get(domainName);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void putDomain(AthenzDomain athenzDomain, long modified) {
+
+        DomainEntry entry = new DomainEntry(athenzDomain, modified);
+        final String domainName = athenzDomain.getName();
+
+        lock.writeLock().lock();
+        try {
+            DomainEntry oldEntry = domains.put(domainName, entry);
+            if (oldEntry != null) {
+                removeMemberDomain(oldEntry, domainName);
+            }
+            for (String memberName : entry.getMemberNames()) {
+                memberDomains.computeIfAbsent(memberName, k -> new HashSet<>()).add(domainName);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void deleteDomain(final String domainName) {
+
+        lock.writeLock().lock();
+        try {
+            DomainEntry oldEntry = domains.remove(domainName);
+            if (oldEntry != null) {
+                removeMemberDomain(oldEntry, domainName);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeMemberDomain(DomainEntry entry, final String domainName) {
+        for (String memberName : entry.getMemberNames()) {
+            Set<String> domainNames = memberDomains.get(memberName);
+            if (domainNames != null) {
+                domainNames.remove(domainName);
+                if (domainNames.isEmpty()) {
+                    memberDomains.remove(memberName);
+                }
+            }
+        }
+    }
+
+    Set<String> getDomainNames() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(domains.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Return the list of assertions that the given principal has access to
+     * through its role memberships, either directly or through its groups,
+     * including the assertions of the roles that the principal's roles
+     * are trusted to assume. The principal is expected to be validated
+     * (exists and not suspended) by the caller.
+     * @param principal name of the principal
+     * @param action if specified, only assertions with this action are returned
+     *        otherwise all assertions except for assume_role ones
+     * @return list of assertions
+     */
+    List<Assertion> getPrincipalAssertions(final String principal, final String action) {
+
+        final long now = System.currentTimeMillis();
+        List<Assertion> assertions = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+
+            // first let's get all the roles that the principal is a member of
+            // either directly or through any of its groups
+
+            Set<String> principalRoles = new HashSet<>();
+            addMemberRoles(principalRoles, principal, now);
+
+            for (String groupName : getMemberGroups(principal, now)) {
+                addMemberRoles(principalRoles, groupName, now);
+            }
+
+            // now process the assertions for each role and any of the roles
+            // the principal is trusted to assume through that role
+
+            for (String roleName : principalRoles) {
+
+                List<Assertion> roleAssertions = getRoleAssertions(roleName);
+                addRoleAssertions(assertions, roleAssertions, action);
+
+                for (Assertion assertion : roleAssertions) {
+                    if (ACTION_ASSUME_ROLE.equalsIgnoreCase(assertion.getAction())) {
+                        for (String trustedRole : getTrustedRoles(assertion.getResource())) {
+                            addRoleAssertions(assertions, getRoleAssertions(trustedRole), action);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return assertions;
+    }
+
+    void addMemberRoles(Set<String> principalRoles, final String memberName, long now) {
+        final Set<String> domainNames = memberDomains.get(memberName);
+        if (domainNames == null) {
+            return;
+        }
+        for (String domainName : domainNames) {
+            addActiveMemberships(principalRoles, domains.get(domainName).memberRoles.get(memberName), now);
+        }
+    }
+
+    Set<String> getMemberGroups(final String memberName, long now) {
+        Set<String> groups = new HashSet<>();
+        final Set<String> domainNames = memberDomains.get(memberName);
+        if (domainNames == null) {
+            return groups;
+        }
+        for (String domainName : domainNames) {
+            addActiveMemberships(groups, domains.get(domainName).memberGroups.get(memberName), now);
+        }
+        return groups;
+    }
+
+    void addActiveMemberships(Set<String> names, List<Membership> memberships, long now) {
+        if (memberships == null) {
+            return;
+        }
+        for (Membership membership : memberships) {
+            if (membership.isActive(now)) {
+                names.add(membership.name);
+            }
+        }
+    }
+
+    List<Assertion> getRoleAssertions(final String roleName) {
+        int idx = roleName.indexOf(ROLE_SEPARATOR);
+        if (idx == -1) {
+            return Collections.emptyList();
+        }
+        DomainEntry entry = domains.get(roleName.substring(0, idx));
+        if (entry == null) {
+            return Collections.emptyList();
+        }
+        return entry.roleAssertions.getOrDefault(roleName, Collections.emptyList());
+    }
+
+    List<String> getTrustedRoles(final String resource) {
+
+        int idx = resource.indexOf(ROLE_SEPARATOR);
+        if (idx == -1) {
+            return Collections.emptyList();
+        }
+
+        // the resource is either in the domain:role.name format or
+        // *:role.name which matches the role in any domain
+
+        final String domainName = resource.substring(0, idx);
+        if (!"*".equals(domainName)) {
+            DomainEntry entry = domains.get(domainName);
+            return (entry != null && entry.roleNames.contains(resource)) ?
+                    Collections.singletonList(resource) : Collections.emptyList();
+        }
+
+        final String roleSuffix = resource.substring(idx);
+        List<String> trustedRoles = new ArrayList<>();
+        for (Map.Entry<String, DomainEntry> entry : domains.entrySet()) {
+            final String roleName = entry.getKey() + roleSuffix;
+            if (entry.getValue().roleNames.contains(roleName)) {
+                trustedRoles.add(roleName);
+            }
+        }
+        return trustedRoles;
+    }
+
+    void addRoleAssertions(List<Assertion> assertions, List<Assertion> roleAssertions, final String action) {
+        for (Assertion assertion : roleAssertions) {
+            if (StringUtil.isEmpty(action)) {
+                if (!ACTION_ASSUME_ROLE.equalsIgnoreCase(assertion.getAction())) {
+                    assertions.add(copyAssertion(assertion));
+                }
+            } else if (action.equalsIgnoreCase(assertion.getAction())) {
+                assertions.add(copyAssertion(assertion));
+            }
+        }
+    }
+
+    Assertion copyAssertion(Assertion assertion) {
+
+        // the caller updates the resource values for the cloud providers
+        // so we always return a copy of our indexed assertion object
+
+        return new Assertion().setRole(assertion.getRole())
+                .setResource(assertion.getResource())
+                .setAction(assertion.getAction())
+                .setEffect(assertion.getEffect() == null ? AssertionEffect.ALLOW : assertion.getEffect())
+                .setId(assertion.getId());
+    }
+}
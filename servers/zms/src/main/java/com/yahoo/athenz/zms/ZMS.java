@@ -26,6 +26,7 @@ class ZMS extends ResourceConfig {
         register(JsonProcessingExceptionMapper.class, 1);
         register(ZMSResources.class);
         register(ZMSBinder.getInstance());
+        register(new ZMSShutdownListener(ZMSImplFactory.getZmsInstance()));
         property(ServerProperties.WADL_FEATURE_DISABLE, true);
     }
 }
@@ -89,6 +89,10 @@ public final class ZMSConsts {
 
     public static final String ZMS_PROP_VALIDATE_SERVICE_MEMBERS_SKIP_DOMAINS = "athenz.zms.validate_service_members_skip_domains";
     public static final String ZMS_PROP_MASTER_COPY_FOR_SIGNED_DOMAINS        = "athenz.zms.master_copy_for_signed_domains";
+    public static final String ZMS_PROP_JWS_DOMAIN_CACHE_SIZE                 = "athenz.zms.jws_domain_cache_size";
+    public static final String ZMS_PROP_RESOURCE_ACCESS_INDEX                 = "athenz.zms.resource_access_index";
+    public static final String ZMS_PROP_RESOURCE_ACCESS_INDEX_RECONCILE       = "athenz.zms.resource_access_index_reconcile_interval";
+    public static final String ZMS_PROP_RESOURCE_ACCESS_INDEX_REFRESH         = "athenz.zms.resource_access_index_refresh_interval";
     public static final String ZMS_PROP_ALLOW_UNDERSCORE_IN_SERVICE_NAMES     = "athenz.zms.allow_underscore_in_service_names";
     public static final String ZMS_PROP_DOMAIN_DELETE_META_ATTRIBUTES         = "athenz.zms.domain_delete_meta_attributes";
     public static final String ZMS_PROP_DISALLOW_GROUPS_IN_ADMIN_ROLE         = "athenz.zms.disallow_groups_in_admin_role";
@@ -146,6 +150,8 @@ public final class ZMSConsts {
     public static final String ZMS_PROP_QUOTA_GROUP_TAG    = "athenz.zms.quota_group_tag";
     public static final String ZMS_PROP_QUOTA_POLICY_TAG   = "athenz.zms.quota_policy_tag";
     public static final String ZMS_PROP_QUOTA_SERVICE_TAG  = "athenz.zms.quota_service_tag";
+    public static final String ZMS_PROP_QUOTA_COUNT_CACHE_TIMEOUT = "athenz.zms.quota_count_cache_timeout";
+    public static final String ZMS_PROP_QUOTA_COUNT_CACHE_SIZE    = "athenz.zms.quota_count_cache_size";
 
     public static final String ZMS_PROP_SVC_CREDS_KEY_GROUP = "athenz.zms.svc_creds_key_group";
     public static final String ZMS_PROP_SVC_CREDS_KEY_NAME  = "athenz.zms.svc_creds_key_name";
@@ -257,6 +263,11 @@ public final class ZMSConsts {
     public static final String ZMS_PROP_DOMAIN_CHANGE_TOPIC_NAMES = "athenz.zms.domain_changes_topic_names";
     public static final String ZMS_PROP_DOMAIN_CHANGE_PUBLISHER_FACTORY_CLASS = "athenz.zms.domain_change_publisher_factory_class";
     public static final String ZMS_PROP_DOMAIN_CHANGE_PUBLISHER_DEFAULT = "com.yahoo.athenz.common.messaging.impl.NoOpDomainChangePublisherFactory";
+    public static final String ZMS_PROP_DOMAIN_CHANGE_PUBLISHER_ASYNC = "athenz.zms.domain_change_publisher_async";
+    public static final String ZMS_PROP_DOMAIN_CHANGE_PUBLISHER_QUEUE_SIZE = "athenz.zms.domain_change_publisher_queue_size";
+    public static final String ZMS_PROP_DOMAIN_CHANGE_PUBLISHER_BATCH_SIZE = "athenz.zms.domain_change_publisher_batch_size";
+    public static final String ZMS_PROP_DOMAIN_CHANGE_PUBLISHER_MAX_RETRIES = "athenz.zms.domain_change_publisher_max_retries";
+    public static final String ZMS_PROP_DOMAIN_CHANGE_PUBLISHER_RETRY_DELAY = "athenz.zms.domain_change_publisher_retry_delay";
 
     public static final String DISABLE_REMINDER_NOTIFICATIONS_TAG = "zms.DisableReminderNotifications";
     public static final String DISABLE_EXPIRATION_NOTIFICATIONS_TAG = "zms.DisableExpirationNotifications";
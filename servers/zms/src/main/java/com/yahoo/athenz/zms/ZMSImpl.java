@@ -17,6 +17,8 @@ package com.yahoo.athenz.zms;
 
 import com.fasterxml.jackson.core.StreamReadConstraints;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.primitives.Bytes;
 import com.oath.auth.KeyRefresherException;
 import com.yahoo.athenz.auth.*;
@@ -26,6 +28,7 @@ import com.yahoo.athenz.auth.util.CryptoException;
 import com.yahoo.athenz.auth.util.StringUtils;
 import com.yahoo.athenz.common.config.AuthzDetailsEntity;
 import com.yahoo.athenz.common.config.AuthzDetailsField;
+import com.yahoo.athenz.common.messaging.AsyncChangePublisher;
 import com.yahoo.athenz.common.messaging.ChangePublisher;
 import com.yahoo.athenz.common.messaging.ChangePublisherFactory;
 import com.yahoo.athenz.common.messaging.DomainChangeMessage;
@@ -90,6 +93,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -184,6 +188,7 @@ public class ZMSImpl implements Authorizer, KeyStore, ZMSHandler {
     protected DynamicConfigBoolean validatePolicyAssertionRoles;
     protected DynamicConfigBoolean allowUnderscoreInServiceNames;
     protected boolean useMasterCopyForSignedDomains = false;
+    protected Cache<String, SignedJWSDomain> jwsDomainCache = null;
     protected List<String> validateServiceMemberSkipDomains;
     protected static Validator validator;
     protected String userDomain;
@@ -647,6 +652,10 @@ public class ZMSImpl implements Authorizer, KeyStore, ZMSHandler {
 
         loadMetricObject();
 
+        // allow our audit logger to report its own metrics
+
+        auditLogger.setMetric(metric);
+
         // load the Solution templates
 
         loadSolutionTemplates();
@@ -728,12 +737,53 @@ public class ZMSImpl implements Authorizer, KeyStore, ZMSHandler {
             if (!topic.isEmpty()) {
                 ChangePublisher<DomainChangeMessage> publisher = createPublisher(topic);
                 if (publisher != null) {
-                    domainChangePublishers.add(publisher);
+                    domainChangePublishers.add(createAsyncPublisher(publisher, topic));
                 }
             }
         }
     }
 
+    /**
+     * Release the resources allocated by the server. It's called when the
+     * jersey container is shut down after the jetty connectors are stopped
+     * so the domain change publishers and the audit logger can process
+     * any queued messages.
+     */
+    public void shutdown() {
+        closeDomainChangePublishers();
+        if (auditLogger != null) {
+            auditLogger.close();
+        }
+    }
+
+    void closeDomainChangePublishers() {
+        for (ChangePublisher<DomainChangeMessage> publisher : domainChangePublishers) {
+            try {
+                publisher.close();
+            } catch (Exception ex) {
+                LOG.error("unable to close domain change publisher", ex);
+            }
+        }
+    }
+
+    ChangePublisher<DomainChangeMessage> createAsyncPublisher(ChangePublisher<DomainChangeMessage> publisher,
+            final String topicName) {
+
+        // if configured, the messages are queued and published in batches
+        // by a background thread so the request thread is not blocked
+
+        if (!Boolean.parseBoolean(System.getProperty(ZMSConsts.ZMS_PROP_DOMAIN_CHANGE_PUBLISHER_ASYNC, "false"))) {
+            return publisher;
+        }
+
+        int queueSize = Integer.parseInt(System.getProperty(ZMSConsts.ZMS_PROP_DOMAIN_CHANGE_PUBLISHER_QUEUE_SIZE, "10000"));
+        int batchSize = Integer.parseInt(System.getProperty(ZMSConsts.ZMS_PROP_DOMAIN_CHANGE_PUBLISHER_BATCH_SIZE, "100"));
+        int maxRetries = Integer.parseInt(System.getProperty(ZMSConsts.ZMS_PROP_DOMAIN_CHANGE_PUBLISHER_MAX_RETRIES, "3"));
+        long retryDelay = Long.parseLong(System.getProperty(ZMSConsts.ZMS_PROP_DOMAIN_CHANGE_PUBLISHER_RETRY_DELAY, "1000"));
+
+        return new AsyncChangePublisher<>(publisher, topicName, queueSize, batchSize, maxRetries, retryDelay, metric);
+    }
+
     private ChangePublisher<DomainChangeMessage> createPublisher(String topicName) {
         ChangePublisherFactory<DomainChangeMessage> publisherFactory;
         final String domainChangePublisherClassName = System.getProperty(ZMSConsts.ZMS_PROP_DOMAIN_CHANGE_PUBLISHER_FACTORY_CLASS,
@@ -916,6 +966,15 @@ public class ZMSImpl implements Authorizer, KeyStore, ZMSHandler {
         useMasterCopyForSignedDomains = Boolean.parseBoolean(
                 System.getProperty(ZMSConsts.ZMS_PROP_MASTER_COPY_FOR_SIGNED_DOMAINS, "false"));
 
+        // cache for our signed jws domain objects so we don't need to
+        // regenerate and sign the same document for unchanged domains
+
+        final int jwsDomainCacheSize = Integer.parseInt(
+                System.getProperty(ZMSConsts.ZMS_PROP_JWS_DOMAIN_CACHE_SIZE, "1000"));
+        if (jwsDomainCacheSize > 0) {
+            jwsDomainCache = CacheBuilder.newBuilder().maximumSize(jwsDomainCacheSize).build();
+        }
+
         // get the maximum length allowed for a top level domain name
 
         domainNameMaxLen = Integer.parseInt(System.getProperty(
@@ -3417,6 +3476,15 @@ public class ZMSImpl implements Authorizer, KeyStore, ZMSHandler {
             return AccessStatus.DENIED;
         }
 
+        // if the domain is from our cache then we have a compiled
+        // policy index that we can use to evaluate the access
+
+        DomainPolicyIndex policyIndex = dbService.getDomainPolicyIndex(domain);
+        if (policyIndex != null) {
+            return evaluateAccess(policyIndex, domain.getName(), identity, action, resource,
+                    authenticatedRoles, trustDomain);
+        }
+
         AccessStatus accessStatus = AccessStatus.DENIED;
 
         List<Policy> policies = domain.getPolicies();
@@ -3489,6 +3557,28 @@ public class ZMSImpl implements Authorizer, KeyStore, ZMSHandler {
         return accessStatus;
     }
 
+    AccessStatus evaluateAccess(DomainPolicyIndex policyIndex, final String domainName, final String identity,
+            final String action, final String resource, List<String> authenticatedRoles, final String trustDomain) {
+
+        Predicate<List<Role>> roleMatcher = (authenticatedRoles != null) ?
+                roles -> matchRole(domainName, roles, authenticatedRoles) :
+                roles -> matchPrincipal(roles, identity, trustDomain);
+
+        // if any of our deny assertions match then we're going to
+        // reject the request right away without checking the allow
+        // assertions
+
+        if (policyIndex.assertionMatch(AssertionEffect.DENY, action, resource, roleMatcher)) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("evaluateAccess: deny assertion match for {}/{}", action, resource);
+            }
+            return AccessStatus.DENIED;
+        }
+
+        return policyIndex.assertionMatch(AssertionEffect.ALLOW, action, resource, roleMatcher) ?
+                AccessStatus.ALLOWED : AccessStatus.DENIED;
+    }
+
     String userHomeDomainResource(String resource) {
 
         // if the resource does not start with user domain prefix then
@@ -6511,6 +6601,34 @@ public class ZMSImpl implements Authorizer, KeyStore, ZMSHandler {
         return false;
     }
 
+    boolean matchRole(String domain, List<Role> roles, List<String> authenticatedRoles) {
+
+        // the list of roles has already been matched against the
+        // assertion role so we only need to check the authenticated roles
+
+        final int prefixLen = domain.length() + AuthorityConsts.ROLE_SEP.length();
+        for (Role role : roles) {
+            final String name = role.getName();
+            if (authenticatedRoles.contains(name) || authenticatedRoles.contains(name.substring(prefixLen))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean matchPrincipal(List<Role> roles, String fullUser, String trustDomain) {
+
+        // the list of roles has already been matched against the
+        // assertion role so we only need to check the principal
+
+        for (Role role : roles) {
+            if (matchPrincipalInRole(role, role.getName(), fullUser, trustDomain)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     boolean matchPrincipalInRole(Role role, String roleName, String fullUser, String trustDomain) {
 
         // if we have members in the role then we're going to check
@@ -7774,11 +7892,50 @@ public class ZMSImpl implements Authorizer, KeyStore, ZMSHandler {
 
         return Response
                 .status(ResourceException.OK)
-                .entity(generateJWSDomain(athenzDomain, signatureP1363Format, allowedServiceCreds))
+                .entity(getSignedJWSDomain(athenzDomain, domainModTime, signatureP1363Format, allowedServiceCreds))
                 .header("ETag", ENTITY_TAG_HEADER_DELEGATE.toString(eTag))
                 .build();
     }
 
+    static class SignedJWSDomain {
+        final long modTime;
+        final ServerPrivateKey signingKey;
+        final JWSDomain jwsDomain;
+
+        SignedJWSDomain(long modTime, ServerPrivateKey signingKey, JWSDomain jwsDomain) {
+            this.modTime = modTime;
+            this.signingKey = signingKey;
+            this.jwsDomain = jwsDomain;
+        }
+    }
+
+    JWSDomain getSignedJWSDomain(AthenzDomain athenzDomain, long domainModTime, Boolean signatureP1363Format,
+            boolean allowedServiceCreds) {
+
+        if (jwsDomainCache == null) {
+            return generateJWSDomain(athenzDomain, signatureP1363Format, allowedServiceCreds);
+        }
+
+        // our cache key includes all the attributes that have an
+        // impact on the generated document. the entry is only valid
+        // if the domain has not been modified since it was generated
+        // and it was signed with our current private key
+
+        final String cacheKey = athenzDomain.getName() + ":" + (signatureP1363Format == Boolean.TRUE) +
+                ":" + allowedServiceCreds;
+        SignedJWSDomain signedJWSDomain = jwsDomainCache.getIfPresent(cacheKey);
+        if (signedJWSDomain != null && signedJWSDomain.modTime == domainModTime
+                && signedJWSDomain.signingKey == privateKey) {
+            return signedJWSDomain.jwsDomain;
+        }
+
+        JWSDomain jwsDomain = generateJWSDomain(athenzDomain, signatureP1363Format, allowedServiceCreds);
+        if (jwsDomain != null) {
+            jwsDomainCache.put(cacheKey, new SignedJWSDomain(domainModTime, privateKey, jwsDomain));
+        }
+        return jwsDomain;
+    }
+
     JWSDomain generateJWSDomain(AthenzDomain athenzDomain, Boolean signatureP1363Format, boolean allowedServiceCreds) {
 
         // set all domain attributes including roles and services
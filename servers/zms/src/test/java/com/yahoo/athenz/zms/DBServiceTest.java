@@ -361,6 +361,75 @@ public class DBServiceTest {
         }
     }
 
+    @Test
+    public void testGetIndexedResourceAccessList() throws ServerResourceException {
+
+        AthenzDomain athenzDomain = new AthenzDomain("coretech");
+        athenzDomain.getRoles().add(new Role().setName("coretech:role.readers")
+                .setRoleMembers(Collections.singletonList(new RoleMember().setMemberName("user.joe"))));
+        athenzDomain.getPolicies().add(new Policy().setName("coretech:policy.readers")
+                .setAssertions(Collections.singletonList(new Assertion().setRole("coretech:role.readers")
+                        .setAction("read").setResource("coretech:data").setEffect(AssertionEffect.ALLOW))));
+
+        Mockito.when(mockJdbcConn.listModifiedDomains(0)).thenReturn(new DomainMetaList()
+                .setDomains(Collections.singletonList(new Domain().setName("coretech")
+                        .setModified(Timestamp.fromCurrentTime()))));
+        Mockito.when(mockJdbcConn.getAthenzDomain("coretech")).thenReturn(athenzDomain);
+        Mockito.when(mockJdbcConn.getPrincipal("user.joe")).thenReturn(new PrincipalMember()
+                .setPrincipalName("user.joe").setSuspendedState(0));
+        Mockito.when(mockJdbcConn.getPrincipal("user.jane")).thenReturn(new PrincipalMember()
+                .setPrincipalName("user.jane").setSuspendedState(1));
+
+        ResourceAccessIndex savedIndex = zms.dbService.resourceAccessIndex;
+        ObjectStore savedStore = zms.dbService.store;
+        zms.dbService.resourceAccessIndex = new ResourceAccessIndex(3600000);
+        zms.dbService.store = mockObjStore;
+
+        // until the index is initialized, requests are processed by the store
+
+        ResourceAccessList storeAccessList = new ResourceAccessList().setResources(new ArrayList<>());
+        Mockito.when(mockJdbcConn.listResourceAccess(Mockito.eq("user.joe"), Mockito.eq("read"), Mockito.any()))
+                .thenReturn(storeAccessList);
+        assertSame(zms.dbService.getResourceAccessList("user.joe", "read"), storeAccessList);
+
+        // the index is built by our background updater
+
+        zms.dbService.new ResourceAccessIndexUpdater().run();
+        assertTrue(zms.dbService.resourceAccessIndex.isInitialized());
+
+        ResourceAccessList accessList = zms.dbService.getResourceAccessList("user.joe", "read");
+        assertEquals(accessList.getResources().size(), 1);
+        assertEquals(accessList.getResources().get(0).getPrincipal(), "user.joe");
+        assertEquals(accessList.getResources().get(0).getAssertions().size(), 1);
+        assertEquals(accessList.getResources().get(0).getAssertions().get(0).getResource(), "coretech:data");
+
+        // suspended principals have no access
+
+        accessList = zms.dbService.getIndexedResourceAccessList(mockJdbcConn, "user.jane", "read");
+        assertTrue(accessList.getResources().get(0).getAssertions().isEmpty());
+
+        // unknown principals are rejected
+
+        try {
+            zms.dbService.getIndexedResourceAccessList(mockJdbcConn, "user.unknown", "read");
+            fail();
+        } catch (ResourceException ex) {
+            assertEquals(ex.getCode(), ResourceException.NOT_FOUND);
+        }
+
+        Mockito.verify(mockJdbcConn, Mockito.times(1))
+                .listResourceAccess(Mockito.eq("user.joe"), Mockito.eq("read"), Mockito.any());
+
+        // store failures in the updater are not propagated
+
+        Mockito.when(mockObjStore.getConnection(anyBoolean(), anyBoolean()))
+                .thenThrow(new ServerResourceException(500, "store failure"));
+        zms.dbService.new ResourceAccessIndexUpdater().run();
+
+        zms.dbService.resourceAccessIndex = savedIndex;
+        zms.dbService.store = savedStore;
+    }
+
     private SubDomain createSubDomainObject(String name, String parent,
             String description, String org, String ...admins) {
 
@@ -10137,7 +10206,7 @@ public class DBServiceTest {
 
         Mockito.when(mockJdbcConn.insertGroup(anyString(), any(Group.class)))
                 .thenReturn(true);
-        Mockito.when(mockJdbcConn.insertGroupMember(anyString(), anyString(), any(GroupMember.class),
+        Mockito.when(mockJdbcConn.insertGroupMembers(anyString(), anyString(), any(),
                 anyString(), anyString())).thenReturn(false);
 
         List<GroupMember> groupMembers = new ArrayList<>();
@@ -10174,7 +10243,7 @@ public class DBServiceTest {
 
         Mockito.when(mockJdbcConn.deleteGroupMember(anyString(), anyString(), anyString(),
                 anyString(), anyString())).thenReturn(true);
-        Mockito.when(mockJdbcConn.insertGroupMember(anyString(), anyString(), any(GroupMember.class),
+        Mockito.when(mockJdbcConn.insertGroupMembers(anyString(), anyString(), any(),
                 anyString(), anyString())).thenReturn(false);
 
         Mockito.when(mockJdbcConn.insertGroup(anyString(), any(Group.class)))
@@ -11841,6 +11910,7 @@ public class DBServiceTest {
         Mockito.when(conn.insertDomainTags("newDomainTagInsert", domainTags)).thenReturn(true);
         Mockito.when(conn.insertRole(anyString(), any(Role.class))).thenReturn(true);
         Mockito.when(conn.insertRoleMember(any(), any(), any(), any(), any())).thenReturn(true);
+        Mockito.when(conn.insertRoleMembers(any(), any(), any(), any(), any())).thenReturn(true);
         Mockito.when(conn.insertPolicy(any(), any())).thenReturn(true);
         Mockito.when(conn.insertAssertion(any(), any(), any(), any())).thenReturn(true);
         Mockito.when(mockObjStore.getConnection(anyBoolean(), anyBoolean()))
@@ -11867,6 +11937,7 @@ public class DBServiceTest {
         Mockito.when(conn.insertDomainTags("newDomain", domainTags)).thenReturn(true);
         Mockito.when(conn.insertRole(anyString(), any(Role.class))).thenReturn(true);
         Mockito.when(conn.insertRoleMember(any(), any(), any(), any(), any())).thenReturn(true);
+        Mockito.when(conn.insertRoleMembers(any(), any(), any(), any(), any())).thenReturn(true);
         Mockito.when(conn.insertPolicy(any(), any())).thenReturn(true);
         Mockito.when(conn.insertAssertion(any(), any(), any(), any())).thenReturn(true);
         Mockito.when(mockObjStore.getConnection(anyBoolean(), anyBoolean()))
@@ -11939,6 +12010,7 @@ public class DBServiceTest {
         Mockito.when(conn.insertDomainTags("newDomain", domainTags)).thenReturn(true);
         Mockito.when(conn.insertRole(anyString(), any(Role.class))).thenReturn(true);
         Mockito.when(conn.insertRoleMember(any(), any(), any(), any(), any())).thenReturn(true);
+        Mockito.when(conn.insertRoleMembers(any(), any(), any(), any(), any())).thenReturn(true);
         Mockito.when(conn.insertPolicy(any(), any())).thenReturn(true);
         Mockito.when(conn.insertAssertion(any(), any(), any(), any())).thenReturn(true);
         Mockito.when(mockObjStore.getConnection(anyBoolean(), anyBoolean()))
@@ -11976,6 +12048,7 @@ public class DBServiceTest {
         Mockito.when(conn.insertDomainTags("newDomainTagsUpdate", domainTags)).thenReturn(true);
         Mockito.when(conn.insertRole(anyString(), any(Role.class))).thenReturn(true);
         Mockito.when(conn.insertRoleMember(any(), any(), any(), any(), any())).thenReturn(true);
+        Mockito.when(conn.insertRoleMembers(any(), any(), any(), any(), any())).thenReturn(true);
         Mockito.when(conn.insertPolicy(any(), any())).thenReturn(true);
         Mockito.when(conn.insertAssertion(any(), any(), any(), any())).thenReturn(true);
         Mockito.when(mockObjStore.getConnection(anyBoolean(), anyBoolean()))
@@ -13573,13 +13646,13 @@ public class DBServiceTest {
         Role originalRole = new Role().setName(roleName).setRoleMembers(new ArrayList<>());
 
         ObjectStoreConnection conn = Mockito.mock(ObjectStoreConnection.class);
-        Mockito.when(conn.insertRoleMember(eq(domainName), eq(roleName), any(), any(), any()))
+        Mockito.when(conn.insertRoleMembers(eq(domainName), eq(roleName), any(), any(), any()))
                 .thenReturn(false)
                 .thenReturn(true);
 
         StringBuilder auditDetails = new StringBuilder();
 
-        // we're going to try the operation twice since our insertRoleMember will return false
+        // we're going to try the operation twice since our insertRoleMembers will return false
         // during the first call and then true for the second call
 
         assertFalse(zms.dbService.processUpdateRoleMembers(conn, originalRole, newMembers, false, domainName,
@@ -1118,4 +1118,337 @@ public class QuotaCheckerTest {
 
         zmsTestInitializer.deleteTopLevelDomain(domainName);
     }
+
+    private QuotaChecker createCountCacheQuotaChecker() {
+        System.setProperty(ZMSConsts.ZMS_PROP_QUOTA_COUNT_CACHE_TIMEOUT, "300");
+        QuotaChecker quotaCheck = new QuotaChecker();
+        System.clearProperty(ZMSConsts.ZMS_PROP_QUOTA_COUNT_CACHE_TIMEOUT);
+        return quotaCheck;
+    }
+
+    @Test
+    public void testDomainCountsCache() throws ServerResourceException {
+
+        QuotaChecker quotaCheck = createCountCacheQuotaChecker();
+        Quota mockQuota = new Quota().setName("athenz").setRole(3).setRoleMember(10);
+        ObjectStoreConnection con = Mockito.mock(ObjectStoreConnection.class);
+        Mockito.when(con.getQuota("athenz")).thenReturn(mockQuota);
+        Mockito.when(con.getDomainModTimestamp("athenz")).thenReturn(100L);
+        Mockito.when(con.countRoles("athenz")).thenReturn(1);
+
+        Role role = new Role().setName("athenz:role.readers");
+
+        // the role count is only loaded once from the object store
+
+        quotaCheck.checkRoleQuota(con, "athenz", role, "caller");
+        quotaCheck.checkRoleQuota(con, "athenz", role, "caller");
+        Mockito.verify(con, Mockito.times(1)).countRoles("athenz");
+
+        // add a new role and update the domain timestamp - the
+        // counts are updated without any count queries
+
+        assertEquals(quotaCheck.getDomainModTimestamp(con, "athenz"), 100L);
+        Mockito.when(con.getDomainModTimestamp("athenz")).thenReturn(200L);
+        quotaCheck.updateDomainCounts(con, "athenz", 100L, counts -> counts.roleAdded("readers"));
+        quotaCheck.checkRoleQuota(con, "athenz", role, "caller");
+
+        Mockito.when(con.getDomainModTimestamp("athenz")).thenReturn(300L);
+        quotaCheck.updateDomainCounts(con, "athenz", 200L, counts -> counts.roleAdded("writers"));
+        try {
+            quotaCheck.checkRoleQuota(con, "athenz", role, "caller");
+            fail();
+        } catch (ResourceException ex) {
+            assertEquals(ex.getCode(), ResourceException.TOO_MANY_REQUESTS);
+        }
+        Mockito.verify(con, Mockito.times(1)).countRoles("athenz");
+
+        // the domain is modified by another server so our counts
+        // are reloaded from the object store
+
+        Mockito.when(con.getDomainModTimestamp("athenz")).thenReturn(400L);
+        quotaCheck.checkRoleQuota(con, "athenz", role, "caller");
+        Mockito.verify(con, Mockito.times(2)).countRoles("athenz");
+
+        // changes without any count updates invalidate our counts
+
+        quotaCheck.updateDomainCounts(con, "athenz", 400L, null);
+        quotaCheck.checkRoleQuota(con, "athenz", role, "caller");
+        Mockito.verify(con, Mockito.times(3)).countRoles("athenz");
+
+        // the domain is modified by another server after our counts were
+        // validated, so the timestamp before our write does not match and
+        // our changes are not applied to the stale counts
+
+        Mockito.when(con.getDomainModTimestamp("athenz")).thenReturn(600L);
+        quotaCheck.updateDomainCounts(con, "athenz", 500L, counts -> counts.roleAdded("readers"));
+        quotaCheck.checkRoleQuota(con, "athenz", role, "caller");
+        Mockito.verify(con, Mockito.times(4)).countRoles("athenz");
+
+        // not having the timestamp before our write invalidates our counts
+
+        quotaCheck.updateDomainCounts(con, "athenz", 0L, counts -> counts.roleAdded("readers"));
+        quotaCheck.checkRoleQuota(con, "athenz", role, "caller");
+        Mockito.verify(con, Mockito.times(5)).countRoles("athenz");
+
+        // failure to retrieve the domain timestamp invalidates our counts
+
+        Mockito.when(con.getDomainModTimestamp("athenz"))
+                .thenThrow(new ServerResourceException(ServerResourceException.INTERNAL_SERVER_ERROR))
+                .thenReturn(600L);
+        quotaCheck.updateDomainCounts(con, "athenz", 600L, QuotaChecker.DomainCounts::unchanged);
+        quotaCheck.checkRoleQuota(con, "athenz", role, "caller");
+        Mockito.verify(con, Mockito.times(6)).countRoles("athenz");
+
+        // another thread has updated the counts after we validated the timestamp
+
+        QuotaChecker.DomainCounts domainCounts = quotaCheck.getDomainCounts(con, "athenz");
+        Mockito.when(con.getDomainModTimestamp("athenz")).thenReturn(700L);
+        quotaCheck.updateDomainCounts(con, "athenz", 600L, counts -> counts.modTime.set(650L));
+        assertNotSame(quotaCheck.getDomainCounts(con, "athenz"), domainCounts);
+
+        // unknown domains and updates for domains without counts are skipped
+
+        assertNull(quotaCheck.getDomainCounts(con, "unknown"));
+        assertEquals(quotaCheck.getDomainModTimestamp(con, "unknown"), 0L);
+        quotaCheck.updateDomainCounts(con, "unknown", 100L, counts -> counts.roleAdded("readers"));
+        Mockito.verify(con, Mockito.times(1)).getDomainModTimestamp("unknown");
+
+        // with quota check disabled we have no counts
+
+        quotaCheck.setQuotaCheckEnabled(false);
+        assertNull(quotaCheck.getDomainCounts(con, "athenz"));
+    }
+
+    @Test
+    public void testDomainCountsCacheDisabled() throws ServerResourceException {
+
+        QuotaChecker quotaCheck = new QuotaChecker();
+        ObjectStoreConnection con = Mockito.mock(ObjectStoreConnection.class);
+        Mockito.when(con.getDomainModTimestamp("athenz")).thenReturn(100L);
+
+        assertNull(quotaCheck.getDomainCounts(con, "athenz"));
+        assertEquals(quotaCheck.getDomainModTimestamp(con, "athenz"), 0L);
+        quotaCheck.updateDomainCounts(con, "athenz", 100L, null);
+        quotaCheck.domainDeleted("athenz.api");
+        Mockito.verify(con, Mockito.times(0)).getDomainModTimestamp("athenz");
+    }
+
+    @Test
+    public void testMembershipCountsCache() throws ServerResourceException {
+
+        QuotaChecker quotaCheck = createCountCacheQuotaChecker();
+        Quota mockQuota = new Quota().setName("athenz").setRoleMember(3).setGroupMember(3);
+        ObjectStoreConnection con = Mockito.mock(ObjectStoreConnection.class);
+        Mockito.when(con.getQuota("athenz")).thenReturn(mockQuota);
+        Mockito.when(con.getDomainModTimestamp("athenz")).thenReturn(100L);
+        Mockito.when(con.countRoleMembers("athenz", "readers")).thenReturn(1);
+        Mockito.when(con.countGroupMembers("athenz", "devs")).thenReturn(1);
+        Mockito.when(con.getRoleMember("athenz", "readers", "user.joe", 0, false))
+                .thenReturn(new Membership().setIsMember(false));
+        Mockito.when(con.getRoleMember("athenz", "readers", "user.jane", 0, false))
+                .thenReturn(new Membership().setIsMember(true));
+        Mockito.when(con.getGroupMember("athenz", "devs", "user.joe", 0, false))
+                .thenReturn(new GroupMembership().setIsMember(false));
+
+        assertTrue(quotaCheck.checkRoleMembershipQuota(con, "athenz", "readers", "user.joe", 0, "caller"));
+        assertFalse(quotaCheck.checkRoleMembershipQuota(con, "athenz", "readers", "user.jane", 0, "caller"));
+        assertTrue(quotaCheck.checkGroupMembershipQuota(con, "athenz", "devs", "user.joe", 0, "caller"));
+
+        // add members to our role and group
+
+        Mockito.when(con.getDomainModTimestamp("athenz")).thenReturn(200L);
+        quotaCheck.updateDomainCounts(con, "athenz", 100L, counts -> counts.roleMemberAdded("readers"));
+        quotaCheck.updateDomainCounts(con, "athenz", 200L, counts -> counts.groupMemberAdded("devs"));
+        assertTrue(quotaCheck.checkRoleMembershipQuota(con, "athenz", "readers", "user.joe", 0, "caller"));
+        assertTrue(quotaCheck.checkGroupMembershipQuota(con, "athenz", "devs", "user.joe", 0, "caller"));
+
+        quotaCheck.updateDomainCounts(con, "athenz", 200L, counts -> counts.roleMemberAdded("readers"));
+        quotaCheck.updateDomainCounts(con, "athenz", 200L, counts -> counts.groupMemberAdded("devs"));
+        try {
+            quotaCheck.checkRoleMembershipQuota(con, "athenz", "readers", "user.joe", 0, "caller");
+            fail();
+        } catch (ResourceException ex) {
+            assertEquals(ex.getCode(), ResourceException.TOO_MANY_REQUESTS);
+        }
+        try {
+            quotaCheck.checkGroupMembershipQuota(con, "athenz", "devs", "user.joe", 0, "caller");
+            fail();
+        } catch (ResourceException ex) {
+            assertEquals(ex.getCode(), ResourceException.TOO_MANY_REQUESTS);
+        }
+        Mockito.verify(con, Mockito.times(1)).countRoleMembers("athenz", "readers");
+        Mockito.verify(con, Mockito.times(1)).countGroupMembers("athenz", "devs");
+
+        // updating the role and group resets the member counts
+
+        quotaCheck.updateDomainCounts(con, "athenz", 200L, counts -> counts.roleUpdated("readers"));
+        quotaCheck.updateDomainCounts(con, "athenz", 200L, counts -> counts.groupUpdated("devs"));
+        assertTrue(quotaCheck.checkRoleMembershipQuota(con, "athenz", "readers", "user.joe", 0, "caller"));
+        assertTrue(quotaCheck.checkGroupMembershipQuota(con, "athenz", "devs", "user.joe", 0, "caller"));
+        Mockito.verify(con, Mockito.times(2)).countRoleMembers("athenz", "readers");
+        Mockito.verify(con, Mockito.times(2)).countGroupMembers("athenz", "devs");
+    }
+
+    @Test
+    public void testObjectCountsCache() throws ServerResourceException {
+
+        QuotaChecker quotaCheck = createCountCacheQuotaChecker();
+        Quota mockQuota = new Quota().setName("athenz").setGroup(2).setGroupMember(10)
+                .setPolicy(2).setAssertion(10).setService(2).setServiceHost(10).setPublicKey(10);
+        ObjectStoreConnection con = Mockito.mock(ObjectStoreConnection.class);
+        Mockito.when(con.getQuota("athenz")).thenReturn(mockQuota);
+        Mockito.when(con.getDomainModTimestamp("athenz")).thenReturn(100L);
+        Mockito.when(con.countGroups("athenz")).thenReturn(0);
+        Mockito.when(con.countPolicies("athenz")).thenReturn(0);
+        Mockito.when(con.countServiceIdentities("athenz")).thenReturn(0);
+
+        Group group = new Group().setName("athenz:group.devs");
+        Policy policy = new Policy().setName("athenz:policy.readers");
+        ServiceIdentity service = new ServiceIdentity().setName("athenz.api");
+
+        quotaCheck.checkGroupQuota(con, "athenz", group, "caller");
+        quotaCheck.checkPolicyQuota(con, "athenz", policy, "caller");
+        quotaCheck.checkServiceIdentityQuota(con, "athenz", service, "caller");
+
+        // add one of each object type which brings us to our quota
+
+        Mockito.when(con.getDomainModTimestamp("athenz")).thenReturn(200L);
+        quotaCheck.updateDomainCounts(con, "athenz", 100L, counts -> counts.groupAdded("devs"));
+        quotaCheck.updateDomainCounts(con, "athenz", 200L, QuotaChecker.DomainCounts::policyAdded);
+        quotaCheck.updateDomainCounts(con, "athenz", 200L, QuotaChecker.DomainCounts::serviceAdded);
+
+        quotaCheck.checkGroupQuota(con, "athenz", group, "caller");
+        quotaCheck.checkPolicyQuota(con, "athenz", policy, "caller");
+        quotaCheck.checkServiceIdentityQuota(con, "athenz", service, "caller");
+
+        quotaCheck.updateDomainCounts(con, "athenz", 200L, counts -> counts.groupAdded("admins"));
+        quotaCheck.updateDomainCounts(con, "athenz", 200L, QuotaChecker.DomainCounts::policyAdded);
+        quotaCheck.updateDomainCounts(con, "athenz", 200L, QuotaChecker.DomainCounts::serviceAdded);
+
+        try {
+            quotaCheck.checkGroupQuota(con, "athenz", group, "caller");
+            fail();
+        } catch (ResourceException ex) {
+            assertEquals(ex.getCode(), ResourceException.TOO_MANY_REQUESTS);
+        }
+        try {
+            quotaCheck.checkPolicyQuota(con, "athenz", policy, "caller");
+            fail();
+        } catch (ResourceException ex) {
+            assertEquals(ex.getCode(), ResourceException.TOO_MANY_REQUESTS);
+        }
+        try {
+            quotaCheck.checkServiceIdentityQuota(con, "athenz", service, "caller");
+            fail();
+        } catch (ResourceException ex) {
+            assertEquals(ex.getCode(), ResourceException.TOO_MANY_REQUESTS);
+        }
+
+        Mockito.verify(con, Mockito.times(1)).countGroups("athenz");
+        Mockito.verify(con, Mockito.times(1)).countPolicies("athenz");
+        Mockito.verify(con, Mockito.times(1)).countServiceIdentities("athenz");
+    }
+
+    @Test
+    public void testSubdomainQuotaNotCached() throws ServerResourceException {
+
+        QuotaChecker quotaCheck = createCountCacheQuotaChecker();
+        Quota mockQuota = new Quota().setName("athenz").setSubdomain(2);
+        ObjectStoreConnection con = Mockito.mock(ObjectStoreConnection.class);
+        Mockito.when(con.getQuota("athenz")).thenReturn(mockQuota);
+        ArrayList<String> domains = new ArrayList<>();
+        domains.add("athenz.one");
+        Mockito.when(con.listDomains("athenz.", 0)).thenReturn(domains);
+
+        quotaCheck.checkSubdomainQuota(con, "athenz.two", "caller");
+
+        // subdomain added by another server must be included in our check
+
+        domains.add("athenz.two");
+        try {
+            quotaCheck.checkSubdomainQuota(con, "athenz.three", "caller");
+            fail();
+        } catch (ResourceException ex) {
+            assertEquals(ex.getCode(), ResourceException.TOO_MANY_REQUESTS);
+        }
+
+        // and the same for a deleted subdomain
+
+        domains.remove("athenz.one");
+        quotaCheck.checkSubdomainQuota(con, "athenz.three", "caller");
+        Mockito.verify(con, Mockito.times(3)).listDomains("athenz.", 0);
+    }
+
+    @Test
+    public void testQuotaCountsCacheDomainOperations() {
+
+        final String domainName = "quota-counts-cache";
+
+        ZMSImpl zmsImpl = zmsTestInitializer.getZms();
+        RsrcCtxWrapper ctx = zmsTestInitializer.getMockDomRsrcCtx();
+        final String auditRef = zmsTestInitializer.getAuditRef();
+
+        QuotaChecker savedQuotaCheck = zmsImpl.dbService.quotaCheck;
+        zmsImpl.dbService.quotaCheck = createCountCacheQuotaChecker();
+
+        TopLevelDomain dom1 = zmsTestInitializer.createTopLevelDomainObject(domainName,
+                "Test Domain1", "testOrg", zmsTestInitializer.getAdminUser());
+        zmsImpl.postTopLevelDomain(ctx, auditRef, null, dom1);
+
+        Quota quota = new Quota().setName(domainName).setAssertion(10).setEntity(10)
+                .setPolicy(10).setPublicKey(10).setRole(2).setRoleMember(2)
+                .setService(10).setServiceHost(10).setSubdomain(1).setGroupMember(10).setGroup(10);
+        zmsImpl.putQuota(ctx, domainName, auditRef, quota);
+
+        // we have the admin role so we can only add one more role
+
+        Role role = zmsTestInitializer.createRoleObject(domainName, "role1", null,
+                "user.joe", null);
+        zmsImpl.putRole(ctx, domainName, "role1", auditRef, false, null, role);
+        try {
+            role = zmsTestInitializer.createRoleObject(domainName, "role2", null, "user.joe", null);
+            zmsImpl.putRole(ctx, domainName, "role2", auditRef, false, null, role);
+            fail();
+        } catch (ResourceException ex) {
+            assertEquals(ex.getCode(), ResourceException.TOO_MANY_REQUESTS);
+        }
+
+        // we can add one more member to our role
+
+        Membership membership = new Membership().setMemberName("user.jane");
+        zmsImpl.putMembership(ctx, domainName, "role1", "user.jane", auditRef, false, null, membership);
+        try {
+            membership = new Membership().setMemberName("user.john");
+            zmsImpl.putMembership(ctx, domainName, "role1", "user.john", auditRef, false, null, membership);
+            fail();
+        } catch (ResourceException ex) {
+            assertEquals(ex.getCode(), ResourceException.TOO_MANY_REQUESTS);
+        }
+
+        // deleting a member updates the domain so the counts are reloaded
+
+        zmsImpl.deleteMembership(ctx, domainName, "role1", "user.jane", auditRef, null);
+        zmsImpl.putMembership(ctx, domainName, "role1", "user.john", auditRef, false, null, membership);
+
+        // we can only create a single subdomain
+
+        SubDomain subDom = zmsTestInitializer.createSubDomainObject("sub1", domainName,
+                "Test Domain", "testOrg", zmsTestInitializer.getAdminUser());
+        zmsImpl.postSubDomain(ctx, domainName, auditRef, null, subDom);
+        try {
+            subDom = zmsTestInitializer.createSubDomainObject("sub2", domainName,
+                    "Test Domain", "testOrg", zmsTestInitializer.getAdminUser());
+            zmsImpl.postSubDomain(ctx, domainName, auditRef, null, subDom);
+            fail();
+        } catch (ResourceException ex) {
+            assertEquals(ex.getCode(), ResourceException.TOO_MANY_REQUESTS);
+        }
+
+        zmsImpl.deleteSubDomain(ctx, domainName, "sub1", auditRef, null);
+        zmsImpl.postSubDomain(ctx, domainName, auditRef, null, subDom);
+
+        zmsImpl.deleteSubDomain(ctx, domainName, "sub2", auditRef, null);
+        zmsImpl.deleteTopLevelDomain(ctx, domainName, auditRef, null);
+        zmsImpl.dbService.quotaCheck = savedQuotaCheck;
+    }
 }
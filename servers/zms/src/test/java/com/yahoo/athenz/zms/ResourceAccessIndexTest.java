@@ -0,0 +1,278 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.zms;
+
+import com.yahoo.athenz.common.server.ServerResourceException;
+import com.yahoo.athenz.common.server.store.AthenzDomain;
+import com.yahoo.athenz.common.server.store.ObjectStoreConnection;
+import com.yahoo.rdl.Timestamp;
+import org.mockito.Mockito;
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.*;
+
+public class ResourceAccessIndexTest {
+
+    private AthenzDomain createProviderDomain() {
+
+        AthenzDomain domain = new AthenzDomain("coretech");
+        domain.getRoles().add(new Role().setName("coretech:role.readers")
+                .setRoleMembers(new ArrayList<>(Arrays.asList(new RoleMember().setMemberName("user.joe"),
+                        new RoleMember().setMemberName("user.jane")
+                                .setExpiration(Timestamp.fromMillis(System.currentTimeMillis() - 1000)),
+                        new RoleMember().setMemberName("user.john").setSystemDisabled(1),
+                        new RoleMember().setMemberName("coretech:group.dev-team")))));
+        domain.getRoles().add(new Role().setName("coretech:role.admin")
+                .setRoleMembers(new ArrayList<>(Collections.singletonList(new RoleMember().setMemberName("user.admin")))));
+        domain.getGroups().add(new Group().setName("coretech:group.dev-team")
+                .setGroupMembers(Collections.singletonList(new GroupMember().setMemberName("user.dev"))));
+
+        List<Assertion> assertions = new ArrayList<>();
+        assertions.add(new Assertion().setRole("coretech:role.readers").setAction("read")
+                .setResource("coretech:data").setEffect(AssertionEffect.ALLOW).setId(1L));
+        assertions.add(new Assertion().setRole("coretech:role.readers").setAction("assume_role")
+                .setResource("sports:role.writers").setId(2L));
+        assertions.add(new Assertion().setRole("coretech:role.readers").setAction("assume_role")
+                .setResource("*:role.deployers").setId(3L));
+        assertions.add(new Assertion().setRole("coretech:role.admin").setAction("*")
+                .setResource("coretech:*").setEffect(AssertionEffect.ALLOW).setId(4L));
+        domain.getPolicies().add(new Policy().setName("coretech:policy.access").setAssertions(assertions));
+        return domain;
+    }
+
+    private AthenzDomain createTenantDomain(final String domainName) {
+
+        AthenzDomain domain = new AthenzDomain(domainName);
+        domain.getRoles().add(new Role().setName(domainName + ":role.writers"));
+        domain.getRoles().add(new Role().setName(domainName + ":role.deployers"));
+
+        List<Assertion> assertions = new ArrayList<>();
+        assertions.add(new Assertion().setRole(domainName + ":role.writers").setAction("write")
+                .setResource(domainName + ":data").setEffect(AssertionEffect.ALLOW).setId(10L));
+        assertions.add(new Assertion().setRole(domainName + ":role.deployers").setAction("deploy")
+                .setResource(domainName + ":app").setEffect(AssertionEffect.DENY).setId(11L));
+        domain.getPolicies().add(new Policy().setName(domainName + ":policy.tenant").setAssertions(assertions));
+        return domain;
+    }
+
+    private Set<String> getResources(List<Assertion> assertions) {
+        return assertions.stream().map(Assertion::getResource).collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testGetPrincipalAssertions() {
+
+        ResourceAccessIndex index = new ResourceAccessIndex(3600000);
+        index.putDomain(createProviderDomain(), 1000);
+        index.putDomain(createTenantDomain("sports"), 1000);
+        index.putDomain(createTenantDomain("weather"), 1000);
+
+        // all actions except for assume_role including the trusted roles
+
+        List<Assertion> assertions = index.getPrincipalAssertions("user.joe", null);
+        assertEquals(getResources(assertions), new HashSet<>(Arrays.asList("coretech:data", "sports:data",
+                "sports:app", "weather:app")));
+
+        assertions = index.getPrincipalAssertions("user.joe", "assume_role");
+        assertEquals(getResources(assertions), new HashSet<>(Arrays.asList("sports:role.writers",
+                "*:role.deployers")));
+
+        assertions = index.getPrincipalAssertions("user.joe", "deploy");
+        assertEquals(assertions.size(), 2);
+        assertEquals(assertions.get(0).getEffect(), AssertionEffect.DENY);
+
+        // group members get the same access
+
+        assertions = index.getPrincipalAssertions("user.dev", "write");
+        assertEquals(assertions.size(), 1);
+        assertEquals(assertions.get(0).getRole(), "sports:role.writers");
+        assertEquals(assertions.get(0).getResource(), "sports:data");
+
+        // expired, disabled and unknown members have no access
+
+        assertTrue(index.getPrincipalAssertions("user.jane", null).isEmpty());
+        assertTrue(index.getPrincipalAssertions("user.john", null).isEmpty());
+        assertTrue(index.getPrincipalAssertions("user.unknown", null).isEmpty());
+
+        assertions = index.getPrincipalAssertions("user.admin", "");
+        assertEquals(assertions.size(), 1);
+        assertEquals(assertions.get(0).getId(), Long.valueOf(4L));
+
+        // returned assertions are copies of our indexed objects
+
+        assertions.get(0).setResource("arn:aws:iam::123456789012:role/admin");
+        assertEquals(index.getPrincipalAssertions("user.admin", "").get(0).getResource(), "coretech:*");
+    }
+
+    @Test
+    public void testPutDeleteDomain() {
+
+        ResourceAccessIndex index = new ResourceAccessIndex(3600000);
+        index.putDomain(createProviderDomain(), 1000);
+        index.putDomain(createTenantDomain("sports"), 1000);
+        assertEquals(index.getPrincipalAssertions("user.joe", "write").size(), 1);
+
+        // update our provider domain without the trust assertions
+
+        AthenzDomain domain = createProviderDomain();
+        domain.getPolicies().get(0).getAssertions().removeIf(assertion -> "assume_role".equals(assertion.getAction()));
+        domain.getRoles().get(0).getRoleMembers().removeIf(member -> "user.joe".equals(member.getMemberName()));
+        domain.getRoles().get(1).getRoleMembers().add(new RoleMember().setMemberName("user.joe"));
+        index.putDomain(domain, 2000);
+
+        assertTrue(index.getPrincipalAssertions("user.joe", "write").isEmpty());
+        assertTrue(index.getPrincipalAssertions("user.joe", "read").isEmpty());
+        assertEquals(index.getPrincipalAssertions("user.joe", "*").size(), 1);
+
+        index.deleteDomain("coretech");
+        assertTrue(index.getPrincipalAssertions("user.joe", "*").isEmpty());
+        assertTrue(index.getPrincipalAssertions("user.dev", null).isEmpty());
+        assertEquals(index.getDomainNames(), Collections.singleton("sports"));
+
+        // deleting unknown domain is no-op
+
+        index.deleteDomain("unknown");
+        assertEquals(index.getDomainNames(), Collections.singleton("sports"));
+    }
+
+    @Test
+    public void testRefresh() throws ServerResourceException {
+
+        ObjectStoreConnection con = Mockito.mock(ObjectStoreConnection.class);
+
+        DomainMetaList initialList = new DomainMetaList().setDomains(Arrays.asList(
+                new Domain().setName("coretech").setModified(Timestamp.fromMillis(100000)),
+                new Domain().setName("sports").setModified(Timestamp.fromMillis(100000))));
+        DomainMetaList updatedList = new DomainMetaList().setDomains(Arrays.asList(
+                new Domain().setName("coretech").setModified(Timestamp.fromMillis(100000)),
+                new Domain().setName("sports").setModified(Timestamp.fromMillis(200000)),
+                new Domain().setName("weather").setModified(Timestamp.fromMillis(200000))));
+
+        Mockito.when(con.listModifiedDomains(0)).thenReturn(initialList);
+        Mockito.when(con.listModifiedDomains(40000)).thenReturn(updatedList);
+        Mockito.when(con.getAthenzDomain("coretech")).thenReturn(createProviderDomain());
+        Mockito.when(con.getAthenzDomain("sports")).thenReturn(createTenantDomain("sports"));
+        Mockito.when(con.getAthenzDomain("weather"))
+                .thenThrow(new ServerResourceException(ServerResourceException.NOT_FOUND));
+
+        ResourceAccessIndex index = new ResourceAccessIndex(3600000);
+        assertFalse(index.isInitialized());
+        index.refresh(con);
+        assertTrue(index.isInitialized());
+        assertEquals(index.getDomainNames(), new HashSet<>(Arrays.asList("coretech", "sports")));
+        Mockito.verify(con, Mockito.times(1)).getAthenzDomain("coretech");
+
+        // the second refresh only loads the modified domains and the
+        // deleted domain is not added to the index
+
+        index.refresh(con);
+        assertEquals(index.getDomainNames(), new HashSet<>(Arrays.asList("coretech", "sports")));
+        Mockito.verify(con, Mockito.times(1)).getAthenzDomain("coretech");
+        Mockito.verify(con, Mockito.times(2)).getAthenzDomain("sports");
+        Mockito.verify(con, Mockito.never()).listDomains(null, 0);
+    }
+
+    @Test
+    public void testRefreshReconcile() throws ServerResourceException {
+
+        ObjectStoreConnection con = Mockito.mock(ObjectStoreConnection.class);
+
+        DomainMetaList domainList = new DomainMetaList().setDomains(Arrays.asList(
+                new Domain().setName("coretech").setModified(Timestamp.fromMillis(100000)),
+                new Domain().setName("sports").setModified(Timestamp.fromMillis(100000))));
+        DomainMetaList updatedList = new DomainMetaList().setDomains(Collections.singletonList(
+                new Domain().setName("coretech").setModified(Timestamp.fromMillis(100000))));
+        Mockito.when(con.listModifiedDomains(Mockito.anyLong())).thenReturn(domainList, updatedList);
+        Mockito.when(con.getAthenzDomain("coretech")).thenReturn(createProviderDomain());
+        Mockito.when(con.getAthenzDomain("sports")).thenReturn(createTenantDomain("sports"));
+        Mockito.when(con.listDomains(null, 0)).thenReturn(Collections.singletonList("coretech"));
+
+        ResourceAccessIndex index = new ResourceAccessIndex(-1);
+        index.refresh(con);
+        assertEquals(index.getDomainNames().size(), 2);
+
+        index.refresh(con);
+        assertEquals(index.getDomainNames(), Collections.singleton("coretech"));
+        assertTrue(index.getPrincipalAssertions("user.joe", "write").isEmpty());
+    }
+
+    @Test
+    public void testRefreshFailure() throws ServerResourceException {
+
+        ObjectStoreConnection con = Mockito.mock(ObjectStoreConnection.class);
+        DomainMetaList domainList = new DomainMetaList().setDomains(Collections.singletonList(
+                new Domain().setName("coretech").setModified(Timestamp.fromMillis(100000))));
+        Mockito.when(con.listModifiedDomains(0)).thenReturn(domainList);
+        Mockito.when(con.getAthenzDomain("coretech"))
+                .thenThrow(new ServerResourceException(ServerResourceException.INTERNAL_SERVER_ERROR));
+
+        ResourceAccessIndex index = new ResourceAccessIndex(3600000);
+        try {
+            index.refresh(con);
+            fail();
+        } catch (ServerResourceException ex) {
+            assertEquals(ex.getCode(), ServerResourceException.INTERNAL_SERVER_ERROR);
+        }
+        assertTrue(index.getDomainNames().isEmpty());
+        assertFalse(index.isInitialized());
+    }
+
+    @Test
+    public void testRefreshFailureRetry() throws ServerResourceException {
+
+        ObjectStoreConnection con = Mockito.mock(ObjectStoreConnection.class);
+
+        DomainMetaList initialList = new DomainMetaList().setDomains(Collections.singletonList(
+                new Domain().setName("coretech").setModified(Timestamp.fromMillis(100000))));
+        DomainMetaList updatedList = new DomainMetaList().setDomains(Arrays.asList(
+                new Domain().setName("weather").setModified(Timestamp.fromMillis(300000)),
+                new Domain().setName("sports").setModified(Timestamp.fromMillis(200000))));
+
+        Mockito.when(con.listModifiedDomains(0)).thenReturn(initialList);
+        Mockito.when(con.listModifiedDomains(40000)).thenReturn(updatedList);
+        Mockito.when(con.getAthenzDomain("coretech")).thenReturn(createProviderDomain());
+        Mockito.when(con.getAthenzDomain("weather")).thenReturn(createTenantDomain("weather"));
+        Mockito.when(con.getAthenzDomain("sports"))
+                .thenThrow(new ServerResourceException(ServerResourceException.INTERNAL_SERVER_ERROR))
+                .thenReturn(createTenantDomain("sports"));
+
+        ResourceAccessIndex index = new ResourceAccessIndex(3600000);
+        index.refresh(con);
+
+        // the failed refresh must not advance our last modified timestamp
+        // even though we have already processed a newer domain
+
+        try {
+            index.refresh(con);
+            fail();
+        } catch (ServerResourceException ex) {
+            assertEquals(ex.getCode(), ServerResourceException.INTERNAL_SERVER_ERROR);
+        }
+        assertEquals(index.getDomainNames(), new HashSet<>(Arrays.asList("coretech", "weather")));
+
+        // the next refresh picks up the failed domain while the
+        // already indexed domains are not loaded again
+
+        index.refresh(con);
+        assertEquals(index.getDomainNames(), new HashSet<>(Arrays.asList("coretech", "sports", "weather")));
+        Mockito.verify(con, Mockito.times(2)).listModifiedDomains(40000);
+        Mockito.verify(con, Mockito.times(1)).getAthenzDomain("weather");
+        Mockito.verify(con, Mockito.times(2)).getAthenzDomain("sports");
+    }
+}
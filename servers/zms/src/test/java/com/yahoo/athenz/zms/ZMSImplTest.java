@@ -19,6 +19,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JWSObject;
 import com.nimbusds.jose.JWSVerifier;
@@ -32,6 +33,7 @@ import com.yahoo.athenz.auth.token.PrincipalToken;
 import com.yahoo.athenz.auth.util.Crypto;
 import com.yahoo.athenz.common.config.AuthzDetailsEntity;
 import com.yahoo.athenz.common.config.AuthzDetailsField;
+import com.yahoo.athenz.common.messaging.AsyncChangePublisher;
 import com.yahoo.athenz.common.messaging.DomainChangeMessage;
 import com.yahoo.athenz.common.messaging.MockDomainChangePublisher;
 import com.yahoo.athenz.common.metrics.Metric;
@@ -11612,6 +11614,71 @@ public class ZMSImplTest {
         assertEquals(zmsImpl.evaluateAccess(domain, null, null, null, null, null, zmsTestInitializer.getMockDomRestRsrcCtx().principal()), AccessStatus.DENIED);
     }
 
+    @Test
+    public void testEvaluateAccessWithPolicyIndex() {
+
+        ZMSImpl zmsImpl = zmsTestInitializer.getZms();
+        final String domainName = "evaluate-access-index";
+
+        AthenzDomain domain = new AthenzDomain(domainName);
+        domain.getRoles().add(zmsTestInitializer.createRoleObject(domainName, "readers", null, "user.user1", "user.user2"));
+        domain.getRoles().add(zmsTestInitializer.createRoleObject(domainName, "writers", null, "user.user2", null));
+        domain.getRoles().add(zmsTestInitializer.createRoleObject(domainName, "denied", null, "user.user2", null));
+
+        Policy policy = new Policy().setName(domainName + ":policy.policy1").setAssertions(new ArrayList<>());
+        policy.getAssertions().add(new Assertion().setAction("Read").setResource(domainName + ":data.*")
+                .setRole(domainName + ":role.readers"));
+        policy.getAssertions().add(new Assertion().setAction("*").setResource(domainName + ":data.*")
+                .setRole(domainName + ":role.writ*"));
+        policy.getAssertions().add(new Assertion().setAction("update").setResource(domainName + ":data.secret")
+                .setRole(domainName + ":role.denied").setEffect(AssertionEffect.DENY));
+        policy.getAssertions().add(new Assertion().setAction("read").setResource(domainName + ":data.*")
+                .setRole(domainName + ":role.unknown"));
+        domain.getPolicies().add(policy);
+
+        Policy inactivePolicy = new Policy().setName(domainName + ":policy.policy1").setActive(false)
+                .setAssertions(new ArrayList<>());
+        inactivePolicy.getAssertions().add(new Assertion().setAction("*").setResource("*")
+                .setRole(domainName + ":role.readers"));
+        domain.getPolicies().add(inactivePolicy);
+
+        zmsImpl.dbService.cacheStore.put(domainName, new DBService.DataCache(domain, 0));
+        assertNotNull(zmsImpl.dbService.getDomainPolicyIndex(domain));
+
+        Principal principal = zmsTestInitializer.getMockDomRestRsrcCtx().principal();
+        assertEquals(zmsImpl.evaluateAccess(domain, "user.user1", "read", domainName + ":data.file1",
+                null, null, principal), AccessStatus.ALLOWED);
+        assertEquals(zmsImpl.evaluateAccess(domain, "user.user1", "update", domainName + ":data.file1",
+                null, null, principal), AccessStatus.DENIED);
+        assertEquals(zmsImpl.evaluateAccess(domain, "user.user1", "read", domainName + ":config.file1",
+                null, null, principal), AccessStatus.DENIED);
+        assertEquals(zmsImpl.evaluateAccess(domain, "user.user2", "update", domainName + ":data.file1",
+                null, null, principal), AccessStatus.ALLOWED);
+        assertEquals(zmsImpl.evaluateAccess(domain, "user.user2", "update", domainName + ":data.secret",
+                null, null, principal), AccessStatus.DENIED);
+        assertEquals(zmsImpl.evaluateAccess(domain, "user.user3", "read", domainName + ":data.file1",
+                null, null, principal), AccessStatus.DENIED);
+
+        // role based checks
+
+        assertEquals(zmsImpl.evaluateAccess(domain, "user.user3", "read", domainName + ":data.file1",
+                Collections.singletonList("readers"), null, principal), AccessStatus.ALLOWED);
+        assertEquals(zmsImpl.evaluateAccess(domain, "user.user3", "delete", domainName + ":data.file1",
+                Collections.singletonList(domainName + ":role.writers"), null, principal), AccessStatus.ALLOWED);
+        assertEquals(zmsImpl.evaluateAccess(domain, "user.user3", "update", domainName + ":data.secret",
+                Arrays.asList("writers", "denied"), null, principal), AccessStatus.DENIED);
+        assertEquals(zmsImpl.evaluateAccess(domain, "user.user3", "delete", domainName + ":data.file1",
+                Collections.singletonList("readers"), null, principal), AccessStatus.DENIED);
+
+        // a different domain object does not use the index
+
+        AthenzDomain domainCopy = new AthenzDomain(domainName);
+        assertNull(zmsImpl.dbService.getDomainPolicyIndex(domainCopy));
+
+        zmsImpl.dbService.cacheStore.invalidate(domainName);
+        assertNull(zmsImpl.dbService.getDomainPolicyIndex(domain));
+    }
+
     @Test
     public void testEvaluateAccessAssertionDeny() {
 
@@ -22985,6 +23052,53 @@ public class ZMSImplTest {
         zmsImpl.deleteTopLevelDomain(ctx, domainName, auditRef, null);
     }
 
+    @Test
+    public void testGetJWSDomainCache() throws JsonProcessingException, ParseException, JOSEException {
+
+        final String domainName = "jws-domain-cache";
+
+        ZMSImpl zmsImpl = zmsTestInitializer.getZms();
+        RsrcCtxWrapper ctx = zmsTestInitializer.getMockDomRsrcCtx();
+        final String auditRef = zmsTestInitializer.getAuditRef();
+
+        TopLevelDomain dom1 = zmsTestInitializer.createTopLevelDomainObject(domainName,
+                "Test Domain1", "testOrg", zmsTestInitializer.getAdminUser());
+        zmsImpl.postTopLevelDomain(ctx, auditRef, null, dom1);
+
+        // the same document is returned for the same domain and flags
+
+        JWSDomain jwsDomain1 = (JWSDomain) zmsImpl.getJWSDomain(ctx, domainName, null, null).getEntity();
+        JWSDomain jwsDomain2 = (JWSDomain) zmsImpl.getJWSDomain(ctx, domainName, Boolean.FALSE, null).getEntity();
+        assertSame(jwsDomain2, jwsDomain1);
+
+        // a different signature format generates a new document
+
+        JWSDomain jwsDomain3 = (JWSDomain) zmsImpl.getJWSDomain(ctx, domainName, Boolean.TRUE, null).getEntity();
+        assertNotSame(jwsDomain3, jwsDomain1);
+        assertSame(zmsImpl.getJWSDomain(ctx, domainName, Boolean.TRUE, null).getEntity(), jwsDomain3);
+
+        // once the domain is modified we must get a new document
+
+        Role role = zmsTestInitializer.createRoleObject(domainName, "role1", null, "user.joe", null);
+        zmsImpl.putRole(ctx, domainName, "role1", auditRef, false, null, role);
+
+        JWSDomain jwsDomain4 = (JWSDomain) zmsImpl.getJWSDomain(ctx, domainName, null, null).getEntity();
+        assertNotSame(jwsDomain4, jwsDomain1);
+        DomainData domainData = zmsTestInitializer.getDomainData(jwsDomain4);
+        assertNotNull(domainData);
+        assertTrue(domainData.getRoles().stream().anyMatch(r -> r.getName().equals(domainName + ":role.role1")));
+
+        // with the cache disabled we get a new document every time
+
+        Cache<String, ZMSImpl.SignedJWSDomain> jwsDomainCache = zmsImpl.jwsDomainCache;
+        zmsImpl.jwsDomainCache = null;
+        JWSDomain jwsDomain5 = (JWSDomain) zmsImpl.getJWSDomain(ctx, domainName, null, null).getEntity();
+        assertNotSame(jwsDomain5, jwsDomain4);
+        zmsImpl.jwsDomainCache = jwsDomainCache;
+
+        zmsImpl.deleteTopLevelDomain(ctx, domainName, auditRef, null);
+    }
+
     @Test
     public void testGetJWSDomainP1363Signature() throws JsonProcessingException, ParseException, JOSEException {
 
@@ -29546,6 +29660,66 @@ public class ZMSImplTest {
         System.clearProperty(ZMS_PROP_DOMAIN_CHANGE_TOPIC_NAMES);
     }
 
+    @Test
+    public void testPublishEventAsync() throws InterruptedException {
+        System.setProperty(ZMS_PROP_DOMAIN_CHANGE_PUBLISHER_FACTORY_CLASS, "com.yahoo.athenz.common.messaging.MockDomainChangePublisherFactory");
+        System.setProperty(ZMS_PROP_DOMAIN_CHANGE_TOPIC_NAMES, "topic1");
+        System.setProperty(ZMS_PROP_DOMAIN_CHANGE_PUBLISHER_ASYNC, "true");
+        ZMSImpl zmsImpl = zmsTestInitializer.zmsInit();
+        assertEquals(zmsImpl.domainChangePublishers.size(), 1);
+        assertTrue(zmsImpl.domainChangePublishers.get(0) instanceof AsyncChangePublisher);
+
+        ResourceContext mockContext = Mockito.mock(ResourceContext.class);
+        when(mockContext.getDomainChangeMessages()).
+                thenReturn(Collections.singletonList(new DomainChangeMessage()
+                        .setDomainName("domainName")
+                        .setObjectName("objectName")
+                        .setObjectType(DOMAIN)
+                        .setApiName("apiName")
+                        .setPublished(Instant.now().toEpochMilli())
+                        .setMessageId(java.util.UUID.randomUUID().toString())
+                ));
+        zmsImpl.publishChangeMessage(mockContext, 200);
+
+        // the message is published by the dispatcher thread
+
+        AsyncChangePublisher<DomainChangeMessage> publisher =
+                (AsyncChangePublisher<DomainChangeMessage>) zmsImpl.domainChangePublishers.get(0);
+        for (int i = 0; i < 100 && publisher.getPublishedCount() == 0; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(publisher.getPublishedCount(), 1);
+        assertEquals(publisher.getDroppedCount(), 0);
+
+        // once closed, the publisher no longer accepts messages
+
+        zmsImpl.shutdown();
+        zmsImpl.publishChangeMessage(mockContext, 200);
+        assertEquals(publisher.getDroppedCount(), 1);
+
+        System.clearProperty(ZMS_PROP_DOMAIN_CHANGE_PUBLISHER_ASYNC);
+        System.clearProperty(ZMS_PROP_DOMAIN_CHANGE_PUBLISHER_FACTORY_CLASS);
+        System.clearProperty(ZMS_PROP_DOMAIN_CHANGE_TOPIC_NAMES);
+    }
+
+    @Test
+    public void testShutdown() {
+
+        ZMSImpl zmsImpl = Mockito.mock(ZMSImpl.class);
+        Mockito.doCallRealMethod().when(zmsImpl).shutdown();
+        Mockito.doCallRealMethod().when(zmsImpl).closeDomainChangePublishers();
+
+        // no audit logger configured
+
+        zmsImpl.domainChangePublishers = new ArrayList<>();
+        zmsImpl.shutdown();
+
+        AuditLogger auditLogger = Mockito.mock(AuditLogger.class);
+        zmsImpl.auditLogger = auditLogger;
+        zmsImpl.shutdown();
+        Mockito.verify(auditLogger, Mockito.times(1)).close();
+    }
+
     private MockDomainChangePublisher.Recorder getEventRecorder(ZMSImpl zmsImpl) {
         return ((MockDomainChangePublisher) zmsImpl.domainChangePublishers.get(0)).getRecorder();
     }
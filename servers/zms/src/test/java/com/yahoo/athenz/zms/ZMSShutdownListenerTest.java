@@ -0,0 +1,36 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.zms;
+
+import org.mockito.Mockito;
+import org.testng.annotations.Test;
+
+public class ZMSShutdownListenerTest {
+
+    @Test
+    public void testShutdownListener() {
+
+        ZMSImpl zmsImpl = Mockito.mock(ZMSImpl.class);
+        ZMSShutdownListener listener = new ZMSShutdownListener(zmsImpl);
+
+        listener.onStartup(null);
+        listener.onReload(null);
+        Mockito.verify(zmsImpl, Mockito.never()).shutdown();
+
+        listener.onShutdown(null);
+        Mockito.verify(zmsImpl, Mockito.times(1)).shutdown();
+    }
+}
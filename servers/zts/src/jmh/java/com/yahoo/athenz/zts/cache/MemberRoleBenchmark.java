@@ -0,0 +1,81 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.zts.cache;
+
+import com.yahoo.athenz.auth.util.StringUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares matching a role against a set of member roles with the
+ * precompiled MemberRole patterns against generating and compiling
+ * the regex for every wildcard role on each request.
+ * Run with: mvn -Pjmh test-compile exec:exec@jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MemberRoleBenchmark {
+
+    @Param({ "10", "100" })
+    public int roleCount;
+
+    private final Set<MemberRole> memberRoles = new HashSet<>();
+    private final String role = "weather:role.readers";
+
+    @Setup
+    public void setup() {
+
+        // half of the member roles are wildcard roles and none of them
+        // match so every member role is checked for each request
+
+        for (int i = 0; i < roleCount; i++) {
+            final String roleName = (i % 2 == 0) ? "coretech" + i + ":role.*" : "coretech" + i + ":role.readers";
+            memberRoles.add(new MemberRole(roleName, 0));
+        }
+    }
+
+    @Benchmark
+    public boolean precompiledPattern() {
+        for (MemberRole memberRole : memberRoles) {
+            if (memberRole.roleMatch(role)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean compiledPerRequest() {
+        for (MemberRole memberRole : memberRoles) {
+            final String roleName = memberRole.getRole();
+            if (StringUtils.containsMatchCharacter(roleName)) {
+                if (role.matches(StringUtils.patternFromGlob(roleName))) {
+                    return true;
+                }
+            } else if (role.equals(roleName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
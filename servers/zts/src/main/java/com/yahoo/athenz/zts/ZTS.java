@@ -26,6 +26,7 @@ public class ZTS extends ResourceConfig {
         register(JsonProcessingExceptionMapper.class, 1);
         register(ZTSResources.class);
         register(ZTSBinder.getInstance());
+        register(new ZTSShutdownListener(ZTSImplFactory.getZtsInstance()));
         property(ServerProperties.WADL_FEATURE_DISABLE, true);
     }
 }
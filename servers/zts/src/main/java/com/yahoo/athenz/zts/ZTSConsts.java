@@ -49,6 +49,11 @@ public final class ZTSConsts {
     public static final String ZTS_PROP_WANT_CLIENT_CERT       = "athenz.zts.want_client_cert";
     public static final String ZTS_PROP_AUTHORITY_CLASSES      = "athenz.zts.authority_classes";
     public static final String ZTS_PROP_CHANGE_LOG_STORE_DIR   = "athenz.zts.change_log_store_dir";
+
+    public static final String ZTS_PROP_DOMAIN_CHANGE_TOPIC_NAMES = "athenz.zts.domain_change_topic_names";
+    public static final String ZTS_PROP_DOMAIN_CHANGE_SUBSCRIBER_FACTORY_CLASS = "athenz.zts.domain_change_subscriber_factory_class";
+    public static final String ZTS_PROP_DOMAIN_CHANGE_SUBSCRIPTION_NAME = "athenz.zts.domain_change_subscription_name";
+    public static final String ZTS_PROP_DOMAIN_CHANGE_SUBSCRIPTION_TYPE = "athenz.zts.domain_change_subscription_type";
     public static final String ZTS_PROP_NOAUTH_URI_LIST        = "athenz.zts.no_auth_uri_list";
     public static final String ZTS_PROP_ROLE_COMPLETE_FLAG     = "athenz.zts.role_complete_flag";
     public static final String ZTS_PROP_READ_ONLY_MODE         = "athenz.zts.read_only_mode";
@@ -94,6 +99,11 @@ public final class ZTSConsts {
     public static final String ZTS_PROP_ID_TOKEN_MAX_DOMAINS       = "athenz.zts.id_token_max_domains";
     public static final String ZTS_PROD_ID_TOKEN_ALLOWED_ROLES     = "athenz.zts.id_token_allowed_roles";
     public static final String ZTS_PROP_SIGNED_POLICY_TIMEOUT      = "athenz.zts.signed_policy_timeout";
+    public static final String ZTS_PROP_SIGNED_POLICY_CACHE_SIZE   = "athenz.zts.signed_policy_cache_size";
+    public static final String ZTS_PROP_SIGNED_POLICY_CACHE_MAX_AGE = "athenz.zts.signed_policy_cache_max_age";
+    public static final String ZTS_PROP_ACCESS_TOKEN_CACHE_SIZE    = "athenz.zts.access_token_cache_size";
+    public static final String ZTS_PROP_ACCESS_TOKEN_CACHE_REUSE_PERCENT = "athenz.zts.access_token_cache_reuse_percent";
+    public static final String ZTS_PROP_ACCESS_TOKEN_CACHE_MAX_REUSE = "athenz.zts.access_token_cache_max_reuse";
     public static final String ZTS_PROP_AUTHORIZED_PROXY_USERS     = "athenz.zts.authorized_proxy_users";
     public static final String ZTS_PROP_SECURE_REQUESTS_ONLY       = "athenz.zts.secure_requests_only";
     public static final String ZTS_PROP_STATUS_CERT_SIGNER         = "athenz.zts.status_cert_signer";
@@ -16,6 +16,8 @@
 package com.yahoo.athenz.zts;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.primitives.Bytes;
 import com.yahoo.athenz.auth.*;
 import com.yahoo.athenz.auth.impl.CertificateAuthority;
@@ -31,6 +33,9 @@ import com.yahoo.athenz.auth.util.StringUtils;
 import com.yahoo.athenz.common.ServerCommonConsts;
 import com.yahoo.athenz.common.config.AuthzDetailsEntity;
 import com.yahoo.athenz.common.config.AuthzDetailsEntityList;
+import com.yahoo.athenz.common.messaging.ChangeSubscriber;
+import com.yahoo.athenz.common.messaging.ChangeSubscriberFactory;
+import com.yahoo.athenz.common.messaging.DomainChangeMessage;
 import com.yahoo.athenz.common.metrics.Metric;
 import com.yahoo.athenz.common.metrics.MetricFactory;
 import com.yahoo.athenz.common.server.cert.Priority;
@@ -100,6 +105,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 import java.util.*;
 import java.util.UUID;
@@ -140,6 +146,11 @@ public class ZTSImpl implements ZTSHandler {
     protected int idTokenDefaultTimeout;
     protected DynamicConfigLong x509CertRefreshResetTime;
     protected long signedPolicyTimeout;
+    protected long signedPolicyCacheMaxAge;
+    protected Cache<String, SignedPolicyCacheEntry> signedPolicyCache = null;
+    protected Cache<String, AccessTokenCacheEntry> accessTokenCache = null;
+    protected int accessTokenCacheReusePercent;
+    protected long accessTokenCacheMaxReuse;
     protected static String serverHostName = null;
     protected AuditLogger auditLogger = null;
     protected Authority userAuthority = null;
@@ -325,6 +336,10 @@ public class ZTSImpl implements ZTSHandler {
 
         loadMetricObject();
 
+        // allow our audit logger to report its own metrics
+
+        auditLogger.setMetric(metric);
+
         // check if we need to load our hostname resolver for cert requests
 
         loadHostnameResolver();
@@ -349,12 +364,20 @@ public class ZTSImpl implements ZTSHandler {
 
             dataStore.setServiceCredentialsKey(serviceCredsEncryptionKey, serviceCredsEncryptionAlgorithm);
 
+            // set the key used to protect our domain snapshot files
+
+            dataStore.setDomainSnapshotKey(getServerPrivateKey(keyAlgoForPlugins).getKey());
+
             // Initialize our storage subsystem which would load all data into
             // memory and if necessary retrieve the data from ZMS. It will also
             // create the thread to monitor for changes from ZMS
 
             dataStore.init();
 
+            // subscribe to the domain change messages from ZMS if configured
+
+            loadDomainChangeSubscribers();
+
         } else {
             dataStore = implDataStore;
         }
@@ -615,6 +638,44 @@ public class ZTSImpl implements ZTSHandler {
         signedPolicyTimeout = 1000 * Long.parseLong(
                 System.getProperty(ZTSConsts.ZTS_PROP_SIGNED_POLICY_TIMEOUT, Long.toString(timeout)));
 
+        // cache for our signed policy documents. the max age is in
+        // milliseconds but the config setting is in seconds
+
+        final int signedPolicyCacheSize = Integer.parseInt(
+                System.getProperty(ZTSConsts.ZTS_PROP_SIGNED_POLICY_CACHE_SIZE, "1000"));
+        if (signedPolicyCacheSize > 0) {
+            signedPolicyCache = CacheBuilder.newBuilder().maximumSize(signedPolicyCacheSize).build();
+        }
+        timeout = TimeUnit.SECONDS.convert(1, TimeUnit.HOURS);
+        signedPolicyCacheMaxAge = 1000 * Long.parseLong(
+                System.getProperty(ZTSConsts.ZTS_PROP_SIGNED_POLICY_CACHE_MAX_AGE, Long.toString(timeout)));
+
+        // a cached document must still be valid for at least half of the
+        // signed policy timeout when it's returned to the client so we'll
+        // limit the max age of the cache entries accordingly
+
+        if (signedPolicyCacheMaxAge > signedPolicyTimeout / 2) {
+            LOGGER.warn("Signed policy cache max age {} reduced to half of the signed policy timeout {}",
+                    signedPolicyCacheMaxAge / 1000, signedPolicyTimeout / 1000);
+            signedPolicyCacheMaxAge = signedPolicyTimeout / 2;
+        }
+
+        // cache for our access token responses. the tokens are only
+        // returned from the cache during the first part of their lifetime
+        // based on the configured percentage and max reuse time in seconds
+
+        accessTokenCacheReusePercent = Integer.parseInt(
+                System.getProperty(ZTSConsts.ZTS_PROP_ACCESS_TOKEN_CACHE_REUSE_PERCENT, "10"));
+        timeout = TimeUnit.SECONDS.convert(5, TimeUnit.MINUTES);
+        accessTokenCacheMaxReuse = Long.parseLong(
+                System.getProperty(ZTSConsts.ZTS_PROP_ACCESS_TOKEN_CACHE_MAX_REUSE, Long.toString(timeout)));
+        final int accessTokenCacheSize = Integer.parseInt(
+                System.getProperty(ZTSConsts.ZTS_PROP_ACCESS_TOKEN_CACHE_SIZE, "0"));
+        if (accessTokenCacheSize > 0 && accessTokenCacheReusePercent > 0 && accessTokenCacheMaxReuse > 0) {
+            accessTokenCache = CacheBuilder.newBuilder().maximumSize(accessTokenCacheSize)
+                    .expireAfterWrite(accessTokenCacheMaxReuse, TimeUnit.SECONDS).build();
+        }
+
         // default token timeout for issued tokens
 
         timeout = TimeUnit.SECONDS.convert(1, TimeUnit.DAYS);
@@ -829,6 +890,53 @@ public class ZTSImpl implements ZTSHandler {
         hostnameResolver = resolverFactory.create();
     }
 
+    void loadDomainChangeSubscribers() {
+
+        final String topicNames = System.getProperty(ZTSConsts.ZTS_PROP_DOMAIN_CHANGE_TOPIC_NAMES, "");
+        for (String topic : topicNames.split(",")) {
+            topic = topic.trim();
+            if (!topic.isEmpty()) {
+                ChangeSubscriber<DomainChangeMessage> subscriber = createSubscriber(topic);
+                if (subscriber != null) {
+                    dataStore.addDomainChangeSubscriber(subscriber);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    ChangeSubscriber<DomainChangeMessage> createSubscriber(final String topicName) {
+
+        final String factoryClassName = System.getProperty(ZTSConsts.ZTS_PROP_DOMAIN_CHANGE_SUBSCRIBER_FACTORY_CLASS);
+        if (StringUtil.isEmpty(factoryClassName)) {
+            LOGGER.error("no subscriber factory class configured for topic: {}", topicName);
+            return null;
+        }
+
+        ChangeSubscriberFactory<DomainChangeMessage> subscriberFactory;
+        try {
+            subscriberFactory = (ChangeSubscriberFactory<DomainChangeMessage>) Class.forName(factoryClassName)
+                    .getDeclaredConstructor().newInstance();
+        } catch (Exception ex) {
+            LOGGER.error("unable to initialize subscriber factory for: {}", factoryClassName, ex);
+            return null;
+        }
+
+        // every ZTS server must receive all the messages so by default
+        // each server uses its own exclusive subscription
+
+        final String subscriptionName = System.getProperty(ZTSConsts.ZTS_PROP_DOMAIN_CHANGE_SUBSCRIPTION_NAME,
+                "zts-" + serverHostName);
+        final String subscriptionType = System.getProperty(ZTSConsts.ZTS_PROP_DOMAIN_CHANGE_SUBSCRIPTION_TYPE,
+                "Exclusive");
+        try {
+            return subscriberFactory.create(privateKeyStore, topicName, subscriptionName, subscriptionType);
+        } catch (Exception ex) {
+            LOGGER.error("unable to create a subscriber for topic: {}", topicName, ex);
+        }
+        return null;
+    }
+
     void loadServicePrivateKey() {
 
         final String pkeyFactoryClass = System.getProperty(ZTSConsts.ZTS_PROP_PRIVATE_KEY_STORE_FACTORY_CLASS,
@@ -941,6 +1049,17 @@ public class ZTSImpl implements ZTSHandler {
         auditLogger = auditLogFactory.create();
     }
 
+    /**
+     * Release the resources allocated by the server. It's called when the
+     * jersey container is shut down after the jetty connectors are stopped
+     * so the audit logger can write any queued messages.
+     */
+    public void shutdown() {
+        if (auditLogger != null) {
+            auditLogger.close();
+        }
+    }
+
     void loadStatusChecker() {
         final String statusCheckerFactoryClass = System.getProperty(ZTSConsts.ZTS_PROP_STATUS_CHECKER_FACTORY_CLASS);
         StatusCheckerFactory statusCheckerFactory;
@@ -1373,6 +1492,18 @@ public class ZTSImpl implements ZTSHandler {
 
         Map<String, String> policyVersions = generatePolicyVersions(domainName, signedPolicyRequest);
 
+        // if we're not asked for specific policy versions then we
+        // can return our cached signed document if one is available
+
+        final boolean signatureP1363Format = signedPolicyRequest.getSignatureP1363Format();
+        final String cacheKey = policyVersions.isEmpty() ?
+                domainName + ":jws:" + signatureP1363Format : null;
+        final ServerPrivateKey privateKey = getServerPrivateKey(keyAlgoForJsonWebObjects);
+        JWSPolicyData cachedPolicyData = getCachedSignedPolicy(cacheKey, modified.millis(), privateKey);
+        if (cachedPolicyData != null) {
+            return Response.status(ResourceException.OK).entity(cachedPolicyData).header("ETag", tag).build();
+        }
+
         // first get our PolicyData object
 
         PolicyData policyData = new PolicyData()
@@ -1390,14 +1521,58 @@ public class ZTSImpl implements ZTSHandler {
                 .setZmsKeyId("")
                 .setZmsSignature("");
 
-        JWSPolicyData jwsPolicyData = signJwsPolicyData(signedPolicyData, signedPolicyRequest.getSignatureP1363Format());
+        JWSPolicyData jwsPolicyData = signJwsPolicyData(signedPolicyData, signatureP1363Format);
         if (jwsPolicyData == null) {
             return Response.status(ResourceException.INTERNAL_SERVER_ERROR).build();
         } else {
+            putCachedSignedPolicy(cacheKey, modified.millis(), privateKey, jwsPolicyData);
             return Response.status(ResourceException.OK).entity(jwsPolicyData).header("ETag", tag).build();
         }
     }
 
+    static class SignedPolicyCacheEntry {
+        final long modified;
+        final long createTime;
+        final ServerPrivateKey signingKey;
+        final Object signedPolicy;
+
+        SignedPolicyCacheEntry(long modified, long createTime, ServerPrivateKey signingKey, Object signedPolicy) {
+            this.modified = modified;
+            this.createTime = createTime;
+            this.signingKey = signingKey;
+            this.signedPolicy = signedPolicy;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T getCachedSignedPolicy(final String cacheKey, long modified, ServerPrivateKey privateKey) {
+
+        if (signedPolicyCache == null || cacheKey == null) {
+            return null;
+        }
+
+        // our cached document is only valid if the domain has not been
+        // modified, it was signed by the same key and we have not reached
+        // our max age so the expiry returned to the clients is refreshed
+
+        SignedPolicyCacheEntry entry = signedPolicyCache.getIfPresent(cacheKey);
+        if (entry == null || entry.modified != modified || entry.signingKey != privateKey ||
+                entry.createTime + signedPolicyCacheMaxAge < System.currentTimeMillis()) {
+            return null;
+        }
+        return (T) entry.signedPolicy;
+    }
+
+    void putCachedSignedPolicy(final String cacheKey, long modified, ServerPrivateKey privateKey,
+            Object signedPolicy) {
+
+        if (signedPolicyCache == null || cacheKey == null) {
+            return;
+        }
+        signedPolicyCache.put(cacheKey, new SignedPolicyCacheEntry(modified, System.currentTimeMillis(),
+                privateKey, signedPolicy));
+    }
+
     Map<String, String> generatePolicyVersions(final String domainName, SignedPolicyRequest signedPolicyRequest) {
 
         if (signedPolicyRequest == null) {
@@ -1507,6 +1682,15 @@ public class ZTSImpl implements ZTSHandler {
             return Response.status(ResourceException.NOT_MODIFIED).header("ETag", tag).build();
         }
 
+        // check if we already have a signed document for this domain
+
+        final String cacheKey = domainName + ":signed";
+        ServerPrivateKey privateKey = getServerPrivateKey(keyAlgoForProprietaryObjects);
+        DomainSignedPolicyData cachedPolicyData = getCachedSignedPolicy(cacheKey, modified.millis(), privateKey);
+        if (cachedPolicyData != null) {
+            return Response.status(ResourceException.OK).entity(cachedPolicyData).header("ETag", tag).build();
+        }
+
         // first get our PolicyData object
 
         PolicyData policyData = new PolicyData()
@@ -1524,12 +1708,12 @@ public class ZTSImpl implements ZTSHandler {
                 .setZmsKeyId(domainData.getPolicies().getKeyId())
                 .setZmsSignature(domainData.getPolicies().getSignature());
 
-        ServerPrivateKey privateKey = getServerPrivateKey(keyAlgoForProprietaryObjects);
         String signature = Crypto.sign(SignUtils.asCanonicalString(signedPolicyData), privateKey.getKey());
         DomainSignedPolicyData result = new DomainSignedPolicyData()
             .setSignedPolicyData(signedPolicyData)
             .setSignature(signature)
             .setKeyId(privateKey.getId());
+        putCachedSignedPolicy(cacheKey, modified.millis(), privateKey, result);
 
         return Response.status(ResourceException.OK).entity(result).header("ETag", tag).build();
     }
@@ -2595,6 +2779,17 @@ public class ZTSImpl implements ZTSHandler {
 
         checkRoleTokenAuthorizedServiceRequest(principal, domainName, caller);
 
+        // if we have recently issued tokens for the same request then
+        // we'll return those tokens instead of generating new ones
+
+        ServerPrivateKey privateKey = getServerPrivateKey(keyAlgoForJsonWebObjects);
+        final String tokenCacheKey = getAccessTokenCacheKey(principal, domainName, accessTokenRequest);
+        final long changeVersion = dataStore.getChangeVersion();
+        AccessTokenResponse cachedResponse = getCachedAccessToken(tokenCacheKey, changeVersion, privateKey);
+        if (cachedResponse != null) {
+            return cachedResponse;
+        }
+
         // process our request and retrieve the roles for the principal
 
         Set<String> roles = new HashSet<>();
@@ -2681,7 +2876,6 @@ public class ZTSImpl implements ZTSHandler {
             }
         }
 
-        ServerPrivateKey privateKey = getServerPrivateKey(keyAlgoForJsonWebObjects);
         String accessJwts = accessToken.getSignedToken(privateKey.getKey(), privateKey.getId(), privateKey.getAlgorithm());
 
         // now let's check to see if we need to create openid token
@@ -2728,9 +2922,123 @@ public class ZTSImpl implements ZTSHandler {
             response.setScope(String.join(" ", domainRoles));
         }
 
+        putCachedAccessToken(tokenCacheKey, changeVersion, privateKey, iat, tokenTimeout, response);
         return response;
     }
 
+    static class AccessTokenCacheEntry {
+        final long changeVersion;
+        final long issueTime;
+        final long reuseTime;
+        final ServerPrivateKey signingKey;
+        final AccessTokenResponse response;
+
+        AccessTokenCacheEntry(long changeVersion, long issueTime, long reuseTime, ServerPrivateKey signingKey,
+                AccessTokenResponse response) {
+            this.changeVersion = changeVersion;
+            this.issueTime = issueTime;
+            this.reuseTime = reuseTime;
+            this.signingKey = signingKey;
+            this.response = response;
+        }
+    }
+
+    String getAccessTokenCacheKey(Principal principal, final String domainName,
+            AccessTokenRequest accessTokenRequest) {
+
+        // role certificate based principals are authorized based on
+        // the roles in their certificates so we don't cache their tokens
+
+        if (accessTokenCache == null) {
+            return null;
+        }
+        final List<String> principalRoles = principal.getRoles();
+        if (principalRoles != null && !principalRoles.isEmpty()) {
+            return null;
+        }
+
+        // the scope values are sorted so the same set of requested
+        // roles in a different order maps to the same entry
+
+        String[] scopes = accessTokenRequest.getScope().trim().split("\\s+");
+        Arrays.sort(scopes);
+
+        StringBuilder cacheKey = new StringBuilder(256);
+        cacheKey.append(principal.getFullName()).append('\n')
+                .append(domainName).append('\n')
+                .append(String.join(" ", scopes)).append('\n')
+                .append(accessTokenRequest.getExpiryTime()).append('\n')
+                .append(accessTokenRequest.isUseOpenIDIssuer()).append('\n');
+        if (accessTokenRequest.getProxyForPrincipal() != null) {
+            cacheKey.append(accessTokenRequest.getProxyForPrincipal());
+        }
+        cacheKey.append('\n');
+        if (accessTokenRequest.getAuthzDetails() != null) {
+            cacheKey.append(accessTokenRequest.getAuthzDetails());
+        }
+        cacheKey.append('\n');
+
+        // tokens are bound to the certificate used for authentication
+        // so we must include the certificate hash in our key
+
+        X509Certificate cert = principal.getX509Certificate();
+        if (cert != null) {
+            try {
+                cacheKey.append(Base64.getUrlEncoder().withoutPadding()
+                        .encodeToString(Crypto.sha256(cert.getEncoded())));
+            } catch (CryptoException | CertificateEncodingException ex) {
+                LOGGER.error("Unable to generate certificate hash for access token cache: {}", ex.getMessage());
+                return null;
+            }
+            if (accessTokenRequest.getProxyPrincipalsSpiffeUris() != null) {
+                cacheKey.append('\n').append(String.join(" ", accessTokenRequest.getProxyPrincipalsSpiffeUris()));
+            }
+        }
+        return cacheKey.toString();
+    }
+
+    AccessTokenResponse getCachedAccessToken(final String cacheKey, long changeVersion, ServerPrivateKey privateKey) {
+
+        if (accessTokenCache == null || cacheKey == null) {
+            return null;
+        }
+
+        // our cached tokens are only valid if no domain has been modified
+        // since the principal's roles may come from groups or trusted
+        // roles in other domains, they were signed by the same key and
+        // we're still within the reuse window of the tokens
+
+        AccessTokenCacheEntry entry = accessTokenCache.getIfPresent(cacheKey);
+        if (entry == null) {
+            return null;
+        }
+        final long elapsedTime = System.currentTimeMillis() / 1000 - entry.issueTime;
+        if (entry.changeVersion != changeVersion || entry.signingKey != privateKey || elapsedTime > entry.reuseTime) {
+            accessTokenCache.invalidate(cacheKey);
+            return null;
+        }
+
+        final AccessTokenResponse response = entry.response;
+        return new AccessTokenResponse().setAccess_token(response.getAccess_token())
+                .setToken_type(response.getToken_type()).setId_token(response.getId_token())
+                .setExpires_in((int) (response.getExpires_in() - Math.max(elapsedTime, 0)))
+                .setScope(response.getScope());
+    }
+
+    void putCachedAccessToken(final String cacheKey, long changeVersion, ServerPrivateKey privateKey,
+            long issueTime, long tokenTimeout, AccessTokenResponse response) {
+
+        if (accessTokenCache == null || cacheKey == null) {
+            return;
+        }
+        final long reuseTime = Math.min(tokenTimeout * accessTokenCacheReusePercent / 100, accessTokenCacheMaxReuse);
+        if (reuseTime <= 0) {
+            return;
+        }
+        accessTokenCache.put(cacheKey, new AccessTokenCacheEntry(changeVersion, issueTime, reuseTime,
+                privateKey, response));
+    }
+
     private void validateAuthorizationDetails(final String authzDetails, final String[] requestedRoles,
             DataCache data, final String caller, final String domainName, final String principalDomain) {
 
@@ -0,0 +1,47 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.zts;
+
+import org.glassfish.jersey.server.spi.Container;
+import org.glassfish.jersey.server.spi.ContainerLifecycleListener;
+
+/**
+ * Jersey container listener that shuts down the ZTS server when the
+ * container is destroyed. Jetty stops its connectors before destroying
+ * the servlet contexts, so no new requests are processed by the time
+ * the server releases its resources.
+ */
+class ZTSShutdownListener implements ContainerLifecycleListener {
+
+    private final ZTSImpl ztsImpl;
+
+    ZTSShutdownListener(ZTSImpl ztsImpl) {
+        this.ztsImpl = ztsImpl;
+    }
+
+    @Override
+    public void onStartup(Container container) {
+    }
+
+    @Override
+    public void onReload(Container container) {
+    }
+
+    @Override
+    public void onShutdown(Container container) {
+        ztsImpl.shutdown();
+    }
+}
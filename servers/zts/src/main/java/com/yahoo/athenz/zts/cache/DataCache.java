@@ -44,6 +44,7 @@ public class DataCache {
     // member ==> [ role1, role2, ...] complete map
     private final Map<String, Set<MemberRole>> memberRoleCache;
     private final Map<String, Set<MemberRole>> memberPrefixRoleCache;
+    private final MemberRolePrefixTrie memberPrefixRoleTrie;
     private final Set<MemberRole> memberAllRoleCache;
     private final Map<String, Set<String>> trustCache;
     private final Map<String, Set<String>> hostCache;
@@ -71,6 +72,7 @@ public class DataCache {
     public DataCache() {
         memberRoleCache = new HashMap<>();
         memberPrefixRoleCache = new HashMap<>();
+        memberPrefixRoleTrie = new MemberRolePrefixTrie();
         memberAllRoleCache = new HashSet<>();
         trustCache = new HashMap<>();
         hostCache = new HashMap<>();
@@ -140,7 +142,9 @@ public class DataCache {
                     memberPrefixRoleCache.put(keyName, new HashSet<>());
                 }
                 final Set<MemberRole> rolesForMember = memberPrefixRoleCache.get(keyName);
-                rolesForMember.add(new MemberRole(roleName, expiration));
+                final MemberRole memberRole = new MemberRole(roleName, expiration);
+                rolesForMember.add(memberRole);
+                memberPrefixRoleTrie.insert(keyName, memberRole);
             } else {
                 if (!memberRoleCache.containsKey(memberName)) {
                     memberRoleCache.put(memberName, new HashSet<>());
@@ -542,6 +546,16 @@ public class DataCache {
     public Map<String, Set<MemberRole>> getPrefixMemberRoleSetMap() {
         return memberPrefixRoleCache;
     }
+
+    /**
+     * Return roles configured for wildcard members whose prefix
+     * matches the given identity
+     * @param identity name of the principal
+     * @return the set of roles, empty set if no prefix matches
+     */
+    public Set<MemberRole> getPrefixMemberRoleSet(final String identity) {
+        return memberPrefixRoleTrie.findMatchingValues(identity);
+    }
     
     /**
      * Return the number of members in the cache
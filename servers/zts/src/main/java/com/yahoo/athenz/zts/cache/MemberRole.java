@@ -15,14 +15,26 @@
  */
 package com.yahoo.athenz.zts.cache;
 
+import com.yahoo.athenz.auth.util.StringUtils;
+
+import java.util.regex.Pattern;
+
 public class MemberRole {
     
     final String role;
     final long expiration;
+    final Pattern rolePattern;
     
     public MemberRole(String role, long expiration) {
         this.role = role;
         this.expiration = expiration;
+
+        // if the role contains any of our glob characters then we'll
+        // compile the pattern once here instead of generating and
+        // compiling it for every single role match request
+
+        this.rolePattern = (role != null && StringUtils.containsMatchCharacter(role)) ?
+                Pattern.compile(StringUtils.patternFromGlob(role)) : null;
     }
 
     public String getRole() {
@@ -32,6 +44,20 @@ public class MemberRole {
     public long getExpiration() {
         return expiration;
     }
+
+    /**
+     * Check if the given role name matches our role. If our role
+     * includes glob characters then the precompiled pattern is used
+     * otherwise a simple string comparison is carried out.
+     * @param roleName name of the role to check
+     * @return true if the role name matches, false otherwise
+     */
+    public boolean roleMatch(final String roleName) {
+        if (rolePattern != null) {
+            return rolePattern.matcher(roleName).matches();
+        }
+        return roleName.equals(role);
+    }
     
     @Override
     public int hashCode() {
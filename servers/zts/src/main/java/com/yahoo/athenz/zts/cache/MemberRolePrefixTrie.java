@@ -0,0 +1,119 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.zts.cache;
+
+import com.yahoo.athenz.zts.store.PrefixTrie;
+
+import java.util.*;
+
+/**
+ * Character based prefix trie for wildcard role members (e.g. user.*
+ * or sports.api*). The cost of looking up all the roles for a given
+ * identity depends on the length of the identity and not on the number
+ * of wildcard members configured in the domain.
+ * The trie is populated by the DataCache while processing the domain and
+ * it's only read once the cache has been published so there is no
+ * locking carried out within the trie.
+ */
+public class MemberRolePrefixTrie implements PrefixTrie<MemberRole> {
+
+    private final TrieNode root = new TrieNode();
+
+    private static class TrieNode {
+        private final Map<Character, TrieNode> children = new HashMap<>();
+        private Set<MemberRole> memberRoles = null;
+    }
+
+    @Override
+    public void insert(String prefix, MemberRole value) {
+        TrieNode current = root;
+        final int length = prefix.length();
+        for (int i = 0; i < length; i++) {
+            current = current.children.computeIfAbsent(prefix.charAt(i), c -> new TrieNode());
+        }
+        if (current.memberRoles == null) {
+            current.memberRoles = new HashSet<>();
+        }
+        current.memberRoles.add(value);
+    }
+
+    @Override
+    public void delete(String prefix, MemberRole value) {
+        delete(root, prefix, value, 0);
+    }
+
+    private boolean delete(TrieNode current, final String prefix, MemberRole value, int index) {
+        if (index == prefix.length()) {
+            if (current.memberRoles != null) {
+                current.memberRoles.remove(value);
+                if (current.memberRoles.isEmpty()) {
+                    current.memberRoles = null;
+                }
+            }
+            return current.memberRoles == null && current.children.isEmpty();
+        }
+        final char c = prefix.charAt(index);
+        TrieNode node = current.children.get(c);
+        if (node == null) {
+            return false;
+        }
+        if (delete(node, prefix, value, index + 1)) {
+            current.children.remove(c);
+            return current.memberRoles == null && current.children.isEmpty();
+        }
+        return false;
+    }
+
+    @Override
+    public Set<MemberRole> findMatchingValues(String text) {
+
+        // most lookups only match a single prefix (if any) so we'll
+        // return that set directly and only allocate a new set when
+        // our identity matches multiple prefixes
+
+        Set<MemberRole> matchedRoles = null;
+        boolean sharedSet = false;
+
+        TrieNode current = root;
+        final int length = text.length();
+        for (int i = 0; ; i++) {
+            if (current.memberRoles != null) {
+                if (matchedRoles == null) {
+                    matchedRoles = current.memberRoles;
+                    sharedSet = true;
+                } else {
+                    if (sharedSet) {
+                        matchedRoles = new HashSet<>(matchedRoles);
+                        sharedSet = false;
+                    }
+                    matchedRoles.addAll(current.memberRoles);
+                }
+            }
+            if (i == length) {
+                break;
+            }
+            current = current.children.get(text.charAt(i));
+            if (current == null) {
+                break;
+            }
+        }
+
+        if (matchedRoles == null) {
+            return Collections.emptySet();
+        }
+        return sharedSet ? Collections.unmodifiableSet(matchedRoles) : matchedRoles;
+    }
+}
@@ -76,7 +76,7 @@ public class InstanceCertManager {
     private ScheduledExecutorService certScheduledExecutor;
     private ScheduledExecutorService sshScheduledExecutor;
     private final ScheduledExecutorService ipBlockScheduledExecutor;
-    private final ConcurrentHashMap<String, List<IPBlock>> instanceCertIPBlocks;
+    private final ConcurrentHashMap<String, IPBlockMatcher> instanceCertIPBlocks;
     private String caX509CertificateSigner = null;
     private Map<String, String> caX509ProviderCertificateSigners = null;
     private Map<String, String> caSshProviderCertificateSigners = null;
@@ -202,7 +202,7 @@ public class InstanceCertManager {
     }
 
     // for testing only
-    protected final ConcurrentHashMap<String, List<IPBlock>> getInstanceCertIPBlocks() {
+    protected final ConcurrentHashMap<String, IPBlockMatcher> getInstanceCertIPBlocks() {
         return instanceCertIPBlocks;
     }
 
@@ -381,7 +381,7 @@ public class InstanceCertManager {
     }
 
     private static boolean loadAllowedInstanceCertIPAddresses(
-            ConcurrentHashMap<String, List<IPBlock>> instanceProviderCertIPBlocks) {
+            ConcurrentHashMap<String, IPBlockMatcher> instanceProviderCertIPBlocks) {
 
         // first, let's load the default provider ip blocks for the zts svc token provider
         // we're not going to block the server from startup since this api
@@ -391,7 +391,7 @@ public class InstanceCertManager {
         if (loadAllowedIPAddresses(svcCertIPBlocks, System.getProperty(ZTSConsts.ZTS_PROP_CERT_REFRESH_IP_FNAME))) {
             if (hasProviderChangeThresholdNotExceeded(instanceProviderCertIPBlocks, ZTS_SVC_TOKEN_PROVIDER,
                     svcCertIPBlocks.size())) {
-                instanceProviderCertIPBlocks.put(ZTS_SVC_TOKEN_PROVIDER, svcCertIPBlocks);
+                instanceProviderCertIPBlocks.put(ZTS_SVC_TOKEN_PROVIDER, new IPBlockMatcher(svcCertIPBlocks));
             }
         }
 
@@ -422,20 +422,19 @@ public class InstanceCertManager {
 
         for (ProviderIPBlock ipBlock : ipBlocks.getIpblocks()) {
 
-            List<IPBlock> certIPBlocks;
+            List<IPBlock> certIPBlocks = new ArrayList<>();
             final String filename = ipBlock.getFilename();
-            if (filename == null) {
-                certIPBlocks = Collections.emptyList();
-            } else {
-                certIPBlocks = new ArrayList<>();
-                if (!loadAllowedIPAddresses(certIPBlocks, filename)) {
-                    LOGGER.error("Invalid provider ip file {}", filename);
-                    return false;
-                }
+            if (filename != null && !loadAllowedIPAddresses(certIPBlocks, filename)) {
+                LOGGER.error("Invalid provider ip file {}", filename);
+                return false;
             }
+
+            // the same matcher is shared by all providers using the file
+
+            IPBlockMatcher certIPBlockMatcher = new IPBlockMatcher(certIPBlocks);
             for (String provider : ipBlock.getProviders()) {
                 if (hasProviderChangeThresholdNotExceeded(instanceProviderCertIPBlocks, provider, certIPBlocks.size())) {
-                    instanceProviderCertIPBlocks.put(provider, certIPBlocks);
+                    instanceProviderCertIPBlocks.put(provider, certIPBlockMatcher);
                 }
             }
         }
@@ -443,12 +442,12 @@ public class InstanceCertManager {
         return true;
     }
 
-    static boolean hasProviderChangeThresholdNotExceeded(ConcurrentHashMap<String, List<IPBlock>> providerCertIPBlocks,
+    static boolean hasProviderChangeThresholdNotExceeded(ConcurrentHashMap<String, IPBlockMatcher> providerCertIPBlocks,
             final String provider, int newSize) {
 
         // first check to see if the provider is already present
 
-        List<IPBlock> existingIPBlocks = providerCertIPBlocks.get(provider);
+        IPBlockMatcher existingIPBlocks = providerCertIPBlocks.get(provider);
 
         // we're going to skip the update if the new size is more than 25% of the original size
         // this is to prevent any accidental changes to the configuration
@@ -563,23 +562,25 @@ public class InstanceCertManager {
         }
         
         for (IPPrefix prefix : prefixList) {
-            
-            // for now, we're only supporting IPv4 blocks
-            
-            final String ipEntry = prefix.getIpv4Prefix();
-            if (ipEntry == null) {
-                continue;
-            }
-            
-            try {
-                ipBlocks.add(new IPBlock(ipEntry));
-            } catch (Exception ex) {
-                LOGGER.error("Skipping invalid ip block entry: {}, error: {}", ipEntry, ex.getMessage());
-            }
+            addIPBlock(ipBlocks, prefix.getIpv4Prefix());
+            addIPBlock(ipBlocks, prefix.getIpv6Prefix());
         }
         
         return true;
     }
+
+    static void addIPBlock(List<IPBlock> ipBlocks, final String ipEntry) {
+
+        if (ipEntry == null) {
+            return;
+        }
+
+        try {
+            ipBlocks.add(new IPBlock(ipEntry));
+        } catch (Exception ex) {
+            LOGGER.error("Skipping invalid ip block entry: {}, error: {}", ipEntry, ex.getMessage());
+        }
+    }
     
     private void loadCertificateObjectStore(PrivateKeyStore keyStore) {
         
@@ -1100,7 +1101,7 @@ public class InstanceCertManager {
     }
     
     public boolean verifyCertRefreshIPAddress(final String ipAddress) {
-        final List<IPBlock> certIPBlocks = instanceCertIPBlocks.get(ZTS_SVC_TOKEN_PROVIDER);
+        final IPBlockMatcher certIPBlocks = instanceCertIPBlocks.get(ZTS_SVC_TOKEN_PROVIDER);
         if (certIPBlocks == null) {
             return true;
         }
@@ -1109,7 +1110,7 @@ public class InstanceCertManager {
 
     public boolean verifyInstanceCertIPAddress(final String provider, final String ipAddress) {
 
-        final List<IPBlock> certIPBlocks = instanceCertIPBlocks.get(provider);
+        final IPBlockMatcher certIPBlocks = instanceCertIPBlocks.get(provider);
 
         // if we have no blocks defined for the provider, then we'll return
         // failure if we have others defined or success if there are no
@@ -1240,21 +1241,15 @@ public class InstanceCertManager {
         return true;
     }
 
-    boolean verifyIPAddressAccess(final String ipAddress, final List<IPBlock> ipBlocks) {
+    boolean verifyIPAddressAccess(final String ipAddress, final IPBlockMatcher ipBlocks) {
         
         // if the list has no IP addresses then we allow all
         
         if (ipBlocks.isEmpty()) {
             return true;
         }
-        
-        long ipAddr = IPBlock.convertIPToLong(ipAddress);
-        for (IPBlock ipBlock : ipBlocks) {
-            if (ipBlock.ipCheck(ipAddr)) {
-                return true;
-            }
-        }
-        return false;
+
+        return ipBlocks.ipCheck(ipAddress);
     }
 
     public void logX509Cert(final Principal principal, final String ip, final String provider,
@@ -1547,9 +1542,9 @@ public class InstanceCertManager {
 
     static class RefreshAllowedIPAddresses implements Runnable {
 
-        ConcurrentHashMap<String, List<IPBlock>> instanceProviderCertIPBlocks;
+        ConcurrentHashMap<String, IPBlockMatcher> instanceProviderCertIPBlocks;
 
-        public RefreshAllowedIPAddresses(ConcurrentHashMap<String, List<IPBlock>> instanceProviderCertIPBlocks) {
+        public RefreshAllowedIPAddresses(ConcurrentHashMap<String, IPBlockMatcher> instanceProviderCertIPBlocks) {
             this.instanceProviderCertIPBlocks = instanceProviderCertIPBlocks;
         }
 
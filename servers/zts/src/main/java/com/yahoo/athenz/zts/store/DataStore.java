@@ -21,13 +21,15 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.yahoo.athenz.auth.AuthorityConsts;
 import com.yahoo.athenz.auth.KeyStore;
-import com.yahoo.athenz.auth.util.StringUtils;
+import com.yahoo.athenz.common.messaging.ChangeSubscriber;
+import com.yahoo.athenz.common.messaging.DomainChangeMessage;
 import com.yahoo.athenz.common.metrics.Metric;
 import com.yahoo.athenz.common.server.db.RolesProvider;
 import com.yahoo.athenz.common.server.key.PubKeysProvider;
 import com.yahoo.athenz.common.server.store.ChangeLogStore;
 import com.yahoo.athenz.common.server.util.ConfigProperties;
 import com.yahoo.athenz.common.server.util.AuthzHelper;
+import com.yahoo.athenz.common.server.util.MemberDiff;
 import com.yahoo.athenz.common.server.util.ResourceUtils;
 import com.yahoo.athenz.common.utils.SignUtils;
 import com.yahoo.athenz.zms.*;
@@ -46,14 +48,19 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPublicKey;
 import java.security.spec.ECPoint;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Function;
@@ -102,6 +109,13 @@ public class DataStore implements DataCacheProvider, RolesProvider, PubKeysProvi
     long lastCheckRunTime;
     long domainFetchRefreshTime;
     int domainFetchCount;
+    int localDomainLoadThreads;
+    DomainSnapshotStore snapshotStore;
+    long domainChangeProcessTime;
+    ScheduledExecutorService scheduledThreadPool;
+    final Set<String> changedDomains = ConcurrentHashMap.newKeySet();
+    final List<ChangeSubscriber<DomainChangeMessage>> changeSubscribers = new ArrayList<>();
+    final AtomicLong changeVersion = new AtomicLong();
     boolean jwsDomainSupport;
 
     private static final String ROLE_POSTFIX = ":role.";
@@ -120,6 +134,10 @@ public class DataStore implements DataCacheProvider, RolesProvider, PubKeysProvi
     private static final String ZTS_PROP_DOMAIN_JWS_SUPPORT    = "athenz.zts.zms_domain_jws_support";
     private static final String ZTS_PROP_DOMAIN_FETCH_TIMEOUT  = "athenz.zts.zms_domain_fetch_timeout";
     private static final String ZTS_PROP_DOMAIN_FETCH_COUNT    = "athenz.zts.zms_domain_fetch_count";
+    private static final String ZTS_PROP_LOCAL_DOMAIN_THREADS  = "athenz.zts.local_domain_load_threads";
+    private static final String ZTS_PROP_DOMAIN_SNAPSHOT_FILE  = "athenz.zts.domain_snapshot_file";
+    private static final String ZTS_PROP_DOMAIN_SNAPSHOT_LOG_RECORDS = "athenz.zts.domain_snapshot_log_records";
+    private static final String ZTS_PROP_DOMAIN_CHANGE_PROCESS_TIME  = "athenz.zts.domain_change_process_time";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DataStore.class);
 
@@ -181,6 +199,19 @@ public class DataStore implements DataCacheProvider, RolesProvider, PubKeysProvi
         domainFetchRefreshTime = ConfigProperties.retrieveConfigSetting(ZTS_PROP_DOMAIN_FETCH_TIMEOUT, 2592000);
         domainFetchCount = ConfigProperties.retrieveConfigSetting(ZTS_PROP_DOMAIN_FETCH_COUNT, 10);
 
+        // number of threads used to read and validate our local domains
+        // during startup. with a single thread the domains are processed
+        // sequentially
+
+        localDomainLoadThreads = ConfigProperties.retrieveConfigSetting(ZTS_PROP_LOCAL_DOMAIN_THREADS,
+                Runtime.getRuntime().availableProcessors());
+
+        // how often in milliseconds we process the domains received
+        // from our change subscribers. all the messages received for
+        // the same domain during this period are processed once
+
+        domainChangeProcessTime = ConfigProperties.retrieveConfigSetting(ZTS_PROP_DOMAIN_CHANGE_PROCESS_TIME, 1000);
+
         /* load the zms public key from configuration files */
 
         if (!loadAthenzPublicKeys()) {
@@ -271,6 +302,7 @@ public class DataStore implements DataCacheProvider, RolesProvider, PubKeysProvi
                 deleteDomainFromCache(domainName);
                 if (saveInStore) {
                     changeLogStore.saveLocalDomain(domainName, signedDomain);
+                    saveSnapshotDomain(domainData);
                 }
                 return true;
             }
@@ -279,6 +311,7 @@ public class DataStore implements DataCacheProvider, RolesProvider, PubKeysProvi
 
             if (saveInStore) {
                 changeLogStore.saveLocalDomain(domainName, signedDomain);
+                saveSnapshotDomain(domainData);
             }
 
             return true;
@@ -438,6 +471,11 @@ public class DataStore implements DataCacheProvider, RolesProvider, PubKeysProvi
         return result;
     }
 
+    DomainData getJWSDomainData(JWSDomain jwsDomain) throws IOException {
+        byte[] payload = base64Decoder.decode(jwsDomain.getPayload());
+        return jsonMapper.readValue(payload, DomainData.class);
+    }
+
     boolean validateJWSDomain(final String domainName, JWSDomain jwsDomain) {
 
         Function<String, PublicKey> keyGetter = zmsPublicKeyCache::getIfPresent;
@@ -456,8 +494,7 @@ public class DataStore implements DataCacheProvider, RolesProvider, PubKeysProvi
 
         DomainData domainData;
         try {
-            byte[] payload = base64Decoder.decode(jwsDomain.getPayload());
-            domainData = jsonMapper.readValue(payload, DomainData.class);
+            domainData = getJWSDomainData(jwsDomain);
         } catch (Exception ex) {
             LOGGER.error("Unable to parse jws domain", ex);
             return false;
@@ -483,6 +520,7 @@ public class DataStore implements DataCacheProvider, RolesProvider, PubKeysProvi
                 deleteDomainFromCache(domainName);
                 if (saveInStore) {
                     changeLogStore.saveLocalDomain(domainName, jwsDomain);
+                    saveSnapshotDomain(domainData);
                 }
                 return true;
             }
@@ -491,6 +529,7 @@ public class DataStore implements DataCacheProvider, RolesProvider, PubKeysProvi
 
             if (saveInStore) {
                 changeLogStore.saveLocalDomain(domainName, jwsDomain);
+                saveSnapshotDomain(domainData);
             }
 
             return true;
@@ -822,13 +861,13 @@ boolean loadZtsJwk(ArrayList<com.yahoo.athenz.zms.PublicKeyEntry> keys) {
 
         Set<String> zmsDomainList = changeLogStore.getServerDomainList();
 
-        int badDomains = 0;
-        for (String domainName : localDomainList) {
+        /* make sure each domain is still active in ZMS otherwise
+         * we'll just remove our local copy. if we were not able
+         * to fetch the domain list from ZMS at this time, we'll
+         * just defer the cleanup at the next check */
 
-            /* make sure this domain is still active in ZMS otherwise
-             * we'll just remove our local copy. if we were not able
-             * to fetch the domain list from ZMS at this time, we'll
-             * just defer the cleanup at the next check */
+        List<String> activeDomainList = new ArrayList<>();
+        for (String domainName : localDomainList) {
 
             if (zmsDomainList != null && !zmsDomainList.contains(domainName)) {
 
@@ -840,13 +879,99 @@ boolean loadZtsJwk(ArrayList<com.yahoo.athenz.zms.PublicKeyEntry> keys) {
                 continue;
             }
 
-            /* if we get a failure when processing a local domain then it
-             * indicates that we had an invalid domain file (possibly
-             * corrupted or hacked). In this case we're going to drop
-             * everything and request a full refresh from ZMS only if the
-             * change log store supports that functionality. Otherwise,
-             * we're going to just skip the domain and continue. */
+            activeDomainList.add(domainName);
+        }
+
+        /* if we have a valid snapshot then we only need to process
+         * the domains that are not included in the snapshot */
+
+        if (snapshotStore != null) {
+            activeDomainList = processSnapshotDomains(activeDomainList);
+        }
+
+        /* if we get a failure when processing a local domain then it
+         * indicates that we had an invalid domain file (possibly
+         * corrupted or hacked). In this case we're going to drop
+         * everything and request a full refresh from ZMS only if the
+         * change log store supports that functionality. Otherwise,
+         * we're going to just skip the domain and continue. */
+
+        int badDomains = (localDomainLoadThreads > 1 && activeDomainList.size() > 1) ?
+                processLocalDomainsInParallel(activeDomainList) : processLocalDomainsSequentially(activeDomainList);
+        if (badDomains == -1) {
+            return -1;
+        }
+
+        /* if more than 1/4 of our domains are bad then we have some
+         * issue that needs to be addressed so we're going to return failure */
+
+        if (badDomains > localDomainList.size() / 4) {
+            LOGGER.error("Too many invalid domains: {} out of {}", badDomains, localDomainList.size());
+            return -1;
+        }
+
+        return badDomains;
+    }
+
+    /**
+     * Add the domains from our snapshot store to our cache. The domains
+     * in the snapshot were already validated before they were saved and
+     * the snapshot files are protected with an hmac keyed by the server
+     * private key so there is no need to validate their signatures again.
+     * @param domainList list of local domains to process
+     * @return list of domains that were not included in the snapshot
+     */
+    List<String> processSnapshotDomains(List<String> domainList) {
+
+        Map<String, DomainData> snapshotDomains = snapshotStore.loadDomains();
+        if (snapshotDomains == null) {
+            return domainList;
+        }
+
+        List<String> remainingDomainList = new ArrayList<>();
+        for (String domainName : domainList) {
+            DomainData domainData = snapshotDomains.get(domainName);
+            if (domainData == null || !publishLocalDomain(domainName, domainData)) {
+                remainingDomainList.add(domainName);
+            }
+        }
+
+        LOGGER.info("Processed {} local domains from snapshot, {} remaining domains",
+                domainList.size() - remainingDomainList.size(), remainingDomainList.size());
+
+        // if the snapshot is missing some of our domains then we'll
+        // close its log so a new full snapshot is generated once
+        // all the local domains are processed
+
+        if (!remainingDomainList.isEmpty()) {
+            snapshotStore.close();
+        }
+        return remainingDomainList;
+    }
+
+    void saveSnapshotDomain(DomainData domainData) {
+        if (snapshotStore != null) {
+            snapshotStore.putDomain(domainData);
+        }
+    }
+
+    void saveDomainSnapshot() {
+
+        if (snapshotStore == null || !snapshotStore.snapshotRequired()) {
+            return;
+        }
+
+        List<DomainData> domains = new ArrayList<>();
+        for (DataCache dataCache : getCacheStore().asMap().values()) {
+            domains.add(dataCache.getDomainData());
+        }
+        snapshotStore.saveDomains(domains);
+    }
+
+    int processLocalDomainsSequentially(List<String> domainList) {
 
+        int badDomains = 0;
+        for (String domainName : domainList) {
             if (!processLocalDomain(domainName)) {
                 if (changeLogStore.supportsFullRefresh()) {
                     return -1;
@@ -855,18 +980,136 @@ boolean loadZtsJwk(ArrayList<com.yahoo.athenz.zms.PublicKeyEntry> keys) {
                 }
             }
         }
+        return badDomains;
+    }
 
-        /* if more than 1/4 of our domains are bad then we have some
-         * issue that needs to be addressed so we're going to return failure */
+    /**
+     * Read and validate the signatures of the given local domains using
+     * a pool of worker threads. The number of domains being processed
+     * at any given time is bounded so we don't keep too many parsed
+     * domains in memory, and the validated domains are added to our
+     * cache in the same order as they're listed by the caller.
+     * @param domainList list of local domains to process
+     * @return -1 if full resync is needed, otherwise the number of bad domains
+     */
+    int processLocalDomainsInParallel(List<String> domainList) {
 
-        if (badDomains > localDomainList.size() / 4) {
-            LOGGER.error("Too many invalid domains: {} out of {}", badDomains, localDomainList.size());
-            return -1;
+        final boolean supportsFullRefresh = changeLogStore.supportsFullRefresh();
+        final int maxPendingDomains = localDomainLoadThreads * 4;
+
+        ExecutorService executorService = Executors.newFixedThreadPool(localDomainLoadThreads);
+        Deque<Future<DomainData>> pendingDomains = new ArrayDeque<>();
+
+        long waitTime = 0;
+        long publishTime = 0;
+        int badDomains = 0;
+
+        try {
+            int index = 0;
+            int publishIndex = 0;
+            final int domainCount = domainList.size();
+            while (publishIndex < domainCount) {
+
+                // keep our workers busy without exceeding our limit
+
+                while (index < domainCount && pendingDomains.size() < maxPendingDomains) {
+                    final String domainName = domainList.get(index++);
+                    pendingDomains.add(executorService.submit(() -> loadLocalDomain(domainName)));
+                }
+
+                final String domainName = domainList.get(publishIndex++);
+
+                long startTime = System.nanoTime();
+                DomainData domainData = getLocalDomainResult(domainName, pendingDomains.poll());
+                long loadTime = System.nanoTime();
+
+                boolean result = publishLocalDomain(domainName, domainData);
+                publishTime += System.nanoTime() - loadTime;
+                waitTime += loadTime - startTime;
+
+                if (!result) {
+                    if (supportsFullRefresh) {
+                        return -1;
+                    } else {
+                        badDomains += 1;
+                    }
+                }
+            }
+        } finally {
+            executorService.shutdownNow();
         }
 
+        LOGGER.info("Processed {} local domains with {} threads: load wait time {} ms, publish time {} ms",
+                domainList.size(), localDomainLoadThreads, TimeUnit.NANOSECONDS.toMillis(waitTime),
+                TimeUnit.NANOSECONDS.toMillis(publishTime));
+
         return badDomains;
     }
 
+    DomainData getLocalDomainResult(final String domainName, Future<DomainData> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Interrupted while processing local domain {}", domainName);
+        } catch (Exception ex) {
+            LOGGER.error("Unable to process local domain {}", domainName, ex);
+        }
+        return null;
+    }
+
+    /**
+     * Read the given local domain from our change log store and validate
+     * its signature. This method is called by the worker threads so it
+     * does not update any of our caches.
+     * @param domainName name of the domain
+     * @return validated domain data object or null if the domain is not valid
+     */
+    DomainData loadLocalDomain(final String domainName) {
+
+        try {
+            if (jwsDomainSupport) {
+                JWSDomain jwsDomain = changeLogStore.getLocalJWSDomain(domainName);
+                DomainData domainData = getJWSDomainData(jwsDomain);
+                return validateJWSDomain(domainData.getName(), jwsDomain) ? domainData : null;
+            } else {
+                SignedDomain signedDomain = changeLogStore.getLocalSignedDomain(domainName);
+                return validateSignedDomain(signedDomain) ? signedDomain.getDomain() : null;
+            }
+        } catch (Exception ex) {
+            LOGGER.error("Unable to process local domain {}", domainName, ex);
+        }
+        return null;
+    }
+
+    boolean publishLocalDomain(final String domainName, DomainData domainData) {
+
+        boolean result = false;
+        if (domainData != null) {
+            try {
+                LOGGER.info("Processing domain: {}", domainData.getName());
+
+                // if the domain is disabled we're going to skip
+                // processing this domain and only invalidate our cache
+
+                if (domainData.getEnabled() == Boolean.FALSE) {
+                    LOGGER.info("Skipping disabled domain: {}", domainData.getName());
+                    deleteDomainFromCache(domainData.getName());
+                } else {
+                    processDomainData(domainData);
+                }
+                result = true;
+            } catch (Exception ex) {
+                LOGGER.error("unable to process local domain: {}", domainName, ex);
+            }
+        }
+
+        if (!result) {
+            LOGGER.error("Invalid local domain: {}. Refresh from ZMS required", domainName);
+        }
+        return result;
+    }
+
     boolean processLocalDomain(String domainName) {
         return jwsDomainSupport ? processLocalJWSDomain(domainName) : processLocalSignedDomain(domainName);
     }
@@ -875,6 +1118,7 @@ boolean loadZtsJwk(ArrayList<com.yahoo.athenz.zms.PublicKeyEntry> keys) {
 
         /* now let's retrieve the list of locally saved domains */
 
+        long startTime = System.currentTimeMillis();
         List<String> localDomainList = changeLogStore.getLocalDomainList();
 
         /* if we are not able to successfully process our local domains
@@ -893,6 +1137,7 @@ boolean loadZtsJwk(ArrayList<com.yahoo.athenz.zms.PublicKeyEntry> keys) {
                 deleteDomain(domainName);
             }
         }
+        long localDomainTime = System.currentTimeMillis();
 
         /* after our local files have been processed now we need to
          * retrieve the domains that were modified since the last
@@ -907,17 +1152,104 @@ boolean loadZtsJwk(ArrayList<com.yahoo.athenz.zms.PublicKeyEntry> keys) {
          * domains then we're going to run a domain check and
          * verify all domains vs their modified timestamp in zms */
 
+        long domainUpdateTime = System.currentTimeMillis();
         if (badDomains > 0) {
             processDomainChecks();
         }
+        long domainCheckTime = System.currentTimeMillis();
+
+        /* generate a new snapshot of our domains if we didn't have
+         * one or our change log has grown too large */
+
+        saveDomainSnapshot();
+
+        LOGGER.info("Storage initialized: local domains({}) {} ms, domain updates {} ms, domain checks {} ms",
+                localDomainList.size(), localDomainTime - startTime, domainUpdateTime - localDomainTime,
+                domainCheckTime - domainUpdateTime);
 
         /* Start our monitoring thread to get changes from ZMS */
 
-        ScheduledExecutorService scheduledThreadPool = Executors.newScheduledThreadPool(1);
+        scheduledThreadPool = Executors.newScheduledThreadPool(1);
         scheduledThreadPool.scheduleAtFixedRate(new DataUpdater(), updDomainRefreshTime,
                 updDomainRefreshTime, TimeUnit.SECONDS);
     }
 
+    /**
+     * Register a change subscriber to receive domain change messages
+     * published by ZMS. The changed domains are fetched from ZMS by
+     * our scheduler thread so they're never processed at the same time
+     * as the domain updates from our polling thread, which is still
+     * running to handle any missed messages.
+     * @param subscriber domain change subscriber
+     */
+    public void addDomainChangeSubscriber(ChangeSubscriber<DomainChangeMessage> subscriber) {
+
+        subscriber.init(this::processDomainChangeMessage, DomainChangeMessage.class);
+
+        synchronized (changeSubscribers) {
+            if (changeSubscribers.isEmpty() && scheduledThreadPool != null) {
+                scheduledThreadPool.scheduleWithFixedDelay(new DomainChangeUpdater(), domainChangeProcessTime,
+                        domainChangeProcessTime, TimeUnit.MILLISECONDS);
+            }
+            changeSubscribers.add(subscriber);
+        }
+
+        Thread subscriberThread = new Thread(subscriber, "zts-domain-change-subscriber");
+        subscriberThread.setDaemon(true);
+        subscriberThread.start();
+    }
+
+    void processDomainChangeMessage(DomainChangeMessage message) {
+
+        if (message == null || StringUtil.isEmpty(message.getDomainName())) {
+            return;
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Received change message for domain: {} api: {}", message.getDomainName(),
+                    message.getApiName());
+        }
+
+        // we only keep track of the domain names so any bursts of
+        // changes for the same domain are only processed once
+
+        changedDomains.add(message.getDomainName());
+    }
+
+    void processDomainChanges() {
+
+        if (changedDomains.isEmpty()) {
+            return;
+        }
+
+        List<String> domainNames = new ArrayList<>(changedDomains);
+        changedDomains.removeAll(domainNames);
+
+        for (String domainName : domainNames) {
+            try {
+                if (!processDomainChange(domainName)) {
+                    LOGGER.error("Unable to process changes for domain: {}", domainName);
+                }
+            } catch (Exception ex) {
+                LOGGER.error("Unable to process changes for domain: {}", domainName, ex);
+            }
+        }
+    }
+
+    boolean processDomainChange(final String domainName) {
+
+        // any failures here will be picked up by our regular
+        // domain update polling thread
+
+        if (jwsDomainSupport) {
+            JWSDomain jwsDomain = changeLogStore.getServerJWSDomain(domainName);
+            return jwsDomain != null && processJWSDomain(jwsDomain, true);
+        } else {
+            SignedDomain signedDomain = changeLogStore.getServerSignedDomain(domainName);
+            return signedDomain != null && processSignedDomain(signedDomain, true);
+        }
+    }
+
     void processDomainChecks() {
         if (jwsDomainSupport) {
             processJWSDomainChecks();
@@ -1032,24 +1364,16 @@ boolean loadZtsJwk(ArrayList<com.yahoo.athenz.zms.PublicKeyEntry> keys) {
         // and determine the list of changes between old and new members
 
         List<GroupMember> originalMembers = groupMemberCache.getIfPresent(group.getName());
-        List<GroupMember> curMembers = originalMembers == null ? new ArrayList<>() : new ArrayList<>(originalMembers);
-        List<GroupMember> delMembers = new ArrayList<>(curMembers);
-        List<GroupMember> newMembers = new ArrayList<>(group.getGroupMembers());
-        List<GroupMember> updMembers = new ArrayList<>(group.getGroupMembers());
-
-        // remove current members from new members
-
-        AuthzHelper.removeGroupMembers(newMembers, curMembers, true);
-
-        // remove new members from current members
-        // which leaves the deleted members.
+        MemberDiff<GroupMember> memberDiff = AuthzHelper.diffGroupMembers(originalMembers,
+                group.getGroupMembers(), true);
 
-        AuthzHelper.removeGroupMembers(delMembers, group.getGroupMembers(), true);
+        // the deleted members are the current members not included in the new
+        // list while the updated members are the new members that are also
+        // included in the current list
 
-        // now let's remove our new members from the member list to
-        // get the possible list of users that need to be updated
-
-        AuthzHelper.removeGroupMembers(updMembers, newMembers, true);
+        List<GroupMember> delMembers = memberDiff.getDeletedMembers();
+        List<GroupMember> newMembers = memberDiff.getAddedMembers();
+        List<GroupMember> updMembers = memberDiff.getUpdatedMembers();
 
         // update the group member cache with the new members
 
@@ -1361,10 +1685,14 @@ boolean loadZtsJwk(ArrayList<com.yahoo.athenz.zms.PublicKeyEntry> keys) {
         /* first delete our data from the cache */
 
         deleteDomainFromCache(domainName);
+        changeVersion.incrementAndGet();
 
         /* then delete it from the struct store */
 
         changeLogStore.removeLocalDomain(domainName);
+        if (snapshotStore != null) {
+            snapshotStore.deleteDomain(domainName);
+        }
     }
 
     void cleanRequireRoleCertCache(final String domainName) {
@@ -1507,6 +1835,7 @@ boolean loadZtsJwk(ArrayList<com.yahoo.athenz.zms.PublicKeyEntry> keys) {
         /* update the cache for the given domain */
 
         getCacheStore().put(name, dataCache);
+        changeVersion.incrementAndGet();
     }
 
     // Internal
@@ -1537,6 +1866,18 @@ boolean loadZtsJwk(ArrayList<com.yahoo.athenz.zms.PublicKeyEntry> keys) {
         getCacheStore().invalidate(name);
     }
 
+    /**
+     * Return the version of the data store which is incremented every
+     * time a domain is updated or deleted. Since the roles of a principal
+     * may depend on groups and trusted roles from other domains, callers
+     * caching results based on the roles must check this version rather
+     * than the modified time of a single domain.
+     * @return data store change version
+     */
+    public long getChangeVersion() {
+        return changeVersion.get();
+    }
+
     // Internal
     void processStandardMembership(Set<MemberRole> memberRoles, String rolePrefix, String[] requestedRoleList,
             boolean fullNameMatch, Set<String> accessibleRoles, boolean keepFullName) {
@@ -1725,13 +2066,8 @@ boolean loadZtsJwk(ArrayList<com.yahoo.athenz.zms.PublicKeyEntry> keys) {
          * we only process those where the key in the map is
          * a prefix of our identity */
 
-        Map<String, Set<MemberRole>> roleSetMap = data.getPrefixMemberRoleSetMap();
-        for (String identityPrefix : roleSetMap.keySet()) {
-            if (identity.startsWith(identityPrefix)) {
-                processStandardMembership(roleSetMap.get(identityPrefix),
-                        rolePrefix, requestedRoleList, fullNameMatch, accessibleRoles, keepFullName);
-            }
-        }
+        processStandardMembership(data.getPrefixMemberRoleSet(identity),
+                rolePrefix, requestedRoleList, fullNameMatch, accessibleRoles, keepFullName);
 
         // now process our group membership
 
@@ -1800,7 +2136,6 @@ boolean loadZtsJwk(ArrayList<com.yahoo.athenz.zms.PublicKeyEntry> keys) {
     // Internal
     boolean roleMatchInSet(String role, Set<MemberRole> memberRoles) {
 
-        String rolePattern;
         long currentTime = System.currentTimeMillis();
         for (MemberRole memberRole : memberRoles) {
 
@@ -1812,19 +2147,12 @@ boolean loadZtsJwk(ArrayList<com.yahoo.athenz.zms.PublicKeyEntry> keys) {
                 continue;
             }
 
-            // if the role does not contain any of our pattern
-            // characters then we can just a regular compare
+            // the member role object keeps a precompiled pattern
+            // if the role contains any of our pattern characters
+            // otherwise it carries out a regular compare
 
-            final String roleName = memberRole.getRole();
-            if (StringUtils.containsMatchCharacter(roleName)) {
-                rolePattern = StringUtils.patternFromGlob(roleName);
-                if (role.matches(rolePattern)) {
-                    return true;
-                }
-            } else {
-                if (role.equals(roleName)) {
-                    return true;
-                }
+            if (memberRole.roleMatch(role)) {
+                return true;
             }
         }
 
@@ -1892,18 +2220,15 @@ boolean loadZtsJwk(ArrayList<com.yahoo.athenz.zms.PublicKeyEntry> keys) {
          * but we need to first confirm that our identity
          * matches to member before processing it */
 
-        Map<String, Set<MemberRole>> roleSetMap = trustData.getPrefixMemberRoleSetMap();
-        for (String identityPrefix : roleSetMap.keySet()) {
-            if (identity.startsWith(identityPrefix)) {
+        memberRoles = trustData.getPrefixMemberRoleSet(identity);
+        if (!memberRoles.isEmpty()) {
 
-                memberRoles = roleSetMap.get(identityPrefix);
-                for (String resource : trustedResources) {
+            for (String resource : trustedResources) {
 
-                    /* in this case our resource is the role name */
+                /* in this case our resource is the role name */
 
-                    processSingleTrustedDomainRole(resource, rolePrefix, requestedRoleList,
-                            memberRoles, accessibleRoles, keepFullName);
-                }
+                processSingleTrustedDomainRole(resource, rolePrefix, requestedRoleList,
+                        memberRoles, accessibleRoles, keepFullName);
             }
         }
 
@@ -2097,6 +2422,36 @@ boolean loadZtsJwk(ArrayList<com.yahoo.athenz.zms.PublicKeyEntry> keys) {
         this.serviceCredsEncryptionAlgorithm = serviceCredsEncryptionAlgorithm;
     }
 
+    /**
+     * Check if we're configured to keep a snapshot of our validated
+     * domains so we can initialize our cache without processing each
+     * domain file during startup. The snapshot files are protected
+     * with a key derived from the given server private key so this
+     * method must be called before the store is initialized.
+     * @param privateKey server private key
+     */
+    public void setDomainSnapshotKey(PrivateKey privateKey) {
+
+        final String snapshotFileName = System.getProperty(ZTS_PROP_DOMAIN_SNAPSHOT_FILE);
+        if (StringUtil.isEmpty(snapshotFileName) || privateKey == null) {
+            return;
+        }
+        snapshotStore = new DomainSnapshotStore(snapshotFileName,
+                ConfigProperties.retrieveConfigSetting(ZTS_PROP_DOMAIN_SNAPSHOT_LOG_RECORDS, 1000), privateKey);
+    }
+
+    class DomainChangeUpdater implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                processDomainChanges();
+            } catch (Throwable t) {
+                LOGGER.error("DomainChangeUpdater: unable to process domain changes", t);
+            }
+        }
+    }
+
     class DataUpdater implements Runnable {
 
         @Override
@@ -2108,6 +2463,7 @@ boolean loadZtsJwk(ArrayList<com.yahoo.athenz.zms.PublicKeyEntry> keys) {
 
             try {
                 processDomainUpdates();
+                saveDomainSnapshot();
             } catch (Throwable t) {
                 LOGGER.error("DataUpdater: unable to process domain updates", t);
             }
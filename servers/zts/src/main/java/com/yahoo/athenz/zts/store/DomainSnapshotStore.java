@@ -0,0 +1,519 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.zts.store;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yahoo.athenz.zms.DomainData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermission;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.util.*;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Binary snapshot of the domains that have already been validated by
+ * the DataStore. The snapshot file includes all the domains in a single
+ * versioned file and it's read with a memory mapped buffer. Any changes
+ * applied after the snapshot was generated are appended to a separate log
+ * file. Since the domains are stored without their ZMS signatures, the
+ * snapshot and each log record are protected by an HMAC-SHA256 with a key
+ * derived from the server's private key, so the files cannot be modified
+ * without access to that key. Each log record MAC also covers the snapshot
+ * id and the record index so records cannot be reordered or copied from
+ * another log. When ZTS restarts, the DataStore can rebuild its caches from
+ * the snapshot and the log without reading the individual domain files and
+ * validating their signatures again. If the snapshot is not available or
+ * invalid (e.g. the server key has changed), the caller must fall back to
+ * the domain files in the change log store. If a change cannot be recorded
+ * in the log, the snapshot file is removed so a stale snapshot is never
+ * loaded, and a new full snapshot is required.
+ *  Snapshot: MAGIC VERSION SNAPSHOT-ID COUNT (NAME DATA)* HMAC
+ *  Log:      MAGIC VERSION SNAPSHOT-ID (OP NAME DATA HMAC)*
+ */
+public class DomainSnapshotStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DomainSnapshotStore.class);
+
+    static final int SNAPSHOT_MAGIC   = 0x5A545344;
+    static final int SNAPSHOT_VERSION = 2;
+    static final int MAC_LENGTH       = 32;
+    static final byte OP_PUT          = 1;
+    static final byte OP_DELETE       = 2;
+
+    private static final String LOG_SUFFIX  = ".log";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final String MAC_KEY_LABEL = "athenz.zts.domain_snapshot";
+
+    private final File snapshotFile;
+    private final File logFile;
+    private final int maxLogRecords;
+    private final ObjectMapper jsonMapper;
+    private final SecretKeySpec macKey;
+
+    private long snapshotId;
+    private int logRecords;
+    private DataOutputStream logStream;
+
+    /**
+     * Create a new snapshot store
+     * @param snapshotFileName name of the snapshot file. The log file has the same name with .log suffix
+     * @param maxLogRecords number of log records after which a new snapshot is required
+     * @param privateKey server private key used to derive the key for the snapshot HMACs
+     */
+    public DomainSnapshotStore(final String snapshotFileName, int maxLogRecords, PrivateKey privateKey) {
+        this.snapshotFile = new File(snapshotFileName);
+        this.logFile = new File(snapshotFileName + LOG_SUFFIX);
+        this.maxLogRecords = maxLogRecords;
+        this.macKey = new SecretKeySpec(deriveMacKey(privateKey), MAC_ALGORITHM);
+
+        jsonMapper = new ObjectMapper();
+        jsonMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    /**
+     * Load the domains from our snapshot and apply any changes from
+     * our log file. Once the domains are loaded, any new changes are
+     * appended to the log file.
+     * @return map of domains keyed by domain name or null if the snapshot is not valid
+     */
+    public synchronized Map<String, DomainData> loadDomains() {
+
+        if (!snapshotFile.exists()) {
+            LOGGER.info("Domain snapshot file {} does not exist", snapshotFile.getPath());
+            return null;
+        }
+
+        Map<String, DomainData> domains;
+        try {
+            domains = readSnapshot();
+        } catch (Exception ex) {
+            LOGGER.error("Unable to read domain snapshot file {}: {}", snapshotFile.getPath(), ex.getMessage());
+            return null;
+        }
+
+        if (domains == null) {
+            return null;
+        }
+
+        try {
+            readLog(domains);
+            openLog(true);
+        } catch (Exception ex) {
+            LOGGER.error("Unable to process domain snapshot log {}: {}", logFile.getPath(), ex.getMessage());
+            return null;
+        }
+
+        LOGGER.info("Loaded {} domains from snapshot with {} log records", domains.size(), logRecords);
+        return domains;
+    }
+
+    /**
+     * Write a new snapshot with the given domains and reset our log file
+     * @param domains list of domains to include in the snapshot
+     * @return true if the snapshot was successfully written
+     */
+    public synchronized boolean saveDomains(Collection<DomainData> domains) {
+
+        final long newSnapshotId = System.currentTimeMillis();
+        final File tempFile = new File(snapshotFile.getPath() + TEMP_SUFFIX);
+
+        try {
+            Mac mac = getMac();
+            try (OutputStream fileStream = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+                DataOutputStream out = new DataOutputStream(new MacOutput(fileStream, mac));
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(newSnapshotId);
+                out.writeInt(domains.size());
+                for (DomainData domainData : domains) {
+                    writeBytes(out, domainData.getName().getBytes(StandardCharsets.UTF_8));
+                    writeBytes(out, jsonMapper.writeValueAsBytes(domainData));
+                }
+                out.flush();
+                fileStream.write(mac.doFinal());
+            }
+            setupFilePermissions(tempFile);
+            Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception ex) {
+            LOGGER.error("Unable to write domain snapshot file {}: {}", snapshotFile.getPath(), ex.getMessage());
+            deleteFile(tempFile);
+            return false;
+        }
+
+        // without a log for our new snapshot we cannot record any
+        // changes so the snapshot must not be used
+
+        snapshotId = newSnapshotId;
+        try {
+            openLog(false);
+        } catch (IOException ex) {
+            LOGGER.error("Unable to reset domain snapshot log {}: {}", logFile.getPath(), ex.getMessage());
+            invalidateSnapshot();
+            return false;
+        }
+
+        LOGGER.info("Saved {} domains in snapshot file {}", domains.size(), snapshotFile.getPath());
+        return true;
+    }
+
+    /**
+     * Append the given domain to our log file
+     * @param domainData validated domain data
+     */
+    public synchronized void putDomain(DomainData domainData) {
+        final byte[] data;
+        try {
+            data = jsonMapper.writeValueAsBytes(domainData);
+        } catch (IOException ex) {
+            LOGGER.error("Unable to serialize domain {} for snapshot log: {}", domainData.getName(), ex.getMessage());
+            invalidateSnapshot();
+            return;
+        }
+        appendLog(OP_PUT, domainData.getName(), data);
+    }
+
+    /**
+     * Append the delete request for the given domain to our log file
+     * @param domainName name of the domain
+     */
+    public synchronized void deleteDomain(final String domainName) {
+        appendLog(OP_DELETE, domainName, new byte[0]);
+    }
+
+    /**
+     * @return true if our log file has too many records and a new
+     * snapshot should be generated
+     */
+    public synchronized boolean snapshotRequired() {
+        return logStream == null || logRecords >= maxLogRecords;
+    }
+
+    public synchronized void close() {
+        closeLog();
+    }
+
+    Map<String, DomainData> readSnapshot() throws Exception {
+
+        try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+
+            // we map the full file in a single buffer so the
+            // snapshot cannot be larger than 2GB
+
+            final long size = channel.size();
+            if (size < 20 + MAC_LENGTH) {
+                LOGGER.error("Domain snapshot file {} is too short", snapshotFile.getPath());
+                return null;
+            }
+            if (size > Integer.MAX_VALUE) {
+                LOGGER.error("Domain snapshot file {} is too large: {}", snapshotFile.getPath(), size);
+                return null;
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            // verify the hmac of our data before processing the content
+
+            final int dataLength = (int) (size - MAC_LENGTH);
+            Mac mac = getMac();
+            ByteBuffer data = buffer.duplicate();
+            data.limit(dataLength);
+            mac.update(data);
+
+            byte[] fileMac = new byte[MAC_LENGTH];
+            buffer.position(dataLength);
+            buffer.get(fileMac);
+            if (!MessageDigest.isEqual(mac.doFinal(), fileMac)) {
+                LOGGER.error("Domain snapshot file {} hmac mismatch", snapshotFile.getPath());
+                return null;
+            }
+
+            buffer.position(0);
+            buffer.limit(dataLength);
+            if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION) {
+                LOGGER.error("Domain snapshot file {} has unknown format", snapshotFile.getPath());
+                return null;
+            }
+
+            final long fileSnapshotId = buffer.getLong();
+            final int count = buffer.getInt();
+            Map<String, DomainData> domains = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                final String domainName = new String(readBytes(buffer), StandardCharsets.UTF_8);
+                domains.put(domainName, jsonMapper.readValue(readBytes(buffer), DomainData.class));
+            }
+
+            snapshotId = fileSnapshotId;
+            return domains;
+        }
+    }
+
+    void readLog(Map<String, DomainData> domains) throws IOException, GeneralSecurityException {
+
+        logRecords = 0;
+        if (!logFile.exists()) {
+            return;
+        }
+
+        final long maxLength = logFile.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+
+            // if the log was not generated for our snapshot then all
+            // of its changes are already included in the snapshot
+
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION || in.readLong() != snapshotId) {
+                LOGGER.info("Ignoring domain snapshot log {} from previous snapshot", logFile.getPath());
+                return;
+            }
+
+            while (true) {
+                final byte op;
+                final byte[] name;
+                final byte[] data;
+                final byte[] recordMac = new byte[MAC_LENGTH];
+                try {
+                    op = in.readByte();
+                    name = readBytes(in, maxLength);
+                    data = readBytes(in, maxLength);
+                    in.readFully(recordMac);
+                } catch (EOFException ex) {
+                    break;
+                }
+
+                // a partially written record can only be at the end of
+                // the file so we'll stop processing at that point
+
+                if (!MessageDigest.isEqual(recordMac, getRecordMac(logRecords, op, name, data))) {
+                    LOGGER.error("Domain snapshot log {} has invalid record", logFile.getPath());
+                    break;
+                }
+
+                final String domainName = new String(name, StandardCharsets.UTF_8);
+                if (op == OP_DELETE) {
+                    domains.remove(domainName);
+                } else {
+                    domains.put(domainName, jsonMapper.readValue(data, DomainData.class));
+                }
+                logRecords += 1;
+            }
+        }
+    }
+
+    void openLog(boolean append) throws IOException {
+
+        closeLog();
+
+        // when we're appending to an existing log, we'll truncate it
+        // to skip any partial records from the previous run
+
+        if (append && logFile.exists() && logRecords > 0) {
+            truncateLog();
+        } else {
+            logRecords = 0;
+            append = false;
+        }
+
+        logStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, append)));
+        setupFilePermissions(logFile);
+        if (!append) {
+            logStream.writeInt(SNAPSHOT_MAGIC);
+            logStream.writeInt(SNAPSHOT_VERSION);
+            logStream.writeLong(snapshotId);
+            logStream.flush();
+        }
+    }
+
+    void truncateLog() throws IOException {
+
+        // calculate the length of the valid records by reading them again
+
+        long validLength = 16;
+        final long maxLength = logFile.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+            in.skipBytes(16);
+            for (int i = 0; i < logRecords; i++) {
+                in.readByte();
+                final int nameLength = readBytes(in, maxLength).length;
+                final int dataLength = readBytes(in, maxLength).length;
+                in.skipBytes(MAC_LENGTH);
+                validLength += 1 + 4 + nameLength + 4 + dataLength + MAC_LENGTH;
+            }
+        }
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+            file.setLength(validLength);
+        }
+    }
+
+    void closeLog() {
+        if (logStream != null) {
+            try {
+                logStream.close();
+            } catch (IOException ignored) {
+            }
+            logStream = null;
+        }
+    }
+
+    void appendLog(byte op, final String domainName, byte[] data) {
+
+        // until we have loaded or generated a snapshot there is no
+        // log to append the changes to, so any existing snapshot file
+        // no longer includes all the changes and must be removed
+
+        if (logStream == null) {
+            invalidateSnapshot();
+            return;
+        }
+
+        final byte[] name = domainName.getBytes(StandardCharsets.UTF_8);
+        try {
+            logStream.writeByte(op);
+            writeBytes(logStream, name);
+            writeBytes(logStream, data);
+            logStream.write(getRecordMac(logRecords, op, name, data));
+            logStream.flush();
+            logRecords += 1;
+        } catch (IOException | GeneralSecurityException ex) {
+            LOGGER.error("Unable to append domain {} to snapshot log {}: {}", domainName,
+                    logFile.getPath(), ex.getMessage());
+            invalidateSnapshot();
+        }
+    }
+
+    void invalidateSnapshot() {
+
+        // once our log is closed, a new full snapshot is
+        // required before any changes are recorded again
+
+        closeLog();
+        if (snapshotFile.exists()) {
+            LOGGER.error("Domain snapshot {} no longer includes all changes, removing it", snapshotFile.getPath());
+            deleteFile(snapshotFile);
+        }
+    }
+
+    void deleteFile(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException ex) {
+            LOGGER.error("Unable to delete file {}: {}", file.getPath(), ex.getMessage());
+        }
+    }
+
+    static byte[] deriveMacKey(PrivateKey privateKey) {
+
+        // the private key itself is never used as the hmac key
+        // directly. instead we derive a dedicated key for our files
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(MAC_KEY_LABEL.getBytes(StandardCharsets.UTF_8));
+            digest.update(privateKey.getEncoded());
+            return digest.digest();
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Unable to derive domain snapshot key", ex);
+        }
+    }
+
+    Mac getMac() throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(MAC_ALGORITHM);
+        mac.init(macKey);
+        return mac;
+    }
+
+    byte[] getRecordMac(int recordIndex, byte op, byte[] name, byte[] data) throws GeneralSecurityException {
+
+        // the record is bound to our snapshot and its position in the log
+
+        ByteBuffer header = ByteBuffer.allocate(8 + 4 + 1 + 4);
+        header.putLong(snapshotId).putInt(recordIndex).put(op).putInt(name.length).flip();
+
+        Mac mac = getMac();
+        mac.update(header);
+        mac.update(name);
+        mac.update(data);
+        return mac.doFinal();
+    }
+
+    void setupFilePermissions(File file) {
+        try {
+            Files.setPosixFilePermissions(file.toPath(),
+                    EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE));
+        } catch (Exception ex) {
+            LOGGER.error("Unable to set permissions for file {}: {}", file.getPath(), ex.getMessage());
+        }
+    }
+
+    static void writeBytes(DataOutputStream out, byte[] data) throws IOException {
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    static byte[] readBytes(ByteBuffer buffer) throws IOException {
+        final int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("invalid record length: " + length);
+        }
+        byte[] data = new byte[length];
+        buffer.get(data);
+        return data;
+    }
+
+    static byte[] readBytes(DataInputStream in, long maxLength) throws IOException {
+        final int length = in.readInt();
+        if (length < 0 || length > maxLength) {
+            throw new IOException("invalid record length: " + length);
+        }
+        byte[] data = new byte[length];
+        in.readFully(data);
+        return data;
+    }
+
+    static class MacOutput extends FilterOutputStream {
+
+        private final Mac mac;
+
+        MacOutput(OutputStream out, Mac mac) {
+            super(out);
+            this.mac = mac;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            mac.update((byte) b);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            mac.update(b, off, len);
+            out.write(b, off, len);
+        }
+    }
+}
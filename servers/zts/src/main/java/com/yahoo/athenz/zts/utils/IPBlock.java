@@ -23,41 +23,83 @@ public class IPBlock {
 
     long subnet;
     long mask;
-    
+
+    // the address range of the block as 128-bit values with the
+    // high and low 64 bits. for ipv4 blocks the high bits are 0
+
+    final boolean ipv6;
+    final boolean aligned;
+    final long startHigh;
+    final long startLow;
+    final long endHigh;
+    final long endLow;
+
     public IPBlock(final String ipBlock) {
         
-        // the expected format is subnet/mask e.g. 192.1.0.0/20
+        // the expected format is subnet/mask e.g. 192.1.0.0/20 or 2a05:d07f:8000::/40
         
         int idx = ipBlock.indexOf('/');
         if (idx == -1) {
             throw new IllegalArgumentException("Invalid ipblock line - missing / separator");
         }
-        subnet = convertIPToLong(ipBlock.substring(0, idx).trim());
-        
-        // valid mask is 1..32
-        
+        byte[] bytes = InetAddresses.forString(ipBlock.substring(0, idx).trim()).getAddress();
+        ipv6 = bytes.length == 16;
+
+        // valid mask is 1..32 for ipv4 and 1..128 for ipv6
+
+        int maxMask = bytes.length * 8;
         int val = Integer.parseInt(ipBlock.substring(idx + 1).trim());
-        if (val < 1 || val > 32) {
+        if (val < 1 || val > maxMask) {
             throw new IllegalArgumentException("Invalid ipblock line - invalid mask: " + val);
         }
-        mask = convertMaskToLong(val);
+
+        final long high = ipv6 ? convertBytesToLong(bytes, 0, 8) : 0;
+        final long low = ipv6 ? convertBytesToLong(bytes, 8, 16) : convertBytesToLong(bytes, 0, 4);
+        final long maskHigh = ipv6 ? convertMaskBitsToLong(Math.min(val, 64)) : 0;
+        final long maskLow = ipv6 ? convertMaskBitsToLong(Math.max(val - 64, 0)) : convertMaskToLong(val);
+
+        if (!ipv6) {
+            subnet = low;
+            mask = maskLow;
+        }
+
+        // a block whose subnet has any bits set outside of the mask
+        // does not match any addresses
+
+        aligned = (high & maskHigh) == high && (low & maskLow) == low;
+        startHigh = high;
+        startLow = low;
+        endHigh = ipv6 ? high | ~maskHigh : 0;
+        endLow = ipv6 ? low | ~maskLow : low | (~maskLow & 0xFFFFFFFFL);
     }
 
     public boolean ipCheck(long addr) {
-        return ((addr & mask) == subnet);
+        return !ipv6 && ((addr & mask) == subnet);
     }
-    
+
+    public boolean isIPv6() {
+        return ipv6;
+    }
+
     public static long convertIPToLong(final String ipAddress) {
         InetAddress addr = InetAddresses.forString(ipAddress);
         byte[] bytes = addr.getAddress();
-        long ipValue = 0;
-        for (byte b : bytes) {
-            ipValue = ipValue << 8 | (b & 0xFF);
+        return convertBytesToLong(bytes, 0, bytes.length);
+    }
+
+    static long convertBytesToLong(byte[] bytes, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            value = value << 8 | (bytes[i] & 0xFF);
         }
-        return ipValue;
+        return value;
     }
-    
+
     public static long convertMaskToLong(int value) {
         return Math.round(Math.pow(2, 32) - Math.pow(2, (32 - value)));
     }
+
+    static long convertMaskBitsToLong(int bits) {
+        return bits == 0 ? 0 : -1L << (64 - bits);
+    }
 }
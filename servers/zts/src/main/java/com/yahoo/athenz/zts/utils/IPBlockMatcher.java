@@ -0,0 +1,150 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.zts.utils;
+
+import com.google.common.net.InetAddresses;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lookup structure for a set of ipv4 and ipv6 blocks. The blocks for
+ * each address family are converted into address ranges which are
+ * sorted and merged into a list of non-overlapping intervals so an
+ * address is checked with a binary search regardless of the number
+ * of configured blocks. The object is immutable once created so it
+ * can be replaced when the ip block files are reloaded.
+ */
+public class IPBlockMatcher {
+
+    static class IntervalSet {
+
+        final long[] startHighs;
+        final long[] startLows;
+        final long[] endHighs;
+        final long[] endLows;
+
+        IntervalSet(List<IPBlock> ipBlocks) {
+
+            ipBlocks.sort((block1, block2) -> compare(block1.startHigh, block1.startLow,
+                    block2.startHigh, block2.startLow));
+
+            List<long[]> intervals = new ArrayList<>();
+            long[] current = null;
+            for (IPBlock ipBlock : ipBlocks) {
+                if (current != null && compare(ipBlock.startHigh, ipBlock.startLow, current[2], current[3]) <= 0) {
+                    if (compare(ipBlock.endHigh, ipBlock.endLow, current[2], current[3]) > 0) {
+                        current[2] = ipBlock.endHigh;
+                        current[3] = ipBlock.endLow;
+                    }
+                } else {
+                    current = new long[] { ipBlock.startHigh, ipBlock.startLow, ipBlock.endHigh, ipBlock.endLow };
+                    intervals.add(current);
+                }
+            }
+
+            final int size = intervals.size();
+            startHighs = new long[size];
+            startLows = new long[size];
+            endHighs = new long[size];
+            endLows = new long[size];
+            for (int i = 0; i < size; i++) {
+                long[] interval = intervals.get(i);
+                startHighs[i] = interval[0];
+                startLows[i] = interval[1];
+                endHighs[i] = interval[2];
+                endLows[i] = interval[3];
+            }
+        }
+
+        boolean contains(long high, long low) {
+
+            // find the last interval that starts at or before our address
+
+            int lo = 0;
+            int hi = startHighs.length - 1;
+            int idx = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(startHighs[mid], startLows[mid], high, low) <= 0) {
+                    idx = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+
+            return idx != -1 && compare(high, low, endHighs[idx], endLows[idx]) <= 0;
+        }
+
+        static int compare(long high1, long low1, long high2, long low2) {
+            int result = Long.compareUnsigned(high1, high2);
+            return result != 0 ? result : Long.compareUnsigned(low1, low2);
+        }
+    }
+
+    private final int size;
+    private final IntervalSet ipv4Intervals;
+    private final IntervalSet ipv6Intervals;
+
+    public IPBlockMatcher(List<IPBlock> ipBlocks) {
+
+        size = ipBlocks.size();
+
+        List<IPBlock> ipv4Blocks = new ArrayList<>();
+        List<IPBlock> ipv6Blocks = new ArrayList<>();
+        for (IPBlock ipBlock : ipBlocks) {
+            if (!ipBlock.aligned) {
+                continue;
+            }
+            if (ipBlock.isIPv6()) {
+                ipv6Blocks.add(ipBlock);
+            } else {
+                ipv4Blocks.add(ipBlock);
+            }
+        }
+
+        ipv4Intervals = new IntervalSet(ipv4Blocks);
+        ipv6Intervals = new IntervalSet(ipv6Blocks);
+    }
+
+    /**
+     * @return number of ip blocks the matcher was created with
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Check if the given address is included in any of the ip blocks
+     * @param ipAddress ipv4 or ipv6 address
+     * @return true if the address is included in one of the blocks
+     * @throws IllegalArgumentException if the address is not valid
+     */
+    public boolean ipCheck(final String ipAddress) {
+        byte[] bytes = InetAddresses.forString(ipAddress).getAddress();
+        if (bytes.length == 16) {
+            return ipv6Intervals.contains(IPBlock.convertBytesToLong(bytes, 0, 8),
+                    IPBlock.convertBytesToLong(bytes, 8, 16));
+        } else {
+            return ipv4Intervals.contains(0, IPBlock.convertBytesToLong(bytes, 0, 4));
+        }
+    }
+}
@@ -34,6 +34,7 @@ import com.yahoo.athenz.common.server.dns.HostnameResolver;
 import com.yahoo.athenz.common.server.external.ExternalCredentialsProvider;
 import com.yahoo.athenz.common.server.http.HttpDriver;
 import com.yahoo.athenz.common.server.http.HttpDriverResponse;
+import com.yahoo.athenz.common.server.log.AuditLogger;
 import com.yahoo.athenz.common.server.rest.Http;
 import com.yahoo.athenz.common.server.rest.ServerResourceContext;
 import com.yahoo.athenz.common.server.ServerResourceException;
@@ -71,6 +72,7 @@ import com.yahoo.athenz.zts.store.CloudStore;
 import com.yahoo.athenz.zts.store.DataStore;
 import com.yahoo.athenz.zts.store.MockCloudStore;
 import com.yahoo.athenz.zts.store.MockZMSFileChangeLogStore;
+import com.yahoo.athenz.zts.token.AccessTokenRequest;
 import com.yahoo.athenz.zts.token.AccessTokenScope;
 import com.yahoo.athenz.zts.token.IdTokenScope;
 import com.yahoo.athenz.zts.utils.ZTSUtils;
@@ -102,6 +104,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 import java.security.interfaces.ECPrivateKey;
 import java.security.interfaces.RSAPublicKey;
@@ -13404,6 +13407,252 @@ public class ZTSImplTest {
         }
     }
 
+    @Test
+    public void testSignedPolicyCache() {
+
+        ChangeLogStore structStore = new ZMSFileChangeLogStore("/tmp/zts_server_unit_tests/zts_root",
+                privateKey, "0");
+
+        DataStore store = new DataStore(structStore, null, ztsMetric);
+
+        ZTSImpl ztsImpl = new ZTSImpl(mockCloudStore, store);
+        ZTSImpl.serverHostName = "localhost";
+        assertNotNull(ztsImpl.signedPolicyCache);
+
+        SignedDomain signedDomain = createSignedDomain("coretech", "weather", "storage", true);
+        store.processSignedDomain(signedDomain, false);
+
+        Principal principal = SimplePrincipal.create("user_domain", "user",
+                "v=U1;d=user_domain;n=user;s=signature", 0, null);
+        ResourceContext context = createResourceContext(principal);
+
+        // the same signed documents must be returned for both formats
+
+        SignedPolicyRequest signedPolicyRequest = new SignedPolicyRequest();
+        signedPolicyRequest.setPolicyVersions(Collections.emptyMap());
+        Response response = ztsImpl.postSignedPolicyRequest(context, "coretech", signedPolicyRequest, null);
+        assertEquals(response.getStatus(), 200);
+        JWSPolicyData jwsPolicyData = (JWSPolicyData) response.getEntity();
+
+        response = ztsImpl.postSignedPolicyRequest(context, "coretech", signedPolicyRequest, null);
+        assertSame(response.getEntity(), jwsPolicyData);
+
+        response = ztsImpl.getDomainSignedPolicyData(context, "coretech", null);
+        assertEquals(response.getStatus(), 200);
+        DomainSignedPolicyData policyData = (DomainSignedPolicyData) response.getEntity();
+
+        response = ztsImpl.getDomainSignedPolicyData(context, "coretech", null);
+        assertSame(response.getEntity(), policyData);
+
+        // requests with policy versions are not cached
+
+        signedPolicyRequest.setPolicyVersions(Collections.singletonMap("policy1", "0"));
+        response = ztsImpl.postSignedPolicyRequest(context, "coretech", signedPolicyRequest, null);
+        assertNotSame(response.getEntity(), jwsPolicyData);
+
+        // once the max age is reached the documents are signed again
+
+        ztsImpl.signedPolicyCacheMaxAge = -1;
+        signedPolicyRequest.setPolicyVersions(Collections.emptyMap());
+        response = ztsImpl.postSignedPolicyRequest(context, "coretech", signedPolicyRequest, null);
+        assertNotSame(response.getEntity(), jwsPolicyData);
+
+        response = ztsImpl.getDomainSignedPolicyData(context, "coretech", null);
+        assertNotSame(response.getEntity(), policyData);
+        policyData = (DomainSignedPolicyData) response.getEntity();
+
+        // the cached document is not returned once the domain is modified
+
+        ztsImpl.signedPolicyCacheMaxAge = 3600000;
+        response = ztsImpl.getDomainSignedPolicyData(context, "coretech", null);
+        assertSame(response.getEntity(), policyData);
+
+        ZTSTestUtils.sleep(10);
+        signedDomain = createSignedDomain("coretech", "weather", "storage", true);
+        store.processSignedDomain(signedDomain, false);
+
+        response = ztsImpl.getDomainSignedPolicyData(context, "coretech", null);
+        assertNotSame(response.getEntity(), policyData);
+
+        // with the cache disabled nothing is cached
+
+        ztsImpl.signedPolicyCache = null;
+        response = ztsImpl.getDomainSignedPolicyData(context, "coretech", null);
+        policyData = (DomainSignedPolicyData) response.getEntity();
+        response = ztsImpl.getDomainSignedPolicyData(context, "coretech", null);
+        assertNotSame(response.getEntity(), policyData);
+    }
+
+    @Test
+    public void testSignedPolicyCacheMaxAge() {
+
+        ChangeLogStore structStore = new ZMSFileChangeLogStore("/tmp/zts_server_unit_tests/zts_root",
+                privateKey, "0");
+        DataStore store = new DataStore(structStore, null, ztsMetric);
+
+        // by default the max age is 1 hour
+
+        ZTSImpl ztsImpl = new ZTSImpl(mockCloudStore, store);
+        assertEquals(ztsImpl.signedPolicyCacheMaxAge, 3600000);
+
+        // the max age is limited to half of the signed policy timeout
+
+        System.setProperty(ZTSConsts.ZTS_PROP_SIGNED_POLICY_TIMEOUT, "3600");
+        System.setProperty(ZTSConsts.ZTS_PROP_SIGNED_POLICY_CACHE_MAX_AGE, "7200");
+        ztsImpl = new ZTSImpl(mockCloudStore, store);
+        assertEquals(ztsImpl.signedPolicyCacheMaxAge, 1800000);
+
+        System.setProperty(ZTSConsts.ZTS_PROP_SIGNED_POLICY_CACHE_MAX_AGE, "600");
+        ztsImpl = new ZTSImpl(mockCloudStore, store);
+        assertEquals(ztsImpl.signedPolicyCacheMaxAge, 600000);
+
+        System.clearProperty(ZTSConsts.ZTS_PROP_SIGNED_POLICY_TIMEOUT);
+        System.clearProperty(ZTSConsts.ZTS_PROP_SIGNED_POLICY_CACHE_MAX_AGE);
+    }
+
+    @Test
+    public void testAccessTokenCache() {
+
+        ChangeLogStore structStore = new ZMSFileChangeLogStore("/tmp/zts_server_unit_tests/zts_root",
+                privateKey, "0");
+
+        DataStore store = new DataStore(structStore, null, ztsMetric);
+
+        // the cache is disabled by default
+
+        ZTSImpl ztsImpl = new ZTSImpl(mockCloudStore, store);
+        assertNull(ztsImpl.accessTokenCache);
+
+        System.setProperty(FilePrivateKeyStore.ATHENZ_PROP_PRIVATE_KEY, "src/test/resources/unit_test_zts_at_private.pem");
+        System.setProperty(ZTSConsts.ZTS_PROP_ACCESS_TOKEN_CACHE_SIZE, "100");
+        ztsImpl = new ZTSImpl(mockCloudStore, store);
+        System.clearProperty(ZTSConsts.ZTS_PROP_ACCESS_TOKEN_CACHE_SIZE);
+        System.setProperty(FilePrivateKeyStore.ATHENZ_PROP_PRIVATE_KEY, "src/test/resources/unit_test_zts_private.pem");
+        ZTSImpl.serverHostName = "localhost";
+        assertNotNull(ztsImpl.accessTokenCache);
+
+        SignedDomain signedDomain = createSignedDomain("coretech", "weather", "storage", true);
+        store.processSignedDomain(signedDomain, false);
+
+        Principal principal = SimplePrincipal.create("user_domain", "user1",
+                "v=U1;d=user_domain;n=user1;s=signature", 0, null);
+        ResourceContext context = createResourceContext(principal);
+
+        // the same request in the first part of the token lifetime
+        // returns the same token
+
+        AccessTokenResponse resp1 = ztsImpl.postAccessTokenRequest(context,
+                "grant_type=client_credentials&scope=coretech:role.writers%20coretech:role.readers&expires_in=3600");
+        assertNotNull(resp1.getAccess_token());
+        AccessTokenResponse resp2 = ztsImpl.postAccessTokenRequest(context,
+                "grant_type=client_credentials&scope=coretech:role.readers%20coretech:role.writers&expires_in=3600");
+        assertEquals(resp2.getAccess_token(), resp1.getAccess_token());
+        assertEquals(resp2.getToken_type(), resp1.getToken_type());
+        assertTrue(resp2.getExpires_in() <= 3600 && resp2.getExpires_in() >= 3590);
+
+        // different expiry or different principal generates new token
+
+        resp2 = ztsImpl.postAccessTokenRequest(context,
+                "grant_type=client_credentials&scope=coretech:role.readers%20coretech:role.writers&expires_in=1800");
+        assertNotEquals(resp2.getAccess_token(), resp1.getAccess_token());
+
+        Principal principal2 = SimplePrincipal.create("user_domain", "user",
+                "v=U1;d=user_domain;n=user;s=signature", 0, null);
+        resp2 = ztsImpl.postAccessTokenRequest(createResourceContext(principal2),
+                "grant_type=client_credentials&scope=coretech:role.writers&expires_in=3600");
+        assertNotEquals(resp2.getAccess_token(), resp1.getAccess_token());
+
+        // once the domain is modified a new token is generated
+
+        ZTSTestUtils.sleep(10);
+        signedDomain = createSignedDomain("coretech", "weather", "storage", true);
+        store.processSignedDomain(signedDomain, false);
+
+        resp2 = ztsImpl.postAccessTokenRequest(context,
+                "grant_type=client_credentials&scope=coretech:role.writers%20coretech:role.readers&expires_in=3600");
+        assertNotEquals(resp2.getAccess_token(), resp1.getAccess_token());
+        resp1 = resp2;
+
+        // the principal's roles may come from groups or trusted roles in
+        // other domains so an update to any domain generates a new token
+
+        resp2 = ztsImpl.postAccessTokenRequest(context,
+                "grant_type=client_credentials&scope=coretech:role.writers%20coretech:role.readers&expires_in=3600");
+        assertEquals(resp2.getAccess_token(), resp1.getAccess_token());
+
+        store.processSignedDomain(createSignedDomain("sports", "weather", "storage", true), false);
+
+        resp2 = ztsImpl.postAccessTokenRequest(context,
+                "grant_type=client_credentials&scope=coretech:role.writers%20coretech:role.readers&expires_in=3600");
+        assertNotEquals(resp2.getAccess_token(), resp1.getAccess_token());
+        resp1 = resp2;
+
+        // outside our reuse window tokens are generated again
+
+        for (Map.Entry<String, ZTSImpl.AccessTokenCacheEntry> entry : ztsImpl.accessTokenCache.asMap().entrySet()) {
+            ZTSImpl.AccessTokenCacheEntry cacheEntry = entry.getValue();
+            ztsImpl.accessTokenCache.put(entry.getKey(), new ZTSImpl.AccessTokenCacheEntry(cacheEntry.changeVersion,
+                    cacheEntry.issueTime - cacheEntry.reuseTime - 1, cacheEntry.reuseTime,
+                    cacheEntry.signingKey, cacheEntry.response));
+        }
+        resp2 = ztsImpl.postAccessTokenRequest(context,
+                "grant_type=client_credentials&scope=coretech:role.writers%20coretech:role.readers&expires_in=3600");
+        assertNotEquals(resp2.getAccess_token(), resp1.getAccess_token());
+
+        // tokens with a reuse window of 0 are not cached
+
+        ztsImpl.accessTokenCache.invalidateAll();
+        ztsImpl.accessTokenCacheMaxReuse = 0;
+        resp1 = ztsImpl.postAccessTokenRequest(context,
+                "grant_type=client_credentials&scope=coretech:role.writers&expires_in=3600");
+        assertEquals(ztsImpl.accessTokenCache.size(), 0);
+        resp2 = ztsImpl.postAccessTokenRequest(context,
+                "grant_type=client_credentials&scope=coretech:role.writers&expires_in=3600");
+        assertNotEquals(resp2.getAccess_token(), resp1.getAccess_token());
+    }
+
+    @Test
+    public void testGetAccessTokenCacheKey() {
+
+        System.setProperty(ZTSConsts.ZTS_PROP_ACCESS_TOKEN_CACHE_SIZE, "100");
+        ZTSImpl ztsImpl = new ZTSImpl(mockCloudStore, store);
+        System.clearProperty(ZTSConsts.ZTS_PROP_ACCESS_TOKEN_CACHE_SIZE);
+
+        AccessTokenRequest request = new AccessTokenRequest(
+                "grant_type=client_credentials&scope=coretech:role.writers", null, null);
+
+        // role certificate principals are not cached
+
+        Principal principal = Mockito.mock(Principal.class);
+        Mockito.when(principal.getRoles()).thenReturn(Collections.singletonList("coretech:role.writers"));
+        assertNull(ztsImpl.getAccessTokenCacheKey(principal, "coretech", request));
+
+        // the certificate hash is part of the key
+
+        X509Certificate cert1 = Mockito.mock(X509Certificate.class);
+        X509Certificate cert2 = Mockito.mock(X509Certificate.class);
+        try {
+            Mockito.when(cert1.getEncoded()).thenReturn("cert1".getBytes(StandardCharsets.UTF_8));
+            Mockito.when(cert2.getEncoded()).thenReturn("cert2".getBytes(StandardCharsets.UTF_8));
+        } catch (CertificateEncodingException ignored) {
+        }
+        principal = Mockito.mock(Principal.class);
+        Mockito.when(principal.getFullName()).thenReturn("user_domain.user");
+        Mockito.when(principal.getX509Certificate()).thenReturn(cert1);
+        final String key1 = ztsImpl.getAccessTokenCacheKey(principal, "coretech", request);
+        Mockito.when(principal.getX509Certificate()).thenReturn(cert2);
+        final String key2 = ztsImpl.getAccessTokenCacheKey(principal, "coretech", request);
+        assertNotNull(key1);
+        assertNotEquals(key1, key2);
+
+        // with the cache disabled we have no key
+
+        ztsImpl.accessTokenCache = null;
+        assertNull(ztsImpl.getAccessTokenCacheKey(principal, "coretech", request));
+        assertNull(ztsImpl.getCachedAccessToken("key", 0, null));
+        ztsImpl.putCachedAccessToken("key", 0, null, 0, 3600, new AccessTokenResponse());
+    }
+
     @Test
     public void testPostSignedPolicyRequestNoChanges() {
 
@@ -15503,4 +15752,48 @@ public class ZTSImplTest {
 
         System.clearProperty(ZTSConsts.ZTS_PROP_SVC_CREDS_KEY_NAME);
     }
+
+    @Test
+    public void testLoadDomainChangeSubscribers() {
+
+        DataStore dataStore = Mockito.mock(DataStore.class);
+        ZTSImpl ztsImpl = new ZTSImpl(cloudStore, store);
+        ztsImpl.dataStore = dataStore;
+
+        // no topics configured
+
+        ztsImpl.loadDomainChangeSubscribers();
+        Mockito.verify(dataStore, Mockito.times(0)).addDomainChangeSubscriber(Mockito.any());
+
+        // topics without a factory class or with an invalid one are skipped
+
+        System.setProperty(ZTSConsts.ZTS_PROP_DOMAIN_CHANGE_TOPIC_NAMES, "topic1, ,topic2");
+        ztsImpl.loadDomainChangeSubscribers();
+        Mockito.verify(dataStore, Mockito.times(0)).addDomainChangeSubscriber(Mockito.any());
+
+        System.setProperty(ZTSConsts.ZTS_PROP_DOMAIN_CHANGE_SUBSCRIBER_FACTORY_CLASS, "invalid-class");
+        ztsImpl.loadDomainChangeSubscribers();
+        Mockito.verify(dataStore, Mockito.times(0)).addDomainChangeSubscriber(Mockito.any());
+
+        System.setProperty(ZTSConsts.ZTS_PROP_DOMAIN_CHANGE_SUBSCRIBER_FACTORY_CLASS,
+                "com.yahoo.athenz.zts.store.MockChangeSubscriberFactory");
+        ztsImpl.loadDomainChangeSubscribers();
+        Mockito.verify(dataStore, Mockito.times(2)).addDomainChangeSubscriber(Mockito.any());
+
+        System.clearProperty(ZTSConsts.ZTS_PROP_DOMAIN_CHANGE_TOPIC_NAMES);
+        System.clearProperty(ZTSConsts.ZTS_PROP_DOMAIN_CHANGE_SUBSCRIBER_FACTORY_CLASS);
+    }
+
+    @Test
+    public void testShutdown() {
+
+        ZTSImpl ztsImpl = new ZTSImpl(cloudStore, store);
+        ztsImpl.auditLogger = null;
+        ztsImpl.shutdown();
+
+        AuditLogger auditLogger = Mockito.mock(AuditLogger.class);
+        ztsImpl.auditLogger = auditLogger;
+        ztsImpl.shutdown();
+        Mockito.verify(auditLogger, Mockito.times(1)).close();
+    }
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.zts;
+
+import org.mockito.Mockito;
+import org.testng.annotations.Test;
+
+public class ZTSShutdownListenerTest {
+
+    @Test
+    public void testShutdownListener() {
+
+        ZTSImpl ztsImpl = Mockito.mock(ZTSImpl.class);
+        ZTSShutdownListener listener = new ZTSShutdownListener(ztsImpl);
+
+        listener.onStartup(null);
+        listener.onReload(null);
+        Mockito.verify(ztsImpl, Mockito.never()).shutdown();
+
+        listener.onShutdown(null);
+        Mockito.verify(ztsImpl, Mockito.times(1)).shutdown();
+    }
+}
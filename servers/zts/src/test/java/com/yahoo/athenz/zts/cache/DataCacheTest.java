@@ -339,6 +339,18 @@ public class DataCacheTest {
         assertNotNull(set6);
         assertTrue(set6.contains(new MemberRole("dom.role1", 0)));
         assertEquals(set6.size(), 1);
+
+        Set<MemberRole> set7 = cache.getPrefixMemberRoleSet("user_domain.user5");
+        assertTrue(set7.contains(new MemberRole("dom.role1", 0)));
+        assertTrue(set7.contains(new MemberRole("dom.role2", 0)));
+        assertEquals(set7.size(), 2);
+
+        Set<MemberRole> set8 = cache.getPrefixMemberRoleSet("user_domain.admin");
+        assertTrue(set8.contains(new MemberRole("dom.role1", 0)));
+        assertTrue(set8.contains(new MemberRole("dom.role2", 0)));
+        assertEquals(set8.size(), 2);
+
+        assertTrue(cache.getPrefixMemberRoleSet("coretech.api").isEmpty());
     }
 
     @Test
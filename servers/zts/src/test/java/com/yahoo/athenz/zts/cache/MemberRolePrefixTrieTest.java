@@ -0,0 +1,80 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.zts.cache;
+
+import org.testng.annotations.Test;
+
+import java.util.Set;
+
+import static org.testng.Assert.*;
+
+public class MemberRolePrefixTrieTest {
+
+    @Test
+    public void testFindMatchingValues() {
+
+        MemberRolePrefixTrie trie = new MemberRolePrefixTrie();
+        trie.insert("user.", new MemberRole("coretech:role.role1", 0));
+        trie.insert("user.jo", new MemberRole("coretech:role.role2", 0));
+        trie.insert("user.jo", new MemberRole("coretech:role.role3", 100));
+        trie.insert("sports.api", new MemberRole("coretech:role.role4", 0));
+
+        Set<MemberRole> roles = trie.findMatchingValues("user.john");
+        assertEquals(roles.size(), 3);
+        assertTrue(roles.contains(new MemberRole("coretech:role.role1", 0)));
+        assertTrue(roles.contains(new MemberRole("coretech:role.role2", 0)));
+        assertTrue(roles.contains(new MemberRole("coretech:role.role3", 100)));
+
+        roles = trie.findMatchingValues("user.jane");
+        assertEquals(roles.size(), 1);
+        assertTrue(roles.contains(new MemberRole("coretech:role.role1", 0)));
+
+        roles = trie.findMatchingValues("user.jo");
+        assertEquals(roles.size(), 3);
+
+        roles = trie.findMatchingValues("sports.api-backend");
+        assertEquals(roles.size(), 1);
+        assertTrue(roles.contains(new MemberRole("coretech:role.role4", 0)));
+
+        assertTrue(trie.findMatchingValues("user").isEmpty());
+        assertTrue(trie.findMatchingValues("sports.ap").isEmpty());
+        assertTrue(trie.findMatchingValues("weather.api").isEmpty());
+        assertTrue(trie.findMatchingValues("").isEmpty());
+    }
+
+    @Test
+    public void testDelete() {
+
+        MemberRolePrefixTrie trie = new MemberRolePrefixTrie();
+        trie.insert("user.", new MemberRole("coretech:role.role1", 0));
+        trie.insert("user.jo", new MemberRole("coretech:role.role2", 0));
+
+        // deleting unknown prefixes and values has no impact
+
+        trie.delete("user.ja", new MemberRole("coretech:role.role2", 0));
+        trie.delete("user.jo", new MemberRole("coretech:role.role3", 0));
+        trie.delete("user.j", new MemberRole("coretech:role.role2", 0));
+        assertEquals(trie.findMatchingValues("user.john").size(), 2);
+
+        trie.delete("user.jo", new MemberRole("coretech:role.role2", 0));
+        Set<MemberRole> roles = trie.findMatchingValues("user.john");
+        assertEquals(roles.size(), 1);
+        assertTrue(roles.contains(new MemberRole("coretech:role.role1", 0)));
+
+        trie.delete("user.", new MemberRole("coretech:role.role1", 0));
+        assertTrue(trie.findMatchingValues("user.john").isEmpty());
+    }
+}
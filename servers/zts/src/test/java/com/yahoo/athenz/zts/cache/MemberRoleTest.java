@@ -55,4 +55,27 @@ public class MemberRoleTest {
         assertTrue(mr4.equals(mr5));
         assertFalse(mr1.equals(mr6));
     }
+
+    @Test
+    public void testMemberRoleMatch() {
+
+        MemberRole mr = new MemberRole("coretech:role.readers", 0);
+        assertTrue(mr.roleMatch("coretech:role.readers"));
+        assertFalse(mr.roleMatch("coretech:role.readers2"));
+        assertFalse(mr.roleMatch("coretech:role.reader"));
+
+        mr = new MemberRole("coretech:role.*", 0);
+        assertTrue(mr.roleMatch("coretech:role.readers"));
+        assertTrue(mr.roleMatch("coretech:role.writers"));
+        assertFalse(mr.roleMatch("weather:role.readers"));
+
+        mr = new MemberRole("coretech:role.reader?", 0);
+        assertTrue(mr.roleMatch("coretech:role.readers"));
+        assertFalse(mr.roleMatch("coretech:role.reader"));
+        assertFalse(mr.roleMatch("coretech:role.readers2"));
+
+        mr = new MemberRole("coretech.api:role.(readers)*", 0);
+        assertTrue(mr.roleMatch("coretech.api:role.(readers)"));
+        assertFalse(mr.roleMatch("coretechXapi:role.readers"));
+    }
 }
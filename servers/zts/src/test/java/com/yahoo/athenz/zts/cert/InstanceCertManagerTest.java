@@ -39,6 +39,7 @@ import static org.testng.Assert.*;
 
 import com.yahoo.athenz.auth.util.Crypto;
 import com.yahoo.athenz.zts.utils.IPBlock;
+import com.yahoo.athenz.zts.utils.IPBlockMatcher;
 import com.yahoo.athenz.auth.Principal;
 
 public class InstanceCertManagerTest {
@@ -1173,6 +1174,13 @@ public class InstanceCertManagerTest {
         
         assertFalse(instance.verifyCertRefreshIPAddress("11.1.3.25"));
         assertFalse(instance.verifyCertRefreshIPAddress("11.1.9.25"));
+
+        // ipv6 block: 2a05:d07f:8000::/40
+
+        assertTrue(instance.verifyCertRefreshIPAddress("2a05:d07f:8000::1"));
+        assertTrue(instance.verifyCertRefreshIPAddress("2a05:d07f:80ff:ffff:ffff:ffff:ffff:ffff"));
+        assertFalse(instance.verifyCertRefreshIPAddress("2a05:d07f:8100::1"));
+        assertFalse(instance.verifyCertRefreshIPAddress("::1"));
         
         // instance register and refresh 
         
@@ -2133,12 +2141,12 @@ public class InstanceCertManagerTest {
     @Test
     public void testHasProviderChangeThresholdNotExceeded() {
 
-        ConcurrentHashMap<String, List<IPBlock>> providerCertIPBlocks = new ConcurrentHashMap<>();
+        ConcurrentHashMap<String, IPBlockMatcher> providerCertIPBlocks = new ConcurrentHashMap<>();
         List<IPBlock> ipBlocks = new ArrayList<>();
         for (int i = 0; i < 10; i++) {
             ipBlocks.add(new IPBlock("192.1.0." + i + "/32"));
         }
-        providerCertIPBlocks.put("provider1", ipBlocks);
+        providerCertIPBlocks.put("provider1", new IPBlockMatcher(ipBlocks));
 
         // if the provider doesn't exist, the return is always true
 
@@ -2172,7 +2180,7 @@ public class InstanceCertManagerTest {
 
         // make a copy of our current provider ip blocks
 
-        ConcurrentHashMap<String, List<IPBlock>> instanceProviderCertIPBlocks =
+        ConcurrentHashMap<String, IPBlockMatcher> instanceProviderCertIPBlocks =
                 new ConcurrentHashMap<>(instanceManager.getInstanceCertIPBlocks());
 
         InstanceCertManager.RefreshAllowedIPAddresses refresher =
@@ -2188,7 +2196,7 @@ public class InstanceCertManagerTest {
         assertEquals(instanceProviderCertIPBlocks.get("zts-svc-token-provider").size(),
                 instanceManager.getInstanceCertIPBlocks().get("zts-svc-token-provider").size());
 
-        List<IPBlock> certIPBlocks = instanceProviderCertIPBlocks.get("zts-svc-token-provider");
+        IPBlockMatcher certIPBlocks = instanceProviderCertIPBlocks.get("zts-svc-token-provider");
         assertTrue(instanceManager.verifyIPAddressAccess("10.1.3.25", certIPBlocks));
         assertTrue(instanceManager.verifyIPAddressAccess("10.0.0.1", certIPBlocks));
 
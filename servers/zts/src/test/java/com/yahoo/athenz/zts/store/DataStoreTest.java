@@ -35,10 +35,14 @@ import java.nio.file.Paths;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.primitives.Bytes;
 import com.yahoo.athenz.auth.Principal;
+import com.yahoo.athenz.common.messaging.DomainChangeMessage;
 import com.yahoo.athenz.common.metrics.Metric;
 import com.yahoo.athenz.common.server.store.ChangeLogStore;
 import com.yahoo.athenz.common.server.util.ResourceUtils;
@@ -1639,6 +1643,26 @@ public class DataStoreTest {
         assertFalse(file.exists());
     }
     
+    @Test
+    public void testChangeVersion() {
+        ChangeLogStore clogStore = new MockZMSFileChangeLogStore("/tmp/zts_server_unit_tests/zts_root",
+                pkey, "0");
+        DataStore store = new DataStore(clogStore, null, ztsMetric);
+        assertEquals(store.getChangeVersion(), 0);
+
+        DataCache dataCache = new DataCache();
+        dataCache.setDomainData(new DomainData().setName("coretech"));
+
+        store.addDomainToCache("coretech", dataCache);
+        assertEquals(store.getChangeVersion(), 1);
+
+        store.addDomainToCache("coretech", dataCache);
+        assertEquals(store.getChangeVersion(), 2);
+
+        store.deleteDomain("coretech");
+        assertEquals(store.getChangeVersion(), 3);
+    }
+
     @Test
     public void testDeleteDomainFromCacheHosts() {
         
@@ -3321,6 +3345,142 @@ public class DataStoreTest {
         assertEquals(badDomains, -1);
     }
 
+    @Test
+    public void testProcessLocalDomainsThreads() {
+        ChangeLogStore clogStore = new MockZMSFileChangeLogStore("/tmp/zts_server_unit_tests/zts_root",
+                pkey, "0");
+        DataStore setupStore = new DataStore(clogStore, null, ztsMetric);
+        setupStore.loadAthenzPublicKeys();
+
+        List<String> zmsList = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final String domainName = "coretech" + i;
+            setupStore.processSignedDomain(createSignedDomain(domainName, "weather"), true);
+            zmsList.add(domainName);
+        }
+        zmsList.add("invalid");
+
+        // process our domains with multiple threads and then sequentially
+
+        for (int threads : new int[] { 4, 1 }) {
+            DataStore store = new DataStore(clogStore, null, ztsMetric);
+            store.localDomainLoadThreads = threads;
+            ((MockZMSFileChangeLogStore) store.changeLogStore).setDomainList(zmsList);
+
+            int badDomains = store.processLocalDomains(zmsList);
+            assertEquals(badDomains, 1);
+
+            for (int i = 0; i < 20; i++) {
+                assertNotNull(store.getDomainData("coretech" + i));
+            }
+            assertNull(store.getDomainData("invalid"));
+        }
+
+        // with full refresh support we should get back -1
+
+        DataStore store = new DataStore(clogStore, null, ztsMetric);
+        store.localDomainLoadThreads = 4;
+        ((MockZMSFileChangeLogStore) store.changeLogStore).setDomainList(zmsList);
+        ((MockZMSFileChangeLogStore) store.changeLogStore).setRefreshSupport(true);
+        assertEquals(store.processLocalDomains(zmsList), -1);
+    }
+
+    @Test
+    public void testProcessLocalDomainsSnapshot() throws IOException {
+        ChangeLogStore clogStore = new MockZMSFileChangeLogStore("/tmp/zts_server_unit_tests/zts_root",
+                pkey, "0");
+        DataStore setupStore = new DataStore(clogStore, null, ztsMetric);
+        setupStore.loadAthenzPublicKeys();
+
+        setupStore.processSignedDomain(createSignedDomain("coretech", "weather"), true);
+        setupStore.processSignedDomain(createSignedDomain("sports", "weather"), true);
+        setupStore.processSignedDomain(createSignedDomain("finance", "weather"), true);
+
+        File snapshotFile = File.createTempFile("zts-snapshot", ".bin");
+        DomainSnapshotStore snapshotStore = new DomainSnapshotStore(snapshotFile.getPath(), 10, pkey);
+        assertTrue(snapshotStore.saveDomains(Arrays.asList(setupStore.getDomainData("coretech"),
+                setupStore.getDomainData("sports"))));
+        snapshotStore.close();
+
+        // remove the local sports domain file so we know it's
+        // loaded from our snapshot
+
+        clogStore.removeLocalDomain("sports");
+
+        DataStore store = new DataStore(clogStore, null, ztsMetric);
+        store.setDomainSnapshotKey(pkey);
+        assertNull(store.snapshotStore);
+
+        System.setProperty("athenz.zts.domain_snapshot_file", snapshotFile.getPath());
+        store.setDomainSnapshotKey(null);
+        assertNull(store.snapshotStore);
+        store.setDomainSnapshotKey(pkey);
+        System.clearProperty("athenz.zts.domain_snapshot_file");
+        assertNotNull(store.snapshotStore);
+        List<String> zmsList = Arrays.asList("coretech", "sports", "finance");
+        ((MockZMSFileChangeLogStore) store.changeLogStore).setDomainList(zmsList);
+
+        assertEquals(store.processLocalDomains(zmsList), 0);
+        assertNotNull(store.getDomainData("coretech"));
+        assertNotNull(store.getDomainData("sports"));
+        assertNotNull(store.getDomainData("finance"));
+
+        // finance was not in our snapshot so a new one is required
+
+        assertTrue(store.snapshotStore.snapshotRequired());
+        store.saveDomainSnapshot();
+        assertFalse(store.snapshotStore.snapshotRequired());
+
+        // updates and deletes are recorded in our snapshot log
+
+        store.deleteDomain("coretech");
+        store.processSignedDomain(createSignedDomain("news", "weather"), true);
+        store.snapshotStore.close();
+
+        Map<String, DomainData> domains = new DomainSnapshotStore(snapshotFile.getPath(), 10, pkey).loadDomains();
+        assertNotNull(domains);
+        assertEquals(domains.keySet(), new HashSet<>(Arrays.asList("sports", "finance", "news")));
+
+        Files.deleteIfExists(snapshotFile.toPath());
+        Files.deleteIfExists(Paths.get(snapshotFile.getPath() + ".log"));
+    }
+
+    @Test
+    public void testPublishLocalDomain() {
+        ChangeLogStore clogStore = new MockZMSFileChangeLogStore("/tmp/zts_server_unit_tests/zts_root",
+                pkey, "0");
+        DataStore store = new DataStore(clogStore, null, ztsMetric);
+
+        assertFalse(store.publishLocalDomain("coretech", null));
+
+        SignedDomain signedDomain = createSignedDomain("coretech", "weather");
+        assertTrue(store.publishLocalDomain("coretech", signedDomain.getDomain()));
+        assertNotNull(store.getDomainData("coretech"));
+
+        // disabled domain is removed from the cache
+
+        signedDomain.getDomain().setEnabled(false);
+        assertTrue(store.publishLocalDomain("coretech", signedDomain.getDomain()));
+        assertNull(store.getDomainData("coretech"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGetLocalDomainResultFailure() throws Exception {
+        ChangeLogStore clogStore = new MockZMSFileChangeLogStore("/tmp/zts_server_unit_tests/zts_root",
+                pkey, "0");
+        DataStore store = new DataStore(clogStore, null, ztsMetric);
+
+        Future<DomainData> future = Mockito.mock(Future.class);
+        Mockito.when(future.get()).thenThrow(new ExecutionException(new IllegalArgumentException()));
+        assertNull(store.getLocalDomainResult("coretech", future));
+
+        Future<DomainData> interruptedFuture = Mockito.mock(Future.class);
+        Mockito.when(interruptedFuture.get()).thenThrow(new InterruptedException());
+        assertNull(store.getLocalDomainResult("coretech", interruptedFuture));
+        assertTrue(Thread.interrupted());
+    }
+
     @Test
     public void testProcessSignedDomains() {
         ChangeLogStore clogStore = new MockZMSFileChangeLogStore("/tmp/zts_server_unit_tests/zts_root",
@@ -5574,4 +5734,69 @@ public class DataStoreTest {
         assertNull(store.getServiceSecret("coretech", null));
         assertNull(store.getServiceSecret(null, "storage"));
     }
+
+    @Test
+    public void testProcessDomainChanges() {
+        ChangeLogStore clogStore = Mockito.mock(ChangeLogStore.class);
+        DataStore store = new DataStore(clogStore, null, ztsMetric);
+        store.loadAthenzPublicKeys();
+
+        // multiple messages for the same domain are only processed once
+
+        store.processDomainChangeMessage(new DomainChangeMessage().setDomainName("coretech").setApiName("putrole"));
+        store.processDomainChangeMessage(new DomainChangeMessage().setDomainName("coretech").setApiName("putpolicy"));
+        store.processDomainChangeMessage(new DomainChangeMessage().setDomainName("sports"));
+        store.processDomainChangeMessage(new DomainChangeMessage());
+        store.processDomainChangeMessage(null);
+        assertEquals(store.changedDomains, new HashSet<>(Arrays.asList("coretech", "sports")));
+
+        when(clogStore.getServerSignedDomain("coretech")).thenReturn(createSignedDomain("coretech", "weather"));
+        when(clogStore.getServerSignedDomain("sports")).thenThrow(new IllegalArgumentException("invalid domain"));
+
+        store.processDomainChanges();
+        assertTrue(store.changedDomains.isEmpty());
+        assertNotNull(store.getDomainData("coretech"));
+        assertNull(store.getDomainData("sports"));
+        Mockito.verify(clogStore, Mockito.times(1)).getServerSignedDomain("coretech");
+
+        // no changes to process
+
+        store.processDomainChanges();
+        Mockito.verify(clogStore, Mockito.times(1)).getServerSignedDomain("coretech");
+    }
+
+    @Test
+    public void testProcessDomainChangeJWS() {
+        ChangeLogStore clogStore = Mockito.mock(ChangeLogStore.class);
+        DataStore store = new DataStore(clogStore, null, ztsMetric);
+        store.jwsDomainSupport = true;
+
+        when(clogStore.getServerJWSDomain("coretech")).thenReturn(null);
+        assertFalse(store.processDomainChange("coretech"));
+        Mockito.verify(clogStore, Mockito.times(1)).getServerJWSDomain("coretech");
+        Mockito.verify(clogStore, Mockito.times(0)).getServerSignedDomain("coretech");
+    }
+
+    @Test
+    public void testAddDomainChangeSubscriber() throws InterruptedException {
+        ChangeLogStore clogStore = Mockito.mock(ChangeLogStore.class);
+        DataStore store = new DataStore(clogStore, null, ztsMetric);
+        store.loadAthenzPublicKeys();
+        store.domainChangeProcessTime = 10;
+        store.scheduledThreadPool = Executors.newScheduledThreadPool(1);
+
+        when(clogStore.getServerSignedDomain("coretech")).thenReturn(createSignedDomain("coretech", "weather"));
+
+        MockChangeSubscriber<DomainChangeMessage> subscriber = new MockChangeSubscriber<>();
+        store.addDomainChangeSubscriber(subscriber);
+        subscriber.publish(new DomainChangeMessage().setDomainName("coretech"));
+
+        for (int i = 0; i < 100 && store.getDomainData("coretech") == null; i++) {
+            ZTSTestUtils.sleep(50);
+        }
+        assertNotNull(store.getDomainData("coretech"));
+
+        subscriber.close();
+        store.scheduledThreadPool.shutdownNow();
+    }
 }
@@ -0,0 +1,363 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.zts.store;
+
+import com.yahoo.athenz.zms.DomainData;
+import com.yahoo.athenz.zms.Role;
+import com.yahoo.athenz.zms.RoleMember;
+import com.yahoo.athenz.zts.ZTSTestUtils;
+import com.yahoo.rdl.Timestamp;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+public class DomainSnapshotStoreTest {
+
+    private File snapshotFile;
+    private File logFile;
+    private PrivateKey privateKey;
+
+    @BeforeClass
+    public void setupKey() throws NoSuchAlgorithmException {
+        privateKey = generatePrivateKey();
+    }
+
+    private PrivateKey generatePrivateKey() throws NoSuchAlgorithmException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(256);
+        return generator.generateKeyPair().getPrivate();
+    }
+
+    @BeforeMethod
+    public void setup() throws IOException {
+        snapshotFile = File.createTempFile("zts-snapshot", ".bin");
+        Files.delete(snapshotFile.toPath());
+        logFile = new File(snapshotFile.getPath() + ".log");
+    }
+
+    @AfterMethod
+    public void shutdown() throws IOException {
+        Files.deleteIfExists(snapshotFile.toPath());
+        Files.deleteIfExists(logFile.toPath());
+    }
+
+    private DomainData createDomainData(final String domainName) {
+        Role role = new Role().setName(domainName + ":role.readers")
+                .setRoleMembers(Collections.singletonList(new RoleMember().setMemberName("user.joe")));
+        return new DomainData().setName(domainName).setModified(Timestamp.fromCurrentTime())
+                .setRoles(Collections.singletonList(role));
+    }
+
+    @Test
+    public void testSaveLoadDomains() {
+
+        DomainSnapshotStore store = new DomainSnapshotStore(snapshotFile.getPath(), 10, privateKey);
+        assertNull(store.loadDomains());
+        assertTrue(store.snapshotRequired());
+
+        assertTrue(store.saveDomains(Arrays.asList(createDomainData("coretech"), createDomainData("sports"))));
+        assertFalse(store.snapshotRequired());
+
+        // apply some changes to our log
+
+        store.putDomain(createDomainData("weather"));
+        store.deleteDomain("sports");
+        store.close();
+
+        DomainSnapshotStore newStore = new DomainSnapshotStore(snapshotFile.getPath(), 10, privateKey);
+        Map<String, DomainData> domains = newStore.loadDomains();
+        assertNotNull(domains);
+        assertEquals(domains.size(), 2);
+        assertEquals(domains.get("coretech").getRoles().get(0).getName(), "coretech:role.readers");
+        assertNotNull(domains.get("weather"));
+        assertNull(domains.get("sports"));
+
+        // new changes are appended to the existing log
+
+        newStore.putDomain(createDomainData("finance"));
+        newStore.close();
+
+        domains = new DomainSnapshotStore(snapshotFile.getPath(), 10, privateKey).loadDomains();
+        assertNotNull(domains);
+        assertEquals(domains.size(), 3);
+        assertNotNull(domains.get("finance"));
+    }
+
+    @Test
+    public void testSnapshotRequired() {
+
+        DomainSnapshotStore store = new DomainSnapshotStore(snapshotFile.getPath(), 2, privateKey);
+        assertTrue(store.saveDomains(Collections.singletonList(createDomainData("coretech"))));
+        store.putDomain(createDomainData("sports"));
+        assertFalse(store.snapshotRequired());
+        store.putDomain(createDomainData("weather"));
+        assertTrue(store.snapshotRequired());
+
+        // a new snapshot resets our log
+
+        assertTrue(store.saveDomains(Collections.singletonList(createDomainData("coretech"))));
+        assertFalse(store.snapshotRequired());
+        store.close();
+
+        Map<String, DomainData> domains = new DomainSnapshotStore(snapshotFile.getPath(), 2, privateKey).loadDomains();
+        assertNotNull(domains);
+        assertEquals(domains.size(), 1);
+    }
+
+    @Test
+    public void testLoadDomainsCorruptedSnapshot() throws IOException {
+
+        DomainSnapshotStore store = new DomainSnapshotStore(snapshotFile.getPath(), 10, privateKey);
+        assertTrue(store.saveDomains(Collections.singletonList(createDomainData("coretech"))));
+        store.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw")) {
+            file.seek(30);
+            file.write(file.read() ^ 0xFF);
+        }
+        assertNull(new DomainSnapshotStore(snapshotFile.getPath(), 10, privateKey).loadDomains());
+
+        // too short file
+
+        try (RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw")) {
+            file.setLength(10);
+        }
+        assertNull(new DomainSnapshotStore(snapshotFile.getPath(), 10, privateKey).loadDomains());
+    }
+
+    @Test
+    public void testLoadDomainsPartialLogRecord() throws IOException {
+
+        DomainSnapshotStore store = new DomainSnapshotStore(snapshotFile.getPath(), 10, privateKey);
+        assertTrue(store.saveDomains(Collections.singletonList(createDomainData("coretech"))));
+        store.putDomain(createDomainData("sports"));
+        store.putDomain(createDomainData("weather"));
+        store.close();
+
+        // remove the last few bytes so the last record is not valid
+
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        store = new DomainSnapshotStore(snapshotFile.getPath(), 10, privateKey);
+        Map<String, DomainData> domains = store.loadDomains();
+        assertNotNull(domains);
+        assertEquals(domains.size(), 2);
+        assertNull(domains.get("weather"));
+
+        // the partial record is removed so new records are valid
+
+        store.putDomain(createDomainData("finance"));
+        store.close();
+
+        domains = new DomainSnapshotStore(snapshotFile.getPath(), 10, privateKey).loadDomains();
+        assertNotNull(domains);
+        assertEquals(domains.size(), 3);
+        assertNotNull(domains.get("finance"));
+    }
+
+    @Test
+    public void testLoadDomainsPreviousSnapshotLog() throws IOException {
+
+        DomainSnapshotStore store = new DomainSnapshotStore(snapshotFile.getPath(), 10, privateKey);
+        assertTrue(store.saveDomains(Collections.singletonList(createDomainData("coretech"))));
+        store.putDomain(createDomainData("sports"));
+        store.close();
+
+        byte[] oldLog = Files.readAllBytes(logFile.toPath());
+
+        ZTSTestUtils.sleep(5);
+        store = new DomainSnapshotStore(snapshotFile.getPath(), 10, privateKey);
+        assertTrue(store.saveDomains(Collections.singletonList(createDomainData("weather"))));
+        store.close();
+
+        // restore the log from our previous snapshot which must be ignored
+
+        Files.write(logFile.toPath(), oldLog);
+        Map<String, DomainData> domains = new DomainSnapshotStore(snapshotFile.getPath(), 10, privateKey).loadDomains();
+        assertNotNull(domains);
+        assertEquals(domains.size(), 1);
+        assertNotNull(domains.get("weather"));
+    }
+
+    @Test
+    public void testAppendWithoutSnapshot() {
+
+        // without a snapshot, changes are ignored
+
+        DomainSnapshotStore store = new DomainSnapshotStore(snapshotFile.getPath(), 10, privateKey);
+        store.putDomain(createDomainData("coretech"));
+        store.deleteDomain("coretech");
+        assertFalse(logFile.exists());
+        store.close();
+    }
+
+    @Test
+    public void testSaveDomainsFailure() {
+        DomainSnapshotStore store = new DomainSnapshotStore("/proc/invalid-dir/snapshot", 10, privateKey);
+        assertFalse(store.saveDomains(Collections.singletonList(createDomainData("coretech"))));
+        assertTrue(store.snapshotRequired());
+    }
+
+    @Test
+    public void testSaveDomainsLogFailure() throws IOException {
+
+        // with a directory in place of our log file we cannot record
+        // changes so the new snapshot is removed
+
+        Files.createDirectory(logFile.toPath());
+
+        DomainSnapshotStore store = new DomainSnapshotStore(snapshotFile.getPath(), 10, privateKey);
+        assertFalse(store.saveDomains(Collections.singletonList(createDomainData("coretech"))));
+        assertTrue(store.snapshotRequired());
+        assertFalse(snapshotFile.exists());
+        assertFalse(new File(snapshotFile.getPath() + ".tmp").exists());
+        store.close();
+    }
+
+    @Test
+    public void testAppendWithoutLogRemovesSnapshot() {
+
+        DomainSnapshotStore store = new DomainSnapshotStore(snapshotFile.getPath(), 10, privateKey);
+        assertTrue(store.saveDomains(Collections.singletonList(createDomainData("coretech"))));
+        store.close();
+        assertTrue(snapshotFile.exists());
+
+        // once our log is closed, the snapshot would no longer include
+        // all the changes so it must be removed and generated again
+
+        store.putDomain(createDomainData("sports"));
+        assertFalse(snapshotFile.exists());
+        assertTrue(store.snapshotRequired());
+
+        DomainSnapshotStore newStore = new DomainSnapshotStore(snapshotFile.getPath(), 10, privateKey);
+        assertNull(newStore.loadDomains());
+
+        // a new snapshot allows us to record changes again
+
+        assertTrue(store.saveDomains(Arrays.asList(createDomainData("coretech"), createDomainData("sports"))));
+        store.deleteDomain("sports");
+        store.close();
+
+        Map<String, DomainData> domains = newStore.loadDomains();
+        assertNotNull(domains);
+        assertEquals(domains.size(), 1);
+        newStore.close();
+    }
+
+    @Test
+    public void testLoadDomainsSnapshotTooLarge() throws IOException {
+
+        // we don't support snapshot files larger than 2GB so the
+        // (sparse) file is rejected without reading its content
+
+        try (RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw")) {
+            file.setLength(Integer.MAX_VALUE + 100L);
+        }
+        DomainSnapshotStore store = new DomainSnapshotStore(snapshotFile.getPath(), 10, privateKey);
+        assertNull(store.loadDomains());
+        assertTrue(store.snapshotRequired());
+    }
+
+    @Test
+    public void testLoadDomainsDifferentKey() throws NoSuchAlgorithmException {
+
+        DomainSnapshotStore store = new DomainSnapshotStore(snapshotFile.getPath(), 10, privateKey);
+        assertTrue(store.saveDomains(Collections.singletonList(createDomainData("coretech"))));
+        store.close();
+
+        // a snapshot generated with a different server key is rejected
+
+        assertNull(new DomainSnapshotStore(snapshotFile.getPath(), 10, generatePrivateKey()).loadDomains());
+        assertNotNull(new DomainSnapshotStore(snapshotFile.getPath(), 10, privateKey).loadDomains());
+    }
+
+    @Test
+    public void testLoadDomainsTamperedLogRecord() throws IOException {
+
+        DomainSnapshotStore store = new DomainSnapshotStore(snapshotFile.getPath(), 10, privateKey);
+        assertTrue(store.saveDomains(Collections.singletonList(createDomainData("coretech"))));
+        store.putDomain(createDomainData("sports"));
+        store.close();
+
+        // modify the domain data in our log record which must be rejected
+
+        byte[] log = Files.readAllBytes(logFile.toPath());
+        final String content = new String(log, StandardCharsets.ISO_8859_1);
+        final int idx = content.indexOf("user.joe");
+        assertTrue(idx > 0);
+        log[idx + 5] = 'x';
+        Files.write(logFile.toPath(), log);
+
+        Map<String, DomainData> domains = new DomainSnapshotStore(snapshotFile.getPath(), 10, privateKey).loadDomains();
+        assertNotNull(domains);
+        assertEquals(domains.size(), 1);
+        assertNull(domains.get("sports"));
+    }
+
+    @Test
+    public void testReadBytesInvalidLength() throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(8).putInt(10).putInt(0);
+        buffer.flip();
+        try {
+            DomainSnapshotStore.readBytes(buffer);
+            fail();
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("invalid record length"));
+        }
+
+        buffer = ByteBuffer.allocate(8).putInt(-1).putInt(0);
+        buffer.flip();
+        try {
+            DomainSnapshotStore.readBytes(buffer);
+            fail();
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("invalid record length"));
+        }
+
+        byte[] data = ByteBuffer.allocate(8).putInt(Integer.MAX_VALUE).putInt(0).array();
+        try {
+            DomainSnapshotStore.readBytes(new DataInputStream(new ByteArrayInputStream(data)), data.length);
+            fail();
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("invalid record length"));
+        }
+
+        data = ByteBuffer.allocate(8).putInt(4).putInt(7).array();
+        assertEquals(DomainSnapshotStore.readBytes(new DataInputStream(new ByteArrayInputStream(data)),
+                data.length).length, 4);
+    }
+}
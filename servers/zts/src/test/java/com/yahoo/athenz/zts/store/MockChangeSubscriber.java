@@ -0,0 +1,63 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.zts.store;
+
+import com.yahoo.athenz.common.messaging.ChangeSubscriber;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * In-memory change subscriber that delivers the messages added
+ * to its queue to the registered consumer.
+ */
+public class MockChangeSubscriber<T> implements ChangeSubscriber<T> {
+
+    private final BlockingQueue<T> messages = new LinkedBlockingQueue<>();
+    private Consumer<T> processor;
+    private volatile boolean closed = false;
+
+    @Override
+    public void init(Consumer<T> processor, Class<T> valueType) {
+        this.processor = processor;
+    }
+
+    public void publish(T message) {
+        messages.add(message);
+    }
+
+    @Override
+    public void run() {
+        while (!closed) {
+            try {
+                T message = messages.poll(100, TimeUnit.MILLISECONDS);
+                if (message != null) {
+                    processor.accept(message);
+                }
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright The Athenz Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yahoo.athenz.zts.utils;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class IPBlockMatcherTest {
+
+    @Test
+    public void testIpCheck() {
+
+        List<IPBlock> ipBlocks = new ArrayList<>();
+        ipBlocks.add(new IPBlock("35.160.0.0/13"));
+        ipBlocks.add(new IPBlock("10.1.0.0/21"));
+        ipBlocks.add(new IPBlock("10.1.4.0/24"));
+        ipBlocks.add(new IPBlock("10.1.8.0/22"));
+        ipBlocks.add(new IPBlock("192.168.1.1/32"));
+        ipBlocks.add(new IPBlock("255.255.255.0/24"));
+        ipBlocks.add(new IPBlock("2a05:d07f:8000::/40"));
+        ipBlocks.add(new IPBlock("2001:db8::1/128"));
+        ipBlocks.add(new IPBlock("ffff::/16"));
+
+        IPBlockMatcher matcher = new IPBlockMatcher(ipBlocks);
+        assertEquals(matcher.size(), 9);
+        assertFalse(matcher.isEmpty());
+
+        assertTrue(matcher.ipCheck("10.1.0.0"));
+        assertTrue(matcher.ipCheck("10.1.4.10"));
+        assertTrue(matcher.ipCheck("10.1.7.255"));
+        assertTrue(matcher.ipCheck("10.1.8.0"));
+        assertTrue(matcher.ipCheck("10.1.11.255"));
+        assertFalse(matcher.ipCheck("10.1.12.0"));
+        assertFalse(matcher.ipCheck("10.0.255.255"));
+        assertTrue(matcher.ipCheck("35.166.98.147"));
+        assertTrue(matcher.ipCheck("192.168.1.1"));
+        assertFalse(matcher.ipCheck("192.168.1.2"));
+        assertTrue(matcher.ipCheck("255.255.255.255"));
+        assertFalse(matcher.ipCheck("0.0.0.0"));
+
+        assertTrue(matcher.ipCheck("2a05:d07f:8000::"));
+        assertTrue(matcher.ipCheck("2a05:d07f:80ab:1::25"));
+        assertFalse(matcher.ipCheck("2a05:d07f:8100::"));
+        assertTrue(matcher.ipCheck("2001:db8::1"));
+        assertFalse(matcher.ipCheck("2001:db8::2"));
+        assertTrue(matcher.ipCheck("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"));
+        assertFalse(matcher.ipCheck("::"));
+
+        // ipv4 mapped ipv6 addresses are checked as ipv4 addresses
+
+        assertTrue(matcher.ipCheck("::ffff:10.1.0.1"));
+
+        try {
+            matcher.ipCheck("10.0.0.256");
+            fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testIpCheckMatchesLinearScan() {
+
+        List<IPBlock> ipBlocks = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ipBlocks.add(new IPBlock("10." + (i % 50) + "." + (i * 7 % 256) + ".0/" + (20 + i % 13)));
+        }
+        IPBlockMatcher matcher = new IPBlockMatcher(ipBlocks);
+
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < 256; j += 3) {
+                final String ipAddress = "10." + i + "." + j + "." + (j * 11 % 256);
+                long ipAddr = IPBlock.convertIPToLong(ipAddress);
+                boolean expected = false;
+                for (IPBlock ipBlock : ipBlocks) {
+                    if (ipBlock.ipCheck(ipAddr)) {
+                        expected = true;
+                        break;
+                    }
+                }
+                assertEquals(matcher.ipCheck(ipAddress), expected, ipAddress);
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyMatcher() {
+
+        IPBlockMatcher matcher = new IPBlockMatcher(Collections.emptyList());
+        assertTrue(matcher.isEmpty());
+        assertFalse(matcher.ipCheck("10.1.0.1"));
+        assertFalse(matcher.ipCheck("2001:db8::1"));
+
+        // blocks that don't match any addresses are still counted
+
+        matcher = new IPBlockMatcher(Arrays.asList(new IPBlock("10.1.0.1/24")));
+        assertEquals(matcher.size(), 1);
+        assertFalse(matcher.ipCheck("10.1.0.1"));
+    }
+}
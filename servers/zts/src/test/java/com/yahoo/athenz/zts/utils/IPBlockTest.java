@@ -20,6 +20,7 @@ import org.testng.annotations.Test;
 import static org.testng.Assert.fail;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertEquals;
 
 public class IPBlockTest {
 
@@ -128,4 +129,46 @@ public class IPBlockTest {
         } catch (IllegalArgumentException ignored) {
         }
     }
+
+    @Test
+    public void testIPv6Block() {
+
+        IPBlock ipBlock = new IPBlock("2a05:d07f:8000::/40");
+        assertTrue(ipBlock.isIPv6());
+        assertTrue(ipBlock.aligned);
+        assertEquals(ipBlock.startHigh, 0x2a05d07f80000000L);
+        assertEquals(ipBlock.startLow, 0L);
+        assertEquals(ipBlock.endHigh, 0x2a05d07f80ffffffL);
+        assertEquals(ipBlock.endLow, -1L);
+
+        // ipv6 blocks never match ipv4 addresses
+
+        assertFalse(ipBlock.ipCheck(IPBlock.convertIPToLong("10.1.0.1")));
+
+        ipBlock = new IPBlock("2001:db8::1/128");
+        assertEquals(ipBlock.endHigh, ipBlock.startHigh);
+        assertEquals(ipBlock.endLow, 1L);
+
+        // subnet with bits outside the mask
+
+        assertFalse(new IPBlock("2001:db8::1/64").aligned);
+        assertFalse(new IPBlock("10.1.0.1/24").aligned);
+    }
+
+    @Test
+    public void testInvalidIPv6Block() {
+
+        try {
+            new IPBlock("2001:db8::/129");
+            fail();
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage().contains("invalid mask: 129"));
+        }
+
+        try {
+            new IPBlock("2001:db8::zz/64");
+            fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
 }